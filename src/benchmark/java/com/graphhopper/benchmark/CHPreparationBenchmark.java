@@ -0,0 +1,73 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.storage.LevelGraphStorage;
+import com.graphhopper.storage.RAMDirectory;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reports the contraction hierarchies preparation time versus the number of
+ * threads.
+ *
+ * @author Peter Karich
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CHPreparationBenchmark {
+
+    @Param({"100"})
+    public int gridSize;
+    @Param({"1", "2", "4"})
+    public int threads;
+    private GridGenerator generator;
+    private LevelGraphStorage graph;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        generator = new GridGenerator(gridSize, 1);
+    }
+
+    @Setup(Level.Iteration)
+    public void createGraph() {
+        graph = generator.fill(new LevelGraphStorage(new RAMDirectory()));
+    }
+
+    @Benchmark
+    public PrepareContractionHierarchies prepare() {
+        return new PrepareContractionHierarchies().graph(graph).threads(threads).doWork();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.routing.util.CarStreetType;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.util.DistanceCalc;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Creates a reproducible road grid so that benchmarks run without any OSM
+ * download. Every row and every column is one street with a random highway
+ * type, some of them are oneway. The node positions are slightly jittered. The
+ * same network can be filled into a graph or written as OSM xml to benchmark
+ * the import.
+ *
+ * @author Peter Karich
+ */
+public class GridGenerator {
+
+    private static final String[] TYPES = {"residential", "tertiary", "secondary", "primary", "motorway"};
+    private static final double SPACING = 0.005;
+    private final int size;
+    private final double[] lats;
+    private final double[] lons;
+    // index 0..size-1 are the rows, the rest are the columns
+    private final String[] streetTypes;
+    private final boolean[] oneway;
+
+    public GridGenerator(int size, long seed) {
+        if (size < 2)
+            throw new IllegalArgumentException("size has to be at least 2 but was " + size);
+        this.size = size;
+        Random rand = new Random(seed);
+        int nodes = size * size;
+        lats = new double[nodes];
+        lons = new double[nodes];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int node = y * size + x;
+                lats[node] = 49 + y * SPACING + (rand.nextDouble() - 0.5) * SPACING / 3;
+                lons[node] = 9 + x * SPACING + (rand.nextDouble() - 0.5) * SPACING / 3;
+            }
+        }
+        streetTypes = new String[2 * size];
+        oneway = new boolean[2 * size];
+        for (int i = 0; i < streetTypes.length; i++) {
+            streetTypes[i] = TYPES[rand.nextInt(TYPES.length)];
+            oneway[i] = rand.nextInt(10) == 0;
+        }
+    }
+
+    public int nodes() {
+        return lats.length;
+    }
+
+    /**
+     * Creates the nodes and edges in the specified (empty) storage.
+     */
+    public <T extends GraphStorage> T fill(T storage) {
+        storage.createNew(nodes());
+        for (int node = 0; node < lats.length; node++) {
+            storage.setNode(node, lats[node], lons[node]);
+        }
+        DistanceCalc distCalc = new DistanceCalc();
+        for (int street = 0; street < streetTypes.length; street++) {
+            int flags = CarStreetType.flags(CarStreetType.SPEED.get(streetTypes[street]) * CarStreetType.FACTOR,
+                    !oneway[street]);
+            int prev = streetNode(street, 0);
+            for (int i = 1; i < size; i++) {
+                int curr = streetNode(street, i);
+                storage.edge(prev, curr, distCalc.calcDist(lats[prev], lons[prev], lats[curr], lons[curr]), flags);
+                prev = curr;
+            }
+        }
+        return storage;
+    }
+
+    /**
+     * Writes the grid as OSM xml. OSM ids are the node ids plus one.
+     */
+    public void writeOsm(File file) throws IOException {
+        Writer writer = new BufferedWriter(new FileWriter(file));
+        try {
+            writer.write("<?xml version='1.0' encoding='UTF-8'?>\n<osm version=\"0.6\">\n");
+            for (int node = 0; node < lats.length; node++) {
+                writer.write("<node id=\"" + (node + 1) + "\" lat=\"" + lats[node] + "\" lon=\"" + lons[node] + "\"/>\n");
+            }
+            for (int street = 0; street < streetTypes.length; street++) {
+                writer.write("<way id=\"" + (street + 1) + "\">\n");
+                for (int i = 0; i < size; i++) {
+                    writer.write(" <nd ref=\"" + (streetNode(street, i) + 1) + "\"/>\n");
+                }
+                writer.write(" <tag k=\"highway\" v=\"" + streetTypes[street] + "\"/>\n");
+                if (oneway[street])
+                    writer.write(" <tag k=\"oneway\" v=\"yes\"/>\n");
+                writer.write("</way>\n");
+            }
+            writer.write("</osm>\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return random node pairs as {from[], to[]} where from and to differ
+     */
+    public int[][] createQueries(int count, long seed) {
+        Random rand = new Random(seed);
+        int[][] queries = new int[2][count];
+        for (int i = 0; i < count; i++) {
+            int from = rand.nextInt(nodes());
+            int to;
+            do {
+                to = rand.nextInt(nodes());
+            } while (to == from);
+            queries[0][i] = from;
+            queries[1][i] = to;
+        }
+        return queries;
+    }
+
+    private int streetNode(int street, int i) {
+        if (street < size)
+            return street * size + i;
+        return i * size + street - size;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.coll.IntDoubleBinHeap;
+import com.graphhopper.coll.IntDoubleIndexedBinHeap;
+import com.graphhopper.storage.Edge;
+import com.graphhopper.util.EdgeIterator;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares a decrease-key heavy workload like in Dijkstra: insert all
+ * elements, update random keys and poll everything. The PriorityQueue uses
+ * remove and add, the IntDoubleBinHeap searches linearly for the element.
+ *
+ * @author Peter Karich
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HeapBenchmark {
+
+    @Param({"20000"})
+    public int size;
+    @Param({"PriorityQueue", "IntDoubleBinHeap", "IntDoubleIndexedBinHeap"})
+    public String heap;
+    private int[] elements;
+    private double[] keys;
+
+    @Setup
+    public void setUp() {
+        int updates = 4 * size;
+        Random rand = new Random(0);
+        elements = new int[updates];
+        keys = new double[updates];
+        for (int i = 0; i < updates; i++) {
+            elements[i] = rand.nextInt(size);
+            keys[i] = rand.nextDouble();
+        }
+    }
+
+    @Benchmark
+    public double decreaseKey() {
+        if ("PriorityQueue".equals(heap))
+            return priorityQueue();
+        if ("IntDoubleBinHeap".equals(heap))
+            return binHeap();
+        return indexedBinHeap();
+    }
+
+    private double priorityQueue() {
+        Edge[] edges = new Edge[size];
+        PriorityQueue<Edge> queue = new PriorityQueue<Edge>(size);
+        for (int i = 0; i < size; i++) {
+            queue.add(edges[i] = new Edge(EdgeIterator.NO_EDGE, i, 1));
+        }
+        for (int i = 0; i < elements.length; i++) {
+            Edge e = edges[elements[i]];
+            queue.remove(e);
+            e.weight = keys[i];
+            queue.add(e);
+        }
+        double sum = 0;
+        while (!queue.isEmpty()) {
+            sum += queue.poll().weight;
+        }
+        return sum;
+    }
+
+    private double binHeap() {
+        IntDoubleBinHeap h = new IntDoubleBinHeap(size);
+        for (int i = 0; i < size; i++) {
+            h.insert_(1, i);
+        }
+        for (int i = 0; i < elements.length; i++) {
+            h.update_(keys[i], elements[i]);
+        }
+        double sum = 0;
+        while (!h.isEmpty()) {
+            sum += h.peek_key();
+            h.poll_element();
+        }
+        return sum;
+    }
+
+    private double indexedBinHeap() {
+        IntDoubleIndexedBinHeap h = new IntDoubleIndexedBinHeap(size, size);
+        for (int i = 0; i < size; i++) {
+            h.insert_(1, i);
+        }
+        for (int i = 0; i < elements.length; i++) {
+            h.update_(keys[i], elements[i]);
+        }
+        double sum = 0;
+        while (!h.isEmpty()) {
+            sum += h.peek_key();
+            h.poll_element();
+        }
+        return sum;
+    }
+}
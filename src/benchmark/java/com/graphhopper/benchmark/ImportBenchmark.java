@@ -0,0 +1,89 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.reader.OSMReader;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the full OSMReader import (parsing, subnetwork removal, location
+ * index) of a generated grid written as OSM xml.
+ *
+ * @author Peter Karich
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImportBenchmark {
+
+    @Param({"200"})
+    public int gridSize;
+    @Param({"true", "false"})
+    public boolean compactIdMap;
+    private File dir;
+    private File osmFile;
+    private int nodes;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = File.createTempFile("gh-benchmark", "");
+        if (!dir.delete() || !dir.mkdirs())
+            throw new IllegalStateException("cannot create " + dir);
+        osmFile = new File(dir, "grid.osm");
+        GridGenerator generator = new GridGenerator(gridSize, 1);
+        generator.writeOsm(osmFile);
+        nodes = generator.nodes();
+    }
+
+    @TearDown
+    public void tearDown() {
+        Helper.removeDir(dir);
+    }
+
+    @Benchmark
+    public Graph importOSM() throws IOException {
+        // not stored, so every invocation creates the graph from scratch
+        GraphStorage storage = new GraphStorage(new RAMDirectory(new File(dir, "graph-gh").getAbsolutePath(), false));
+        CmdArgs args = new CmdArgs().put("osmreader.osm", osmFile.getAbsolutePath()).
+                put("osmreader.compactIdMap", Boolean.toString(compactIdMap));
+        return OSMReader.osm2Graph(new OSMReader(storage, nodes), args).graph();
+    }
+}
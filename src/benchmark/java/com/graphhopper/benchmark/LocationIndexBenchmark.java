@@ -0,0 +1,80 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.Location2IDIndex;
+import com.graphhopper.storage.Location2IDQuadtree;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.BBox;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures Location2IDIndex.findID for random points inside the grid.
+ *
+ * @author Peter Karich
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocationIndexBenchmark {
+
+    @Param({"300"})
+    public int gridSize;
+    private Location2IDIndex index;
+    private double[] lats;
+    private double[] lons;
+    private int query;
+
+    @Setup
+    public void setUp() {
+        GraphStorage g = new GridGenerator(gridSize, 1).fill(new GraphStorage(new RAMDirectory()));
+        index = new Location2IDQuadtree(g, new RAMDirectory()).prepareIndex(Helper.calcIndexSize(g.bounds()));
+        BBox bbox = g.bounds();
+        Random rand = new Random(2);
+        lats = new double[1024];
+        lons = new double[1024];
+        for (int i = 0; i < lats.length; i++) {
+            lats[i] = bbox.minLat + rand.nextDouble() * (bbox.maxLat - bbox.minLat);
+            lons[i] = bbox.minLon + rand.nextDouble() * (bbox.maxLon - bbox.minLon);
+        }
+    }
+
+    @Benchmark
+    public int findID() {
+        int i = query++ & 1023;
+        return index.findID(lats[i], lons[i]);
+    }
+}
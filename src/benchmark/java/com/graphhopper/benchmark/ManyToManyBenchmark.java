@@ -0,0 +1,95 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.routing.DistanceMatrix;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.ch.ManyToManyCH;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.storage.LevelGraphStorage;
+import com.graphhopper.storage.RAMDirectory;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares a distance matrix calculated with ManyToManyCH against one
+ * point-to-point CH query per pair.
+ *
+ * @author Peter Karich
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ManyToManyBenchmark {
+
+    @Param({"100"})
+    public int gridSize;
+    @Param({"100"})
+    public int matrixSize;
+    private ManyToManyCH manyToMany;
+    private RoutingAlgorithm algorithm;
+    private int[] sources;
+    private int[] targets;
+
+    @Setup
+    public void setUp() {
+        GridGenerator generator = new GridGenerator(gridSize, 1);
+        LevelGraphStorage g = generator.fill(new LevelGraphStorage(new RAMDirectory()));
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(g).doWork();
+        manyToMany = prepare.createManyToMany();
+        algorithm = prepare.createAlgo();
+        int[][] queries = generator.createQueries(matrixSize, 2);
+        sources = queries[0];
+        targets = queries[1];
+    }
+
+    @Benchmark
+    public DistanceMatrix matrix() {
+        return manyToMany.calcMatrix(sources, targets);
+    }
+
+    @Benchmark
+    public double[] pointToPoint() {
+        double[] distances = new double[sources.length * targets.length];
+        Arrays.fill(distances, Double.MAX_VALUE);
+        for (int s = 0; s < sources.length; s++) {
+            for (int t = 0; t < targets.length; t++) {
+                if (sources[s] == targets[t])
+                    continue;
+                algorithm.clear();
+                distances[s * targets.length + t] = algorithm.calcPath(sources[s], targets[t]).distance();
+            }
+        }
+        return distances;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.routing.OneToMany;
+import com.graphhopper.routing.OneToManyDijkstra;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.LevelGraphStorage;
+import com.graphhopper.storage.RAMDirectory;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a one-to-all search on a generated grid. 'ch' uses the PHAST sweep
+ * on a contraction hierarchies prepared graph.
+ *
+ * @author Peter Karich
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OneToManyBenchmark {
+
+    @Param({"150"})
+    public int gridSize;
+    @Param({"dijkstra", "ch"})
+    public String algo;
+    private OneToMany oneToMany;
+    private int[] from;
+    private int query;
+
+    @Setup
+    public void setUp() {
+        GridGenerator generator = new GridGenerator(gridSize, 1);
+        if ("ch".equals(algo)) {
+            LevelGraphStorage g = generator.fill(new LevelGraphStorage(new RAMDirectory()));
+            oneToMany = new PrepareContractionHierarchies().graph(g).doWork().createOneToMany();
+        } else {
+            GraphStorage g = generator.fill(new GraphStorage(new RAMDirectory()));
+            oneToMany = new OneToManyDijkstra(g);
+        }
+        from = generator.createQueries(1024, 2)[0];
+    }
+
+    @Benchmark
+    public int calc() {
+        return oneToMany.calc(from[query++ & 1023]).reachedNodes().size();
+    }
+}
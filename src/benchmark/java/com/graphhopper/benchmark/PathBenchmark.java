@@ -0,0 +1,121 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.routing.DijkstraSimple;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.ShortestCarCalc;
+import com.graphhopper.storage.EdgeEntry;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.DouglasPeucker;
+import com.graphhopper.util.PointList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the post processing of a route: Path.calcPoints and
+ * DouglasPeucker.simplify. As calcPoints is cached a new path is extracted
+ * from the shortest path tree before and simplify works in place so the
+ * points are copied before. See the extract and copyPoints benchmarks for
+ * these overheads.
+ *
+ * @author Peter Karich
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathBenchmark {
+
+    @Param({"100"})
+    public int gridSize;
+    private GraphStorage graph;
+    private List<EdgeEntry> goalEntries;
+    private List<PointList> pointLists;
+    private PointList tmpPoints = new PointList();
+    private DouglasPeucker peucker = new DouglasPeucker();
+    private int query;
+
+    @Setup
+    public void setUp() {
+        GridGenerator generator = new GridGenerator(gridSize, 1);
+        graph = generator.fill(new GraphStorage(new RAMDirectory()));
+        final List<EdgeEntry> entries = new ArrayList<EdgeEntry>();
+        DijkstraSimple algo = new DijkstraSimple(graph) {
+            @Override public Path extractPath(EdgeEntry goalEdge) {
+                entries.add(goalEdge);
+                return super.extractPath(goalEdge);
+            }
+        };
+        int[][] queries = generator.createQueries(256, 2);
+        goalEntries = new ArrayList<EdgeEntry>();
+        pointLists = new ArrayList<PointList>();
+        for (int i = 0; goalEntries.size() < 64 && i < queries[0].length; i++) {
+            entries.clear();
+            Path p = algo.clear().calcPath(queries[0][i], queries[1][i]);
+            if (!p.found())
+                continue;
+            goalEntries.add(entries.get(0));
+            pointLists.add(p.calcPoints());
+        }
+    }
+
+    @Benchmark
+    public Path extract() {
+        return new Path(graph, ShortestCarCalc.DEFAULT).edgeEntry(goalEntries.get(query++ & 63)).extract();
+    }
+
+    @Benchmark
+    public PointList calcPoints() {
+        return extract().calcPoints();
+    }
+
+    @Benchmark
+    public PointList copyPoints() {
+        return copy(pointLists.get(query++ & 63));
+    }
+
+    @Benchmark
+    public int simplify() {
+        return peucker.simplify(copy(pointLists.get(query++ & 63)));
+    }
+
+    private PointList copy(PointList points) {
+        tmpPoints.clear();
+        for (int i = 0; i < points.size(); i++) {
+            tmpPoints.add(points.latitude(i), points.longitude(i));
+        }
+        return tmpPoints;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how the query throughput of one shared GraphHopper instance scales
+ * with the number of threads. 'route' submits every request of a batch to a
+ * thread pool, 'batch' uses route(List) with batchThreads. One operation
+ * routes 256 requests on a generated grid.
+ *
+ * @author Peter Karich
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteThroughputBenchmark {
+
+    @Param({"100"})
+    public int gridSize;
+    @Param({"1", "2", "4"})
+    public int threads;
+    @Param({"route", "batch"})
+    public String mode;
+    private File dir;
+    private GraphHopper hopper;
+    private ExecutorService service;
+    private final List<GHRequest> requests = new ArrayList<GHRequest>();
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = File.createTempFile("gh-benchmark", "");
+        if (!dir.delete() || !dir.mkdirs())
+            throw new IllegalStateException("cannot create " + dir);
+        File osmFile = new File(dir, "grid.osm");
+        GridGenerator generator = new GridGenerator(gridSize, 1);
+        generator.writeOsm(osmFile);
+        hopper = new GraphHopper().setInMemory(true, false).batchThreads(threads);
+        hopper.load(osmFile.getAbsolutePath());
+
+        // the grid starts at 49,9 with a spacing of 0.005 degree
+        double extent = gridSize * 0.005;
+        Random rand = new Random(2);
+        for (int i = 0; i < 256; i++) {
+            requests.add(new GHRequest(49 + rand.nextDouble() * extent, 9 + rand.nextDouble() * extent,
+                    49 + rand.nextDouble() * extent, 9 + rand.nextDouble() * extent).algorithm("dijkstrabi"));
+        }
+        service = Executors.newFixedThreadPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.shutdown();
+        Helper.removeDir(dir);
+    }
+
+    @Benchmark
+    public int routes() throws InterruptedException, ExecutionException {
+        if ("batch".equals(mode))
+            return hopper.route(requests).size();
+
+        List<Future<GHResponse>> futures = new ArrayList<Future<GHResponse>>(requests.size());
+        for (final GHRequest req : requests) {
+            futures.add(service.submit(new Callable<GHResponse>() {
+                @Override public GHResponse call() {
+                    return hopper.route(req);
+                }
+            }));
+        }
+        int found = 0;
+        for (Future<GHResponse> f : futures) {
+            if (f.get().found())
+                found++;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.util.AlgorithmPreparation;
+import com.graphhopper.routing.util.NoOpAlgorithmPreparation;
+import com.graphhopper.routing.util.PrepareLandmarks;
+import com.graphhopper.storage.CSRGraph;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.LevelGraphStorage;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures calcPath for every algorithm on a generated grid. 'ch' uses the
+ * bidirectional Dijkstra on a contraction hierarchies prepared graph, the
+ * 'LM' variants use A* with 8 landmarks. With csr the graph is converted into
+ * a CSRGraph before querying (ignored for the 'LM' variants).
+ *
+ * @author Peter Karich
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutingBenchmark {
+
+    @Param({"100"})
+    public int gridSize;
+    @Param({"astar", "astarbi", "dijkstra", "dijkstrabi", "dijkstraNative", "ch", "astarLM", "astarbiLM"})
+    public String algo;
+    @Param({"false", "true"})
+    public boolean csr;
+    private RoutingAlgorithm algorithm;
+    private int[] from;
+    private int[] to;
+    private int query;
+
+    @Setup
+    public void setUp() {
+        GridGenerator generator = new GridGenerator(gridSize, 1);
+        AlgorithmPreparation prepare;
+        if ("ch".equals(algo)) {
+            LevelGraphStorage g = generator.fill(new LevelGraphStorage(new RAMDirectory()));
+            prepare = new PrepareContractionHierarchies().graph(g).doWork();
+            if (csr)
+                prepare.graph(new CSRGraph(g));
+        } else if (algo.endsWith("LM")) {
+            GraphStorage g = generator.fill(new GraphStorage(new RAMDirectory()));
+            final PrepareLandmarks lm = new PrepareLandmarks(new RAMDirectory()).graph(g).doWork();
+            prepare = algo.startsWith("astarbi") ? new NoOpAlgorithmPreparation() {
+                @Override public RoutingAlgorithm createAlgo() {
+                    return lm.createBidirectionalAlgo();
+                }
+            } : lm;
+        } else {
+            GraphStorage g = generator.fill(new GraphStorage(new RAMDirectory()));
+            prepare = Helper.createAlgoPrepare(algo).graph(csr ? new CSRGraph(g) : g);
+        }
+        algorithm = prepare.createAlgo();
+        int[][] queries = generator.createQueries(1024, 2);
+        from = queries[0];
+        to = queries[1];
+    }
+
+    @Benchmark
+    public Path calcPath() {
+        int i = query++ & 1023;
+        algorithm.clear();
+        return algorithm.calcPath(from[i], to[i]);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.util.shapes.GHPoint;
+
+/**
+ * GraphHopper request wrapper to get all nodes reachable from a point within
+ * a distance or time limit.
+ *
+ * @author Peter Karich
+ */
+public class GHIsochroneRequest {
+
+    private GHPoint point;
+    private double distanceLimit = Double.MAX_VALUE;
+    private long timeLimit = Long.MAX_VALUE;
+
+    public GHIsochroneRequest(double lat, double lon) {
+        this(new GHPoint(lat, lon));
+    }
+
+    public GHIsochroneRequest(GHPoint point) {
+        this.point = point;
+    }
+
+    void check() {
+        if (point == null)
+            throw new IllegalStateException("the point needs to be initialized but was null");
+        if (distanceLimit == Double.MAX_VALUE && timeLimit == Long.MAX_VALUE)
+            throw new IllegalStateException("either a distance or a time limit is necessary");
+    }
+
+    public GHPoint point() {
+        return point;
+    }
+
+    /**
+     * @param distance the maximum distance in meter
+     */
+    public GHIsochroneRequest distanceLimit(double distance) {
+        this.distanceLimit = distance;
+        return this;
+    }
+
+    public double distanceLimit() {
+        return distanceLimit;
+    }
+
+    /**
+     * @param time the maximum time in seconds
+     */
+    public GHIsochroneRequest timeLimit(long time) {
+        this.timeLimit = time;
+        return this;
+    }
+
+    public long timeLimit() {
+        return timeLimit;
+    }
+
+    @Override
+    public String toString() {
+        return point + ", distanceLimit:" + distanceLimit + ", timeLimit:" + timeLimit;
+    }
+}
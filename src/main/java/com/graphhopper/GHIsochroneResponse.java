@@ -0,0 +1,80 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.util.PointList;
+import gnu.trove.list.TIntList;
+
+/**
+ * Wrapper of the reachable area returned by GraphHopper.isochrone.
+ *
+ * @author Peter Karich
+ */
+public class GHIsochroneResponse {
+
+    private final TIntList nodes;
+    private final PointList points;
+    private final PointList polygon;
+    private String debugInfo = "";
+
+    public GHIsochroneResponse(TIntList nodes, PointList points, PointList polygon) {
+        this.nodes = nodes;
+        this.points = points;
+        this.polygon = polygon;
+    }
+
+    public boolean found() {
+        return !nodes.isEmpty();
+    }
+
+    /**
+     * @return the ids of all reachable nodes
+     */
+    public TIntList nodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the coordinates of all reachable nodes
+     */
+    public PointList points() {
+        return points;
+    }
+
+    /**
+     * @return the convex hull of all reachable nodes
+     */
+    public PointList polygon() {
+        return polygon;
+    }
+
+    public String debugInfo() {
+        return debugInfo;
+    }
+
+    public GHIsochroneResponse debugInfo(String debugInfo) {
+        this.debugInfo = debugInfo;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "found:" + found() + ", nodes:" + nodes.size() + ", polygon:" + polygon.size();
+    }
+}
@@ -19,31 +19,57 @@
 package com.graphhopper;
 
 import com.graphhopper.reader.OSMReader;
+import com.graphhopper.routing.DistanceMatrix;
+import com.graphhopper.routing.OneToMany;
+import com.graphhopper.routing.OneToManyDijkstra;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.RoutingAlgorithmPool;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.util.AlgorithmPreparation;
 import com.graphhopper.routing.util.FastestCarCalc;
+import com.graphhopper.routing.util.NoOpAlgorithmPreparation;
+import com.graphhopper.routing.util.PrepareLandmarks;
 import com.graphhopper.routing.util.ShortestCarCalc;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphStorage;
 import com.graphhopper.storage.LevelGraphStorage;
+import com.graphhopper.storage.Location2IDEdgeIndex;
 import com.graphhopper.storage.Location2IDIndex;
 import com.graphhopper.storage.Location2IDQuadtree;
 import com.graphhopper.storage.MMapDirectory;
+import com.graphhopper.storage.OffHeapDirectory;
 import com.graphhopper.storage.RAMDirectory;
 import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.ConvexHull;
 import com.graphhopper.util.DouglasPeucker;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPoint;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Main wrapper of the offline API for a simple and efficient usage.
  *
+ * After load() the graph, the location index and the preparation are only read
+ * so that route() can be called from several threads with one instance. As
+ * routing algorithms are not thread safe every call borrows its own instance
+ * from a RoutingAlgorithmPool.
+ *
  * @see GraphHopperAPI
  * @author Peter Karich
  */
@@ -55,10 +81,22 @@ public class GraphHopper implements GraphHopperAPI {
     private boolean inMemory = true;
     private boolean storeOnFlush = true;
     private boolean memoryMapped;
+    private boolean offHeap;
     private boolean chUsage = false;
     private String ghLocation = "";
     private boolean simplify = true;
+    private boolean sortGraph = false;
     private boolean chFast = true;
+    private int chShortcutCache = 10000;
+    private int landmarks;
+    private boolean edgeIndex;
+    private int batchThreads = Runtime.getRuntime().availableProcessors();
+    private int warmupThreads = 0;
+    private PrepareLandmarks prepareLandmarks;
+    private static final Set<String> KNOWN_ALGOS = new HashSet<String>(Arrays.asList(
+            "astar", "astarbi", "dijkstra", "dijkstrabi", "dijkstranative"));
+    private final ConcurrentMap<String, RoutingAlgorithmPool> pools =
+            new ConcurrentHashMap<String, RoutingAlgorithmPool>();
 
     public GraphHopper() {
     }
@@ -90,6 +128,7 @@ public class GraphHopper implements GraphHopperAPI {
         if (inMemory) {
             this.inMemory = true;
             this.memoryMapped = false;
+            this.offHeap = false;
             this.storeOnFlush = storeOnFlush;
         } else {
             memoryMapped();
@@ -99,10 +138,37 @@ public class GraphHopper implements GraphHopperAPI {
 
     public GraphHopper memoryMapped() {
         this.inMemory = false;
+        offHeap = false;
         memoryMapped = true;
         return this;
     }
 
+    /**
+     * Loads the memory mapped files of an existing graph into memory with the
+     * specified number of threads, so that the first requests do not suffer
+     * from page faults. Use 0 to disable.
+     */
+    public GraphHopper warmup(int threads) {
+        if (threads < 0)
+            throw new IllegalArgumentException("threads cannot be negative but was " + threads);
+        warmupThreads = threads;
+        return this;
+    }
+
+    /**
+     * Keeps the graph in memory but outside of the Java heap to avoid huge
+     * heaps and long GC pauses.
+     *
+     * @param storeOnFlush true if the graph should be saved to disc on flush
+     */
+    public GraphHopper offHeap(boolean storeOnFlush) {
+        this.inMemory = false;
+        this.memoryMapped = false;
+        this.offHeap = true;
+        this.storeOnFlush = storeOnFlush;
+        return this;
+    }
+
     /**
      * Enables the use of contraction hierarchies to reduce query times.
      *
@@ -114,11 +180,60 @@ public class GraphHopper implements GraphHopperAPI {
         return this;
     }
 
+    /**
+     * Caches the specified number of unpacked shortcuts to speed up the path
+     * extraction of contraction hierarchies. Use 0 to disable the cache.
+     */
+    public GraphHopper chShortcutCache(int size) {
+        chShortcutCache = size;
+        return this;
+    }
+
+    /**
+     * Uses the specified number of landmarks for astar and astarbi if
+     * contraction hierarchies are disabled. The landmarks are prepared on the
+     * first load and then stored next to the graph.
+     */
+    public GraphHopper landmarks(int count) {
+        landmarks = count;
+        return this;
+    }
+
+    /**
+     * Uses the specified number of threads to calculate the routes of a batch.
+     */
+    public GraphHopper batchThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads has to be positive but was " + threads);
+        batchThreads = threads;
+        return this;
+    }
+
+    /**
+     * Snaps the points of a request to the closest edge including its pillar
+     * nodes instead of the closest node. The edge index is created on the
+     * first load and then stored next to the graph.
+     */
+    public GraphHopper edgeIndex(boolean enable) {
+        edgeIndex = enable;
+        return this;
+    }
+
     public GraphHopper simplify(boolean doSimplify) {
         this.simplify = doSimplify;
         return this;
     }
 
+    /**
+     * Sorts nodes and edges along a hilbert curve on import to improve the
+     * memory locality of queries. Disabled by default as the import then needs
+     * a temporary copy of the graph in the same storage.
+     */
+    public GraphHopper sortGraph(boolean sort) {
+        this.sortGraph = sort;
+        return this;
+    }
+
     public GraphHopper setGraphHopperLocation(String ghLocation) {
         if (ghLocation != null)
             this.ghLocation = ghLocation;
@@ -130,13 +245,16 @@ public class GraphHopper implements GraphHopperAPI {
         if (graph != null)
             throw new IllegalStateException("graph is already loaded");
 
-        if (graphHopperFile.indexOf(".") < 0) {
+        File file = new File(graphHopperFile);
+        if (!file.exists() && file.getName().indexOf(".") < 0) {
             if (new File(graphHopperFile + "-gh").exists())
                 graphHopperFile += "-gh";
             else if (new File(graphHopperFile + ".osm").exists())
                 graphHopperFile += ".osm";
+            else if (new File(graphHopperFile + ".osm.pbf").exists())
+                graphHopperFile += ".osm.pbf";
             else
-                throw new IllegalArgumentException("No file end and no existing osm or gh file found for " + graphHopperFile);
+                throw new IllegalArgumentException("No file end and no existing osm, pbf or gh file found for " + graphHopperFile);
         }
 
         String tmpGHFile = graphHopperFile.toLowerCase();
@@ -153,11 +271,13 @@ public class GraphHopper implements GraphHopperAPI {
             GraphStorage storage;
             Directory dir;
             if (memoryMapped) {
-                dir = new MMapDirectory(graphHopperFile);
+                dir = new MMapDirectory(graphHopperFile).warmup(warmupThreads);
             } else if (inMemory) {
                 dir = new RAMDirectory(graphHopperFile, storeOnFlush);
+            } else if (offHeap) {
+                dir = new OffHeapDirectory(graphHopperFile, storeOnFlush);
             } else
-                throw new IllegalStateException("either memory mapped or in-memory!");
+                throw new IllegalStateException("either memory mapped, in-memory or off-heap!");
 
             if (chUsage) {
                 storage = new LevelGraphStorage(dir);
@@ -166,28 +286,36 @@ public class GraphHopper implements GraphHopperAPI {
                     tmpPrepareCH.type(FastestCarCalc.DEFAULT);
                 else
                     tmpPrepareCH.type(ShortestCarCalc.DEFAULT);
+                tmpPrepareCH.shortcutCache(chShortcutCache).graph(storage);
                 prepare = tmpPrepareCH;
             } else
                 storage = new GraphStorage(dir);
 
             if (!storage.loadExisting())
                 throw new IllegalStateException("Couldn't load storage at " + graphHopperFile);
+            if (prepare instanceof PrepareContractionHierarchies
+                    && !((PrepareContractionHierarchies) prepare).loadExisting())
+                throw new IllegalStateException("The graph at " + graphHopperFile
+                        + " is not prepared for contraction hierarchies");
 
             graph = storage;
             initIndex(dir);
-        } else if (tmpGHFile.endsWith(".osm") || tmpGHFile.endsWith(".xml")) {
+        } else if (tmpGHFile.endsWith(".osm") || tmpGHFile.endsWith(".xml") || tmpGHFile.endsWith(".pbf")) {
             if (ghLocation.isEmpty())
                 ghLocation = Helper.pruneFileEnd(graphHopperFile) + "-gh";
             CmdArgs args = new CmdArgs().put("osmreader.osm", graphHopperFile).
                     put("osmreader.graph-location", ghLocation);
             if (memoryMapped)
                 args.put("osmreader.dataaccess", "mmap");
+            else if (offHeap)
+                args.put("osmreader.dataaccess", storeOnFlush ? "offheap+save" : "offheap");
             else {
                 if (inMemory && storeOnFlush) {
                     args.put("osmreader.dataaccess", "inmemory+save");
                 } else
                     args.put("osmreader.dataaccess", "inmemory");
             }
+            args.put("osmreader.sortGraph", sortGraph ? "hilbert" : "no");
             if (chUsage) {
                 args.put("osmreader.levelgraph", "true");
                 args.put("osmreader.chShortcuts", "fastest");
@@ -198,33 +326,101 @@ public class GraphHopper implements GraphHopperAPI {
                 graph = reader.graph();
                 prepare = reader.preparation();
                 index = reader.location2IDIndex();
+                if (edgeIndex)
+                    initIndex(((GraphStorage) graph).directory());
             } catch (IOException ex) {
                 throw new RuntimeException("Cannot parse file " + graphHopperFile, ex);
             }
         } else
             throw new IllegalArgumentException("Unknown file end " + graphHopperFile);
 
+        if (landmarks > 0 && !chUsage)
+            initLandmarks();
         return this;
     }
 
     @Override
     public GHResponse route(GHRequest request) {
-        if (chUsage) {
-            if (!request.algorithm().equals("dijkstrabi"))
-                throw new IllegalStateException("Only dijkstrabi is supported for levelgraph/CH! "
-                        + "TODO we could allow bidirectional astar");
-        } else
-            prepare = Helper.createAlgoPrepare(request.algorithm());
-
         request.check();
         StopWatch sw = new StopWatch().start();
         int from = index.findID(request.from().lat, request.from().lon);
         int to = index.findID(request.to().lat, request.to().lon);
         String debug = "idLookup:" + sw.stop().getSeconds() + "s";
 
-        sw = new StopWatch().start();
-        prepare.graph(graph);
-        RoutingAlgorithm algo = prepare.createAlgo();
+        RoutingAlgorithmPool pool = getPool(request.algorithm());
+        RoutingAlgorithm algo = pool.borrow();
+        try {
+            return route(request, from, to, algo, debug);
+        } finally {
+            pool.release(algo);
+        }
+    }
+
+    /**
+     * Calculates the routes of all requests with several threads, see
+     * batchThreads. Every thread reuses its algorithm instances for all of
+     * its requests and equal points are looked up only once.
+     */
+    @Override
+    public List<GHResponse> route(List<GHRequest> requests) {
+        final int size = requests.size();
+        final GHRequest[] reqs = requests.toArray(new GHRequest[size]);
+        final int[] ids = new int[size * 2];
+        StopWatch sw = new StopWatch().start();
+        // points equal in the storage precision snap to the same node
+        TLongIntHashMap snapped = new TLongIntHashMap(size * 2, 0.5f, -1, -1);
+        for (int i = 0; i < size; i++) {
+            reqs[i].check();
+            ids[2 * i] = findID(snapped, reqs[i].from());
+            ids[2 * i + 1] = findID(snapped, reqs[i].to());
+        }
+        final String debug = "idLookup (" + snapped.size() + " points):" + sw.stop().getSeconds() + "s";
+
+        final GHResponse[] responses = new GHResponse[size];
+        // every thread borrows its own algorithms
+        int threads = Math.max(1, batchThreads);
+        final List<Map<String, RoutingAlgorithm>> algosPerThread = new ArrayList<Map<String, RoutingAlgorithm>>(threads);
+        for (int t = 0; t < threads; t++) {
+            algosPerThread.add(new HashMap<String, RoutingAlgorithm>());
+        }
+        try {
+            Helper.runInChunks(threads, size, 1, "batch routing", new Helper.ChunkWorker() {
+                @Override public void run(int thread, int start, int end) {
+                    Map<String, RoutingAlgorithm> algos = algosPerThread.get(thread);
+                    for (int i = start; i < end; i++) {
+                        String algoStr = reqs[i].algorithm();
+                        RoutingAlgorithm algo = algos.get(algoStr);
+                        if (algo == null) {
+                            algo = getPool(algoStr).borrow();
+                            algos.put(algoStr, algo);
+                        } else
+                            algo.clear();
+                        responses[i] = route(reqs[i], ids[2 * i], ids[2 * i + 1], algo, debug);
+                    }
+                }
+            });
+        } finally {
+            for (Map<String, RoutingAlgorithm> algos : algosPerThread) {
+                for (Map.Entry<String, RoutingAlgorithm> e : algos.entrySet()) {
+                    getPool(e.getKey()).release(e.getValue());
+                }
+            }
+        }
+        return Arrays.asList(responses);
+    }
+
+    private int findID(TLongIntHashMap snapped, GHPoint point) {
+        long key = ((long) Helper.degreeToInt(point.lat) << 32) | (Helper.degreeToInt(point.lon) & 0xFFFFFFFFL);
+        int id = snapped.get(key);
+        if (id < 0) {
+            id = index.findID(point.lat, point.lon);
+            snapped.put(key, id);
+        }
+        return id;
+    }
+
+    private GHResponse route(GHRequest request, int from, int to, RoutingAlgorithm algo, String debug) {
+        StopWatch sw = new StopWatch().start();
         Path path = algo.calcPath(from, to);
         debug += " routing (" + algo.name() + "):" + sw.stop().getSeconds() + "s";
         PointList points = path.calcPoints();
@@ -236,7 +432,122 @@ public class GraphHopper implements GraphHopperAPI {
         return new GHResponse(points).distance(path.distance()).time(path.time()).debugInfo(debug);
     }
 
+    /**
+     * Calculates weight, distance and time from every point in 'from' (rows)
+     * to every point in 'to' (columns) with one search per point. Only
+     * possible with contraction hierarchies.
+     */
+    public DistanceMatrix matrix(List<GHPoint> from, List<GHPoint> to) {
+        if (!(prepare instanceof PrepareContractionHierarchies))
+            throw new IllegalStateException("A matrix can only be calculated with contraction hierarchies");
+        return ((PrepareContractionHierarchies) prepare).createManyToMany().
+                calcMatrix(findIDs(from), findIDs(to));
+    }
+
+    /**
+     * Calculates all nodes reachable from the requested point within its
+     * distance or time limit. With contraction hierarchies the complete
+     * graph is swept, otherwise only the reachable area is searched.
+     */
+    public GHIsochroneResponse isochrone(GHIsochroneRequest request) {
+        request.check();
+        StopWatch sw = new StopWatch().start();
+        int from = index.findID(request.point().lat, request.point().lon);
+        String debug = "idLookup:" + sw.stop().getSeconds() + "s";
+
+        sw = new StopWatch().start();
+        OneToMany oneToMany;
+        if (prepare instanceof PrepareContractionHierarchies)
+            oneToMany = ((PrepareContractionHierarchies) prepare).createOneToMany();
+        else if (request.timeLimit() < Long.MAX_VALUE)
+            // a time limit needs the fastest paths, otherwise faster roads are missed
+            oneToMany = new OneToManyDijkstra(graph).type(FastestCarCalc.DEFAULT);
+        else
+            oneToMany = new OneToManyDijkstra(graph);
+        oneToMany.distanceLimit(request.distanceLimit()).timeLimit(request.timeLimit()).calc(from);
+        TIntArrayList nodes = new TIntArrayList(oneToMany.reachedNodes());
+        debug += " search (" + oneToMany.name() + "):" + sw.stop().getSeconds() + "s";
+
+        PointList points = new PointList(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            int node = nodes.get(i);
+            points.add(graph.getLatitude(node), graph.getLongitude(node));
+        }
+        PointList polygon = new ConvexHull().calc(points);
+        return new GHIsochroneResponse(nodes, points, polygon).debugInfo(debug);
+    }
+
+    private int[] findIDs(List<GHPoint> points) {
+        double[] lats = new double[points.size()];
+        double[] lons = new double[points.size()];
+        for (int i = 0; i < lats.length; i++) {
+            GHPoint point = points.get(i);
+            lats[i] = point.lat;
+            lons[i] = point.lon;
+        }
+        return index.findIDs(lats, lons);
+    }
+
+    /**
+     * Returns the pool of reusable algorithm instances for the specified
+     * algorithm. Never change the shared preparation here as route() is called
+     * from several threads.
+     */
+    RoutingAlgorithmPool getPool(String algoStr) {
+        if (chUsage) {
+            if (!algoStr.equals("dijkstrabi"))
+                throw new IllegalStateException("Only dijkstrabi is supported for levelgraph/CH! "
+                        + "TODO we could allow bidirectional astar");
+        } else if (!KNOWN_ALGOS.contains(algoStr.toLowerCase()))
+            // avoid a new pool for every unknown string, createAlgoFromString uses astar anyway
+            algoStr = "astar";
+
+        String key = algoStr.toLowerCase();
+        RoutingAlgorithmPool pool = pools.get(key);
+        if (pool == null) {
+            AlgorithmPreparation tmpPrepare;
+            if (chUsage)
+                tmpPrepare = prepare;
+            else if (prepareLandmarks != null && key.equals("astar"))
+                tmpPrepare = prepareLandmarks;
+            else if (prepareLandmarks != null && key.equals("astarbi"))
+                tmpPrepare = new NoOpAlgorithmPreparation() {
+                    @Override public RoutingAlgorithm createAlgo() {
+                        return prepareLandmarks.createBidirectionalAlgo();
+                    }
+                };
+            else
+                tmpPrepare = Helper.createAlgoPrepare(algoStr).graph(graph);
+            pool = new RoutingAlgorithmPool(tmpPrepare);
+            RoutingAlgorithmPool old = pools.putIfAbsent(key, pool);
+            if (old != null)
+                pool = old;
+        }
+        return pool;
+    }
+
+    private void initLandmarks() {
+        if (!(graph instanceof GraphStorage))
+            throw new IllegalStateException("landmarks need a GraphStorage");
+        PrepareLandmarks tmp = new PrepareLandmarks(((GraphStorage) graph).directory()).
+                graph(graph).landmarks(landmarks);
+        if (!tmp.loadExisting()) {
+            tmp.doWork();
+            tmp.flush();
+        }
+        prepareLandmarks = tmp;
+    }
+
     private void initIndex(Directory dir) {
+        if (edgeIndex) {
+            Location2IDEdgeIndex tmp = new Location2IDEdgeIndex(graph, dir);
+            if (!tmp.loadExisting()) {
+                tmp.prepareIndex(Helper.calcIndexSize(graph.bounds()));
+                tmp.flush();
+            }
+            index = tmp;
+            return;
+        }
         Location2IDQuadtree tmp = new Location2IDQuadtree(graph, dir);
         if (!tmp.loadExisting())
             tmp.prepareIndex(Helper.calcIndexSize(graph.bounds()));
@@ -18,6 +18,8 @@
  */
 package com.graphhopper;
 
+import java.util.List;
+
 /**
  * Wrapper of the graphhopper online or offline API. Provides read only access.
  *
@@ -55,4 +57,10 @@ public interface GraphHopperAPI {
      * Calculates the path from specified request with startPoint to endPoint.
      */
     GHResponse route(GHRequest request);
+
+    /**
+     * Calculates the paths of all requests. The responses are in the order of
+     * the requests.
+     */
+    List<GHResponse> route(List<GHRequest> requests);
 }
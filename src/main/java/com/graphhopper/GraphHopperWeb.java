@@ -25,6 +25,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
@@ -94,6 +96,15 @@ public class GraphHopperWeb implements GraphHopperAPI {
         }
     }
 
+    @Override
+    public List<GHResponse> route(List<GHRequest> requests) {
+        List<GHResponse> responses = new ArrayList<GHResponse>(requests.size());
+        for (GHRequest request : requests) {
+            responses.add(route(request));
+        }
+        return responses;
+    }
+
     InputStream fetch(String url) throws IOException {
         HttpURLConnection conn = (HttpURLConnection) createConnection(url);
         // create connection but before reading get the correct inputstream based on the compression
@@ -0,0 +1,254 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+import java.util.Arrays;
+
+/**
+ * A binary min heap of int elements with double keys which additionally knows
+ * the position of every element. This makes update (decrease or increase key)
+ * O(log n) instead of the linear search in IntDoubleBinHeap or the remove+add
+ * of a PriorityQueue. An element can be in the heap only once.
+ *
+ * The positions are either stored in an int array indexed by the element
+ * (fast, but needs 4 bytes per possible element e.g. per node) or in a hash
+ * map which is better if only a few elements are expected.
+ *
+ * @author Peter Karich
+ */
+public class IntDoubleIndexedBinHeap implements BinHeapWrapper<Number, Integer> {
+
+    private static final double GROW_FACTOR = 2.0;
+    private double[] keys;
+    private int[] elem;
+    private int size;
+    private int capacity;
+    // element -> 1-based position in keys and elem, 0 means not in the heap
+    private int[] denseIndex;
+    private TIntIntHashMap sparseIndex;
+
+    public IntDoubleIndexedBinHeap() {
+        this(1000);
+    }
+
+    /**
+     * Creates a heap which stores the positions in a hash map.
+     */
+    public IntDoubleIndexedBinHeap(int capacity) {
+        this(capacity, -1);
+    }
+
+    /**
+     * @param maxElements if positive the positions are stored in an array of
+     * this size which grows if a bigger element is inserted. Otherwise a hash
+     * map is used.
+     */
+    public IntDoubleIndexedBinHeap(int capacity, int maxElements) {
+        if (capacity < 10)
+            capacity = 10;
+        this.capacity = capacity;
+        // 1-based indexing
+        elem = new int[capacity + 1];
+        keys = new double[capacity + 1];
+        // set sentinel
+        keys[0] = Double.NEGATIVE_INFINITY;
+        if (maxElements > 0)
+            denseIndex = new int[maxElements];
+        else
+            sparseIndex = new TIntIntHashMap(capacity);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int element) {
+        return indexOf(element) > 0;
+    }
+
+    @Override
+    public Double peekKey() {
+        return peek_key();
+    }
+
+    public double peek_key() {
+        if (size > 0)
+            return keys[1];
+        else
+            throw new IllegalStateException("An empty queue does not have a minimum key.");
+    }
+
+    @Override
+    public Integer peekElement() {
+        return peek_element();
+    }
+
+    public int peek_element() {
+        if (size > 0)
+            return elem[1];
+        else
+            throw new IllegalStateException("An empty queue does not have a minimum value.");
+    }
+
+    @Override
+    public Integer pollElement() {
+        return poll_element();
+    }
+
+    public int poll_element() {
+        if (size <= 0)
+            throw new IllegalStateException("An empty queue does not have a minimum value.");
+        int minElem = elem[1];
+        removeIndex(minElem);
+        int lastElem = elem[size];
+        double lastKey = keys[size];
+        size--;
+        if (size > 0)
+            siftDown(1, lastKey, lastElem);
+        return minElem;
+    }
+
+    @Override
+    public void update(Number key, Integer element) {
+        update_(key.doubleValue(), element);
+    }
+
+    /**
+     * Changes the key of the specified element in O(log n).
+     *
+     * @return false if the element is not in the heap
+     */
+    public boolean update_(double key, int element) {
+        int i = indexOf(element);
+        if (i <= 0)
+            return false;
+
+        if (key > keys[i])
+            siftDown(i, key, element);
+        else
+            siftUp(i, key, element);
+        return true;
+    }
+
+    @Override
+    public void insert(Number key, Integer element) {
+        insert_(key.doubleValue(), element);
+    }
+
+    public void insert_(double key, int element) {
+        if (indexOf(element) > 0)
+            throw new IllegalStateException("Element " + element + " is already in the heap. Use update instead.");
+        size++;
+        if (size > capacity)
+            ensureCapacity((int) (capacity * GROW_FACTOR));
+        siftUp(size, key, element);
+    }
+
+    private void siftUp(int i, double key, int element) {
+        while (keys[i / 2] > key) {
+            int parent = i / 2;
+            set(i, keys[parent], elem[parent]);
+            i = parent;
+        }
+        set(i, key, element);
+    }
+
+    private void siftDown(int i, double key, int element) {
+        int child;
+        for (; i * 2 <= size; i = child) {
+            child = i * 2;
+            if (child != size && keys[child + 1] < keys[child])
+                child++;
+            if (key > keys[child])
+                set(i, keys[child], elem[child]);
+            else
+                break;
+        }
+        set(i, key, element);
+    }
+
+    private void set(int i, double key, int element) {
+        keys[i] = key;
+        elem[i] = element;
+        if (denseIndex != null) {
+            if (element >= denseIndex.length)
+                denseIndex = Arrays.copyOf(denseIndex, Math.max(element + 1, (int) (denseIndex.length * GROW_FACTOR)));
+            denseIndex[element] = i;
+        } else
+            sparseIndex.put(element, i);
+    }
+
+    private int indexOf(int element) {
+        if (denseIndex != null)
+            return element < denseIndex.length ? denseIndex[element] : 0;
+        return sparseIndex.get(element);
+    }
+
+    private void removeIndex(int element) {
+        if (denseIndex != null)
+            denseIndex[element] = 0;
+        else
+            sparseIndex.remove(element);
+    }
+
+    @Override
+    public void ensureCapacity(int capacity) {
+        if (capacity < size)
+            throw new IllegalStateException("BinHeap contains too many elements to fit in new capacity.");
+        this.capacity = capacity;
+        keys = Arrays.copyOf(keys, capacity + 1);
+        elem = Arrays.copyOf(elem, capacity + 1);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Removes all elements in O(size) - the position array is not refilled.
+     */
+    @Override
+    public void clear() {
+        if (denseIndex != null) {
+            for (int i = 1; i <= size; i++) {
+                denseIndex[elem[i]] = 0;
+            }
+        } else
+            sparseIndex.clear();
+        size = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= size; i++) {
+            if (i > 1)
+                sb.append(", ");
+            sb.append(keys[i]).append(":").append(elem[i]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Arrays;
+
+/**
+ * A bitset which remembers the added indices. Then clear() only
+ * resets the touched words and is O(touched) instead of O(capacity), which is
+ * important if an instance is reused for many small searches on a big graph.
+ *
+ * @author Peter Karich
+ */
+public class MyTouchedBitSet implements MyBitSet {
+
+    private long[] words;
+    private final TIntArrayList touched;
+
+    public MyTouchedBitSet(int nbits) {
+        words = new long[(nbits + 63) >>> 6];
+        touched = new TIntArrayList(Math.max(10, nbits / 100));
+    }
+
+    @Override
+    public boolean contains(int index) {
+        int wordIndex = index >>> 6;
+        if (wordIndex >= words.length)
+            return false;
+        return (words[wordIndex] & (1L << index)) != 0;
+    }
+
+    @Override
+    public void add(int index) {
+        int wordIndex = index >>> 6;
+        if (wordIndex >= words.length)
+            words = Arrays.copyOf(words, Math.max(wordIndex + 1, words.length * 3 / 2));
+        long mask = 1L << index;
+        if ((words[wordIndex] & mask) != 0)
+            return;
+        words[wordIndex] |= mask;
+        touched.add(index);
+    }
+
+    @Override
+    public int cardinality() {
+        return touched.size();
+    }
+
+    @Override
+    public void clear() {
+        int len = touched.size();
+        for (int i = 0; i < len; i++) {
+            words[touched.getQuick(i) >>> 6] = 0;
+        }
+        touched.resetQuick();
+    }
+
+    @Override
+    public void ensureCapacity(int nbits) {
+        int len = (nbits + 63) >>> 6;
+        if (len > words.length)
+            words = Arrays.copyOf(words, len);
+    }
+
+    @Override
+    public int next(int index) {
+        int wordIndex = index >>> 6;
+        if (wordIndex >= words.length)
+            return -1;
+        long word = words[wordIndex] & (-1L << index);
+        while (true) {
+            if (word != 0)
+                return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+            wordIndex++;
+            if (wordIndex >= words.length)
+                return -1;
+            word = words[wordIndex];
+        }
+    }
+
+    @Override
+    public MyBitSet copyTo(MyBitSet bs) {
+        bs.clear();
+        bs.ensureCapacity(words.length << 6);
+        int len = touched.size();
+        for (int i = 0; i < len; i++) {
+            bs.add(touched.getQuick(i));
+        }
+        return bs;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = next(0); i >= 0; i = next(i + 1)) {
+            if (sb.length() > 1)
+                sb.append(", ");
+            sb.append(i);
+        }
+        return sb.append("}").toString();
+    }
+}
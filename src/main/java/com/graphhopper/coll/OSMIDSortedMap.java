@@ -0,0 +1,430 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+import gnu.trove.list.array.TLongArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * A special purpose map from OSM IDs to an int value for the import. In the
+ * first phase all keys are added in arbitrary order and the map counts if a
+ * key occured once or several times. Keys are collected in sorted runs which
+ * are merged in optimize. Afterwards no keys can be added but the value of
+ * every key can be read and changed.
+ *
+ * The sorted keys are split into segments of 16 keys. A segment stores its
+ * first key and the distance of the other keys to it with the minimal number
+ * of bits. As OSM IDs are mostly dense this needs roughly 6 bytes per entry
+ * including the value instead of over 20 bytes for a hash map. The packed keys
+ * and the values live in DataAccess objects of the specified directory and so
+ * can be kept outside of the heap e.g. with the MMapDirectory.
+ *
+ * The first key of every segment is kept on the heap and the keys of recently
+ * used segments are cached decoded. Lookups of keys near the previous one
+ * (e.g. increasing ids or the nodes of a way) are the fastest as the last
+ * segment is remembered. Randomly ordered lookups are still roughly 4 times
+ * slower than with a hash map, see OSMReader.compactIdMap. Not thread safe.
+ *
+ * @author Peter Karich
+ */
+public class OSMIDSortedMap {
+
+    private static final int SEGMENT_KEYS = 16;
+    // 2 ints: offset in packed, count << 8 | bits
+    private static final int SEGMENT_INTS = 2;
+    // the maximum number of decoded segments which are cached, a power of two
+    private static final int MAX_CACHE_SEGMENTS = 1 << 11;
+    private long[] firstKeys = new long[16];
+    // buckets[b] is the first segment with a first key >= firstKeys[0] + (b << bucketShift)
+    private int[] buckets;
+    private int bucketShift;
+    private int cacheMask;
+    private int[] cachedSegments;
+    private int[] cachedCounts;
+    private long[] cachedKeys;
+    private final Directory dir;
+    private final int noEntryValue;
+    private final int runSize;
+    private long[] buffer;
+    private int bufferSize;
+    private DataAccess runs;
+    private long runEntries;
+    private final TLongArrayList runStarts = new TLongArrayList();
+    private DataAccess segments;
+    private DataAccess packed;
+    private DataAccess values;
+    private int segmentCount;
+    private long packedInts;
+    private int size;
+    private boolean optimized;
+    private int lastSegment = -1;
+
+    public OSMIDSortedMap(Directory dir, String name, int noEntryValue) {
+        this(dir, name, noEntryValue, 1 << 22);
+    }
+
+    /**
+     * @param runSize the number of keys which are sorted in memory before they
+     * are written to the directory
+     */
+    public OSMIDSortedMap(Directory dir, String name, int noEntryValue, int runSize) {
+        this.dir = dir;
+        this.noEntryValue = noEntryValue;
+        this.runSize = runSize;
+        runs = dir.findCreate(name + "Runs");
+        segments = dir.findCreate(name + "Segments");
+        packed = dir.findCreate(name + "Packed");
+        values = dir.findCreate(name + "Values");
+    }
+
+    /**
+     * Adds the specified key or marks it as occuring multiple times.
+     */
+    public void add(long key) {
+        if (optimized)
+            throw new IllegalStateException("Cannot add key " + key + " after optimize");
+        if (key > Long.MAX_VALUE / 4 || key < Long.MIN_VALUE / 4)
+            throw new IllegalArgumentException("Key " + key + " is out of range");
+        if (buffer == null) {
+            buffer = new long[runSize];
+            runs.createNew(runSize * 8L);
+        }
+        buffer[bufferSize++] = key;
+        if (bufferSize == buffer.length)
+            flushRun();
+    }
+
+    private void flushRun() {
+        if (bufferSize == 0)
+            return;
+        Arrays.sort(buffer, 0, bufferSize);
+        runStarts.add(runEntries);
+        runs.ensureCapacity((runEntries + bufferSize) * 8);
+        for (int i = 0; i < bufferSize;) {
+            long key = buffer[i];
+            int j = i + 1;
+            while (j < bufferSize && buffer[j] == key) {
+                j++;
+            }
+            // the lowest bit marks keys occuring multiple times
+            long encoded = key << 1 | (j - i > 1 ? 1 : 0);
+            runs.setInt(runEntries * 2, (int) (encoded >>> 32));
+            runs.setInt(runEntries * 2 + 1, (int) encoded);
+            runEntries++;
+            i = j;
+        }
+        bufferSize = 0;
+    }
+
+    /**
+     * Merges the added keys into the compressed segments. Keys which were added
+     * once get singleValue, the others multipleValue.
+     */
+    public void optimize(int singleValue, int multipleValue) {
+        if (optimized)
+            throw new IllegalStateException("Already optimized");
+        optimized = true;
+        flushRun();
+        buffer = null;
+        if (runStarts.isEmpty())
+            runs.createNew(64);
+        segments.createNew(Math.max(16, runEntries / SEGMENT_KEYS + 1) * SEGMENT_INTS * 4);
+        packed.createNew(Math.max(16, runEntries / 4));
+        values.createNew(Math.max(16, runEntries * 4));
+
+        PriorityQueue<Run> queue = new PriorityQueue<Run>();
+        for (int i = 0; i < runStarts.size(); i++) {
+            long end = i + 1 < runStarts.size() ? runStarts.get(i + 1) : runEntries;
+            Run run = new Run(runStarts.get(i), end);
+            if (run.next())
+                queue.add(run);
+        }
+
+        long[] segmentKeys = new long[SEGMENT_KEYS];
+        int segmentSize = 0;
+        while (!queue.isEmpty()) {
+            Run run = queue.poll();
+            long key = run.current >> 1;
+            boolean multiple = (run.current & 1) != 0;
+            if (run.next())
+                queue.add(run);
+            // the same key from other runs
+            while (!queue.isEmpty() && queue.peek().current >> 1 == key) {
+                multiple = true;
+                run = queue.poll();
+                if (run.next())
+                    queue.add(run);
+            }
+
+            values.ensureCapacity((size + 1) * 4L);
+            values.setInt(size, multiple ? multipleValue : singleValue);
+            size++;
+            segmentKeys[segmentSize++] = key;
+            if (segmentSize == SEGMENT_KEYS) {
+                writeSegment(segmentKeys, segmentSize);
+                segmentSize = 0;
+            }
+        }
+        if (segmentSize > 0)
+            writeSegment(segmentKeys, segmentSize);
+        firstKeys = Arrays.copyOf(firstKeys, segmentCount);
+        createBuckets();
+        // one slot per 64 segments keeps the cache below 0.15 bytes per entry
+        int slots = Math.min(MAX_CACHE_SEGMENTS, Integer.highestOneBit(Math.max(1, segmentCount / 64)));
+        cacheMask = slots - 1;
+        cachedSegments = new int[slots];
+        Arrays.fill(cachedSegments, -1);
+        cachedCounts = new int[slots];
+        cachedKeys = new long[slots * SEGMENT_KEYS];
+
+        remove(runs);
+        runs = null;
+    }
+
+    private void remove(DataAccess da) {
+        // release the memory directly, important for mmap and off-heap
+        da.close();
+        dir.remove(da);
+    }
+
+    private void writeSegment(long[] keys, int count) {
+        long first = keys[0];
+        int bits = count > 1 ? 64 - Long.numberOfLeadingZeros(keys[count - 1] - first) : 0;
+        long index = (long) segmentCount * SEGMENT_INTS;
+        segments.ensureCapacity((index + SEGMENT_INTS) * 4);
+        segments.setInt(index, (int) packedInts);
+        segments.setInt(index + 1, count << 8 | bits);
+        if (segmentCount >= firstKeys.length)
+            firstKeys = Arrays.copyOf(firstKeys, firstKeys.length * 2);
+        firstKeys[segmentCount] = first;
+        segmentCount++;
+
+        packed.ensureCapacity((packedInts + ((count - 1) * bits + 31) / 32) * 4);
+        long tmp = 0;
+        int tmpBits = 0;
+        for (int i = 1; i < count; i++) {
+            long delta = keys[i] - first;
+            for (int written = 0; written < bits;) {
+                int take = Math.min(32 - tmpBits, bits - written);
+                tmp |= ((delta >>> written) & ((1L << take) - 1)) << tmpBits;
+                tmpBits += take;
+                written += take;
+                if (tmpBits == 32) {
+                    packed.setInt(packedInts++, (int) tmp);
+                    tmp = 0;
+                    tmpBits = 0;
+                }
+            }
+        }
+        if (tmpBits > 0)
+            packed.setInt(packedInts++, (int) tmp);
+    }
+
+    private long readBits(long intIndex, long bitPos, int bits) {
+        long result = 0;
+        for (int read = 0; read < bits;) {
+            int bitInInt = (int) (bitPos & 31);
+            int take = Math.min(32 - bitInInt, bits - read);
+            long val = (packed.getInt(intIndex + (bitPos >>> 5)) & 0xFFFFFFFFL) >>> bitInInt;
+            result |= (val & ((1L << take) - 1)) << read;
+            read += take;
+            bitPos += take;
+        }
+        return result;
+    }
+
+    /**
+     * Creates roughly one bucket per 4 segments to avoid a binary search over
+     * all first keys.
+     */
+    private void createBuckets() {
+        long range = segmentCount == 0 ? 0 : firstKeys[segmentCount - 1] - firstKeys[0];
+        bucketShift = 0;
+        while ((range >>> bucketShift) >= segmentCount / 4 && bucketShift < 63) {
+            bucketShift++;
+        }
+        int bucketCount = (int) (range >>> bucketShift) + 2;
+        buckets = new int[bucketCount];
+        int segment = 0;
+        for (int b = 0; b < bucketCount; b++) {
+            while (segment < segmentCount && (firstKeys[segment] - firstKeys[0]) >>> bucketShift < b) {
+                segment++;
+            }
+            buckets[b] = segment;
+        }
+    }
+
+    /**
+     * @return the index of the specified key or -1 if not found
+     */
+    private int indexOf(long key) {
+        if (!optimized)
+            throw new IllegalStateException("Call optimize before reading");
+        if (segmentCount == 0)
+            return -1;
+
+        int segment = lastSegment;
+        if (segment < 0 || key < firstKeys[segment]
+                || segment + 1 < segmentCount && key >= firstKeys[segment + 1]) {
+            if (key < firstKeys[0])
+                return -1;
+            // find the last segment with a first key not greater than key
+            long bucket = (key - firstKeys[0]) >>> bucketShift;
+            if (bucket >= buckets.length - 1) {
+                segment = segmentCount - 1;
+            } else {
+                int from = Math.max(0, buckets[(int) bucket] - 1);
+                int to = buckets[(int) bucket + 1];
+                segment = Arrays.binarySearch(firstKeys, from, to, key);
+                if (segment < 0)
+                    segment = ~segment - 1;
+            }
+            lastSegment = segment;
+        }
+
+        int slot = segment & cacheMask;
+        int start = slot * SEGMENT_KEYS;
+        if (cachedSegments[slot] != segment)
+            decode(segment, slot);
+        int pos = Arrays.binarySearch(cachedKeys, start, start + cachedCounts[slot], key);
+        if (pos < 0)
+            return -1;
+        return segment * SEGMENT_KEYS + pos - start;
+    }
+
+    /**
+     * Decodes all keys of the segment into the specified cache slot.
+     */
+    private void decode(int segment, int slot) {
+        long index = (long) segment * SEGMENT_INTS;
+        long packedIndex = segments.getInt(index) & 0xFFFFFFFFL;
+        int info = segments.getInt(index + 1);
+        int bits = info & 0xFF;
+        int count = info >>> 8;
+        long first = firstKeys[segment];
+        int start = slot * SEGMENT_KEYS;
+        cachedKeys[start] = first;
+        if (bits <= 32) {
+            // read the packed ints sequentially
+            long mask = (1L << bits) - 1;
+            long buffer = 0;
+            int buffered = 0;
+            for (int i = 1; i < count; i++) {
+                if (buffered < bits) {
+                    buffer |= (packed.getInt(packedIndex++) & 0xFFFFFFFFL) << buffered;
+                    buffered += 32;
+                }
+                cachedKeys[start + i] = first + (buffer & mask);
+                buffer >>>= bits;
+                buffered -= bits;
+            }
+        } else {
+            for (int i = 1; i < count; i++) {
+                cachedKeys[start + i] = first + readBits(packedIndex, (long) (i - 1) * bits, bits);
+            }
+        }
+        cachedCounts[slot] = count;
+        cachedSegments[slot] = segment;
+    }
+
+    public int get(long key) {
+        int index = indexOf(key);
+        if (index < 0)
+            return noEntryValue;
+        return values.getInt(index);
+    }
+
+    /**
+     * Changes the value of an existing key.
+     *
+     * @throws IllegalArgumentException if the key was not added before
+     */
+    public void put(long key, int value) {
+        int index = indexOf(key);
+        if (index < 0)
+            throw new IllegalArgumentException("Key " + key + " does not exist");
+        values.setInt(index, value);
+    }
+
+    public int getNoEntryValue() {
+        return noEntryValue;
+    }
+
+    /**
+     * @return the number of distinct keys. Only valid after optimize.
+     */
+    public int size() {
+        return size;
+    }
+
+    public float calcMemInMB() {
+        long bytes = segmentCount * SEGMENT_INTS * 4L + packedInts * 4 + size * 4L + firstKeys.length * 8L;
+        if (cachedKeys != null)
+            bytes += cachedKeys.length * 8L + cachedSegments.length * 8L + buckets.length * 4L;
+        if (buffer != null)
+            bytes += runEntries * 8 + buffer.length * 8L;
+        return (float) bytes / Helper.MB;
+    }
+
+    /**
+     * Removes all data from the directory.
+     */
+    public void close() {
+        if (runs != null)
+            remove(runs);
+        remove(segments);
+        remove(packed);
+        remove(values);
+        runs = null;
+        buffer = null;
+    }
+
+    /**
+     * A cursor over one sorted run.
+     */
+    private class Run implements Comparable<Run> {
+
+        long pos;
+        final long end;
+        long current;
+
+        public Run(long start, long end) {
+            this.pos = start;
+            this.end = end;
+        }
+
+        boolean next() {
+            if (pos >= end)
+                return false;
+            current = (long) runs.getInt(pos * 2) << 32 | (runs.getInt(pos * 2 + 1) & 0xFFFFFFFFL);
+            pos++;
+            return true;
+        }
+
+        @Override public int compareTo(Run o) {
+            // compare the keys without the flag
+            long key = current >> 1, otherKey = o.current >> 1;
+            return key < otherKey ? -1 : (key == otherKey ? 0 : 1);
+        }
+    }
+}
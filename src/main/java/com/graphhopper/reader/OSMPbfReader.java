@@ -0,0 +1,738 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads OSM data in the protocol buffer format (*.osm.pbf) as specified at
+ * http://wiki.openstreetmap.org/wiki/PBF_Format and feeds nodes and ways to the
+ * specified handler. The protocol buffer messages are decoded directly from the
+ * (inflated) byte arrays which are reused for all blocks, so no generated
+ * classes or additional libraries are necessary. Relations and meta data are
+ * skipped.
+ *
+ * @author Peter Karich
+ */
+public class OSMPbfReader {
+
+    /**
+     * Receives the decoded entities in the order of the file. The specified
+     * list and map are reused for the next way so copy them if necessary.
+     */
+    public interface Handler {
+
+        void node(long osmId, double lat, double lon);
+
+        /**
+         * @param flags the result of the WayParser or 0 if none was specified
+         */
+        void way(long osmId, TLongList nodes, Map<String, String> tags, int flags);
+    }
+
+    /**
+     * Interprets the tags of a way. If more than one worker is used this is
+     * called concurrently and so it has to be thread safe.
+     */
+    public interface WayParser {
+
+        /**
+         * @return the flags of the way or a negative value to skip the way
+         */
+        int flags(Map<String, String> tags);
+    }
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Future<Block> END = new FutureTask<Block>(new Callable<Block>() {
+        @Override public Block call() {
+            return null;
+        }
+    });
+    private final DataInputStream input;
+    private boolean readNodes = true;
+    private WayParser wayParser;
+    private int workers = 1;
+    private byte[] headerBytes = new byte[64];
+    private final BlockDecoder headerDecoder = new BlockDecoder();
+
+    public OSMPbfReader(InputStream is) {
+        if (is == null)
+            throw new IllegalStateException("Stream cannot be empty");
+        input = new DataInputStream(is);
+    }
+
+    /**
+     * Specifies if nodes should be decoded. Skipping them makes a pass which
+     * needs only the ways several times faster.
+     */
+    public OSMPbfReader nodes(boolean readNodes) {
+        this.readNodes = readNodes;
+        return this;
+    }
+
+    /**
+     * Sets the parser which is used to skip ways or calculate their flags in
+     * the worker threads.
+     */
+    public OSMPbfReader wayParser(WayParser wayParser) {
+        this.wayParser = wayParser;
+        return this;
+    }
+
+    /**
+     * Specifies the number of threads which inflate and decode the blocks. With
+     * more than one worker an additional thread reads the file and the handler
+     * is called from the thread calling read, still in the order of the file.
+     * Default is 1 which decodes everything in the calling thread.
+     */
+    public OSMPbfReader workers(int workers) {
+        if (workers < 1)
+            throw new IllegalArgumentException("workers has to be at least 1 but was " + workers);
+        this.workers = workers;
+        return this;
+    }
+
+    /**
+     * Reads the whole stream. The stream is not closed.
+     */
+    public void read(Handler handler) throws IOException {
+        if (workers > 1)
+            readParallel(handler);
+        else
+            readSequential(handler);
+    }
+
+    private void readSequential(Handler handler) throws IOException {
+        BlockDecoder decoder = new BlockDecoder();
+        byte[] blob = new byte[1024];
+        try {
+            int size;
+            while ((size = readBlobHeader()) >= 0) {
+                blob = ensureCapacity(blob, size);
+                input.readFully(blob, 0, size);
+                decoder.decode(headerDecoder.blobType, blob, size, handler);
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Cannot inflate blob", ex);
+        } finally {
+            decoder.end();
+        }
+    }
+
+    private void readParallel(Handler handler) throws IOException {
+        final ExecutorService service = Executors.newFixedThreadPool(workers);
+        final BlockingQueue<BlockDecoder> decoders = new ArrayBlockingQueue<BlockDecoder>(workers);
+        for (int i = 0; i < workers; i++) {
+            decoders.add(new BlockDecoder());
+        }
+        // limit the number of decoded blocks in memory
+        final BlockingQueue<Future<Block>> blocks = new ArrayBlockingQueue<Future<Block>>(2 * workers);
+        final AtomicReference<Throwable> readError = new AtomicReference<Throwable>();
+        Thread readerThread = new Thread("pbf-reader") {
+            @Override public void run() {
+                try {
+                    int size;
+                    while ((size = readBlobHeader()) >= 0) {
+                        final String type = headerDecoder.blobType;
+                        final byte[] blob = new byte[size];
+                        input.readFully(blob);
+                        blocks.put(service.submit(new Callable<Block>() {
+                            @Override public Block call() throws Exception {
+                                BlockDecoder decoder = decoders.take();
+                                try {
+                                    Block block = new Block();
+                                    decoder.decode(type, blob, blob.length, block);
+                                    return block;
+                                } finally {
+                                    decoders.put(decoder);
+                                }
+                            }
+                        }));
+                    }
+                } catch (InterruptedException ex) {
+                    // the consumer stopped
+                    return;
+                } catch (Throwable ex) {
+                    readError.set(ex);
+                }
+                try {
+                    blocks.put(END);
+                } catch (InterruptedException ex) {
+                }
+            }
+        };
+        readerThread.setDaemon(true);
+        readerThread.start();
+        try {
+            while (true) {
+                Future<Block> future = blocks.take();
+                if (future == END)
+                    break;
+                future.get().replay(handler);
+            }
+            if (readError.get() != null)
+                throw rethrow(readError.get());
+        } catch (ExecutionException ex) {
+            throw rethrow(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while reading", ex);
+        } finally {
+            readerThread.interrupt();
+            service.shutdownNow();
+            try {
+                service.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            for (BlockDecoder decoder : decoders) {
+                decoder.end();
+            }
+        }
+    }
+
+    private static IOException rethrow(Throwable ex) {
+        if (ex instanceof IOException)
+            return (IOException) ex;
+        if (ex instanceof DataFormatException)
+            return new IOException("Cannot inflate blob", ex);
+        if (ex instanceof RuntimeException)
+            throw (RuntimeException) ex;
+        if (ex instanceof Error)
+            throw (Error) ex;
+        throw new RuntimeException(ex);
+    }
+
+    /**
+     * Reads the next blob header into the headerDecoder.
+     *
+     * @return the size of the following blob or -1 if the end of the stream is
+     * reached
+     */
+    private int readBlobHeader() throws IOException {
+        int headerSize;
+        try {
+            headerSize = input.readInt();
+        } catch (EOFException ex) {
+            return -1;
+        }
+        if (headerSize < 0 || headerSize > MAX_HEADER_SIZE)
+            throw new IllegalStateException("Invalid blob header size " + headerSize);
+
+        headerBytes = ensureCapacity(headerBytes, headerSize);
+        input.readFully(headerBytes, 0, headerSize);
+        headerDecoder.readBlobHeader(headerBytes, headerSize);
+        int blobSize = headerDecoder.blobSize;
+        if (blobSize < 0 || blobSize > MAX_BLOB_SIZE)
+            throw new IllegalStateException("Invalid blob size " + blobSize + " of " + headerDecoder.blobType);
+        return blobSize;
+    }
+
+    private static byte[] ensureCapacity(byte[] bytes, int size) {
+        if (bytes.length >= size)
+            return bytes;
+        return new byte[Math.max(size, bytes.length * 2)];
+    }
+
+    /**
+     * Holds the state to decode blobs. Not thread safe, every worker needs its
+     * own instance.
+     */
+    private class BlockDecoder {
+
+        private final Inflater inflater = new Inflater();
+        private byte[] blockBytes = new byte[1024];
+        private byte[] blob;
+        // the message which gets currently decoded
+        private byte[] data;
+        private int pos;
+        // the string table of the current block, strings are created lazily
+        private int[] stringStart = new int[64];
+        private int[] stringLength = new int[64];
+        private String[] strings = new String[64];
+        private int stringCount;
+        private int granularity;
+        private long latOffset;
+        private long lonOffset;
+        private final TIntArrayList groupStart = new TIntArrayList();
+        private final TIntArrayList groupEnd = new TIntArrayList();
+        private final TLongArrayList denseIds = new TLongArrayList();
+        private final TLongArrayList denseLats = new TLongArrayList();
+        private final TLongArrayList denseLons = new TLongArrayList();
+        private final TIntArrayList keys = new TIntArrayList();
+        private final TIntArrayList vals = new TIntArrayList();
+        private final TLongArrayList wayNodes = new TLongArrayList(20);
+        private final Map<String, String> tags = new HashMap<String, String>();
+        // the result of readBlobHeader
+        String blobType;
+        int blobSize;
+
+        void readBlobHeader(byte[] bytes, int size) {
+            data = bytes;
+            pos = 0;
+            blobType = null;
+            blobSize = -1;
+            while (pos < size) {
+                int key = (int) varint();
+                if (key == (1 << 3 | 2)) {
+                    int len = (int) varint();
+                    blobType = new String(data, pos, len, UTF8);
+                    pos += len;
+                } else if (key == (3 << 3))
+                    blobSize = (int) varint();
+                else
+                    skip(key);
+            }
+        }
+
+        void decode(String type, byte[] blob, int blobSize, Handler handler) throws DataFormatException {
+            this.blob = blob;
+            try {
+                if ("OSMHeader".equals(type))
+                    readHeaderBlock(readBlob(blobSize));
+                else if ("OSMData".equals(type))
+                    readPrimitiveBlock(readBlob(blobSize), handler);
+                // unknown blob types have to be skipped
+            } finally {
+                this.blob = null;
+            }
+        }
+
+        void end() {
+            inflater.end();
+        }
+
+        /**
+         * Decompresses the blob into blockBytes if necessary and returns the size
+         * of the contained block.
+         */
+        private int readBlob(int blobSize) throws DataFormatException {
+            data = blob;
+            pos = 0;
+            int rawSize = -1;
+            int zlibStart = -1, zlibSize = 0;
+            int rawStart = -1;
+            while (pos < blobSize) {
+                int key = (int) varint();
+                int field = key >>> 3;
+                if (field == 1 && (key & 7) == 2) {
+                    rawSize = (int) varint();
+                    rawStart = pos;
+                    pos += rawSize;
+                } else if (field == 2 && (key & 7) == 0) {
+                    rawSize = (int) varint();
+                } else if (field == 3 && (key & 7) == 2) {
+                    zlibSize = (int) varint();
+                    zlibStart = pos;
+                    pos += zlibSize;
+                } else if (field >= 4 && field <= 7)
+                    throw new IllegalStateException("Compression of blob not supported, only zlib or raw blobs can be read");
+                else
+                    skip(key);
+            }
+
+            if (rawSize < 0 || rawSize > MAX_BLOB_SIZE)
+                throw new IllegalStateException("Invalid raw size " + rawSize + " of blob");
+            blockBytes = ensureCapacity(blockBytes, rawSize);
+            if (rawStart >= 0) {
+                System.arraycopy(blob, rawStart, blockBytes, 0, rawSize);
+            } else if (zlibStart >= 0) {
+                inflater.reset();
+                inflater.setInput(blob, zlibStart, zlibSize);
+                int inflated = inflater.inflate(blockBytes, 0, rawSize);
+                if (inflated != rawSize)
+                    throw new IllegalStateException("Inflated " + inflated + " bytes but expected " + rawSize);
+            } else
+                throw new IllegalStateException("Blob without data");
+
+            data = blockBytes;
+            pos = 0;
+            return rawSize;
+        }
+
+        private void readHeaderBlock(int end) {
+            while (pos < end) {
+                int key = (int) varint();
+                if (key == (4 << 3 | 2)) {
+                    int len = (int) varint();
+                    String feature = new String(data, pos, len, UTF8);
+                    pos += len;
+                    if (!"OsmSchema-V0.6".equals(feature) && !"DenseNodes".equals(feature))
+                        throw new IllegalStateException("PBF file requires the unsupported feature " + feature);
+                } else
+                    skip(key);
+            }
+        }
+
+        private void readPrimitiveBlock(int end, Handler handler) {
+            granularity = 100;
+            latOffset = 0;
+            lonOffset = 0;
+            stringCount = 0;
+            groupStart.resetQuick();
+            groupEnd.resetQuick();
+            // the groups could be stored before the offsets => remember and read them afterwards
+            while (pos < end) {
+                int key = (int) varint();
+                int field = key >>> 3;
+                if (field == 1 && (key & 7) == 2) {
+                    int tableEnd = (int) varint() + pos;
+                    readStringTable(tableEnd);
+                } else if (field == 2 && (key & 7) == 2) {
+                    int len = (int) varint();
+                    groupStart.add(pos);
+                    groupEnd.add(pos + len);
+                    pos += len;
+                } else if (field == 17 && (key & 7) == 0)
+                    granularity = (int) varint();
+                else if (field == 19 && (key & 7) == 0)
+                    latOffset = varint();
+                else if (field == 20 && (key & 7) == 0)
+                    lonOffset = varint();
+                else
+                    skip(key);
+            }
+
+            int groups = groupStart.size();
+            for (int i = 0; i < groups; i++) {
+                pos = groupStart.get(i);
+                readPrimitiveGroup(groupEnd.get(i), handler);
+            }
+        }
+
+        private void readStringTable(int end) {
+            while (pos < end) {
+                int key = (int) varint();
+                if (key == (1 << 3 | 2)) {
+                    int len = (int) varint();
+                    if (stringCount == stringStart.length) {
+                        int newSize = stringCount * 2;
+                        stringStart = Arrays.copyOf(stringStart, newSize);
+                        stringLength = Arrays.copyOf(stringLength, newSize);
+                        strings = new String[newSize];
+                    }
+                    stringStart[stringCount] = pos;
+                    stringLength[stringCount] = len;
+                    stringCount++;
+                    pos += len;
+                } else
+                    skip(key);
+            }
+            Arrays.fill(strings, 0, stringCount, null);
+        }
+
+        private String string(int index) {
+            if (index < 0 || index >= stringCount)
+                throw new IllegalStateException("String index " + index + " not in string table of size " + stringCount);
+            String str = strings[index];
+            if (str == null) {
+                str = new String(data, stringStart[index], stringLength[index], UTF8);
+                strings[index] = str;
+            }
+            return str;
+        }
+
+        private void readPrimitiveGroup(int end, Handler handler) {
+            while (pos < end) {
+                int key = (int) varint();
+                int field = key >>> 3;
+                if ((key & 7) != 2) {
+                    skip(key);
+                    continue;
+                }
+                int len = (int) varint();
+                int messageEnd = pos + len;
+                if (field == 1 && readNodes)
+                    readNode(messageEnd, handler);
+                else if (field == 2 && readNodes)
+                    readDenseNodes(messageEnd, handler);
+                else if (field == 3)
+                    readWay(messageEnd, handler);
+                // skip relations, changesets and nodes if not requested
+                pos = messageEnd;
+            }
+        }
+
+        private void readNode(int end, Handler handler) {
+            long id = 0, lat = 0, lon = 0;
+            while (pos < end) {
+                int key = (int) varint();
+                if (key == (1 << 3))
+                    id = zigZag(varint());
+                else if (key == (8 << 3))
+                    lat = zigZag(varint());
+                else if (key == (9 << 3))
+                    lon = zigZag(varint());
+                else
+                    skip(key);
+            }
+            handler.node(id, latitude(lat), longitude(lon));
+        }
+
+        private void readDenseNodes(int end, Handler handler) {
+            denseIds.resetQuick();
+            denseLats.resetQuick();
+            denseLons.resetQuick();
+            while (pos < end) {
+                int key = (int) varint();
+                int field = key >>> 3;
+                if (field == 1)
+                    readLongs(key, denseIds, true);
+                else if (field == 8)
+                    readLongs(key, denseLats, true);
+                else if (field == 9)
+                    readLongs(key, denseLons, true);
+                else
+                    skip(key);
+            }
+
+            int size = denseIds.size();
+            if (denseLats.size() != size || denseLons.size() != size)
+                throw new IllegalStateException("Dense nodes with different number of ids " + size
+                        + ", latitudes " + denseLats.size() + " and longitudes " + denseLons.size());
+            long id = 0, lat = 0, lon = 0;
+            for (int i = 0; i < size; i++) {
+                id += denseIds.getQuick(i);
+                lat += denseLats.getQuick(i);
+                lon += denseLons.getQuick(i);
+                handler.node(id, latitude(lat), longitude(lon));
+            }
+        }
+
+        private void readWay(int end, Handler handler) {
+            long id = 0;
+            keys.resetQuick();
+            vals.resetQuick();
+            wayNodes.resetQuick();
+            while (pos < end) {
+                int key = (int) varint();
+                int field = key >>> 3;
+                if (key == (1 << 3))
+                    id = varint();
+                else if (field == 2)
+                    readInts(key, keys);
+                else if (field == 3)
+                    readInts(key, vals);
+                else if (field == 8)
+                    readLongs(key, wayNodes, true);
+                else
+                    skip(key);
+            }
+
+            // refs are delta encoded
+            int size = wayNodes.size();
+            long ref = 0;
+            for (int i = 0; i < size; i++) {
+                ref += wayNodes.getQuick(i);
+                wayNodes.setQuick(i, ref);
+            }
+            if (keys.size() != vals.size())
+                throw new IllegalStateException("Way " + id + " has different number of keys and values");
+            tags.clear();
+            size = keys.size();
+            for (int i = 0; i < size; i++) {
+                tags.put(string(keys.getQuick(i)), string(vals.getQuick(i)));
+            }
+            int flags = 0;
+            if (wayParser != null) {
+                flags = wayParser.flags(tags);
+                if (flags < 0)
+                    return;
+            }
+            handler.way(id, wayNodes, tags, flags);
+        }
+
+        private double latitude(long lat) {
+            return (latOffset + (long) granularity * lat) / 1e9;
+        }
+
+        private double longitude(long lon) {
+            return (lonOffset + (long) granularity * lon) / 1e9;
+        }
+
+        /**
+         * Reads a packed or a single value of a repeated field.
+         */
+        private void readLongs(int key, TLongArrayList list, boolean zigZag) {
+            if ((key & 7) == 2) {
+                int end = (int) varint() + pos;
+                while (pos < end) {
+                    long val = varint();
+                    list.add(zigZag ? zigZag(val) : val);
+                }
+            } else if ((key & 7) == 0) {
+                long val = varint();
+                list.add(zigZag ? zigZag(val) : val);
+            } else
+                skip(key);
+        }
+
+        private void readInts(int key, TIntArrayList list) {
+            if ((key & 7) == 2) {
+                int end = (int) varint() + pos;
+                while (pos < end) {
+                    list.add((int) varint());
+                }
+            } else if ((key & 7) == 0) {
+                list.add((int) varint());
+            } else
+                skip(key);
+        }
+
+        private long varint() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = data[pos++];
+                result |= (long) (b & 0x7F) << shift;
+                if (b >= 0)
+                    return result;
+            }
+            throw new IllegalStateException("Malformed varint at " + pos);
+        }
+
+        private long zigZag(long val) {
+            return (val >>> 1) ^ -(val & 1);
+        }
+
+        /**
+         * Skips the value of the field with the specified key.
+         */
+        private void skip(int key) {
+            switch (key & 7) {
+                case 0:
+                    varint();
+                    break;
+                case 1:
+                    pos += 8;
+                    break;
+                case 2:
+                    int len = (int) varint();
+                    pos += len;
+                    break;
+                case 5:
+                    pos += 4;
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported wire type " + (key & 7) + " at " + pos);
+            }
+        }
+    }
+
+    /**
+     * The decoded entities of one blob.
+     */
+    private static class Block implements Handler {
+
+        // the sequence of entities: positive for the number of nodes, negative for ways
+        private final TIntArrayList runs = new TIntArrayList();
+        private final TLongArrayList nodeIds = new TLongArrayList();
+        private final TDoubleArrayList lats = new TDoubleArrayList();
+        private final TDoubleArrayList lons = new TDoubleArrayList();
+        private final TLongArrayList wayIds = new TLongArrayList();
+        private final TIntArrayList wayFlags = new TIntArrayList();
+        private final TLongArrayList refs = new TLongArrayList();
+        private final TIntArrayList refEnds = new TIntArrayList();
+        private final List<String> tagStrings = new ArrayList<String>();
+        private final TIntArrayList tagEnds = new TIntArrayList();
+
+        @Override public void node(long osmId, double lat, double lon) {
+            nodeIds.add(osmId);
+            lats.add(lat);
+            lons.add(lon);
+            int last = runs.size() - 1;
+            if (last >= 0 && runs.getQuick(last) > 0)
+                runs.setQuick(last, runs.getQuick(last) + 1);
+            else
+                runs.add(1);
+        }
+
+        @Override public void way(long osmId, TLongList nodes, Map<String, String> tags, int flags) {
+            wayIds.add(osmId);
+            wayFlags.add(flags);
+            refs.addAll(nodes);
+            refEnds.add(refs.size());
+            for (Map.Entry<String, String> e : tags.entrySet()) {
+                tagStrings.add(e.getKey());
+                tagStrings.add(e.getValue());
+            }
+            tagEnds.add(tagStrings.size());
+            int last = runs.size() - 1;
+            if (last >= 0 && runs.getQuick(last) < 0)
+                runs.setQuick(last, runs.getQuick(last) - 1);
+            else
+                runs.add(-1);
+        }
+
+        void replay(Handler handler) {
+            TLongArrayList nodes = new TLongArrayList(20);
+            Map<String, String> tags = new HashMap<String, String>();
+            int node = 0, way = 0;
+            int refStart = 0, tagStart = 0;
+            int size = runs.size();
+            for (int i = 0; i < size; i++) {
+                int run = runs.getQuick(i);
+                if (run > 0) {
+                    for (int end = node + run; node < end; node++) {
+                        handler.node(nodeIds.getQuick(node), lats.getQuick(node), lons.getQuick(node));
+                    }
+                } else {
+                    for (int end = way - run; way < end; way++) {
+                        nodes.resetQuick();
+                        int refEnd = refEnds.getQuick(way);
+                        for (; refStart < refEnd; refStart++) {
+                            nodes.add(refs.getQuick(refStart));
+                        }
+                        tags.clear();
+                        int tagEnd = tagEnds.getQuick(way);
+                        for (; tagStart < tagEnd; tagStart += 2) {
+                            tags.put(tagStrings.get(tagStart), tagStrings.get(tagStart + 1));
+                        }
+                        handler.way(wayIds.getQuick(way), nodes, tags, wayFlags.getQuick(way));
+                    }
+                }
+            }
+        }
+    }
+}
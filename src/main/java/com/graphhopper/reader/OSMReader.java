@@ -29,6 +29,7 @@ import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphStorage;
 import com.graphhopper.storage.MMapDirectory;
+import com.graphhopper.storage.OffHeapDirectory;
 import com.graphhopper.storage.LevelGraphStorage;
 import com.graphhopper.storage.Location2IDIndex;
 import com.graphhopper.storage.Location2IDQuadtree;
@@ -38,6 +39,7 @@ import com.graphhopper.util.GraphUtility;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.Helper7;
 import com.graphhopper.util.StopWatch;
+import gnu.trove.list.TLongList;
 import gnu.trove.list.array.TLongArrayList;
 import java.io.*;
 import java.util.*;
@@ -51,7 +53,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * This class parses an OSM xml file and creates a graph from it. See run.sh on
+ * This class parses an OSM xml or pbf file and creates a graph from it. See run.sh on
  * how to use it from command line.
  *
  * @author Peter Karich,
@@ -83,11 +85,15 @@ public class OSMReader {
     private int expectedNodes;
     private TLongArrayList tmpLocs = new TLongArrayList(10);
     private Map<String, Object> properties = new HashMap<String, Object>();
+    private Map<String, String> tags = new HashMap<String, String>();
     private AcceptStreet acceptStreets = new AcceptStreet(true, false, false, false);
     private AlgorithmPreparation prepare;
     private Location2IDQuadtree index;
     private int indexCapacity = -1;
-    private boolean sortGraph = false;
+    private String sortGraph = "no";
+    private int chThreads = 1;
+    private int workerThreads = 1;
+    private boolean compactIdMap = true;
 
     /**
      * Opens or creates a graph. The specified args need a property 'graph' (a
@@ -123,6 +129,8 @@ public class OSMReader {
         Directory dir;
         if ("mmap".equalsIgnoreCase(dataAccess)) {
             dir = new MMapDirectory(graphLocation);
+        } else if (dataAccess.toLowerCase().startsWith("offheap")) {
+            dir = new OffHeapDirectory(graphLocation, "offheap+save".equalsIgnoreCase(dataAccess));
         } else {
             if ("inmemory+save".equalsIgnoreCase(dataAccess))
                 dir = new RAMDirectory(graphLocation, true);
@@ -152,12 +160,15 @@ public class OSMReader {
                 type.contains("BIKE"), type.contains("FOOT")));
         final String algoStr = args.get("osmreader.algo", "astar");
         osmReader.defaultAlgoPrepare(Helper.createAlgoPrepare(algoStr));
-        osmReader.sort(args.getBool("osmreader.sortGraph", false));
+        osmReader.sort(args.get("osmreader.sortGraph", "no"));
 
         // TODO LATER make this configurable in OSMReaderHelper
         if (args.getBool("osmreader.towerNodesShortcuts", false))
             throw new IllegalArgumentException("towerNodes are always automatically created");
 
+        osmReader.chThreads(args.getInt("osmreader.chThreads", 1));
+        osmReader.workerThreads(args.getInt("osmreader.workerThreads", 1));
+        osmReader.compactIdMap(args.getBool("osmreader.compactIdMap", true));
         osmReader.setCHShortcuts(args.get("osmreader.chShortcuts", "no"));
         if (!osmReader.loadExisting()) {
             String strOsm = args.get("osmreader.osm", "");
@@ -189,6 +200,11 @@ public class OSMReader {
         if (!graphStorage.loadExisting())
             return false;
 
+        if (prepare instanceof PrepareContractionHierarchies
+                && !((PrepareContractionHierarchies) prepare).loadExisting())
+            throw new IllegalStateException("The graph at " + graphStorage.directory().location()
+                    + " is not prepared for contraction hierarchies");
+
         // init
         location2IDIndex();
         // load index afterwards
@@ -207,9 +223,14 @@ public class OSMReader {
         return fi;
     }
 
-    void osm2Graph(File osmXmlFile) throws IOException {
-        helper.preProcess(createInputStream(osmXmlFile));
-        writeOsm2Graph(createInputStream(osmXmlFile));
+    void osm2Graph(File osmFile) throws IOException {
+        if (osmFile.getName().endsWith(".pbf")) {
+            helper.preProcessPbf(createInputStream(osmFile), workerThreads);
+            writePbf2Graph(createInputStream(osmFile));
+        } else {
+            helper.preProcess(createInputStream(osmFile));
+            writeOsm2Graph(createInputStream(osmFile));
+        }
         cleanUp();
         optimize();
         flush();
@@ -218,18 +239,18 @@ public class OSMReader {
     void optimize() {
         logger.info("optimizing ... (" + Helper.getMemInfo() + ")");
         graphStorage.optimize();
-        // move this into the GraphStorage.optimize method?
-        if (sortGraph) {
-            logger.info("sorting ... (" + Helper.getMemInfo() + ")");
-            GraphStorage newGraph = GraphUtility.newStorage(graphStorage);
-            GraphUtility.sortDFS(graphStorage, newGraph);
-            graphStorage = newGraph;
+        // sort before the preparation as node and edge ids change
+        if ("bfs".equals(sortGraph)) {
+            logger.info("sorting via breadth-first search ... (" + Helper.getMemInfo() + ")");
+            graphStorage.sortNodes(GraphUtility.createBFSOrder(graphStorage));
+        } else if ("hilbert".equals(sortGraph)) {
+            logger.info("sorting along hilbert curve ... (" + Helper.getMemInfo() + ")");
+            graphStorage.sortNodes(GraphUtility.createHilbertOrder(graphStorage));
         }
 
-        // TODO at the moment a prepared levelgraph cannot be sorted, as otherwise edgeIds won't be copied+recognized
         if (prepare == null)
             defaultAlgoPrepare(Helper.createAlgoPrepare("astar"));
-        else
+        else if (!prepare.isPrepared())
             prepare.doWork();
     }
 
@@ -252,7 +273,8 @@ public class OSMReader {
         if (indexCapacity < 0)
             indexCapacity = Helper.calcIndexSize(graphStorage.bounds());
         logger.info("initializing and flushing location index with " + indexCapacity);
-        location2IDIndex().prepareIndex(indexCapacity);
+        location2IDIndex();
+        index.threads(workerThreads).prepareIndex(indexCapacity);
         index.flush();
     }
 
@@ -314,6 +336,55 @@ public class OSMReader {
         }
     }
 
+    /**
+     * Creates the edges and nodes files from the specified inputstream (osm
+     * pbf file). The stream will be closed. The blocks are decoded and the tags
+     * are parsed in workerThreads threads, but the graph is written in the
+     * order of the file and so it is identical to the one of a single thread.
+     */
+    void writePbf2Graph(InputStream is) {
+        logger.info("creating graph with expected nodes:" + helper.expectedNodes() + ", workers:" + workerThreads);
+        graphStorage.createNew(helper.expectedNodes());
+        try {
+            OSMPbfReader reader = new OSMPbfReader(is).workers(workerThreads);
+            reader.wayParser(new OSMPbfReader.WayParser() {
+                @Override public int flags(Map<String, String> tags) {
+                    // the workers need their own properties
+                    Map<String, Object> props = new HashMap<String, Object>();
+                    if (!parseWayTags(props, tags))
+                        return -1;
+                    return acceptStreets.toFlags(props);
+                }
+            }).read(new OSMPbfReader.Handler() {
+                int counter = 0;
+                boolean parsingWays = false;
+
+                @Override public void node(long osmId, double lat, double lon) {
+                    processNode(osmId, lat, lon);
+                    if (++counter % 10000000 == 0)
+                        logger.info(counter + ", locs:" + locations + " (" + skippedLocations + "), edges:" + edgeCount
+                                + " " + Helper.getMemInfo());
+                }
+
+                @Override public void way(long osmId, TLongList nodes, Map<String, String> tags, int flags) {
+                    if (!parsingWays) {
+                        helper.startWayProcessing();
+                        logger.info("parsing ways");
+                        parsingWays = true;
+                    }
+                    processHighway(nodes, flags);
+                    if (++counter % 1000000 == 0)
+                        logger.info(counter + ", locs:" + locations + " (" + skippedLocations + "), edges:" + edgeCount
+                                + " " + Helper.getMemInfo());
+                }
+            });
+        } catch (IOException ex) {
+            throw new RuntimeException("Couldn't process file", ex);
+        } finally {
+            Helper.close(is);
+        }
+    }
+
     private void processNode(XMLStreamReader sReader) throws XMLStreamException {
         long osmId;
         try {
@@ -328,15 +399,19 @@ public class OSMReader {
         try {
             lat = Double.parseDouble(sReader.getAttributeValue(null, "lat"));
             lon = Double.parseDouble(sReader.getAttributeValue(null, "lon"));
-            if (isInBounds(lat, lon)) {
-                helper.addNode(osmId, lat, lon);
-                locations++;
-            } else {
-                skippedLocations++;
-            }
         } catch (Exception ex) {
             throw new RuntimeException("cannot handle lon/lat of node " + osmId + ": " + lat + "," + lon, ex);
         }
+        processNode(osmId, lat, lon);
+    }
+
+    private void processNode(long osmId, double lat, double lon) {
+        if (isInBounds(lat, lon)) {
+            helper.addNode(osmId, lat, lon);
+            locations++;
+        } else {
+            skippedLocations++;
+        }
     }
 
     boolean isInBounds(double lat, double lon) {
@@ -346,9 +421,8 @@ public class OSMReader {
     boolean parseWay(TLongArrayList tmpLocs, Map<String, Object> properties, XMLStreamReader sReader)
             throws XMLStreamException {
 
-        boolean handled = false;
         tmpLocs.clear();
-        properties.clear();
+        tags.clear();
         for (int tmpE = sReader.nextTag(); tmpE != XMLStreamConstants.END_ELEMENT;
                 tmpE = sReader.nextTag()) {
             if (tmpE == XMLStreamConstants.START_ELEMENT) {
@@ -361,32 +435,42 @@ public class OSMReader {
                     }
                 } else if ("tag".equals(sReader.getLocalName())) {
                     String key = sReader.getAttributeValue(null, "k");
-                    if (key != null && !key.isEmpty()) {
-                        String val = sReader.getAttributeValue(null, "v");
-                        if ("highway".equals(key)) {
-                            handled = acceptStreets.handleWay(properties, val);
-//                            if ("proposed".equals(val) || "preproposed".equals(val)
-//                                    || "platform".equals(val) || "raceway".equals(val)
-//                                    || "bus_stop".equals(val) || "bridleway".equals(val)
-//                                    || "construction".equals(val) || "no".equals(val) || "centre_line".equals(val))
-//                                // ignore
-//                                val = val;
-//                            else
-//                                logger.warn("unknown highway type:" + val);
-                        } else if ("oneway".equals(key)) {
-                            if ("yes".equals(val) || "true".equals(val) || "1".equals(val))
-                                properties.put("oneway", "yes");
-                        } else if ("junction".equals(key)) {
-                            // abzweigung
-                            if ("roundabout".equals(val))
-                                properties.put("oneway", "yes");
-                        }
-                    }
+                    if (key != null && !key.isEmpty())
+                        tags.put(key, sReader.getAttributeValue(null, "v"));
                 }
 
                 sReader.next();
             }
         }
+        return parseWayTags(properties, tags);
+    }
+
+    /**
+     * Fills the properties from the tags of a way.
+     *
+     * @return true if the way is a highway which should be added to the graph
+     */
+    boolean parseWayTags(Map<String, Object> properties, Map<String, String> tags) {
+        properties.clear();
+        boolean handled = false;
+        String highway = tags.get("highway");
+        if (highway != null)
+            handled = acceptStreets.handleWay(properties, highway);
+//        if ("proposed".equals(val) || "preproposed".equals(val)
+//                || "platform".equals(val) || "raceway".equals(val)
+//                || "bus_stop".equals(val) || "bridleway".equals(val)
+//                || "construction".equals(val) || "no".equals(val) || "centre_line".equals(val))
+//            // ignore
+//            val = val;
+//        else
+//            logger.warn("unknown highway type:" + val);
+
+        String oneway = tags.get("oneway");
+        if ("yes".equals(oneway) || "true".equals(oneway) || "1".equals(oneway))
+            properties.put("oneway", "yes");
+        // abzweigung
+        if ("roundabout".equals(tags.get("junction")))
+            properties.put("oneway", "yes");
         return handled;
     }
 
@@ -395,9 +479,13 @@ public class OSMReader {
     }
 
     private void processHighway(XMLStreamReader sReader) throws XMLStreamException {
-        if (isHighway(sReader) && tmpLocs.size() > 1) {
-            int flags = acceptStreets.toFlags(properties);
-            int successfullAdded = helper.addEdge(tmpLocs, flags);
+        if (isHighway(sReader))
+            processHighway(tmpLocs, acceptStreets.toFlags(properties));
+    }
+
+    private void processHighway(TLongList osmIds, int flags) {
+        if (osmIds.size() > 1) {
+            int successfullAdded = helper.addEdge(osmIds, flags);
             edgeCount += successfullAdded;
         }
     }
@@ -421,6 +509,36 @@ public class OSMReader {
         return prepare;
     }
 
+    /**
+     * Specifies the number of threads for the contraction hierarchies
+     * preparation. Call this before setCHShortcuts.
+     */
+    public OSMReader chThreads(int threads) {
+        chThreads = threads;
+        return this;
+    }
+
+    /**
+     * Specifies the number of threads which decode a PBF file. The graph is
+     * still written from one thread, in the order of the file.
+     */
+    public OSMReader workerThreads(int threads) {
+        workerThreads = threads;
+        return this;
+    }
+
+    /**
+     * Specifies if the OSM ids of the way nodes are stored in a compact sorted
+     * map (default) or in a hash map which needs roughly 3 times more heap but
+     * is faster for imports with enough memory.
+     */
+    public OSMReader compactIdMap(boolean compact) {
+        compactIdMap = compact;
+        if (helper instanceof OSMReaderHelperDoubleParse)
+            ((OSMReaderHelperDoubleParse) helper).compactIdMap(compact);
+        return this;
+    }
+
     /**
      * Specifies if shortcuts should be introduced (contraction hierarchies) to
      * improve query speed.
@@ -431,9 +549,9 @@ public class OSMReader {
         if (chShortcuts.isEmpty() || "no".equals(chShortcuts) || "false".equals(chShortcuts))
             return this;
         if ("true".equals(chShortcuts) || "fastest".equals(chShortcuts)) {
-            prepare = new PrepareContractionHierarchies().type(FastestCarCalc.DEFAULT);
+            prepare = new PrepareContractionHierarchies().type(FastestCarCalc.DEFAULT).threads(chThreads);
         } else if ("shortest".equals(chShortcuts)) {
-            prepare = new PrepareContractionHierarchies();
+            prepare = new PrepareContractionHierarchies().threads(chThreads);
         } else
             throw new IllegalArgumentException("Value " + chShortcuts + " not valid for configuring "
                     + "contraction hierarchies algorithm preparation");
@@ -456,13 +574,19 @@ public class OSMReader {
     }
 
     OSMReaderHelper createDoubleParseHelper() {
-        return new OSMReaderHelperDoubleParse(graphStorage, expectedNodes) {
+        OSMReaderHelperDoubleParse tmp = new OSMReaderHelperDoubleParse(graphStorage, expectedNodes) {
             @Override
             boolean parseWay(TLongArrayList tmpLocs, Map<String, Object> properties,
                     XMLStreamReader sReader) throws XMLStreamException {
                 return OSMReader.this.parseWay(tmpLocs, properties, sReader);
             }
+
+            @Override
+            boolean isHighway(Map<String, String> tags) {
+                return parseWayTags(new HashMap<String, Object>(), tags);
+            }
         };
+        return tmp.compactIdMap(compactIdMap);
     }
 
     OSMReaderHelper helper() {
@@ -485,12 +609,27 @@ public class OSMReader {
     }
 
     /**
-     * Sets if the graph should be sorted to improve query speed. Often not
-     * appropriated if graph is huge as sorting is done via copying into a new
-     * instance.
+     * Sets if the graph should be sorted along the hilbert curve to improve
+     * query speed.
      */
     public OSMReader sort(boolean bool) {
-        sortGraph = bool;
+        return sort(bool ? "hilbert" : "no");
+    }
+
+    /**
+     * Sets the order in which nodes and edges are stored to improve query
+     * speed.
+     *
+     * @param order hilbert, bfs or no. true is the same as hilbert
+     */
+    public OSMReader sort(String order) {
+        if ("true".equals(order))
+            order = "hilbert";
+        else if (order.isEmpty() || "false".equals(order))
+            order = "no";
+        if (!"hilbert".equals(order) && !"bfs".equals(order) && !"no".equals(order))
+            throw new IllegalArgumentException("Value " + order + " not valid for sorting the graph");
+        sortGraph = order;
         return this;
     }
 }
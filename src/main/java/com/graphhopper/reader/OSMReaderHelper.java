@@ -56,6 +56,14 @@ public abstract class OSMReaderHelper {
     public void preProcess(InputStream osmXml) {
     }
 
+    /**
+     * Same as preProcess but for a stream in the PBF format.
+     *
+     * @param workers the number of threads decoding the stream
+     */
+    public void preProcessPbf(InputStream osmPbf, int workers) {
+    }
+
     public abstract boolean addNode(long osmId, double lat, double lon);
 
     public abstract int addEdge(TLongList nodes, int flags);
@@ -18,6 +18,7 @@
  */
 package com.graphhopper.reader;
 
+import com.graphhopper.coll.OSMIDSortedMap;
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.GraphStorage;
@@ -27,6 +28,7 @@ import com.graphhopper.util.PointList;
 import gnu.trove.list.TLongList;
 import gnu.trove.list.array.TLongArrayList;
 import gnu.trove.map.hash.TLongIntHashMap;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
@@ -52,9 +54,10 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
     private static final int PILLAR_NODE = 1;
     private static final int TOWER_NODE = -2;
     private final Logger logger = LoggerFactory.getLogger(getClass());
-    private TLongIntHashMap osmIdToIndexMap;
-    // very slow: private SparseLongLongArray osmIdToIndexMap;
-    // not applicable as ways introduces the nodes in 'wrong' order: private OSMIDSegmentedMap
+    // the compact sorted map or the faster but bigger hash map
+    private boolean compactIdMap = true;
+    private OSMIDSortedMap osmIdToIndexMap;
+    private TLongIntHashMap osmIdToIndexHashMap;
     private int towerId = 0;
     private int pillarId = 0;
     private final TLongArrayList tmpLocs = new TLongArrayList(10);
@@ -67,12 +70,22 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
         dir = storage.directory();
         pillarLats = dir.findCreate("tmpLatitudes");
         pillarLons = dir.findCreate("tmpLongitudes");
-        osmIdToIndexMap = new TLongIntHashMap(expectedNodes, 1.4f, -1L, EMPTY);
+    }
+
+    /**
+     * If true the OSM ids are stored in an OSMIDSortedMap which needs roughly
+     * a third of the memory of a hash map. Its lookups in random order are
+     * slower, so imports with enough heap can use the hash map instead.
+     * Changes only the following preprocessing.
+     */
+    public OSMReaderHelperDoubleParse compactIdMap(boolean compact) {
+        compactIdMap = compact;
+        return this;
     }
 
     @Override
     public boolean addNode(long osmId, double lat, double lon) {
-        int nodeType = osmIdToIndexMap.get(osmId);
+        int nodeType = getNodeType(osmId);
         if (nodeType == EMPTY)
             return false;
 
@@ -84,7 +97,7 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
             pillarLats.setInt(pillarId, Helper.degreeToInt(lat));
             pillarLons.ensureCapacity(tmp);
             pillarLons.setInt(pillarId, Helper.degreeToInt(lon));
-            osmIdToIndexMap.put(osmId, pillarId + 3);
+            putNodeType(osmId, pillarId + 3);
             pillarId++;
         }
         return true;
@@ -93,14 +106,14 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
     private int addTowerNode(long osmId, double lat, double lon) {
         g.setNode(towerId, lat, lon);
         int id = -(towerId + 3);
-        osmIdToIndexMap.put(osmId, id);
+        putNodeType(osmId, id);
         towerId++;
         return id;
     }
 
     @Override
     public int expectedNodes() {
-        return osmIdToIndexMap.size();
+        return compactIdMap ? osmIdToIndexMap.size() : osmIdToIndexHashMap.size();
     }
 
     @Override
@@ -111,7 +124,7 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
         int lastIndex = nodes.size() - 1;
         for (int i = 0; i < nodes.size(); i++) {
             long osmId = nodes.get(i);
-            int tmpNode = osmIdToIndexMap.get(osmId);
+            int tmpNode = getNodeType(osmId);
             if (tmpNode == EMPTY)
                 continue;
             // skip osmIds with no associated pillar or tower id (e.g. !OSMReader.isBounds)
@@ -121,7 +134,7 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
                 // add part of the way which are in bounds, but force the last 
                 // node to be a tower node
                 if (i == lastIndex && pointList.size() > 1) {
-                    tmpNode = osmIdToIndexMap.get(nodes.get(i - 1));
+                    tmpNode = getNodeType(nodes.get(i - 1));
                     // force creating tower node from pillar node
                     tmpNode = handlePillarNode(tmpNode, osmId, pointList, true);
                     tmpNode = -tmpNode - 3;
@@ -174,7 +187,8 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
 
     @Override
     void startWayProcessing() {
-        LoggerFactory.getLogger(getClass()).info("finished node processing. osmIdMap:" + osmIdToIndexMap.size() * 16f / Helper.MB
+        float mem = compactIdMap ? osmIdToIndexMap.calcMemInMB() : osmIdToIndexHashMap.size() * 16f / Helper.MB;
+        LoggerFactory.getLogger(getClass()).info("finished node processing. osmIdMap:" + mem
                 + ", " + Helper.getMemInfo());
     }
 
@@ -184,20 +198,39 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
         dir.remove(pillarLons);
         pillarLons = null;
         pillarLats = null;
+        if (osmIdToIndexMap != null)
+            osmIdToIndexMap.close();
         osmIdToIndexMap = null;
+        osmIdToIndexHashMap = null;
+    }
+
+    private int getNodeType(long osmId) {
+        return compactIdMap ? osmIdToIndexMap.get(osmId) : osmIdToIndexHashMap.get(osmId);
+    }
+
+    private void putNodeType(long osmId, int value) {
+        if (compactIdMap)
+            osmIdToIndexMap.put(osmId, value);
+        else
+            osmIdToIndexHashMap.put(osmId, value);
     }
 
     private void setHasHighways(long osmId) {
-        int tmpIndex = osmIdToIndexMap.get(osmId);
-        if (tmpIndex == EMPTY) {
-            // unused osmId
-            osmIdToIndexMap.put(osmId, PILLAR_NODE);
-        } else if (tmpIndex > EMPTY) {
-            // mark node as tower node as it occured at least twice times
-            osmIdToIndexMap.put(osmId, TOWER_NODE);
-        } else {
-            // tmpIndex is already negative (already tower node)
+        // nodes occuring once are pillar nodes, nodes occuring at least twice are tower nodes
+        if (compactIdMap) {
+            osmIdToIndexMap.add(osmId);
+            return;
         }
+        int tmpIndex = osmIdToIndexHashMap.get(osmId);
+        if (tmpIndex == EMPTY)
+            osmIdToIndexHashMap.put(osmId, PILLAR_NODE);
+        else if (tmpIndex > EMPTY)
+            osmIdToIndexHashMap.put(osmId, TOWER_NODE);
+    }
+
+    private void finishIdMap() {
+        if (compactIdMap)
+            osmIdToIndexMap.optimize(PILLAR_NODE, TOWER_NODE);
     }
 
     @Override
@@ -211,8 +244,7 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
      */
     @Override
     public void preProcess(InputStream osmXml) {
-        pillarLats.createNew(Math.max(expectedNodes / 50, 100));
-        pillarLons.createNew(Math.max(expectedNodes / 50, 100));
+        initPillarStorage();
         if (osmXml == null)
             throw new AssertionError("Stream cannot be empty");
 
@@ -231,12 +263,8 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
                     case XMLStreamConstants.START_ELEMENT:
                         if ("way".equals(sReader.getLocalName())) {
                             boolean isHighway = parseWay(tmpLocs, empty, sReader);
-                            if (isHighway && tmpLocs.size() > 1) {
-                                int s = tmpLocs.size();
-                                for (int index = 0; index < s; index++) {
-                                    setHasHighways(tmpLocs.get(index));
-                                }
-                            }
+                            if (isHighway)
+                                setHasHighways(tmpLocs);
                         }
                         break;
                 }
@@ -246,10 +274,64 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
         } finally {
             Helper7.close(sReader);
         }
+        finishIdMap();
+    }
+
+    @Override
+    public void preProcessPbf(InputStream osmPbf, int workers) {
+        initPillarStorage();
+        try {
+            // the first pass only needs the ways, non highways are skipped in the workers
+            OSMPbfReader reader = new OSMPbfReader(osmPbf).nodes(false).workers(workers);
+            reader.wayParser(new OSMPbfReader.WayParser() {
+                @Override public int flags(Map<String, String> tags) {
+                    return isHighway(tags) ? 0 : -1;
+                }
+            }).read(new OSMPbfReader.Handler() {
+                @Override public void node(long osmId, double lat, double lon) {
+                }
+
+                @Override public void way(long osmId, TLongList nodes, Map<String, String> tags, int flags) {
+                    setHasHighways(nodes);
+                }
+            });
+        } catch (IOException ex) {
+            throw new RuntimeException("Problem while parsing file", ex);
+        } finally {
+            Helper.close(osmPbf);
+        }
+        finishIdMap();
+    }
+
+    private void initPillarStorage() {
+        pillarLats.createNew(Math.max(expectedNodes / 50, 100));
+        pillarLons.createNew(Math.max(expectedNodes / 50, 100));
+        if (compactIdMap) {
+            // every way node is added once => more than the expected nodes
+            int runSize = (int) Math.max(1000, Math.min((long) expectedNodes * 2, 1 << 22));
+            osmIdToIndexMap = new OSMIDSortedMap(dir, "tmpOsmIds", EMPTY, runSize);
+        } else
+            osmIdToIndexHashMap = new TLongIntHashMap(expectedNodes, 1.4f, -1L, EMPTY);
+    }
+
+    private void setHasHighways(TLongList osmIds) {
+        int s = osmIds.size();
+        if (s < 2)
+            return;
+        for (int index = 0; index < s; index++) {
+            setHasHighways(osmIds.get(index));
+        }
     }
 
     boolean parseWay(TLongArrayList tmpLocs, Map<String, Object> properties, XMLStreamReader sReader)
             throws XMLStreamException {
         return true;
     }
+
+    /**
+     * Must be thread safe as it is called from the workers of the PBF reader.
+     */
+    boolean isHighway(Map<String, String> tags) {
+        return true;
+    }
 }
\ No newline at end of file
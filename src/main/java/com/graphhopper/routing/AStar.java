@@ -18,8 +18,9 @@
  */
 package com.graphhopper.routing;
 
+import com.graphhopper.coll.IntDoubleIndexedBinHeap;
 import com.graphhopper.coll.MyBitSet;
-import com.graphhopper.coll.MyBitSetImpl;
+import com.graphhopper.coll.MyTouchedBitSet;
 import com.graphhopper.storage.EdgeEntry;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.DistanceCalc;
@@ -27,7 +28,6 @@ import com.graphhopper.util.DistanceCosProjection;
 import com.graphhopper.util.EdgeIterator;
 import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
-import java.util.PriorityQueue;
 
 /**
  * This class implements the A* algorithm according to
@@ -42,10 +42,19 @@ public class AStar extends AbstractRoutingAlgorithm {
     private DistanceCalc dist = new DistanceCosProjection();
     private boolean alreadyRun;
     private MyBitSet closedSet;
+    private TIntObjectMap<AStarEdge> map;
+    // node -> estimated full weight
+    private IntDoubleIndexedBinHeap prioQueueOpenSet;
     private int from;
+    private double toLat;
+    private double toLon;
 
     public AStar(Graph g) {
         super(g);
+        int locs = Math.max(20, graph.nodes());
+        closedSet = new MyTouchedBitSet(locs);
+        map = new TIntObjectHashMap<AStarEdge>(1000);
+        prioQueueOpenSet = new IntDoubleIndexedBinHeap(1000, locs);
     }
 
     /**
@@ -64,6 +73,9 @@ public class AStar extends AbstractRoutingAlgorithm {
     public RoutingAlgorithm clear() {
         alreadyRun = false;
         from = -1;
+        closedSet.clear();
+        map.clear();
+        prioQueueOpenSet.clear();
         return this;
     }
 
@@ -71,12 +83,9 @@ public class AStar extends AbstractRoutingAlgorithm {
         if (alreadyRun)
             throw new IllegalStateException("Call clear before! But this class is not thread safe!");
         alreadyRun = true;
-        closedSet = new MyBitSetImpl(graph.nodes());
-        TIntObjectMap<AStarEdge> map = new TIntObjectHashMap<AStarEdge>();
-        PriorityQueue<AStarEdge> prioQueueOpenSet = new PriorityQueue<AStarEdge>(1000);
-        double toLat = graph.getLatitude(to);
-        double toLon = graph.getLongitude(to);
-        double currWeightToGoal, distEstimation, tmpLat, tmpLon;
+        toLat = graph.getLatitude(to);
+        toLon = graph.getLongitude(to);
+        double currWeightToGoal, distEstimation;
         AStarEdge fromEntry = new AStarEdge(EdgeIterator.NO_EDGE, this.from = from, 0, 0);
         AStarEdge currEdge = fromEntry;
         while (true) {
@@ -90,22 +99,19 @@ public class AStar extends AbstractRoutingAlgorithm {
                 double alreadyVisitedWeight = weightCalc.getWeight(iter.distance(), iter.flags()) + currEdge.weightToCompare;
                 AStarEdge nEdge = map.get(neighborNode);
                 if (nEdge == null || nEdge.weightToCompare > alreadyVisitedWeight) {
-                    tmpLat = graph.getLatitude(neighborNode);
-                    tmpLon = graph.getLongitude(neighborNode);
-                    currWeightToGoal = dist.calcDist(toLat, toLon, tmpLat, tmpLon);
-                    currWeightToGoal = weightCalc.getMinWeight(currWeightToGoal);
+                    currWeightToGoal = weightToGoal(neighborNode, to);
                     distEstimation = alreadyVisitedWeight + currWeightToGoal;
                     if (nEdge == null) {
                         nEdge = new AStarEdge(iter.edge(), neighborNode, distEstimation, alreadyVisitedWeight);
                         map.put(neighborNode, nEdge);
+                        prioQueueOpenSet.insert_(distEstimation, neighborNode);
                     } else {
-                        prioQueueOpenSet.remove(nEdge);
                         nEdge.edge = iter.edge();
                         nEdge.weight = distEstimation;
                         nEdge.weightToCompare = alreadyVisitedWeight;
+                        prioQueueOpenSet.update_(distEstimation, neighborNode);
                     }
                     nEdge.parent = currEdge;
-                    prioQueueOpenSet.add(nEdge);
                     updateShortest(nEdge, neighborNode);
                 }
             }
@@ -116,7 +122,7 @@ public class AStar extends AbstractRoutingAlgorithm {
             if (prioQueueOpenSet.isEmpty())
                 return new Path();
 
-            currEdge = prioQueueOpenSet.poll();
+            currEdge = map.get(prioQueueOpenSet.poll_element());
             if (currEdge == null)
                 throw new AssertionError("cannot happen?");
         }
@@ -124,6 +130,15 @@ public class AStar extends AbstractRoutingAlgorithm {
         return extractPath(currEdge);
     }
 
+    /**
+     * @return the estimated weight from the specified node to the goal. It
+     * must never overestimate, here the beeline distance is used.
+     */
+    protected double weightToGoal(int node, int to) {
+        double distance = dist.calcDist(toLat, toLon, graph.getLatitude(node), graph.getLongitude(node));
+        return weightCalc.getMinWeight(distance);
+    }
+
     boolean finished(EdgeEntry currEdge, int to) {
         return currEdge.endNode == to;
     }
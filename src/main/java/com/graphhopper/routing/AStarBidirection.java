@@ -19,7 +19,7 @@
 package com.graphhopper.routing;
 
 import com.graphhopper.coll.MyBitSet;
-import com.graphhopper.coll.MyBitSetImpl;
+import com.graphhopper.coll.MyTouchedBitSet;
 import com.graphhopper.routing.AStar.AStarEdge;
 import com.graphhopper.routing.util.EdgeLevelFilter;
 import com.graphhopper.storage.Graph;
@@ -62,7 +62,7 @@ import java.util.PriorityQueue;
 public class AStarBidirection extends AbstractRoutingAlgorithm {
 
     private DistanceCalc dist;
-    private int from, to;
+    protected int from, to;
     private MyBitSet visitedFrom;
     private PriorityQueue<AStarEdge> prioQueueOpenSetFrom;
     private TIntObjectMap<AStarEdge> shortestWeightMapFrom;
@@ -70,8 +70,8 @@ public class AStarBidirection extends AbstractRoutingAlgorithm {
     private PriorityQueue<AStarEdge> prioQueueOpenSetTo;
     private TIntObjectMap<AStarEdge> shortestWeightMapTo;
     private boolean alreadyRun;
-    private AStarEdge currFrom;
-    private AStarEdge currTo;
+    protected AStarEdge currFrom;
+    protected AStarEdge currTo;
     private TIntObjectMap<AStarEdge> shortestWeightMapOther;
     private EdgeLevelFilter edgeFilter;
     public PathBidirRef shortest;
@@ -82,11 +82,11 @@ public class AStarBidirection extends AbstractRoutingAlgorithm {
     public AStarBidirection(Graph graph) {
         super(graph);
         int locs = Math.max(20, graph.nodes());
-        visitedFrom = new MyBitSetImpl(locs);
+        visitedFrom = new MyTouchedBitSet(locs);
         prioQueueOpenSetFrom = new PriorityQueue<AStarEdge>(locs / 10);
         shortestWeightMapFrom = new TIntObjectHashMap<AStarEdge>(locs / 10);
 
-        visitedTo = new MyBitSetImpl(locs);
+        visitedTo = new MyTouchedBitSet(locs);
         prioQueueOpenSetTo = new PriorityQueue<AStarEdge>(locs / 10);
         shortestWeightMapTo = new TIntObjectHashMap<AStarEdge>(locs / 10);
 
@@ -212,7 +212,7 @@ public class AStarBidirection extends AbstractRoutingAlgorithm {
     public boolean fillEdgesFrom() {
         if (currFrom != null) {
             shortestWeightMapOther = shortestWeightMapTo;
-            fillEdges(currFrom, toCoord, visitedFrom, prioQueueOpenSetFrom, shortestWeightMapFrom, true);
+            fillEdges(currFrom, visitedFrom, prioQueueOpenSetFrom, shortestWeightMapFrom, true);
             if (prioQueueOpenSetFrom.isEmpty()) {
                 currFrom = null;
                 return false;
@@ -231,7 +231,7 @@ public class AStarBidirection extends AbstractRoutingAlgorithm {
     public boolean fillEdgesTo() {
         if (currTo != null) {
             shortestWeightMapOther = shortestWeightMapFrom;
-            fillEdges(currTo, fromCoord, visitedTo, prioQueueOpenSetTo, shortestWeightMapTo, false);
+            fillEdges(currTo, visitedTo, prioQueueOpenSetTo, shortestWeightMapTo, false);
             if (prioQueueOpenSetTo.isEmpty()) {
                 currTo = null;
                 return false;
@@ -247,7 +247,7 @@ public class AStarBidirection extends AbstractRoutingAlgorithm {
         return true;
     }
 
-    private void fillEdges(AStarEdge curr, CoordTrig goal, MyBitSet closedSet, PriorityQueue<AStarEdge> prioQueueOpenSet,
+    private void fillEdges(AStarEdge curr, MyBitSet closedSet, PriorityQueue<AStarEdge> prioQueueOpenSet,
             TIntObjectMap<AStarEdge> shortestWeightMap, boolean out) {
 
         int currNodeFrom = curr.endNode;
@@ -265,10 +265,7 @@ public class AStarBidirection extends AbstractRoutingAlgorithm {
             double alreadyVisitedWeight = weightCalc.getWeight(iter.distance(), iter.flags()) + curr.weightToCompare;
             AStarEdge de = shortestWeightMap.get(neighborNode);
             if (de == null || de.weightToCompare > alreadyVisitedWeight) {
-                double tmpLat = graph.getLatitude(neighborNode);
-                double tmpLon = graph.getLongitude(neighborNode);
-                double currWeightToGoal = dist.calcDist(goal.lat, goal.lon, tmpLat, tmpLon);
-                currWeightToGoal = weightCalc.getMinWeight(currWeightToGoal);
+                double currWeightToGoal = weightToGoal(neighborNode, out);
                 double estimationFullDist = alreadyVisitedWeight + currWeightToGoal;
                 if (de == null) {
                     de = new AStarEdge(iter.edge(), neighborNode, estimationFullDist, alreadyVisitedWeight);
@@ -287,6 +284,18 @@ public class AStarBidirection extends AbstractRoutingAlgorithm {
         }
     }
 
+    /**
+     * @return the estimated weight from the specified node to the goal of the
+     * search (forward) or from the start to the specified node (backward). It
+     * must never overestimate, here the beeline distance to the goal
+     * coordinate is used.
+     */
+    protected double weightToGoal(int node, boolean forward) {
+        CoordTrig<?> goal = forward ? toCoord : fromCoord;
+        double distance = dist.calcDist(goal.lat, goal.lon, graph.getLatitude(node), graph.getLongitude(node));
+        return weightCalc.getMinWeight(distance);
+    }
+
 //    @Override -> TODO use only weight => then a simple EdgeEntry is possible
     public void updateShortest(AStarEdge shortestDE, int currLoc) {
         AStarEdge entryOther = shortestWeightMapOther.get(currLoc);
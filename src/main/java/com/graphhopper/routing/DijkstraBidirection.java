@@ -20,7 +20,7 @@ package com.graphhopper.routing;
 
 import com.graphhopper.coll.IntDoubleBinHeap;
 import com.graphhopper.coll.MyBitSet;
-import com.graphhopper.coll.MyBitSetImpl;
+import com.graphhopper.coll.MyTouchedBitSet;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeWrapper;
@@ -63,11 +63,11 @@ public class DijkstraBidirection extends AbstractRoutingAlgorithm {
     public DijkstraBidirection(Graph graph) {
         super(graph);
         int locs = Math.max(20, graph.nodes());
-        visitedFrom = new MyBitSetImpl(locs);
+        visitedFrom = new MyTouchedBitSet(locs);
         openSetFrom = new IntDoubleBinHeap(locs / 10);
         wrapperFrom = new EdgeWrapper(locs / 10);
 
-        visitedTo = new MyBitSetImpl(locs);
+        visitedTo = new MyTouchedBitSet(locs);
         openSetTo = new IntDoubleBinHeap(locs / 10);
         wrapperTo = new EdgeWrapper(locs / 10);
     }
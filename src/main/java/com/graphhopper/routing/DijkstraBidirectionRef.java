@@ -19,7 +19,7 @@
 package com.graphhopper.routing;
 
 import com.graphhopper.coll.MyBitSet;
-import com.graphhopper.coll.MyBitSetImpl;
+import com.graphhopper.coll.MyTouchedBitSet;
 import com.graphhopper.routing.util.EdgeLevelFilter;
 import com.graphhopper.storage.EdgeEntry;
 import com.graphhopper.storage.Graph;
@@ -61,11 +61,11 @@ public class DijkstraBidirectionRef extends AbstractRoutingAlgorithm {
     }
 
     protected void initCollections(int nodes) {
-        visitedFrom = new MyBitSetImpl(nodes);
+        visitedFrom = new MyTouchedBitSet(nodes);
         openSetFrom = new PriorityQueue<EdgeEntry>(nodes / 10);
         shortestWeightMapFrom = new TIntObjectHashMap<EdgeEntry>(nodes / 10);
 
-        visitedTo = new MyBitSetImpl(nodes);
+        visitedTo = new MyTouchedBitSet(nodes);
         openSetTo = new PriorityQueue<EdgeEntry>(nodes / 10);
         shortestWeightMapTo = new TIntObjectHashMap<EdgeEntry>(nodes / 10);
     }
@@ -18,6 +18,7 @@
  */
 package com.graphhopper.routing;
 
+import com.graphhopper.coll.IntDoubleIndexedBinHeap;
 import com.graphhopper.coll.MyBitSet;
 import com.graphhopper.coll.MyTBitSet;
 import com.graphhopper.storage.EdgeEntry;
@@ -25,7 +26,6 @@ import com.graphhopper.storage.Graph;
 import com.graphhopper.util.EdgeIterator;
 import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
-import java.util.PriorityQueue;
 
 /**
  * Implements a single source shortest path algorithm
@@ -37,10 +37,12 @@ public class DijkstraSimple extends AbstractRoutingAlgorithm {
 
     protected MyBitSet visited = new MyTBitSet();
     private TIntObjectMap<EdgeEntry> map = new TIntObjectHashMap<EdgeEntry>();
-    private PriorityQueue<EdgeEntry> heap = new PriorityQueue<EdgeEntry>();
+    // node -> weight
+    private IntDoubleIndexedBinHeap heap;
 
     public DijkstraSimple(Graph graph) {
         super(graph);
+        heap = new IntDoubleIndexedBinHeap(1000, Math.max(20, graph.nodes()));
     }
 
     @Override
@@ -70,13 +72,12 @@ public class DijkstraSimple extends AbstractRoutingAlgorithm {
                     nEdge = new EdgeEntry(iter.edge(), tmpNode, tmpWeight);
                     nEdge.parent = currEdge;
                     map.put(tmpNode, nEdge);
-                    heap.add(nEdge);
+                    heap.insert_(tmpWeight, tmpNode);
                 } else if (nEdge.weight > tmpWeight) {
-                    heap.remove(nEdge);
                     nEdge.edge = iter.edge();
                     nEdge.weight = tmpWeight;
                     nEdge.parent = currEdge;
-                    heap.add(nEdge);
+                    heap.update_(tmpWeight, tmpNode);
                 }
 
                 updateShortest(nEdge, neighborNode);
@@ -88,7 +89,7 @@ public class DijkstraSimple extends AbstractRoutingAlgorithm {
 
             if (heap.isEmpty())
                 return new Path();
-            currEdge = heap.poll();
+            currEdge = map.get(heap.poll_element());
             if (currEdge == null)
                 throw new AssertionError("cannot happen?");
         }
@@ -0,0 +1,96 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import java.util.Arrays;
+
+/**
+ * The result of a many-to-many calculation: weight, distance and time from
+ * every source (row) to every target (column), stored in flat primitive
+ * arrays.
+ *
+ * @author Peter Karich
+ */
+public class DistanceMatrix {
+
+    private final int rows;
+    private final int columns;
+    private final double[] weights;
+    private final double[] distances;
+    private final long[] times;
+
+    public DistanceMatrix(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        int size = rows * columns;
+        weights = new double[size];
+        Arrays.fill(weights, Double.MAX_VALUE);
+        distances = new double[size];
+        times = new long[size];
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * @return true if a path from the source in the specified row to the
+     * target in the specified column was found
+     */
+    public boolean found(int row, int column) {
+        return weights[row * columns + column] < Double.MAX_VALUE;
+    }
+
+    /**
+     * @return the weight or Double.MAX_VALUE if not found
+     */
+    public double weight(int row, int column) {
+        return weights[row * columns + column];
+    }
+
+    /**
+     * @return the distance or 0 if not found
+     */
+    public double distance(int row, int column) {
+        return distances[row * columns + column];
+    }
+
+    /**
+     * @return the time in seconds or 0 if not found
+     */
+    public long time(int row, int column) {
+        return times[row * columns + column];
+    }
+
+    public DistanceMatrix set(int row, int column, double weight, double distance, long time) {
+        int index = row * columns + column;
+        weights[index] = weight;
+        distances[index] = distance;
+        times[index] = time;
+        return this;
+    }
+
+    @Override public String toString() {
+        return rows + "x" + columns;
+    }
+}
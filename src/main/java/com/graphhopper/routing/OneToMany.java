@@ -0,0 +1,93 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Calculates the shortest paths from one node to all nodes which are within
+ * the specified limits, e.g. to get the area reachable in 10 minutes. The
+ * limits apply to the path with the lowest weight. All results are stored in
+ * primitive arrays and are only valid until the next call of calc.
+ *
+ * @author Peter Karich
+ */
+public abstract class OneToMany {
+
+    protected double weightLimit = Double.MAX_VALUE;
+    protected double distanceLimit = Double.MAX_VALUE;
+    protected long timeLimit = Long.MAX_VALUE;
+    protected final TIntArrayList reached = new TIntArrayList();
+
+    public OneToMany weightLimit(double weight) {
+        weightLimit = weight;
+        return this;
+    }
+
+    /**
+     * @param distance the maximum distance in meter
+     */
+    public OneToMany distanceLimit(double distance) {
+        distanceLimit = distance;
+        return this;
+    }
+
+    /**
+     * @param time the maximum time in seconds
+     */
+    public OneToMany timeLimit(long time) {
+        timeLimit = time;
+        return this;
+    }
+
+    /**
+     * Calculates the shortest paths from the specified node.
+     */
+    public abstract OneToMany calc(int from);
+
+    /**
+     * @return all nodes reached within the limits in the last calc, including
+     * the start node
+     */
+    public TIntArrayList reachedNodes() {
+        return reached;
+    }
+
+    /**
+     * @return the weight of the shortest path to the specified node or
+     * Double.MAX_VALUE if not reached
+     */
+    public abstract double weight(int node);
+
+    public abstract double distance(int node);
+
+    public abstract long time(int node);
+
+    public boolean isReached(int node) {
+        return weight(node) < Double.MAX_VALUE && isWithinLimits(weight(node), distance(node), time(node));
+    }
+
+    protected boolean isWithinLimits(double weight, double distance, long time) {
+        return weight <= weightLimit && distance <= distanceLimit && time <= timeLimit;
+    }
+
+    public String name() {
+        return getClass().getSimpleName();
+    }
+}
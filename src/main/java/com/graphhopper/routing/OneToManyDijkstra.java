@@ -0,0 +1,131 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.coll.IntDoubleIndexedBinHeap;
+import com.graphhopper.routing.util.ShortestCarCalc;
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Arrays;
+
+/**
+ * A one-to-many Dijkstra for graphs without contraction hierarchies. Nodes
+ * exceeding one of the limits are not expanded so that a small limit leads to
+ * a fast search. The arrays are allocated once and only the touched entries
+ * are reset for the next search. Not thread safe.
+ *
+ * @author Peter Karich
+ */
+public class OneToManyDijkstra extends OneToMany {
+
+    private final Graph graph;
+    private WeightCalculation weightCalc = ShortestCarCalc.DEFAULT;
+    private boolean reverse;
+    private final IntDoubleIndexedBinHeap heap;
+    // all nodes with a weight, the reached nodes are a subset
+    private final TIntArrayList touched = new TIntArrayList();
+    private final double[] weights;
+    private final double[] distances;
+    private final long[] times;
+
+    public OneToManyDijkstra(Graph g) {
+        graph = g;
+        int nodes = Math.max(10, g.nodes());
+        weights = new double[nodes];
+        Arrays.fill(weights, Double.MAX_VALUE);
+        distances = new double[nodes];
+        times = new long[nodes];
+        heap = new IntDoubleIndexedBinHeap(100, nodes);
+    }
+
+    public OneToManyDijkstra type(WeightCalculation wc) {
+        weightCalc = wc;
+        return this;
+    }
+
+    /**
+     * @param reverse if true the incoming edges are used, i.e. the results
+     * are the shortest paths from all nodes to the specified node
+     */
+    public OneToManyDijkstra reverse(boolean reverse) {
+        this.reverse = reverse;
+        return this;
+    }
+
+    @Override public OneToManyDijkstra calc(int from) {
+        clear();
+        weights[from] = 0;
+        distances[from] = 0;
+        times[from] = 0;
+        touched.add(from);
+        heap.insert_(0, from);
+        while (!heap.isEmpty()) {
+            double currWeight = heap.peek_key();
+            int curr = heap.poll_element();
+            if (currWeight > weightLimit)
+                break;
+            if (!isWithinLimits(currWeight, distances[curr], times[curr]))
+                continue;
+
+            reached.add(curr);
+            EdgeIterator iter = reverse ? graph.getIncoming(curr) : graph.getOutgoing(curr);
+            while (iter.next()) {
+                int node = iter.node();
+                double distance = iter.distance();
+                int flags = iter.flags();
+                double tmpWeight = currWeight + weightCalc.getWeight(distance, flags);
+                if (tmpWeight >= weights[node])
+                    continue;
+                if (weights[node] == Double.MAX_VALUE) {
+                    touched.add(node);
+                    heap.insert_(tmpWeight, node);
+                } else
+                    heap.update_(tmpWeight, node);
+                weights[node] = tmpWeight;
+                distances[node] = distances[curr] + distance;
+                times[node] = times[curr] + weightCalc.getTime(distance, flags);
+            }
+        }
+        return this;
+    }
+
+    @Override public double weight(int node) {
+        return weights[node];
+    }
+
+    @Override public double distance(int node) {
+        return distances[node];
+    }
+
+    @Override public long time(int node) {
+        return times[node];
+    }
+
+    private void clear() {
+        int len = touched.size();
+        for (int i = 0; i < len; i++) {
+            weights[touched.getQuick(i)] = Double.MAX_VALUE;
+        }
+        touched.resetQuick();
+        reached.resetQuick();
+        heap.clear();
+    }
+}
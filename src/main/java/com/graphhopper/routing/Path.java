@@ -231,11 +231,8 @@ public class Path {
         cachedPoints.add(graph.getLatitude(tmpNode), graph.getLongitude(tmpNode));
         forEveryEdge(new EdgeVisitor() {
             @Override public void next(EdgeIterator iter) {
-                PointList pl = iter.wayGeometry();
-                pl.reverse();
-                for (int j = 0; j < pl.size(); j++) {
-                    cachedPoints.add(pl.latitude(j), pl.longitude(j));
-                }
+                // the edge is fetched with the previous node as adjacent node
+                iter.copyWayGeometry(cachedPoints, true);
                 int baseNode = iter.baseNode();
                 cachedPoints.add(graph.getLatitude(baseNode), graph.getLongitude(baseNode));
             }
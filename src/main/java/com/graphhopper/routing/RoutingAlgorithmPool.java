@@ -0,0 +1,109 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.AlgorithmPreparation;
+import java.util.LinkedList;
+
+/**
+ * Keeps created routing algorithms to avoid that the node sized collections of
+ * an algorithm are allocated for every query. The pool itself is thread safe
+ * but a borrowed algorithm must only be used from one thread until it is
+ * released again. Released instances are cleared, which only resets the
+ * entries touched by the last search.
+ *
+ * <pre>
+ * RoutingAlgorithm algo = pool.borrow();
+ * try {
+ *    Path p = algo.calcPath(from, to);
+ * } finally {
+ *    pool.release(algo);
+ * }
+ * </pre>
+ *
+ * @author Peter Karich
+ */
+public class RoutingAlgorithmPool {
+
+    private final AlgorithmPreparation prepare;
+    private final LinkedList<RoutingAlgorithm> idle = new LinkedList<RoutingAlgorithm>();
+    private final int maxIdle;
+
+    public RoutingAlgorithmPool(AlgorithmPreparation prepare) {
+        this(prepare, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param maxIdle the maximum number of instances kept for reuse. More
+     * instances can be borrowed at the same time but they are thrown away on
+     * release.
+     */
+    public RoutingAlgorithmPool(AlgorithmPreparation prepare, int maxIdle) {
+        if (maxIdle < 1)
+            throw new IllegalArgumentException("maxIdle has to be positive but was " + maxIdle);
+        this.prepare = prepare;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Creates the specified number of instances upfront so that the first
+     * queries do not need to allocate them.
+     */
+    public RoutingAlgorithmPool fill(int count) {
+        count = Math.min(count, maxIdle);
+        for (int i = idle(); i < count; i++) {
+            release(prepare.createAlgo());
+        }
+        return this;
+    }
+
+    /**
+     * @return an algorithm ready to call calcPath. Call release afterwards.
+     */
+    public RoutingAlgorithm borrow() {
+        RoutingAlgorithm algo;
+        synchronized (idle) {
+            algo = idle.pollFirst();
+        }
+        if (algo == null)
+            algo = prepare.createAlgo();
+        return algo;
+    }
+
+    /**
+     * Gives the algorithm back to the pool. It must not be used afterwards.
+     */
+    public void release(RoutingAlgorithm algo) {
+        algo.clear();
+        synchronized (idle) {
+            // last in first out to reuse the instance which is probably still in the CPU cache
+            if (idle.size() < maxIdle)
+                idle.addFirst(algo);
+        }
+    }
+
+    /**
+     * @return the number of instances which are ready for reuse
+     */
+    public int idle() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+}
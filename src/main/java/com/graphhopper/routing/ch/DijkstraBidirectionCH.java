@@ -0,0 +1,270 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.coll.IntDoubleIndexedBinHeap;
+import com.graphhopper.routing.AbstractRoutingAlgorithm;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.PathBidirRef;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.EdgeEntry;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.util.EdgeIterator;
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Arrays;
+
+/**
+ * The bidirectional Dijkstra for graphs prepared with contraction hierarchies.
+ * Both searches go only upwards. The weights and parents are stored in arrays
+ * and reset via a list of touched nodes, so no objects are created while
+ * searching. A settled node is not expanded if a higher node reached by the
+ * same search leads to it with a smaller weight (stall-on-demand).
+ *
+ * Create it via PrepareContractionHierarchies.createAlgo. Not thread safe.
+ *
+ * @author Peter Karich
+ */
+public class DijkstraBidirectionCH extends AbstractRoutingAlgorithm {
+
+    private final LevelGraph g;
+    private final WeightCalculation pathWeightCalc;
+    private final Search fromSearch;
+    private final Search toSearch;
+    private double bestWeight;
+    private int meetingNode;
+    private boolean alreadyRun;
+    private ShortcutCache shortcutCache;
+
+    /**
+     * @param prepareWeightCalc the weight calculation used for the preparation
+     * to convert the stored weights back into distances and times
+     */
+    public DijkstraBidirectionCH(LevelGraph g, final WeightCalculation prepareWeightCalc) {
+        super(g);
+        this.g = g;
+        // CH changes the distance in prepareEdges to the weight
+        // now we need to transform it back to the real distance
+        pathWeightCalc = new WeightCalculation() {
+            @Override public String toString() {
+                return "INVERSE";
+            }
+
+            @Override public double getMinWeight(double distance) {
+                throw new IllegalStateException("getMinWeight not supported yet");
+            }
+
+            @Override public double getWeight(double distance, int flags) {
+                return distance;
+            }
+
+            @Override public long getTime(double distance, int flags) {
+                return prepareWeightCalc.getTime(revertWeight(distance, flags), flags);
+            }
+
+            @Override public double revertWeight(double weight, int flags) {
+                return prepareWeightCalc.revertWeight(weight, flags);
+            }
+        };
+        int nodes = Math.max(10, g.nodes());
+        fromSearch = new Search(true, nodes);
+        toSearch = new Search(false, nodes);
+    }
+
+    /**
+     * Caches the unpacked shortcuts of the extracted paths in the specified
+     * cache.
+     */
+    public DijkstraBidirectionCH shortcutCache(ShortcutCache cache) {
+        shortcutCache = cache;
+        return this;
+    }
+
+    @Override public RoutingAlgorithm type(WeightCalculation wc) {
+        throw new IllegalStateException("You'll need to change weightCalculation of preparation instead of algorithm!");
+    }
+
+    @Override public RoutingAlgorithm clear() {
+        alreadyRun = false;
+        fromSearch.clear();
+        toSearch.clear();
+        return this;
+    }
+
+    @Override public Path calcPath(int from, int to) {
+        if (alreadyRun)
+            throw new IllegalStateException("Call clear before! But this class is not thread safe!");
+        alreadyRun = true;
+        if (from == to)
+            return new Path(g, pathWeightCalc);
+
+        bestWeight = Double.MAX_VALUE;
+        meetingNode = -1;
+        fromSearch.init(from);
+        toSearch.init(to);
+        boolean fromFinished = false;
+        boolean toFinished = false;
+        while (!fromFinished || !toFinished) {
+            if (!fromFinished)
+                fromFinished = !fromSearch.settleNext(toSearch);
+            if (!toFinished)
+                toFinished = !toSearch.settleNext(fromSearch);
+        }
+        return extractPath();
+    }
+
+    private Path extractPath() {
+        PathBidirRef path = new Path4CH(g, pathWeightCalc).shortcutCache(shortcutCache);
+        if (meetingNode < 0)
+            return path.extract();
+        path.edgeEntry(fromSearch.createEntry(meetingNode));
+        return path.edgeEntryTo(toSearch.createEntry(meetingNode)).extract();
+    }
+
+    /**
+     * @return the number of nodes settled by the last search
+     */
+    public int visitedNodes() {
+        return fromSearch.settled + toSearch.settled;
+    }
+
+    @Override public String name() {
+        return "dijkstraCH";
+    }
+
+    /**
+     * One upward search with array based weights and parents.
+     */
+    private class Search {
+
+        private final boolean forward;
+        private final double[] weights;
+        private final int[] parentEdges;
+        private final int[] parents;
+        private final IntDoubleIndexedBinHeap heap;
+        private final TIntArrayList touched = new TIntArrayList();
+        int settled;
+
+        Search(boolean forward, int nodes) {
+            this.forward = forward;
+            weights = new double[nodes];
+            Arrays.fill(weights, Double.MAX_VALUE);
+            parentEdges = new int[nodes];
+            parents = new int[nodes];
+            heap = new IntDoubleIndexedBinHeap(100, nodes);
+        }
+
+        void init(int start) {
+            weights[start] = 0;
+            parentEdges[start] = EdgeIterator.NO_EDGE;
+            parents[start] = -1;
+            touched.add(start);
+            heap.insert_(0, start);
+        }
+
+        /**
+         * Settles the node with the smallest weight and relaxes its upward
+         * edges if it is not stalled.
+         *
+         * @return false if this search is finished
+         */
+        boolean settleNext(Search other) {
+            if (heap.isEmpty() || heap.peek_key() >= bestWeight)
+                return false;
+
+            double currWeight = heap.peek_key();
+            int curr = heap.poll_element();
+            settled++;
+            updateBest(curr, currWeight, other);
+            int level = g.getLevel(curr);
+            if (isStalled(curr, currWeight, level))
+                return true;
+
+            EdgeIterator iter = forward ? g.getOutgoing(curr) : g.getIncoming(curr);
+            while (iter.next()) {
+                int node = iter.node();
+                if (g.getLevel(node) < level)
+                    continue;
+                double tmpWeight = currWeight + iter.distance();
+                if (tmpWeight >= weights[node])
+                    continue;
+                if (weights[node] == Double.MAX_VALUE) {
+                    touched.add(node);
+                    heap.insert_(tmpWeight, node);
+                } else
+                    heap.update_(tmpWeight, node);
+                weights[node] = tmpWeight;
+                parentEdges[node] = iter.edge();
+                parents[node] = curr;
+                updateBest(node, tmpWeight, other);
+            }
+            return true;
+        }
+
+        /**
+         * A node is stalled if an edge from a higher node which was reached by
+         * this search leads to it with a smaller weight. Then the node is not
+         * on a shortest path and its edges need not be relaxed.
+         */
+        private boolean isStalled(int node, double weight, int level) {
+            EdgeIterator iter = forward ? g.getIncoming(node) : g.getOutgoing(node);
+            while (iter.next()) {
+                int higher = iter.node();
+                if (weights[higher] != Double.MAX_VALUE && g.getLevel(higher) > level
+                        && weights[higher] + iter.distance() < weight)
+                    return true;
+            }
+            return false;
+        }
+
+        private void updateBest(int node, double weight, Search other) {
+            double otherWeight = other.weights[node];
+            if (otherWeight == Double.MAX_VALUE)
+                return;
+            if (weight + otherWeight < bestWeight) {
+                bestWeight = weight + otherWeight;
+                meetingNode = node;
+            }
+        }
+
+        /**
+         * @return the chain of edges from the specified node back to the start
+         */
+        EdgeEntry createEntry(int node) {
+            EdgeEntry entry = new EdgeEntry(parentEdges[node], node, weights[node]);
+            EdgeEntry tmp = entry;
+            while (parents[node] >= 0) {
+                node = parents[node];
+                tmp.parent = new EdgeEntry(parentEdges[node], node, weights[node]);
+                tmp = tmp.parent;
+            }
+            return entry;
+        }
+
+        void clear() {
+            int len = touched.size();
+            for (int i = 0; i < len; i++) {
+                weights[touched.getQuick(i)] = Double.MAX_VALUE;
+            }
+            touched.resetQuick();
+            heap.clear();
+            settled = 0;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.coll.IntDoubleIndexedBinHeap;
+import com.graphhopper.routing.DistanceMatrix;
+import com.graphhopper.routing.util.EdgeLevelFilter;
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.util.EdgeIterator;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import java.util.Arrays;
+
+/**
+ * Calculates the weights, distances and times from many sources to many
+ * targets on a graph prepared with contraction hierarchies. Instead of a
+ * bidirectional search for every pair it does only one upward search per
+ * target and one per source: the backward searches of the targets store their
+ * results in buckets at every reached node, the forward search of a source
+ * then scans the buckets of all its reached nodes.
+ *
+ * The real distance and time of a shortcut is unpacked only once and then
+ * cached, see ShortcutUnpacker. Not thread safe.
+ *
+ * @see PrepareContractionHierarchies#createManyToMany()
+ * @author Peter Karich
+ */
+public class ManyToManyCH {
+
+    private final LevelGraph graph;
+    private final EdgeLevelFilter filter;
+    private final IntDoubleIndexedBinHeap heap;
+    private final TIntArrayList touched = new TIntArrayList();
+    private final double[] weights;
+    private final double[] distances;
+    private final long[] times;
+    private final ShortcutUnpacker unpacker;
+    // bucket entries of all backward searches, grouped by node via bucketStart
+    private final TIntArrayList entryNodes = new TIntArrayList();
+    private final TIntArrayList entryTargets = new TIntArrayList();
+    private final TDoubleArrayList entryWeights = new TDoubleArrayList();
+    private final TDoubleArrayList entryDistances = new TDoubleArrayList();
+    private final TLongArrayList entryTimes = new TLongArrayList();
+    private int[] bucketStart;
+    private int[] bucketTargets;
+    private double[] bucketWeights;
+    private double[] bucketDistances;
+    private long[] bucketTimes;
+
+    /**
+     * @param weightCalc the weight calculation used for the preparation to
+     * convert the stored weights back into distances and times
+     */
+    public ManyToManyCH(LevelGraph g, WeightCalculation weightCalc) {
+        graph = g;
+        unpacker = new ShortcutUnpacker(g, weightCalc);
+        filter = new EdgeLevelFilter(g);
+        int nodes = Math.max(10, g.nodes());
+        weights = new double[nodes];
+        Arrays.fill(weights, Double.MAX_VALUE);
+        distances = new double[nodes];
+        times = new long[nodes];
+        heap = new IntDoubleIndexedBinHeap(100, nodes);
+    }
+
+    /**
+     * @return the matrix with one row per source and one column per target
+     */
+    public DistanceMatrix calcMatrix(int[] sources, int[] targets) {
+        DistanceMatrix matrix = new DistanceMatrix(sources.length, targets.length);
+        for (int t = 0; t < targets.length; t++) {
+            search(targets[t], false);
+            int len = touched.size();
+            for (int i = 0; i < len; i++) {
+                int node = touched.getQuick(i);
+                entryNodes.add(node);
+                entryTargets.add(t);
+                entryWeights.add(weights[node]);
+                entryDistances.add(distances[node]);
+                entryTimes.add(times[node]);
+            }
+        }
+        fillBuckets();
+
+        for (int s = 0; s < sources.length; s++) {
+            search(sources[s], true);
+            int len = touched.size();
+            for (int i = 0; i < len; i++) {
+                int node = touched.getQuick(i);
+                double weight = weights[node];
+                for (int e = bucketStart[node]; e < bucketStart[node + 1]; e++) {
+                    int t = bucketTargets[e];
+                    double tmpWeight = weight + bucketWeights[e];
+                    if (tmpWeight < matrix.weight(s, t))
+                        matrix.set(s, t, tmpWeight, distances[node] + bucketDistances[e],
+                                times[node] + bucketTimes[e]);
+                }
+            }
+        }
+        clear();
+        clearBuckets();
+        return matrix;
+    }
+
+    /**
+     * Groups the bucket entries by node (counting sort).
+     */
+    private void fillBuckets() {
+        int size = entryNodes.size();
+        bucketStart = new int[weights.length + 1];
+        for (int i = 0; i < size; i++) {
+            bucketStart[entryNodes.getQuick(i) + 1]++;
+        }
+        for (int n = 0; n < weights.length; n++) {
+            bucketStart[n + 1] += bucketStart[n];
+        }
+        int[] pos = Arrays.copyOf(bucketStart, weights.length);
+        bucketTargets = new int[size];
+        bucketWeights = new double[size];
+        bucketDistances = new double[size];
+        bucketTimes = new long[size];
+        for (int i = 0; i < size; i++) {
+            int e = pos[entryNodes.getQuick(i)]++;
+            bucketTargets[e] = entryTargets.getQuick(i);
+            bucketWeights[e] = entryWeights.getQuick(i);
+            bucketDistances[e] = entryDistances.getQuick(i);
+            bucketTimes[e] = entryTimes.getQuick(i);
+        }
+        entryNodes.resetQuick();
+        entryTargets.resetQuick();
+        entryWeights.resetQuick();
+        entryDistances.resetQuick();
+        entryTimes.resetQuick();
+    }
+
+    private void clearBuckets() {
+        bucketStart = null;
+        bucketTargets = null;
+        bucketWeights = null;
+        bucketDistances = null;
+        bucketTimes = null;
+    }
+
+    /**
+     * Searches the complete upward search space of the specified node, either
+     * along outgoing edges (forward) or along incoming edges (backward). All
+     * reached nodes are in the touched list afterwards.
+     */
+    private void search(int start, boolean forward) {
+        clear();
+        weights[start] = 0;
+        distances[start] = 0;
+        times[start] = 0;
+        touched.add(start);
+        heap.insert_(0, start);
+        while (!heap.isEmpty()) {
+            double currWeight = heap.peek_key();
+            int curr = heap.poll_element();
+            EdgeIterator iter = filter.doFilter(forward ? graph.getOutgoing(curr) : graph.getIncoming(curr));
+            while (iter.next()) {
+                int node = iter.node();
+                double tmpWeight = currWeight + iter.distance();
+                if (tmpWeight >= weights[node])
+                    continue;
+                if (weights[node] == Double.MAX_VALUE) {
+                    touched.add(node);
+                    heap.insert_(tmpWeight, node);
+                } else
+                    heap.update_(tmpWeight, node);
+                weights[node] = tmpWeight;
+
+                int edge = iter.edge();
+                if (forward)
+                    unpacker.unpack(edge, curr, node);
+                else
+                    unpacker.unpack(edge, node, curr);
+                distances[node] = distances[curr] + unpacker.distance(edge);
+                times[node] = times[curr] + unpacker.time(edge);
+            }
+        }
+    }
+
+    private void clear() {
+        int len = touched.size();
+        for (int i = 0; i < len; i++) {
+            weights[touched.getQuick(i)] = Double.MAX_VALUE;
+        }
+        touched.resetQuick();
+        heap.clear();
+    }
+}
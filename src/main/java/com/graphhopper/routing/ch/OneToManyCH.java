@@ -0,0 +1,225 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.coll.IntDoubleIndexedBinHeap;
+import com.graphhopper.routing.OneToMany;
+import com.graphhopper.routing.util.EdgeLevelFilter;
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.util.EdgeIterator;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import java.util.Arrays;
+
+/**
+ * A one-to-all search on a graph prepared with contraction hierarchies (PHAST).
+ * An upward search from the start node is followed by a linear sweep over all
+ * nodes in descending level order which relaxes the downward edges. The
+ * downward edges are copied once into flat arrays ordered like the sweep and
+ * all weights are indexed by the sweep position, so the sweep only streams
+ * through memory.
+ *
+ * http://research.microsoft.com/pubs/145688/phast-tr.pdf
+ *
+ * Always the complete graph is calculated, the limits only restrict the
+ * reached nodes. The sweep data is only read and shared between copies so
+ * every thread can use its own copy. Not thread safe.
+ *
+ * @see PrepareContractionHierarchies#createOneToMany()
+ * @author Peter Karich
+ */
+public class OneToManyCH extends OneToMany {
+
+    private final LevelGraph graph;
+    private final EdgeLevelFilter filter;
+    private final ShortcutUnpacker unpacker;
+    private final IntDoubleIndexedBinHeap heap;
+    // the nodes in sweep order and node -> sweep position
+    private final int[] order;
+    private final int[] positions;
+    // incoming edges from higher levels, grouped by the sweep position of the target
+    private final int[] downStart;
+    private final int[] downFrom;
+    private final double[] downWeights;
+    private final double[] downDistances;
+    private final long[] downTimes;
+    // indexed by sweep position
+    private final double[] weights;
+    private final double[] distances;
+    private final long[] times;
+
+    public OneToManyCH(LevelGraph g, WeightCalculation weightCalc) {
+        graph = g;
+        filter = new EdgeLevelFilter(g);
+        unpacker = new ShortcutUnpacker(g, weightCalc);
+        int nodes = g.nodes();
+        long[] levelAndNode = new long[nodes];
+        for (int node = 0; node < nodes; node++) {
+            levelAndNode[node] = (long) g.getLevel(node) << 32 | node;
+        }
+        Arrays.sort(levelAndNode);
+        order = new int[nodes];
+        positions = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            int node = (int) levelAndNode[nodes - 1 - i];
+            order[i] = node;
+            positions[node] = i;
+        }
+
+        downStart = new int[nodes + 1];
+        TIntArrayList from = new TIntArrayList(nodes * 2);
+        TDoubleArrayList tmpWeights = new TDoubleArrayList(nodes * 2);
+        TDoubleArrayList tmpDistances = new TDoubleArrayList(nodes * 2);
+        TLongArrayList tmpTimes = new TLongArrayList(nodes * 2);
+        for (int i = 0; i < nodes; i++) {
+            int node = order[i];
+            int level = g.getLevel(node);
+            downStart[i] = from.size();
+            EdgeIterator iter = g.getIncoming(node);
+            while (iter.next()) {
+                int upper = iter.node();
+                if (g.getLevel(upper) <= level)
+                    continue;
+                int edge = iter.edge();
+                unpacker.unpack(edge, upper, node);
+                from.add(positions[upper]);
+                tmpWeights.add(iter.distance());
+                tmpDistances.add(unpacker.distance(edge));
+                tmpTimes.add(unpacker.time(edge));
+            }
+        }
+        downStart[nodes] = from.size();
+        // unpack the upward edges too so that copies only read the unpacker
+        for (int node = 0; node < nodes; node++) {
+            EdgeIterator iter = filter.doFilter(g.getOutgoing(node));
+            while (iter.next()) {
+                unpacker.unpack(iter.edge(), node, iter.node());
+            }
+        }
+        downFrom = from.toArray();
+        downWeights = tmpWeights.toArray();
+        downDistances = tmpDistances.toArray();
+        downTimes = tmpTimes.toArray();
+
+        weights = new double[nodes];
+        distances = new double[nodes];
+        times = new long[nodes];
+        heap = new IntDoubleIndexedBinHeap(100, Math.max(10, nodes));
+    }
+
+    /**
+     * Creates a new instance which shares the sweep data with the specified
+     * one. This is a lot cheaper than creating it from the graph.
+     */
+    public OneToManyCH(OneToManyCH other) {
+        graph = other.graph;
+        filter = new EdgeLevelFilter(graph);
+        unpacker = other.unpacker;
+        order = other.order;
+        positions = other.positions;
+        downStart = other.downStart;
+        downFrom = other.downFrom;
+        downWeights = other.downWeights;
+        downDistances = other.downDistances;
+        downTimes = other.downTimes;
+        weights = new double[order.length];
+        distances = new double[order.length];
+        times = new long[order.length];
+        heap = new IntDoubleIndexedBinHeap(100, Math.max(10, order.length));
+    }
+
+    @Override public OneToManyCH calc(int from) {
+        Arrays.fill(weights, Double.MAX_VALUE);
+        reached.resetQuick();
+        upwardSearch(from);
+
+        int nodes = order.length;
+        for (int i = 0; i < nodes; i++) {
+            double weight = weights[i];
+            int pos = -1;
+            for (int e = downStart[i]; e < downStart[i + 1]; e++) {
+                double upperWeight = weights[downFrom[e]];
+                if (upperWeight == Double.MAX_VALUE)
+                    continue;
+                double tmpWeight = upperWeight + downWeights[e];
+                if (tmpWeight < weight) {
+                    weight = tmpWeight;
+                    pos = e;
+                }
+            }
+            if (pos >= 0) {
+                int upper = downFrom[pos];
+                weights[i] = weight;
+                distances[i] = distances[upper] + downDistances[pos];
+                times[i] = times[upper] + downTimes[pos];
+            }
+            if (weight < Double.MAX_VALUE && isWithinLimits(weight, distances[i], times[i]))
+                reached.add(order[i]);
+        }
+        return this;
+    }
+
+    /**
+     * The usual upward Dijkstra of contraction hierarchies. The shortcuts are
+     * already unpacked in the constructor.
+     */
+    private void upwardSearch(int from) {
+        heap.clear();
+        int fromPos = positions[from];
+        weights[fromPos] = 0;
+        distances[fromPos] = 0;
+        times[fromPos] = 0;
+        heap.insert_(0, from);
+        while (!heap.isEmpty()) {
+            double currWeight = heap.peek_key();
+            int curr = heap.poll_element();
+            int currPos = positions[curr];
+            EdgeIterator iter = filter.doFilter(graph.getOutgoing(curr));
+            while (iter.next()) {
+                int node = iter.node();
+                int pos = positions[node];
+                double tmpWeight = currWeight + iter.distance();
+                if (tmpWeight >= weights[pos])
+                    continue;
+                if (weights[pos] == Double.MAX_VALUE)
+                    heap.insert_(tmpWeight, node);
+                else
+                    heap.update_(tmpWeight, node);
+                int edge = iter.edge();
+                weights[pos] = tmpWeight;
+                distances[pos] = distances[currPos] + unpacker.distance(edge);
+                times[pos] = times[currPos] + unpacker.time(edge);
+            }
+        }
+    }
+
+    @Override public double weight(int node) {
+        return weights[positions[node]];
+    }
+
+    @Override public double distance(int node) {
+        return distances[positions[node]];
+    }
+
+    @Override public long time(int node) {
+        return times[positions[node]];
+    }
+}
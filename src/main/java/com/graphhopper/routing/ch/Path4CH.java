@@ -23,32 +23,57 @@ import com.graphhopper.routing.util.WeightCalculation;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeSkipIterator;
+import gnu.trove.list.array.TIntArrayList;
 
 /**
- * Recursivly unpack shortcuts.
+ * Recursivly unpack shortcuts. The unpacked edges of a shortcut can be cached
+ * and reused by later paths, see ShortcutCache.
  *
  * @see PrepareContractionHierarchies
  * @author Peter Karich,
  */
 public class Path4CH extends PathBidirRef {
 
+    private ShortcutCache cache;
+    private final TIntArrayList tmpEdges = new TIntArrayList();
+
     public Path4CH(Graph g, WeightCalculation weightCalculation) {
         super(g, weightCalculation);
     }
 
+    /**
+     * Uses and fills the specified cache of unpacked shortcuts.
+     */
+    public Path4CH shortcutCache(ShortcutCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
     @Override
     protected void processWeight(int tmpEdge, int endNode) {
-        EdgeIterator mainIter = graph.getEdgeProps(tmpEdge, endNode);
+        EdgeSkipIterator iter = (EdgeSkipIterator) graph.getEdgeProps(tmpEdge, endNode);
+        if (!EdgeIterator.Edge.isValid(iter.skippedEdge())) {
+            calcWeight(iter);
+            addEdge(tmpEdge);
+            return;
+        }
 
         // Shortcuts do only contain valid weight so first expand before adding
         // to distance and time
-        EdgeSkipIterator iter = (EdgeSkipIterator) mainIter;
-        if (EdgeIterator.Edge.isValid(iter.skippedEdge())) {
-            expandEdge(iter, false);
-        } else {
-            // only add if it is not a shortcut
-            calcWeight(mainIter);
-            addEdge(mainIter.edge());
+        ShortcutCache.Entry entry = cache == null ? null : cache.get(tmpEdge, endNode);
+        if (entry == null) {
+            entry = unpack(iter);
+            if (cache != null)
+                cache.put(entry);
+        }
+        weight += entry.weight;
+        distance += entry.distance;
+        time += entry.time;
+        // the edges are stored from baseNode to endNode but the path could be
+        // extracted backwards
+        int len = entry.edges.length;
+        for (int i = 0; i < len; i++) {
+            addEdge(entry.edges[reverse ? len - 1 - i : i]);
         }
     }
 
@@ -61,51 +86,51 @@ public class Path4CH extends PathBidirRef {
         time += weightCalculation.getTime(dist, flags);
     }
 
-    private void expandEdge(EdgeSkipIterator mainIter, boolean revert) {
-        int skippedEdge = mainIter.skippedEdge();
+    private ShortcutCache.Entry unpack(EdgeSkipIterator shortcut) {
+        double prevWeight = weight;
+        double prevDistance = distance;
+        long prevTime = time;
+        weight = 0;
+        distance = 0;
+        time = 0;
+        tmpEdges.resetQuick();
+        expandEdge(shortcut.edge(), shortcut.baseNode(), shortcut.node());
+        ShortcutCache.Entry entry = new ShortcutCache.Entry(shortcut.edge(), shortcut.node(),
+                tmpEdges.toArray(), weight, distance, time);
+        weight = prevWeight;
+        distance = prevDistance;
+        time = prevTime;
+        return entry;
+    }
+
+    /**
+     * Adds the original edges of the specified edge from 'from' to 'to' into
+     * tmpEdges.
+     */
+    private void expandEdge(int edge, int from, int to) {
+        EdgeSkipIterator iter = (EdgeSkipIterator) graph.getEdgeProps(edge, to);
+        int skippedEdge = iter.skippedEdge();
         if (!EdgeIterator.Edge.isValid(skippedEdge)) {
-            calcWeight(mainIter);
-            addEdge(mainIter.edge());
+            calcWeight(iter);
+            tmpEdges.add(edge);
             return;
         }
-        int from = mainIter.baseNode(), to = mainIter.node();
-        if (revert) {
-            int tmp = from;
-            from = to;
-            to = tmp;
-        }
 
-        // 2 things => 2*2=4 sitations
-        // - one edge needs to be determined explicitely because we store only one as skippedEdge
-        // - getEdgeProps could possibly return an empty edge if the shortcuts is available for both directions
-        if (reverse) {
-            EdgeSkipIterator iter = (EdgeSkipIterator) graph.getEdgeProps(skippedEdge, from);
-            if (iter.isEmpty()) {
-                iter = (EdgeSkipIterator) graph.getEdgeProps(skippedEdge, to);
-                int skippedNode = iter.baseNode();
-                expandEdge(iter, false);
-                findSkippedEdge(from, skippedNode);
-            } else {
-                int skippedNode = iter.baseNode();
-                findSkippedEdge(skippedNode, to);
-                expandEdge(iter, true);
-            }
+        // we store only one edge as skippedEdge, the other one needs to be determined explicitely.
+        // getEdgeProps returns an empty edge if the skipped edge does not end at the node
+        EdgeIterator skipped = graph.getEdgeProps(skippedEdge, to);
+        if (skipped.isEmpty()) {
+            int skippedNode = graph.getEdgeProps(skippedEdge, from).baseNode();
+            expandEdge(skippedEdge, from, skippedNode);
+            expandSkippedEdge(skippedNode, to);
         } else {
-            EdgeSkipIterator iter = (EdgeSkipIterator) graph.getEdgeProps(skippedEdge, to);
-            if (iter.isEmpty()) {
-                iter = (EdgeSkipIterator) graph.getEdgeProps(skippedEdge, from);
-                int skippedNode = iter.baseNode();
-                expandEdge(iter, true);
-                findSkippedEdge(skippedNode, to);
-            } else {
-                int skippedNode = iter.baseNode();
-                findSkippedEdge(from, skippedNode);
-                expandEdge(iter, false);
-            }
+            int skippedNode = skipped.baseNode();
+            expandSkippedEdge(from, skippedNode);
+            expandEdge(skippedEdge, skippedNode, to);
         }
     }
 
-    private void findSkippedEdge(int from, int to) {
+    private void expandSkippedEdge(int from, int to) {
         EdgeSkipIterator iter = (EdgeSkipIterator) graph.getOutgoing(from);
         double lowest = Double.MAX_VALUE;
         int edge = EdgeIterator.NO_EDGE;
@@ -116,6 +141,6 @@ public class Path4CH extends PathBidirRef {
             }
         }
         if (EdgeIterator.Edge.isValid(edge))
-            expandEdge((EdgeSkipIterator) graph.getEdgeProps(edge, to), false);
+            expandEdge(edge, from, to);
     }
 }
@@ -19,19 +19,14 @@
 package com.graphhopper.routing.ch;
 
 import com.graphhopper.coll.MySortedCollection;
-import com.graphhopper.routing.DijkstraBidirectionRef;
-import com.graphhopper.routing.DijkstraSimple;
-import com.graphhopper.routing.Path;
-import com.graphhopper.routing.PathBidirRef;
-import com.graphhopper.routing.RoutingAlgorithm;
 import com.graphhopper.routing.util.AbstractAlgoPreparation;
 import com.graphhopper.routing.util.CarStreetType;
 import com.graphhopper.routing.util.EdgeLevelFilter;
 import com.graphhopper.routing.util.ShortestCarCalc;
 import com.graphhopper.routing.util.WeightCalculation;
-import com.graphhopper.storage.EdgeEntry;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.storage.LevelGraphStorage;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeSkipIterator;
 import com.graphhopper.util.GraphUtility;
@@ -40,9 +35,13 @@ import com.graphhopper.util.NumHelper;
 import com.graphhopper.util.RawEdgeIterator;
 import com.graphhopper.util.StopWatch;
 import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -71,9 +70,12 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
     // shortcut is one direction, speed is only involved while recalculating the endNode weights - see prepareEdges
     static final int scOneDir = CarStreetType.flags(0, false);
     static final int scBothDir = CarStreetType.flags(0, true);
-    private Collection<Shortcut> shortcuts = new ArrayList<Shortcut>();
-    private EdgeLevelFilterCH edgeFilter;
-    private OneToManyDijkstraCH algo;
+    private ShortcutFinder finder;
+    private int threads = 1;
+    private int witnessHopLimit = Integer.MAX_VALUE;
+    private OneToManyCH oneToMany;
+    private boolean loaded;
+    private ShortcutCache shortcutCache;
 
     public PrepareContractionHierarchies() {
         prepareWeightCalc = ShortestCarCalc.DEFAULT;
@@ -90,18 +92,99 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
         return this;
     }
 
+    /**
+     * Caches up to the specified number of unpacked shortcuts for all
+     * algorithms created via createAlgo. Long routes mostly use the same
+     * shortcuts of the highest levels so they are unpacked only once.
+     *
+     * @param size 0 disables the cache
+     */
+    public PrepareContractionHierarchies shortcutCache(int size) {
+        shortcutCache = size > 0 ? new ShortcutCache(size) : null;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads used for the preparation. With more than one
+     * thread independent sets of nodes are contracted concurrently, see
+     * contractNodesParallel. Default is 1 which uses the sequential
+     * contraction.
+     */
+    public PrepareContractionHierarchies threads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads has to be at least 1 but was " + threads);
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Limits the number of edges a witness search explores from its start
+     * node. A smaller limit makes the preparation faster but can create
+     * unnecessary shortcuts. Default is no limit.
+     */
+    public PrepareContractionHierarchies witnessHopLimit(int hops) {
+        if (hops < 1)
+            throw new IllegalArgumentException("hop limit has to be at least 1 but was " + hops);
+        this.witnessHopLimit = hops;
+        return this;
+    }
+
+    /**
+     * Uses the preparation stored in the already loaded graph instead of
+     * calling doWork.
+     *
+     * @return false if the graph was not prepared
+     * @throws IllegalStateException if the graph was prepared with a
+     * different weight calculation
+     */
+    public boolean loadExisting() {
+        if (!(g instanceof LevelGraphStorage) || !((LevelGraphStorage) g).isCHPrepared())
+            return false;
+        if (!((LevelGraphStorage) g).isCHWeighting(prepareWeightCalc.toString()))
+            throw new IllegalStateException("The graph was prepared with a different weight calculation than "
+                    + prepareWeightCalc);
+        loaded = true;
+        return true;
+    }
+
+    @Override public boolean isPrepared() {
+        return loaded || super.isPrepared();
+    }
+
     @Override
     public PrepareContractionHierarchies doWork() {
+        if (loaded)
+            throw new IllegalStateException("The graph is already prepared");
         super.doWork();
+        StopWatch sw = new StopWatch().start();
+        oneToMany = null;
+        if (shortcutCache != null)
+            shortcutCache.clear();
         initFromGraph();
         // TODO integrate PrepareRoutingShortcuts -> so avoid all nodes with negative level in the other methods        
         // in PrepareShortcuts level 0 and -1 is already used move that to level 1 and 2 so that level 0 stays as uncontracted
         if (!prepareEdges())
             return this;
 
-        if (!prepareNodes())
-            return this;
-        contractNodes();
+        int shortcuts;
+        if (threads > 1) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                ParallelContraction pc = new ParallelContraction(executor);
+                if (!pc.prepareNodes())
+                    return this;
+                shortcuts = pc.contractNodes();
+            } finally {
+                executor.shutdown();
+            }
+        } else {
+            if (!prepareNodes())
+                return this;
+            shortcuts = contractNodes();
+        }
+        if (g instanceof LevelGraphStorage)
+            ((LevelGraphStorage) g).chPrepared(prepareWeightCalc.toString(), shortcuts);
+        logger.info("prepared " + g.nodes() + " nodes with " + threads + " thread(s) in " + sw.stop().getSeconds() + "s");
         return this;
     }
 
@@ -124,6 +207,8 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
         // minor idea: 1. sort nodes randomly and 2. pre-init with endNode degree
         for (int node = 0; node < len; node++) {
             refs[node] = new WeightedNode(node, 0);
+            // ignore the levels of a previous preparation
+            g.setLevel(node, 0);
         }
 
         for (int node = 0; node < len; node++) {
@@ -138,7 +223,10 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
         return true;
     }
 
-    void contractNodes() {
+    /**
+     * @return the number of new shortcuts
+     */
+    int contractNodes() {
         int level = 1;
         int newShortcuts = 0;
         final int updateSize = Math.max(10, sortedNodes.size() / 10);
@@ -202,65 +290,181 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
             }
         }
         logger.info("new shortcuts " + newShortcuts + ", " + prepareWeightCalc + ", prioNodeCollection:" + sortedNodes);
-        // System.out.println("new shortcuts " + newShortcuts);
+        return newShortcuts;
     }
 
     /**
-     * Calculates the priority of endNode v without changing the graph. Warning:
-     * the calculated priority must NOT depend on priority(v) and therefor
-     * findShortcuts should also not depend on the priority(v). Otherwise
-     * updating the priority before contracting in contractNodes() could lead to
-     * a slowishor even endless loop.
+     * Contracts nodes with several threads. In every round all nodes which have
+     * the smallest priority within their 2-hop neighborhood are selected. These
+     * nodes are independent: they share no neighbor, so their shortcuts can be
+     * searched concurrently on the unchanged graph and a witness path of one
+     * node cannot depend on the contraction of another node of the same round.
+     * Then the shortcuts are added and the levels are set sequentially and the
+     * priorities of the neighbors are updated again concurrently.
      */
-    int calculatePriority(int v) {
-        // set of shortcuts that would be added if endNode v would be contracted next.
-        Collection<Shortcut> tmpShortcuts = findShortcuts(v);
-        // from shortcuts we can compute the edgeDifference
-
-        // # low influence: with it the shortcut creation is slightly faster
-        //
-        // |shortcuts(v)| − |{(u, v) | v uncontracted}| − |{(v, w) | v uncontracted}|        
-        // meanDegree is used instead of outDegree+inDegree as if one endNode is in both directions
-        // only one bucket memory is used. Additionally one shortcut could also stand for two directions.
-        int degree = GraphUtility.count(g.getEdges(v));
-        int edgeDifference = tmpShortcuts.size() - degree;
-
-        // # huge influence: the bigger the less shortcuts gets created and the faster is the preparation
-        //
-        // every endNode has an 'original edge' number associated. initially it is r=1
-        // when a new shortcut is introduced then r of the associated edges is summed up:
-        // r(u,w)=r(u,v)+r(v,w) now we can define
-        // originalEdgesCount = σ(v) := sum_{ (u,w) ∈ shortcuts(v) } of r(u, w)
-        int originalEdgesCount = 0;
-        for (Shortcut sc : tmpShortcuts) {
-            originalEdgesCount += sc.originalEdges;
+    class ParallelContraction {
+
+        private static final int CHUNK = 64;
+        private final ExecutorService executor;
+        private final ShortcutFinder[] finders;
+        private TIntArrayList remaining;
+
+        ParallelContraction(ExecutorService executor) {
+            this.executor = executor;
+            finders = new ShortcutFinder[threads];
+            for (int i = 0; i < threads; i++) {
+                finders[i] = new ShortcutFinder();
+            }
         }
 
-        // # lowest influence on preparation speed or shortcut creation count 
-        // (but according to paper should speed up queries)
-        //
-        // number of already contracted neighbors of v
-        int contractedNeighbors = 0;
-        EdgeSkipIterator iter = g.getEdges(v);
-        while (iter.next()) {
-            if (EdgeIterator.Edge.isValid(iter.skippedEdge()))
-                contractedNeighbors++;
+        boolean prepareNodes() {
+            int len = g.nodes();
+            remaining = new TIntArrayList(len);
+            for (int node = 0; node < len; node++) {
+                refs[node] = new WeightedNode(node, 0);
+                g.setLevel(node, 0);
+                remaining.add(node);
+            }
+            updatePriorities(remaining.toArray());
+            return !remaining.isEmpty();
+        }
+
+        int contractNodes() {
+            int level = 1;
+            int newShortcuts = 0;
+            int rounds = 0;
+            final int updateSize = Math.max(10, remaining.size() / 10);
+            int contractedSinceUpdate = 0;
+            StopWatch sw = new StopWatch();
+            while (!remaining.isEmpty()) {
+                if (contractedSinceUpdate >= 2 * updateSize) {
+                    // periodically update priorities of ALL nodes
+                    sw.start();
+                    updatePriorities(remaining.toArray());
+                    sw.stop();
+                    contractedSinceUpdate = 0;
+                }
+
+                final int[] candidates = remaining.toArray();
+                final boolean[] independent = new boolean[candidates.length];
+                run(candidates.length, new Worker() {
+                    @Override public void run(ShortcutFinder finder, int index) {
+                        independent[index] = isLocalMinimum(candidates[index]);
+                    }
+                });
+                TIntArrayList selected = new TIntArrayList();
+                remaining.resetQuick();
+                for (int i = 0; i < candidates.length; i++) {
+                    if (independent[i])
+                        selected.add(candidates[i]);
+                    else
+                        remaining.add(candidates[i]);
+                }
+
+                final int[] nodes = selected.toArray();
+                final Shortcut[][] found = new Shortcut[nodes.length][];
+                run(nodes.length, new Worker() {
+                    @Override public void run(ShortcutFinder finder, int index) {
+                        Collection<Shortcut> tmp = finder.findShortcuts(nodes[index]);
+                        found[index] = tmp.toArray(new Shortcut[tmp.size()]);
+                    }
+                });
+
+                // modifying the graph is not thread safe
+                TIntHashSet neighbors = new TIntHashSet();
+                for (int i = 0; i < nodes.length; i++) {
+                    newShortcuts += addShortcuts(Arrays.asList(found[i]));
+                    g.setLevel(nodes[i], level);
+                    level++;
+                }
+                for (int i = 0; i < nodes.length; i++) {
+                    EdgeIterator iter = g.getEdges(nodes[i]);
+                    while (iter.next()) {
+                        if (g.getLevel(iter.node()) == 0)
+                            neighbors.add(iter.node());
+                    }
+                }
+                updatePriorities(neighbors.toArray());
+
+                contractedSinceUpdate += nodes.length;
+                rounds++;
+                if (rounds % 10 == 0)
+                    logger.info(rounds + " rounds, nodes: " + remaining.size() + ", shortcuts:" + newShortcuts
+                            + ", updateAllTime:" + sw.getSeconds() + ", memory:" + Helper.getMemInfo());
+            }
+            logger.info("new shortcuts " + newShortcuts + ", " + prepareWeightCalc + ", rounds:" + rounds
+                    + ", threads:" + threads);
+            return newShortcuts;
+        }
+
+        /**
+         * @return true if v has the smallest priority of all uncontracted nodes
+         * within 2 hops. Ties are broken via the node id.
+         */
+        boolean isLocalMinimum(int v) {
+            EdgeIterator iter = g.getEdges(v);
+            while (iter.next()) {
+                int u = iter.node();
+                if (u == v || g.getLevel(u) != 0)
+                    continue;
+                if (!less(v, u))
+                    return false;
+                EdgeIterator iter2 = g.getEdges(u);
+                while (iter2.next()) {
+                    int w = iter2.node();
+                    if (w != v && g.getLevel(w) == 0 && !less(v, w))
+                        return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean less(int v, int u) {
+            int pv = refs[v].priority;
+            int pu = refs[u].priority;
+            return pv < pu || pv == pu && v < u;
         }
 
-        // unterfranken example
-        // 10, 50, 1 => 180s preparation, q 3.3ms
-        //  2,  4, 1 => 200s preparation, q 3.0ms
-        // according to the paper do a simple linear combination of the properties to get the priority
-        return 10 * edgeDifference + 50 * originalEdgesCount + contractedNeighbors;
+        void updatePriorities(final int[] nodes) {
+            run(nodes.length, new Worker() {
+                @Override public void run(ShortcutFinder finder, int index) {
+                    refs[nodes[index]].priority = finder.calculatePriority(nodes[index]);
+                }
+            });
+        }
+
+        /**
+         * Calls worker for the indices 0 to size-1. Every thread fetches chunks
+         * of indices and uses its own ShortcutFinder.
+         */
+        void run(int size, final Worker worker) {
+            Helper.runInChunks(executor, threads, size, CHUNK, "contraction", new Helper.ChunkWorker() {
+                @Override public void run(int thread, int start, int end) {
+                    ShortcutFinder finder = finders[thread];
+                    for (int i = start; i < end; i++) {
+                        worker.run(finder, i);
+                    }
+                }
+            });
+        }
+    }
+
+    interface Worker {
+
+        void run(ShortcutFinder finder, int index);
+    }
+
+    int calculatePriority(int v) {
+        return finder.calculatePriority(v);
     }
 
     Collection<Shortcut> getShortcuts() {
-        return shortcuts;
+        return finder.shortcuts;
     }
 
     PrepareContractionHierarchies initFromGraph() {
         originalEdges = new TIntArrayList(g.nodes() / 2, -1);
-        edgeFilter = new EdgeLevelFilterCH(this.g);
+        finder = new ShortcutFinder();
         sortedNodes = new MySortedCollection(g.nodes());
         refs = new WeightedNode[g.nodes()];
         return this;
@@ -289,100 +493,17 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
      * Finds shortcuts, does not change the underlying graph.
      */
     Collection<Shortcut> findShortcuts(int v) {
-        // we can use distance instead of weight, see prepareEdges where distance is overwritten by weight!
-        List<NodeCH> goalNodes = new ArrayList<NodeCH>();
-        shortcuts.clear();
-        EdgeIterator iter1 = g.getIncoming(v);
-        // TODO PERFORMANCE collect outgoing nodes (goal-nodes) only once and just skip u
-        while (iter1.next()) {
-            int u = iter1.node();
-            int lu = g.getLevel(u);
-            if (lu != 0)
-                continue;
-
-            double v_u_weight = iter1.distance();
-
-            // one-to-many extractPath path
-            goalNodes.clear();
-            EdgeIterator iter2 = g.getOutgoing(v);
-            double maxWeight = 0;
-            while (iter2.next()) {
-                int w = iter2.node();
-                int lw = g.getLevel(w);
-                if (w == u || lw != 0)
-                    continue;
-
-                NodeCH n = new NodeCH();
-                n.endNode = w;
-                n.originalEdges = getOrigEdgeCount(iter2.edge());
-                n.distance = v_u_weight + iter2.distance();
-                goalNodes.add(n);
-
-                if (maxWeight < n.distance)
-                    maxWeight = n.distance;
-            }
-
-            if (goalNodes.isEmpty())
-                continue;
-
-            // TODO instead of a weight-limit we could use a hop-limit 
-            // and successively increasing it when mean-degree of graph increases
-            algo = new OneToManyDijkstraCH(g).setFilter(edgeFilter.setAvoidNode(v));
-            algo.setLimit(maxWeight).calcPath(u, goalNodes);
-            internalFindShortcuts(goalNodes, u, iter1.edge());
-        }
-        return shortcuts;
-    }
-
-    void internalFindShortcuts(List<NodeCH> goalNodes, int u, int skippedEdge) {
-        int uOrigEdgeCount = getOrigEdgeCount(skippedEdge);
-        for (NodeCH n : goalNodes) {
-            if (n.entry != null) {
-                Path path = algo.extractPath(n.entry);
-                if (path.found() && path.weight() <= n.distance) {
-                    // FOUND witness path, so do not add shortcut
-                    continue;
-                }
-            }
-
-            // FOUND shortcut but be sure that it is the only shortcut in the collection 
-            // and also in the graph for u->w. If existing AND identical length => update flags.
-            // Hint: shortcuts are always one-way due to distinct level of every endNode but we don't
-            // know yet the levels so we need to determine the correct direction or if both directions
-
-            // minor improvement: if (shortcuts.containsKey((long) n.endNode * refs.length + u)) 
-            // then two shortcuts with the same nodes (u<->n.endNode) exists => check current shortcut against both
-
-            boolean found = false;
-            for (Shortcut tmp : shortcuts) {
-                if (NumHelper.equals(n.distance, tmp.distance)) {
-                    // same direction -> no shortcut, no update
-                    if (tmp.from == u && tmp.to == n.endNode) {
-                        found = true;
-                        break;
-                    // different direction -> no shortcut, update
-                    } else if (tmp.from == n.endNode && tmp.to == u) {
-                        tmp.flags = scBothDir;
-                        found = true;
-                        break;                        
-                    }
-                    // new shortcut
-                }
-            }
-            if (found)
-                continue;
-            Shortcut sc = new Shortcut(u, n.endNode, n.distance);
-            shortcuts.add(sc);
-            sc.skippedEdge = skippedEdge;
-            sc.originalEdges = uOrigEdgeCount + n.originalEdges;
-        }
+        return finder.findShortcuts(v);
     }
 
     /**
      * Introduces the necessary shortcuts for endNode v in the graph.
      */
     int addShortcuts(int v) {
-        Collection<Shortcut> foundShortcuts = findShortcuts(v);
+        return addShortcuts(findShortcuts(v));
+    }
+
+    int addShortcuts(Collection<Shortcut> foundShortcuts) {
         int newShortcuts = 0;
         for (Shortcut sc : foundShortcuts) {
             boolean updatedInGraph = false;
@@ -412,133 +533,206 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
         return newShortcuts;
     }
 
-    private void setOrigEdgeCount(int index, int value) {
-        originalEdges.ensureCapacity(index + 1);
-        originalEdges.setQuick(index, value);
-    }
-
-    private int getOrigEdgeCount(int index) {
-        originalEdges.ensureCapacity(index + 1);
-        return originalEdges.getQuick(index);
-    }
-
-    @Override
-    public DijkstraBidirectionRef createAlgo() {
-        // do not change weight within DijkstraBidirectionRef => so use ShortestCalc
-        DijkstraBidirectionRef dijkstra = new DijkstraBidirectionRef(g) {
-            @Override protected void initCollections(int nodes) {
-                // algorithm with CH does not need that much memory pre allocated
-                super.initCollections(Math.min(10000, nodes));
-            }
-
-            @Override public boolean checkFinishCondition() {
-                // changed finish condition for CH
-                if (currFrom == null)
-                    return currTo.weight >= shortest.weight();
-                else if (currTo == null)
-                    return currFrom.weight >= shortest.weight();
-                return currFrom.weight >= shortest.weight() && currTo.weight >= shortest.weight();
+    /**
+     * Holds the state of the witness searches. Every thread needs its own
+     * instance, the graph is only read.
+     */
+    class ShortcutFinder {
+
+        private final Collection<Shortcut> shortcuts = new ArrayList<Shortcut>();
+        // all shortcuts between two nodes are chained via Shortcut.next
+        private final TLongObjectHashMap<Shortcut> shortcutMap = new TLongObjectHashMap<Shortcut>();
+        private final WitnessSearch witnessSearch = new WitnessSearch(g).hopLimit(witnessHopLimit);
+        private int[] goalNodes = new int[8];
+        private double[] goalWeights = new double[8];
+        private int[] goalOrigEdges = new int[8];
+        private int[] targets = new int[8];
+
+        /**
+         * Calculates the priority of endNode v without changing the graph.
+         * Warning: the calculated priority must NOT depend on priority(v) and
+         * therefor findShortcuts should also not depend on the priority(v).
+         * Otherwise updating the priority before contracting in contractNodes()
+         * could lead to a slowishor even endless loop.
+         */
+        int calculatePriority(int v) {
+            // set of shortcuts that would be added if endNode v would be contracted next.
+            Collection<Shortcut> tmpShortcuts = findShortcuts(v);
+            // from shortcuts we can compute the edgeDifference
+
+            // # low influence: with it the shortcut creation is slightly faster
+            //
+            // |shortcuts(v)| − |{(u, v) | v uncontracted}| − |{(v, w) | v uncontracted}|        
+            // meanDegree is used instead of outDegree+inDegree as if one endNode is in both directions
+            // only one bucket memory is used. Additionally one shortcut could also stand for two directions.
+            int degree = GraphUtility.count(g.getEdges(v));
+            int edgeDifference = tmpShortcuts.size() - degree;
+
+            // # huge influence: the bigger the less shortcuts gets created and the faster is the preparation
+            //
+            // every endNode has an 'original edge' number associated. initially it is r=1
+            // when a new shortcut is introduced then r of the associated edges is summed up:
+            // r(u,w)=r(u,v)+r(v,w) now we can define
+            // originalEdgesCount = σ(v) := sum_{ (u,w) ∈ shortcuts(v) } of r(u, w)
+            int originalEdgesCount = 0;
+            for (Shortcut sc : tmpShortcuts) {
+                originalEdgesCount += sc.originalEdges;
             }
 
-            @Override public RoutingAlgorithm type(WeightCalculation wc) {
-                throw new IllegalStateException("You'll need to change weightCalculation of preparation instead of algorithm!");
+            // # lowest influence on preparation speed or shortcut creation count 
+            // (but according to paper should speed up queries)
+            //
+            // number of already contracted neighbors of v
+            int contractedNeighbors = 0;
+            EdgeSkipIterator iter = g.getEdges(v);
+            while (iter.next()) {
+                if (EdgeIterator.Edge.isValid(iter.skippedEdge()))
+                    contractedNeighbors++;
             }
 
-            @Override protected PathBidirRef createPath() {
-                // CH changes the distance in prepareEdges to the weight
-                // now we need to transform it back to the real distance
-                WeightCalculation wc = new WeightCalculation() {
-                    @Override public String toString() {
-                        return "INVERSE";
-                    }
-
-                    @Override public double getMinWeight(double distance) {
-                        throw new IllegalStateException("getMinWeight not supported yet");
-                    }
+            // unterfranken example
+            // 10, 50, 1 => 180s preparation, q 3.3ms
+            //  2,  4, 1 => 200s preparation, q 3.0ms
+            // according to the paper do a simple linear combination of the properties to get the priority
+            return 10 * edgeDifference + 50 * originalEdgesCount + contractedNeighbors;
+        }
 
-                    @Override public double getWeight(double distance, int flags) {
-                        return distance;
-                    }
+        /**
+         * Finds shortcuts, does not change the underlying graph.
+         */
+        Collection<Shortcut> findShortcuts(int v) {
+            // we can use distance instead of weight, see prepareEdges where distance is overwritten by weight!
+            shortcuts.clear();
+            shortcutMap.clear();
+            // collect the goal nodes only once and skip u later
+            int goalCount = 0;
+            double maxGoalWeight = 0;
+            EdgeIterator iter2 = g.getOutgoing(v);
+            while (iter2.next()) {
+                int w = iter2.node();
+                if (g.getLevel(w) != 0)
+                    continue;
 
-                    @Override public long getTime(double distance, int flags) {
-                        return prepareWeightCalc.getTime(revertWeight(distance, flags), flags);
-                    }
+                if (goalCount == goalNodes.length) {
+                    int newLen = goalCount * 2;
+                    goalNodes = Arrays.copyOf(goalNodes, newLen);
+                    goalWeights = Arrays.copyOf(goalWeights, newLen);
+                    goalOrigEdges = Arrays.copyOf(goalOrigEdges, newLen);
+                    targets = new int[newLen];
+                }
+                goalNodes[goalCount] = w;
+                goalWeights[goalCount] = iter2.distance();
+                goalOrigEdges[goalCount] = getOrigEdgeCount(iter2.edge());
+                if (maxGoalWeight < goalWeights[goalCount])
+                    maxGoalWeight = goalWeights[goalCount];
+                goalCount++;
+            }
+            if (goalCount == 0)
+                return shortcuts;
+
+            witnessSearch.avoidNode(v);
+            EdgeIterator iter1 = g.getIncoming(v);
+            while (iter1.next()) {
+                int u = iter1.node();
+                if (g.getLevel(u) != 0)
+                    continue;
 
-                    @Override public double revertWeight(double weight, int flags) {
-                        return prepareWeightCalc.revertWeight(weight, flags);
+                int targetCount = 0;
+                NEXT:
+                for (int i = 0; i < goalCount; i++) {
+                    int w = goalNodes[i];
+                    if (w == u)
+                        continue;
+                    // skip duplicates from parallel edges
+                    for (int j = 0; j < targetCount; j++) {
+                        if (targets[j] == w)
+                            continue NEXT;
                     }
-                };
-                return new Path4CH(graph, wc);
-            }
+                    targets[targetCount++] = w;
+                }
+                if (targetCount == 0)
+                    continue;
 
-            @Override public String name() {
-                return "dijkstraCH";
+                double v_u_weight = iter1.distance();
+                witnessSearch.weightLimit(v_u_weight + maxGoalWeight).search(u, targets, targetCount);
+                internalFindShortcuts(goalCount, u, v_u_weight, iter1.edge());
             }
-        };
-        dijkstra.edgeFilter(new EdgeLevelFilter(g));
-        return dijkstra;
-    }
-
-    // we need to use DijkstraSimple as AStar or DijkstraBidirection cannot be efficiently used with multiple goals
-    static class OneToManyDijkstraCH extends DijkstraSimple {
-
-        EdgeLevelFilter filter;
-        double limit;
-        Collection<NodeCH> goals;
-
-        public OneToManyDijkstraCH(Graph graph) {
-            super(graph);
-            type(ShortestCarCalc.DEFAULT);
+            return shortcuts;
         }
 
-        public OneToManyDijkstraCH setFilter(EdgeLevelFilter filter) {
-            this.filter = filter;
-            return this;
-        }
+        void internalFindShortcuts(int goalCount, int u, double v_u_weight, int skippedEdge) {
+            int uOrigEdgeCount = getOrigEdgeCount(skippedEdge);
+            for (int i = 0; i < goalCount; i++) {
+                int w = goalNodes[i];
+                if (w == u)
+                    continue;
 
-        @Override
-        protected final EdgeIterator neighbors(int neighborNode) {
-            return filter.doFilter(super.neighbors(neighborNode));
-        }
+                double distance = v_u_weight + goalWeights[i];
+                if (witnessSearch.weight(w) <= distance) {
+                    // FOUND witness path, so do not add shortcut
+                    continue;
+                }
 
-        OneToManyDijkstraCH setLimit(double weight) {
-            limit = weight;
-            return this;
+                // FOUND shortcut but be sure that it is the only shortcut in the collection 
+                // and also in the graph for u->w. If existing AND identical length => update flags.
+                // Hint: shortcuts are always one-way due to distinct level of every endNode but we don't
+                // know yet the levels so we need to determine the correct direction or if both directions
+                long key = u < w ? ((long) u << 32) | w : ((long) w << 32) | u;
+                Shortcut first = shortcutMap.get(key);
+                boolean found = false;
+                for (Shortcut tmp = first; tmp != null; tmp = tmp.next) {
+                    if (NumHelper.equals(distance, tmp.distance)) {
+                        // same direction -> no shortcut, no update
+                        // different direction -> no shortcut, update
+                        if (tmp.from != u)
+                            tmp.flags = scBothDir;
+                        found = true;
+                        break;
+                    }
+                }
+                if (found)
+                    continue;
+                Shortcut sc = new Shortcut(u, w, distance);
+                sc.next = first;
+                shortcutMap.put(key, sc);
+                shortcuts.add(sc);
+                sc.skippedEdge = skippedEdge;
+                sc.originalEdges = uOrigEdgeCount + goalOrigEdges[i];
+            }
         }
+    }
 
-        @Override public OneToManyDijkstraCH clear() {
-            super.clear();
-            return this;
-        }
+    private void setOrigEdgeCount(int index, int value) {
+        originalEdges.ensureCapacity(index + 1);
+        originalEdges.setQuick(index, value);
+    }
 
-        @Override public Path calcPath(int from, int to) {
-            throw new IllegalArgumentException("call the other calcPath instead");
-        }
+    private int getOrigEdgeCount(int index) {
+        originalEdges.ensureCapacity(index + 1);
+        return originalEdges.getQuick(index);
+    }
 
-        Path calcPath(int from, Collection<NodeCH> goals) {
-            this.goals = goals;
-            return super.calcPath(from, -1);
-        }
+    @Override
+    public DijkstraBidirectionCH createAlgo() {
+        return new DijkstraBidirectionCH(g, prepareWeightCalc).shortcutCache(shortcutCache);
+    }
 
-        @Override public boolean finished(EdgeEntry curr, int _ignoreTo) {
-            if (curr.weight > limit)
-                return true;
-
-            int found = 0;
-            for (NodeCH n : goals) {
-                if (n.endNode == curr.endNode) {
-                    n.entry = curr;
-                    found++;
-                } else if (n.entry != null) {
-                    found++;
-                }
-            }
-            return found == goals.size();
-        }
+    /**
+     * Creates a calculator for distance matrices on the prepared graph. It is
+     * not thread safe so every thread needs its own instance.
+     */
+    public ManyToManyCH createManyToMany() {
+        return new ManyToManyCH(g, prepareWeightCalc);
+    }
 
-        @Override public String name() {
-            return "dijkstra12Many";
-        }
+    /**
+     * Creates a one-to-all search on the prepared graph. The sweep data is
+     * created only once, every call returns a cheap copy.
+     */
+    public synchronized OneToManyCH createOneToMany() {
+        if (oneToMany == null)
+            oneToMany = new OneToManyCH(g, prepareWeightCalc);
+        return new OneToManyCH(oneToMany);
     }
 
     private static class WeightedNode {
@@ -564,6 +758,8 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
         double distance;
         int originalEdges;
         int flags = scOneDir;
+        // the next shortcut with the same nodes but a different distance
+        Shortcut next;
 
         public Shortcut(int from, int to, double dist) {
             this.from = from;
@@ -575,16 +771,4 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
             return from + "->" + to + ", dist:" + distance;
         }
     }
-
-    static class NodeCH {
-
-        int endNode;
-        int originalEdges;
-        EdgeEntry entry;
-        double distance;
-
-        @Override public String toString() {
-            return "" + endNode;
-        }
-    }
 }
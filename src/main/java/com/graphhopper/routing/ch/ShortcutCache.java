@@ -0,0 +1,104 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+/**
+ * A bounded cache of unpacked shortcuts shared by all queries on one prepared
+ * graph. Every shortcut direction is mapped to one slot so a newer shortcut
+ * can replace an older one. The entries are immutable, so the cache can be
+ * read and written from several threads without locking.
+ *
+ * @see PrepareContractionHierarchies#shortcutCache(int)
+ * @author Peter Karich
+ */
+public class ShortcutCache {
+
+    private final Entry[] entries;
+    private final int mask;
+
+    /**
+     * @param size the maximum number of cached shortcuts, rounded up to a
+     * power of two
+     */
+    public ShortcutCache(int size) {
+        int capacity = 1;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+        entries = new Entry[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return the unpacked shortcut which ends at endNode or null if not
+     * cached
+     */
+    Entry get(int shortcut, int endNode) {
+        Entry entry = entries[index(shortcut, endNode)];
+        if (entry != null && entry.shortcut == shortcut && entry.endNode == endNode)
+            return entry;
+        return null;
+    }
+
+    void put(Entry entry) {
+        entries[index(entry.shortcut, entry.endNode)] = entry;
+    }
+
+    public void clear() {
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = null;
+        }
+    }
+
+    /**
+     * @return the maximum number of cached shortcuts
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    private int index(int shortcut, int endNode) {
+        int hash = shortcut * 31 + endNode;
+        hash ^= hash >>> 16;
+        return hash & mask;
+    }
+
+    /**
+     * The original edges of one shortcut in the direction to endNode and their
+     * sums.
+     */
+    static class Entry {
+
+        final int shortcut;
+        final int endNode;
+        final int[] edges;
+        final double weight;
+        final double distance;
+        final long time;
+
+        Entry(int shortcut, int endNode, int[] edges, double weight, double distance, long time) {
+            this.shortcut = shortcut;
+            this.endNode = endNode;
+            this.edges = edges;
+            this.weight = weight;
+            this.distance = distance;
+            this.time = time;
+        }
+    }
+}
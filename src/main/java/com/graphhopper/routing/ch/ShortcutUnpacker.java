@@ -0,0 +1,124 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeSkipIterator;
+import java.util.Arrays;
+
+/**
+ * Calculates the real distance and time of edges in a graph prepared with
+ * contraction hierarchies. Shortcuts are recursively unpacked like in Path4CH
+ * but only once, the result is cached per edge id. Not thread safe.
+ *
+ * @author Peter Karich
+ */
+class ShortcutUnpacker {
+
+    private final LevelGraph graph;
+    private final WeightCalculation weightCalc;
+    // NaN if not yet unpacked
+    private double[] edgeDistances = new double[0];
+    private long[] edgeTimes = new long[0];
+
+    /**
+     * @param weightCalc the weight calculation used for the preparation to
+     * convert the stored weights back into distances and times
+     */
+    public ShortcutUnpacker(LevelGraph g, WeightCalculation weightCalc) {
+        graph = g;
+        this.weightCalc = weightCalc;
+    }
+
+    /**
+     * Unpacks the specified edge which is traversed from 'from' to 'to' if
+     * not already done. Use distance() and time() to get the results.
+     */
+    public void unpack(int edge, int from, int to) {
+        ensureEdge(edge);
+        if (!Double.isNaN(edgeDistances[edge]))
+            return;
+
+        EdgeSkipIterator iter = graph.getEdgeProps(edge, to);
+        int skippedEdge = iter.skippedEdge();
+        double distance;
+        long time;
+        if (EdgeIterator.Edge.isValid(skippedEdge)) {
+            int first, second;
+            EdgeSkipIterator skippedIter = graph.getEdgeProps(skippedEdge, from);
+            if (skippedIter.isEmpty()) {
+                // the skipped edge connects the skipped node with 'to'
+                int skippedNode = graph.getEdgeProps(skippedEdge, to).baseNode();
+                first = findEdge(from, skippedNode);
+                second = skippedEdge;
+                unpack(first, from, skippedNode);
+                unpack(second, skippedNode, to);
+            } else {
+                int skippedNode = skippedIter.baseNode();
+                first = skippedEdge;
+                second = findEdge(skippedNode, to);
+                unpack(first, from, skippedNode);
+                unpack(second, skippedNode, to);
+            }
+            distance = edgeDistances[first] + edgeDistances[second];
+            time = edgeTimes[first] + edgeTimes[second];
+        } else {
+            // CH changes the distance in prepareEdges to the weight
+            distance = weightCalc.revertWeight(iter.distance(), iter.flags());
+            time = weightCalc.getTime(distance, iter.flags());
+        }
+        edgeDistances[edge] = distance;
+        edgeTimes[edge] = time;
+    }
+
+    public double distance(int edge) {
+        return edgeDistances[edge];
+    }
+
+    public long time(int edge) {
+        return edgeTimes[edge];
+    }
+
+    private int findEdge(int from, int to) {
+        EdgeSkipIterator iter = graph.getOutgoing(from);
+        double lowest = Double.MAX_VALUE;
+        int edge = EdgeIterator.NO_EDGE;
+        while (iter.next()) {
+            if (iter.node() == to && iter.distance() < lowest) {
+                lowest = iter.distance();
+                edge = iter.edge();
+            }
+        }
+        if (!EdgeIterator.Edge.isValid(edge))
+            throw new IllegalStateException("Cannot unpack shortcut, no edge from " + from + " to " + to);
+        return edge;
+    }
+
+    private void ensureEdge(int edge) {
+        if (edge < edgeDistances.length)
+            return;
+        int oldLen = edgeDistances.length;
+        int newLen = Math.max(edge + 1, oldLen * 2);
+        edgeDistances = Arrays.copyOf(edgeDistances, newLen);
+        Arrays.fill(edgeDistances, oldLen, newLen, Double.NaN);
+        edgeTimes = Arrays.copyOf(edgeTimes, newLen);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.coll.IntDoubleIndexedBinHeap;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies.EdgeLevelFilterCH;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.util.EdgeIterator;
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Arrays;
+
+/**
+ * A one-to-many Dijkstra to find witness paths while preparing contraction
+ * hierarchies. All arrays are allocated once and only the touched entries are
+ * reset for the next search. The search stops if all targets are settled, if
+ * the weight limit is exceeded or it does not expand nodes which are more than
+ * hopLimit edges away from the start. Already contracted nodes and the avoided
+ * node are ignored. Not thread safe.
+ *
+ * @author Peter Karich
+ */
+class WitnessSearch {
+
+    private final LevelGraph graph;
+    private final EdgeLevelFilterCH filter;
+    private final IntDoubleIndexedBinHeap heap;
+    private final TIntArrayList touched = new TIntArrayList();
+    private double[] weights;
+    private int[] hops;
+    private double weightLimit = Double.MAX_VALUE;
+    private int hopLimit = Integer.MAX_VALUE;
+
+    public WitnessSearch(LevelGraph g) {
+        graph = g;
+        filter = new EdgeLevelFilterCH(g);
+        int nodes = Math.max(10, g.nodes());
+        weights = new double[nodes];
+        Arrays.fill(weights, Double.MAX_VALUE);
+        hops = new int[nodes];
+        heap = new IntDoubleIndexedBinHeap(100, nodes);
+    }
+
+    public WitnessSearch avoidNode(int node) {
+        filter.setAvoidNode(node);
+        return this;
+    }
+
+    public WitnessSearch weightLimit(double weight) {
+        weightLimit = weight;
+        return this;
+    }
+
+    public WitnessSearch hopLimit(int hops) {
+        hopLimit = hops;
+        return this;
+    }
+
+    /**
+     * Searches from the specified node until all of the first targetCount
+     * targets are settled or a limit is reached. Use weight() to get the
+     * results.
+     */
+    public void search(int from, int[] targets, int targetCount) {
+        clear();
+        ensureNode(from);
+        weights[from] = 0;
+        hops[from] = 0;
+        touched.add(from);
+        heap.insert_(0, from);
+        int remaining = targetCount;
+        while (!heap.isEmpty()) {
+            double currWeight = heap.peek_key();
+            if (currWeight > weightLimit)
+                break;
+            int curr = heap.poll_element();
+            if (contains(targets, targetCount, curr) && --remaining <= 0)
+                break;
+            int nextHops = hops[curr] + 1;
+            if (nextHops > hopLimit)
+                continue;
+
+            EdgeIterator iter = filter.doFilter(graph.getOutgoing(curr));
+            while (iter.next()) {
+                int node = iter.node();
+                double tmpWeight = currWeight + iter.distance();
+                ensureNode(node);
+                if (tmpWeight >= weights[node])
+                    continue;
+                if (weights[node] == Double.MAX_VALUE) {
+                    touched.add(node);
+                    heap.insert_(tmpWeight, node);
+                } else
+                    heap.update_(tmpWeight, node);
+                weights[node] = tmpWeight;
+                hops[node] = nextHops;
+            }
+        }
+    }
+
+    /**
+     * @return the weight of the shortest path found in the last search to the
+     * specified node or Double.MAX_VALUE if not reached. For nodes which were
+     * not settled this is an upper bound.
+     */
+    public double weight(int node) {
+        if (node >= weights.length)
+            return Double.MAX_VALUE;
+        return weights[node];
+    }
+
+    /**
+     * Resets only the entries touched in the last search.
+     */
+    public void clear() {
+        int len = touched.size();
+        for (int i = 0; i < len; i++) {
+            weights[touched.getQuick(i)] = Double.MAX_VALUE;
+        }
+        touched.resetQuick();
+        heap.clear();
+    }
+
+    private static boolean contains(int[] arr, int len, int value) {
+        for (int i = 0; i < len; i++) {
+            if (arr[i] == value)
+                return true;
+        }
+        return false;
+    }
+
+    private void ensureNode(int node) {
+        if (node < weights.length)
+            return;
+        int oldLen = weights.length;
+        int newLen = Math.max(node + 1, oldLen * 2);
+        weights = Arrays.copyOf(weights, newLen);
+        Arrays.fill(weights, oldLen, newLen, Double.MAX_VALUE);
+        hops = Arrays.copyOf(hops, newLen);
+    }
+}
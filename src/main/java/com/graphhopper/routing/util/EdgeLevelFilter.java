@@ -86,6 +86,10 @@ public class EdgeLevelFilter implements EdgeIterator {
         edgeIter.wayGeometry(pillarNodes);
     }
 
+    @Override public void copyWayGeometry(PointList target, boolean reverse) {
+        edgeIter.copyWayGeometry(target, reverse);
+    }
+
     @Override public void distance(double dist) {
         edgeIter.distance(dist);
     }
@@ -0,0 +1,321 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util;
+
+import com.graphhopper.routing.AStar;
+import com.graphhopper.routing.AStarBidirection;
+import com.graphhopper.routing.OneToManyDijkstra;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.StopWatch;
+import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prepares the landmarks for A* with landmarks and triangle inequality (ALT).
+ * For every landmark the weights from the landmark to all nodes and from all
+ * nodes to the landmark are stored. With d(L,t) <= d(L,v) + d(v,t) this gives
+ * a much better lower bound for the remaining weight than the beeline.
+ *
+ * Computing the Shortest Path: A∗ Search Meets Graph Theory ->
+ * http://research.microsoft.com/apps/pubs/default.aspx?id=64511
+ *
+ * The landmarks are selected one after another as the node farthest away from
+ * all previous landmarks. The weights are stored as floats rounded down, two
+ * per landmark and node, so 8 landmarks need 64 bytes per node. The rounding
+ * error of the subtracted value is subtracted as well to keep the estimate
+ * admissible. The bidirectional variant uses the symmetric stop criterion
+ * and returns the shortest path instead of an approximation.
+ *
+ * @author Peter Karich
+ */
+public class PrepareLandmarks extends AbstractAlgoPreparation<PrepareLandmarks> {
+
+    private final static int MAGIC_INT = Integer.MAX_VALUE / 111333;
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private final DataAccess weights;
+    private WeightCalculation weightCalc = ShortestCarCalc.DEFAULT;
+    private int landmarks = 8;
+
+    public PrepareLandmarks(Directory dir) {
+        weights = dir.findCreate("landmarks");
+    }
+
+    @Override public PrepareLandmarks graph(Graph g) {
+        _graph = g;
+        return this;
+    }
+
+    public PrepareLandmarks type(WeightCalculation weightCalc) {
+        this.weightCalc = weightCalc;
+        return this;
+    }
+
+    /**
+     * The number of landmarks. More landmarks lead to better estimates but
+     * also to more memory and more work per node.
+     */
+    public PrepareLandmarks landmarks(int count) {
+        if (count < 1)
+            throw new IllegalArgumentException("at least one landmark is necessary");
+        landmarks = count;
+        return this;
+    }
+
+    public int landmarks() {
+        return landmarks;
+    }
+
+    @Override public PrepareLandmarks doWork() {
+        super.doWork();
+        StopWatch sw = new StopWatch().start();
+        int nodes = _graph.nodes();
+        weights.createNew((long) nodes * landmarks * 8);
+        OneToManyDijkstra forward = new OneToManyDijkstra(_graph).type(weightCalc);
+        OneToManyDijkstra backward = new OneToManyDijkstra(_graph).type(weightCalc).reverse(true);
+        // the minimum weight to or from one of the selected landmarks
+        double[] minWeights = new double[nodes];
+        Arrays.fill(minWeights, Double.MAX_VALUE);
+        forward.calc(0);
+        int landmark = farthest(forward, nodes);
+        for (int i = 0; i < landmarks; i++) {
+            forward.calc(landmark);
+            backward.calc(landmark);
+            for (int node = 0; node < nodes; node++) {
+                double fromLandmark = forward.weight(node);
+                double toLandmark = backward.weight(node);
+                long pointer = ((long) node * landmarks + i) * 2;
+                weights.setInt(pointer, Float.floatToRawIntBits(toFloor(fromLandmark)));
+                weights.setInt(pointer + 1, Float.floatToRawIntBits(toFloor(toLandmark)));
+                minWeights[node] = Math.min(minWeights[node], Math.min(fromLandmark, toLandmark));
+            }
+
+            // ignore nodes of other subnetworks, they never get a useful estimate
+            double max = -1;
+            for (int node = 0; node < nodes; node++) {
+                if (minWeights[node] < Double.MAX_VALUE && minWeights[node] > max) {
+                    max = minWeights[node];
+                    landmark = node;
+                }
+            }
+        }
+        logger.info("prepared " + landmarks + " landmarks for " + nodes + " nodes in "
+                + sw.stop().getSeconds() + "s, " + weightCalc);
+        return this;
+    }
+
+    private static int farthest(OneToManyDijkstra search, int nodes) {
+        int farthest = 0;
+        double max = -1;
+        for (int node = 0; node < nodes; node++) {
+            double weight = search.weight(node);
+            if (weight < Double.MAX_VALUE && weight > max) {
+                max = weight;
+                farthest = node;
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * Rounds down as the estimate must never be too high. Not reachable
+     * results in infinity.
+     */
+    static float toFloor(double weight) {
+        if (weight == Double.MAX_VALUE)
+            return Float.POSITIVE_INFINITY;
+        float f = (float) weight;
+        if (f > weight)
+            f = Math.nextAfter(f, Double.NEGATIVE_INFINITY);
+        return f;
+    }
+
+    /**
+     * @return a lower bound of a - b for the rounded down values of a and b.
+     * The rounded down b can be up to one ulp smaller than b, so this is
+     * subtracted as well.
+     */
+    static double floorDiff(float floorA, float floorB) {
+        return (double) floorA - floorB - Math.ulp(floorB);
+    }
+
+    /**
+     * @return true if the landmarks were successfully loaded. The graph and
+     * the weight calculation need to be identical to the ones used for the
+     * preparation.
+     */
+    public boolean loadExisting() {
+        if (!weights.loadExisting())
+            return false;
+        if (weights.getHeader(0) != MAGIC_INT)
+            throw new IllegalStateException("incorrect landmarks version");
+        int checksum = weights.getHeader(2);
+        if (checksum != _graph.nodes())
+            throw new IllegalStateException("landmarks were created from a different graph with "
+                    + checksum + ". Current nodes:" + _graph.nodes());
+        if (weights.getHeader(3) != weightCalc.toString().hashCode())
+            throw new IllegalStateException("landmarks were created with a different weight calculation than "
+                    + weightCalc);
+        if (weights.getHeader(1) != landmarks)
+            throw new IllegalStateException("landmarks were created with " + weights.getHeader(1)
+                    + " landmarks but " + landmarks + " are configured");
+        return true;
+    }
+
+    public void flush() {
+        weights.setHeader(0, MAGIC_INT);
+        weights.setHeader(1, landmarks);
+        weights.setHeader(2, _graph.nodes());
+        weights.setHeader(3, weightCalc.toString().hashCode());
+        weights.flush();
+    }
+
+    public float calcMemInMB() {
+        return (float) weights.capacity() / (1 << 20);
+    }
+
+    /**
+     * Reads the weights of the specified node from (fromLandmark) and to
+     * (toLandmark) all landmarks.
+     */
+    void readNode(int node, float[] fromLandmark, float[] toLandmark) {
+        long pointer = (long) node * landmarks * 2;
+        for (int i = 0; i < landmarks; i++, pointer += 2) {
+            fromLandmark[i] = Float.intBitsToFloat(weights.getInt(pointer));
+            toLandmark[i] = Float.intBitsToFloat(weights.getInt(pointer + 1));
+        }
+    }
+
+    /**
+     * @return a lower bound for the weight from the specified node to the
+     * node whose weights are specified (toGoal) or from that node to the
+     * specified node (!toGoal). Infinity if there is no such path.
+     */
+    double lowerBound(int node, float[] goalFromLandmark, float[] goalToLandmark, boolean toGoal) {
+        double max = 0;
+        long pointer = (long) node * landmarks * 2;
+        for (int i = 0; i < landmarks; i++, pointer += 2) {
+            float fromLandmark = Float.intBitsToFloat(weights.getInt(pointer));
+            float toLandmark = Float.intBitsToFloat(weights.getInt(pointer + 1));
+            double bound1, bound2;
+            if (toGoal) {
+                bound1 = floorDiff(goalFromLandmark[i], fromLandmark);
+                bound2 = floorDiff(toLandmark, goalToLandmark[i]);
+            } else {
+                bound1 = floorDiff(fromLandmark, goalFromLandmark[i]);
+                bound2 = floorDiff(goalToLandmark[i], toLandmark);
+            }
+            // infinity minus infinity is NaN which is never bigger
+            if (bound1 > max)
+                max = bound1;
+            if (bound2 > max)
+                max = bound2;
+        }
+        return max;
+    }
+
+    /**
+     * Creates an A* which uses the landmarks as heuristic.
+     */
+    @Override public AStar createAlgo() {
+        AStar astar = new AStar(_graph) {
+            private final float[] goalFrom = new float[landmarks];
+            private final float[] goalTo = new float[landmarks];
+            private int goal = -1;
+
+
+            {
+                weightCalc = PrepareLandmarks.this.weightCalc;
+            }
+
+            @Override protected double weightToGoal(int node, int to) {
+                if (to != goal) {
+                    readNode(to, goalFrom, goalTo);
+                    goal = to;
+                }
+                return lowerBound(node, goalFrom, goalTo, true);
+            }
+
+            @Override public RoutingAlgorithm type(WeightCalculation wc) {
+                throw new IllegalStateException("You'll need to change weightCalculation of preparation instead of algorithm!");
+            }
+
+            @Override public String name() {
+                return "astarLM";
+            }
+        };
+        return astar;
+    }
+
+    /**
+     * Creates a bidirectional A* which uses the landmarks as heuristic.
+     */
+    public AStarBidirection createBidirectionalAlgo() {
+        AStarBidirection astar = new AStarBidirection(_graph) {
+            private final float[] fromNodeFrom = new float[landmarks];
+            private final float[] fromNodeTo = new float[landmarks];
+            private final float[] toNodeFrom = new float[landmarks];
+            private final float[] toNodeTo = new float[landmarks];
+            private int fromNode = -1;
+            private int toNode = -1;
+
+
+            {
+                weightCalc = PrepareLandmarks.this.weightCalc;
+            }
+
+            @Override protected double weightToGoal(int node, boolean forward) {
+                if (forward) {
+                    if (to != toNode) {
+                        readNode(to, toNodeFrom, toNodeTo);
+                        toNode = to;
+                    }
+                    return lowerBound(node, toNodeFrom, toNodeTo, true);
+                }
+                if (from != fromNode) {
+                    readNode(from, fromNodeFrom, fromNodeTo);
+                    fromNode = from;
+                }
+                return lowerBound(node, fromNodeFrom, fromNodeTo, false);
+            }
+
+            @Override public boolean checkFinishCondition() {
+                // the landmark estimates are consistent, so the shortest path
+                // is found if one of the smallest estimates exceeds it
+                if (currFrom == null)
+                    return currTo.weight >= shortest.weight();
+                else if (currTo == null)
+                    return currFrom.weight >= shortest.weight();
+                return currFrom.weight >= shortest.weight() || currTo.weight >= shortest.weight();
+            }
+
+            @Override public RoutingAlgorithm type(WeightCalculation wc) {
+                throw new IllegalStateException("You'll need to change weightCalculation of preparation instead of algorithm!");
+            }
+
+            @Override public String name() {
+                return "astarbiLM";
+            }
+        };
+        return astar;
+    }
+}
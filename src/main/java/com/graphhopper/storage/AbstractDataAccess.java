@@ -22,6 +22,7 @@ import com.graphhopper.util.Helper;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
 
 /**
  * @author Peter Karich
@@ -99,7 +100,8 @@ public abstract class AbstractDataAccess implements DataAccess {
         int majorVersion = raFile.readInt();
         if (majorVersion != version())
             throw new IllegalArgumentException("This GraphHopper file has the wrong version! "
-                    + "Expected " + version() + " but was " + majorVersion);
+                    + "Expected " + version() + " but was " + majorVersion
+                    + ". Remove the folder and import the OSM file again.");
         long bytes = raFile.readLong();
         segmentSize(raFile.readInt());
         for (int i = 0; i < header.length; i++) {
@@ -115,12 +117,39 @@ public abstract class AbstractDataAccess implements DataAccess {
         }
         da.ensureCapacity(capacity());
         long max = capacity() / 4;
-        for (long l = 0; l < max; l++) {
-            da.setInt(l, getInt(l));
-        }        
+        if (!(da instanceof AbstractDataAccess)) {
+            for (long l = 0; l < max; l++) {
+                da.setInt(l, getInt(l));
+            }
+            return da;
+        }
+
+        // copy segment by segment in bulk, the segment sizes can differ
+        AbstractDataAccess ada = (AbstractDataAccess) da;
+        int fromInts = segmentSizeInBytes / 4;
+        int toInts = ada.segmentSizeInBytes / 4;
+        long pos = 0;
+        while (pos < max) {
+            IntBuffer from = segmentInts((int) (pos / fromInts));
+            from.position((int) (pos % fromInts));
+            IntBuffer to = ada.segmentInts((int) (pos / toInts));
+            to.position((int) (pos % toInts));
+            int len = (int) Math.min(max - pos, Math.min(from.remaining(), to.remaining()));
+            if (len <= 0)
+                break;
+            from.limit(from.position() + len);
+            to.put(from);
+            pos += len;
+        }
         return da;
     }
 
+    /**
+     * @return a view of the specified segment with its own position and limit
+     * for bulk operations
+     */
+    protected abstract IntBuffer segmentInts(int segment);
+
     @Override
     public DataAccess segmentSize(int bytes) {
         int tmp = (int) (Math.log(bytes) / Math.log(2));
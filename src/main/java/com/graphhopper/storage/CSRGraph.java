@@ -0,0 +1,456 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.util.CarStreetType;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeSkipIterator;
+import com.graphhopper.util.GraphUtility;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.RawEdgeIterator;
+import com.graphhopper.util.shapes.BBox;
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * A read only graph in compressed sparse row format. The edges of a node are
+ * stored in one contiguous slice of the adjacency array, ordered as outgoing
+ * only, both directions, incoming only and no direction. So getOutgoing,
+ * getIncoming and getEdges iterate a sub range without following links or
+ * skipping edges. Create it from a graph which won't be changed anymore e.g.
+ * after optimize or the preparation. Node and edge ids stay the same.
+ *
+ * An adjacency entry is only the edge id. The edge stores nodeA xor nodeB,
+ * so the adjacent node is computed from the base node, and the flags are
+ * packed into the unused upper bits if possible. The geometry and skipped
+ * edge columns only exist if the graph needs them. Without geometry this is
+ * 4 instead of 7 integers per edge compared to the linked list of
+ * GraphStorage.
+ *
+ * @author Peter Karich
+ */
+public class CSRGraph implements LevelGraph {
+
+    // distance of around +-1000 000 meter are ok, see GraphStorage
+    private static final double INT_DIST_FACTOR = 1000;
+    // edge memory layout: nodeA^nodeB[|flags],dist[,flags][,geometryRef][,skippedEdge]
+    private static final int E_NODES = 0, E_DIST = 1;
+    // node offsets: start of outgoing only, both, incoming only and no direction edges
+    private static final int O_OUT = 0, O_BOTH = 1, O_IN = 2, O_NONE = 3, OFFSETS = 4;
+    private final int nodeCount;
+    private final int[] latLon;
+    private final int[] levels;
+    private final int[] offsets;
+    private final int[] adjacency;
+    private final int edgeEntrySize;
+    // -1 if the column does not exist
+    private final int E_FLAGS, E_GEO, E_SKIP;
+    private final int nodeBits;
+    private final int nodeMask;
+    private final int[] edges;
+    private final int[] geometry;
+    private final int edgeCount;
+    private final BBox bounds;
+
+    /**
+     * Copies the specified graph. If it is a LevelGraph the levels and the
+     * skipped edges are copied as well.
+     */
+    public CSRGraph(Graph g) {
+        nodeCount = g.nodes();
+        bounds = g.bounds().clone();
+        latLon = new int[nodeCount * 2];
+        boolean level = g instanceof LevelGraph;
+        levels = level ? new int[nodeCount] : null;
+        offsets = new int[nodeCount * OFFSETS + 1];
+
+        int maxEdge = 0;
+        int maxFlags = 0;
+        boolean geo = false;
+        RawEdgeIterator allIter = g.allEdges();
+        while (allIter.next()) {
+            maxEdge = Math.max(maxEdge, allIter.edge());
+            // negative flags need all bits
+            if (maxFlags >= 0)
+                maxFlags = allIter.flags() < 0 ? -1 : Math.max(maxFlags, allIter.flags());
+            if (!geo && !g.getEdgeProps(allIter.edge(), allIter.nodeB()).wayGeometry().isEmpty())
+                geo = true;
+        }
+        // xor of two nodes is smaller than the next power of two
+        nodeBits = 32 - Integer.numberOfLeadingZeros(Math.max(1, nodeCount - 1));
+        nodeMask = nodeBits == 32 ? -1 : (1 << nodeBits) - 1;
+        int flagBits = maxFlags < 0 ? 32 : 32 - Integer.numberOfLeadingZeros(maxFlags);
+        int size = E_DIST + 1;
+        E_FLAGS = nodeBits + flagBits <= 32 ? -1 : size++;
+        E_GEO = geo ? size++ : -1;
+        E_SKIP = level ? size++ : -1;
+        edgeEntrySize = size;
+
+        int entries = 0;
+        int[] tmpEdges = new int[(maxEdge + 1) * edgeEntrySize];
+        TIntArrayList tmpAdjacency = new TIntArrayList(maxEdge * 2);
+        TIntArrayList tmpGeometry = new TIntArrayList();
+        // 0 stands for no geometry
+        tmpGeometry.add(0);
+        TIntArrayList[] groups = new TIntArrayList[O_NONE + 1];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = new TIntArrayList();
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            latLon[node * 2] = Helper.degreeToInt(g.getLatitude(node));
+            latLon[node * 2 + 1] = Helper.degreeToInt(g.getLongitude(node));
+            if (level)
+                levels[node] = ((LevelGraph) g).getLevel(node);
+
+            for (int i = 0; i < groups.length; i++) {
+                groups[i].resetQuick();
+            }
+            EdgeIterator iter = g.getEdges(node);
+            while (iter.next()) {
+                int edge = iter.edge();
+                int flags = iter.flags();
+                boolean fwd = CarStreetType.isForward(flags);
+                boolean bwd = CarStreetType.isBackward(flags);
+                if (fwd && bwd)
+                    groups[O_BOTH].add(edge);
+                else if (fwd)
+                    groups[O_OUT].add(edge);
+                else if (bwd)
+                    groups[O_IN].add(edge);
+                else
+                    groups[O_NONE].add(edge);
+
+                // store every edge from its smaller node, see GraphStorage.writeEdge
+                int adjNode = iter.node();
+                if (node > adjNode)
+                    continue;
+                int pointer = edge * edgeEntrySize;
+                if (E_FLAGS < 0) {
+                    tmpEdges[pointer + E_NODES] = flags << nodeBits | node ^ adjNode;
+                } else {
+                    tmpEdges[pointer + E_NODES] = node ^ adjNode;
+                    tmpEdges[pointer + E_FLAGS] = flags;
+                }
+                tmpEdges[pointer + E_DIST] = (int) Math.round(iter.distance() * INT_DIST_FACTOR);
+                if (level)
+                    tmpEdges[pointer + E_SKIP] = ((EdgeSkipIterator) iter).skippedEdge();
+                if (!geo)
+                    continue;
+                PointList pillars = iter.wayGeometry();
+                if (!pillars.isEmpty()) {
+                    tmpEdges[pointer + E_GEO] = tmpGeometry.size();
+                    tmpGeometry.add(pillars.size());
+                    for (int i = 0; i < pillars.size(); i++) {
+                        tmpGeometry.add(Helper.degreeToInt(pillars.latitude(i)));
+                        tmpGeometry.add(Helper.degreeToInt(pillars.longitude(i)));
+                    }
+                }
+            }
+
+            for (int i = 0; i < groups.length; i++) {
+                offsets[node * OFFSETS + i] = entries;
+                tmpAdjacency.addAll(groups[i]);
+                entries += groups[i].size();
+            }
+        }
+        offsets[nodeCount * OFFSETS] = entries;
+        adjacency = tmpAdjacency.toArray();
+        edges = tmpEdges;
+        edgeCount = maxEdge;
+        geometry = tmpGeometry.toArray();
+    }
+
+    @Override public int nodes() {
+        return nodeCount;
+    }
+
+    @Override public double getLatitude(int node) {
+        return Helper.intToDegree(latLon[node * 2]);
+    }
+
+    @Override public double getLongitude(int node) {
+        return Helper.intToDegree(latLon[node * 2 + 1]);
+    }
+
+    @Override public int getLevel(int node) {
+        return levels == null ? 0 : levels[node];
+    }
+
+    @Override public BBox bounds() {
+        return bounds;
+    }
+
+    @Override public EdgeSkipIterator getEdges(int node) {
+        return new CSREdgeIterator(node, offsets[node * OFFSETS + O_OUT], offsets[(node + 1) * OFFSETS + O_OUT]);
+    }
+
+    @Override public EdgeSkipIterator getIncoming(int node) {
+        return new CSREdgeIterator(node, offsets[node * OFFSETS + O_BOTH], offsets[node * OFFSETS + O_NONE]);
+    }
+
+    @Override public EdgeSkipIterator getOutgoing(int node) {
+        return new CSREdgeIterator(node, offsets[node * OFFSETS + O_OUT], offsets[node * OFFSETS + O_IN]);
+    }
+
+    @Override public EdgeSkipIterator getEdgeProps(int edgeId, int endNode) {
+        if (edgeId < 1 || edgeId > edgeCount)
+            throw new IllegalStateException("edgeId " + edgeId + " out of bounds [0," + edgeCount + "]");
+        if (endNode < 0)
+            throw new IllegalStateException("endNode " + endNode + " out of bounds [0," + nodeCount + "]");
+        if (endNode >= nodeCount || position(endNode, edgeId) < 0)
+            return GraphUtility.EMPTY;
+        int baseNode = adjNode(edgeId * edgeEntrySize, endNode);
+        CSREdgeIterator iter = new CSREdgeIterator(baseNode, 0, 0);
+        iter.read(edgeId);
+        return iter;
+    }
+
+    /**
+     * @return the first position of the edge in the adjacency slice of the
+     * node or -1
+     */
+    private int position(int node, int edgeId) {
+        int end = offsets[(node + 1) * OFFSETS + O_OUT];
+        for (int pos = offsets[node * OFFSETS + O_OUT]; pos < end; pos++) {
+            if (adjacency[pos] == edgeId)
+                return pos;
+        }
+        return -1;
+    }
+
+    private int adjNode(int pointer, int node) {
+        return edges[pointer + E_NODES] & nodeMask ^ node;
+    }
+
+    private int flags(int pointer) {
+        if (E_FLAGS < 0)
+            return edges[pointer + E_NODES] >>> nodeBits;
+        return edges[pointer + E_FLAGS];
+    }
+
+    @Override public RawEdgeIterator allEdges() {
+        // the edge ids are not stored in order, so iterate the adjacency
+        // slices and return every edge from its smaller node
+        return new RawEdgeIterator() {
+            int nodeA = -1;
+            int nodeB;
+            int pos = 0;
+            int end = 0;
+            int edge;
+            int pointer;
+
+            @Override public boolean next() {
+                while (true) {
+                    while (pos >= end) {
+                        if (++nodeA >= nodeCount)
+                            return false;
+                        pos = offsets[nodeA * OFFSETS + O_OUT];
+                        end = offsets[(nodeA + 1) * OFFSETS + O_OUT];
+                    }
+                    edge = adjacency[pos];
+                    pointer = edge * edgeEntrySize;
+                    nodeB = adjNode(pointer, nodeA);
+                    pos++;
+                    // a loop is in the slice twice
+                    if (nodeA < nodeB || nodeA == nodeB && position(nodeA, edge) == pos - 1)
+                        return true;
+                }
+            }
+
+            @Override public int nodeA() {
+                return nodeA;
+            }
+
+            @Override public int nodeB() {
+                return nodeB;
+            }
+
+            @Override public double distance() {
+                return edges[pointer + E_DIST] / INT_DIST_FACTOR;
+            }
+
+            @Override public void distance(double dist) {
+                throw new UnsupportedOperationException("read only graph");
+            }
+
+            @Override public int flags() {
+                return CSRGraph.this.flags(pointer);
+            }
+
+            @Override public void flags(int flags) {
+                throw new UnsupportedOperationException("read only graph");
+            }
+
+            @Override public int edge() {
+                return edge;
+            }
+
+            @Override public boolean isEmpty() {
+                return false;
+            }
+        };
+    }
+
+    private class CSREdgeIterator implements EdgeSkipIterator {
+
+        private final int baseNode;
+        private int pos;
+        private final int end;
+        private int edge;
+        private int pointer;
+        private int node;
+        private int flags;
+
+        CSREdgeIterator(int baseNode, int start, int end) {
+            this.baseNode = baseNode;
+            this.pos = start;
+            this.end = end;
+        }
+
+        @Override public boolean next() {
+            if (pos >= end)
+                return false;
+            read(adjacency[pos]);
+            pos++;
+            return true;
+        }
+
+        void read(int edgeId) {
+            edge = edgeId;
+            pointer = edgeId * edgeEntrySize;
+            node = adjNode(pointer, baseNode);
+            flags = CSRGraph.this.flags(pointer);
+            if (baseNode > node)
+                flags = CarStreetType.swapDirection(flags);
+        }
+
+        @Override public int edge() {
+            return edge;
+        }
+
+        @Override public int baseNode() {
+            return baseNode;
+        }
+
+        @Override public int node() {
+            return node;
+        }
+
+        @Override public double distance() {
+            return edges[pointer + E_DIST] / INT_DIST_FACTOR;
+        }
+
+        @Override public int flags() {
+            return flags;
+        }
+
+        @Override public int skippedEdge() {
+            return E_SKIP < 0 ? EdgeIterator.NO_EDGE : edges[pointer + E_SKIP];
+        }
+
+        @Override public PointList wayGeometry() {
+            PointList pillarNodes = new PointList(E_GEO < 0 ? 0 : geometry[edges[pointer + E_GEO]]);
+            copyWayGeometry(pillarNodes, false);
+            return pillarNodes;
+        }
+
+        @Override public void copyWayGeometry(PointList target, boolean reverse) {
+            if (E_GEO < 0)
+                return;
+            int geoRef = edges[pointer + E_GEO];
+            int count = geometry[geoRef];
+            if (baseNode > node != reverse) {
+                for (int i = count - 1; i >= 0; i--) {
+                    target.add(Helper.intToDegree(geometry[geoRef + i * 2 + 1]),
+                            Helper.intToDegree(geometry[geoRef + i * 2 + 2]));
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    target.add(Helper.intToDegree(geometry[geoRef + i * 2 + 1]),
+                            Helper.intToDegree(geometry[geoRef + i * 2 + 2]));
+                }
+            }
+        }
+
+        @Override public boolean isEmpty() {
+            return false;
+        }
+
+        @Override public void wayGeometry(PointList list) {
+            throw new UnsupportedOperationException("read only graph");
+        }
+
+        @Override public void distance(double dist) {
+            throw new UnsupportedOperationException("read only graph");
+        }
+
+        @Override public void flags(int flags) {
+            throw new UnsupportedOperationException("read only graph");
+        }
+
+        @Override public void skippedEdge(int edgeId) {
+            throw new UnsupportedOperationException("read only graph");
+        }
+    }
+
+    @Override public void setNode(int node, double lat, double lon) {
+        throw new UnsupportedOperationException("read only graph");
+    }
+
+    @Override public void setLevel(int node, int level) {
+        throw new UnsupportedOperationException("read only graph");
+    }
+
+    @Override public EdgeSkipIterator edge(int a, int b, double distance, int flags) {
+        throw new UnsupportedOperationException("read only graph");
+    }
+
+    @Override public EdgeSkipIterator edge(int a, int b, double distance, boolean bothDirections) {
+        throw new UnsupportedOperationException("read only graph");
+    }
+
+    @Override public void markNodeRemoved(int node) {
+        throw new UnsupportedOperationException("read only graph");
+    }
+
+    @Override public boolean isNodeRemoved(int node) {
+        return false;
+    }
+
+    @Override public void optimize() {
+        // nothing to do as the graph is already compact
+    }
+
+    @Override public Graph copyTo(Graph g) {
+        return GraphUtility.copyTo(this, g);
+    }
+
+    /**
+     * @return the number of bytes used for nodes, edges and geometry
+     */
+    public long capacity() {
+        return 4L * (latLon.length + (levels == null ? 0 : levels.length) + offsets.length
+                + adjacency.length + edges.length + geometry.length);
+    }
+
+    @Override public String toString() {
+        return "edges:" + edgeCount + ", nodes:" + nodeCount + ", geo:" + geometry.length
+                + ", capacity:" + capacity() / Helper.MB + "MB, bounds:" + bounds;
+    }
+}
@@ -555,17 +555,26 @@ public class GraphStorage implements Graph, Storable {
         }
 
         @Override public PointList wayGeometry() {
+            PointList pillarNodes = new PointList(geometry.getInt(edges.getInt(edgePointer + E_GEO)));
+            copyWayGeometry(pillarNodes, false);
+            return pillarNodes;
+        }
+
+        @Override public void copyWayGeometry(PointList target, boolean reverse) {
             final int geoRef = edges.getInt(edgePointer + E_GEO);
             final int count = geometry.getInt(geoRef);
-            PointList pillarNodes = new PointList(count);
-            for (int i = 0; i < count; i++) {
-                double lat = Helper.intToDegree(geometry.getInt(geoRef + i * 2 + 1));
-                double lon = Helper.intToDegree(geometry.getInt(geoRef + i * 2 + 2));
-                pillarNodes.add(lat, lon);
+            // the geometry is stored from the smaller to the bigger node
+            if (baseNode > node != reverse) {
+                for (int i = count - 1; i >= 0; i--) {
+                    target.add(Helper.intToDegree(geometry.getInt(geoRef + i * 2 + 1)),
+                            Helper.intToDegree(geometry.getInt(geoRef + i * 2 + 2)));
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    target.add(Helper.intToDegree(geometry.getInt(geoRef + i * 2 + 1)),
+                            Helper.intToDegree(geometry.getInt(geoRef + i * 2 + 2)));
+                }
             }
-            if (baseNode > node)
-                pillarNodes.reverse();
-            return pillarNodes;
         }
 
         @Override public int edge() {
@@ -789,6 +798,125 @@ public class GraphStorage implements Graph, Storable {
         removedNodes = null;
     }
 
+    /**
+     * Renumbers the nodes with the specified mapping from old to new node ids.
+     * The edges are renumbered in the order of their new nodes and the way
+     * geometry is rewritten in the order of the new edges, so that nodes with
+     * close ids have their edges and geometry close in memory too. Unused
+     * edges are dropped. Call this after optimize and before preparing the
+     * graph as all node and edge ids change.
+     */
+    public void sortNodes(int[] oldToNewNodes) {
+        if (oldToNewNodes.length != nodeCount)
+            throw new IllegalArgumentException("mapping has to contain all " + nodeCount + " nodes but was "
+                    + oldToNewNodes.length);
+        if (removedNodes != null && removedNodes.cardinality() > 0)
+            throw new IllegalStateException("Call optimize before sorting the nodes");
+
+        int[] newToOldNodes = new int[nodeCount];
+        for (int newNode = 0; newNode < nodeCount; newNode++) {
+            newToOldNodes[newNode] = -1;
+        }
+        for (int oldNode = 0; oldNode < nodeCount; oldNode++) {
+            int newNode = oldToNewNodes[oldNode];
+            if (newNode < 0 || newNode >= nodeCount || newToOldNodes[newNode] >= 0)
+                throw new IllegalArgumentException("mapping is not a permutation at node " + oldNode);
+            newToOldNodes[newNode] = oldNode;
+        }
+
+        // number the edges in the order of the new nodes, EMPTY_LINK maps to itself
+        int[] oldToNewEdges = new int[edgeCount + 1];
+        int[] newToOldEdges = new int[edgeCount + 1];
+        int newEdgeCount = 0;
+        for (int newNode = 0; newNode < nodeCount; newNode++) {
+            int oldNode = newToOldNodes[newNode];
+            int edge = nodes.getInt((long) oldNode * nodeEntrySize + N_EDGE_REF);
+            while (edge != EMPTY_LINK) {
+                if (oldToNewEdges[edge] == EMPTY_LINK) {
+                    newEdgeCount++;
+                    oldToNewEdges[edge] = newEdgeCount;
+                    newToOldEdges[newEdgeCount] = edge;
+                }
+                long edgePointer = (long) edge * edgeEntrySize;
+                edge = edges.getInt(getLinkPosInEdgeArea(oldNode, getOtherNode(oldNode, edgePointer), edgePointer));
+            }
+        }
+
+        // write the sorted areas into temporary areas of the same directory, so
+        // that e.g. a memory mapped graph does not need the heap, and copy them back
+        DataAccess newEdges = dir.findCreate("tmpSortEdges").segmentSize(edges.segmentSize());
+        newEdges.createNew((long) (newEdgeCount + 1) * edgeEntrySize * 4);
+        DataAccess newGeometry = dir.findCreate("tmpSortGeometry").segmentSize(geometry.segmentSize());
+        newGeometry.createNew((long) maxGeoRef * 4);
+        int newMaxGeoRef = 1;
+        for (int newEdge = 1; newEdge <= newEdgeCount; newEdge++) {
+            long oldPointer = (long) newToOldEdges[newEdge] * edgeEntrySize;
+            long newPointer = (long) newEdge * edgeEntrySize;
+            for (int j = 0; j < edgeEntrySize; j++) {
+                newEdges.setInt(newPointer + j, edges.getInt(oldPointer + j));
+            }
+
+            int nodeA = oldToNewNodes[edges.getInt(oldPointer + E_NODEA)];
+            int nodeB = oldToNewNodes[edges.getInt(oldPointer + E_NODEB)];
+            int linkA = oldToNewEdges[edges.getInt(oldPointer + E_LINKA)];
+            int linkB = oldToNewEdges[edges.getInt(oldPointer + E_LINKB)];
+            int flags = edges.getInt(oldPointer + E_FLAGS);
+            // keep nodeA <= nodeB, see writeEdge
+            boolean swap = nodeA > nodeB;
+            if (swap) {
+                int tmp = nodeA;
+                nodeA = nodeB;
+                nodeB = tmp;
+                tmp = linkA;
+                linkA = linkB;
+                linkB = tmp;
+                flags = CarStreetType.swapDirection(flags);
+            }
+            newEdges.setInt(newPointer + E_NODEA, nodeA);
+            newEdges.setInt(newPointer + E_NODEB, nodeB);
+            newEdges.setInt(newPointer + E_LINKA, linkA);
+            newEdges.setInt(newPointer + E_LINKB, linkB);
+            newEdges.setInt(newPointer + E_FLAGS, flags);
+
+            // the geometry is stored in the direction from nodeA to nodeB
+            int geoRef = edges.getInt(oldPointer + E_GEO);
+            if (geoRef == EMPTY_LINK)
+                continue;
+            int count = geometry.getInt(geoRef);
+            newGeometry.ensureCapacity(((long) newMaxGeoRef + count * 2 + 1) * 4);
+            newGeometry.setInt(newMaxGeoRef, count);
+            for (int i = 0; i < count; i++) {
+                int oldPos = geoRef + (swap ? count - 1 - i : i) * 2 + 1;
+                int newPos = newMaxGeoRef + i * 2 + 1;
+                newGeometry.setInt(newPos, geometry.getInt(oldPos));
+                newGeometry.setInt(newPos + 1, geometry.getInt(oldPos + 1));
+            }
+            newEdges.setInt(newPointer + E_GEO, newMaxGeoRef);
+            newMaxGeoRef += count * 2 + 1;
+        }
+
+        DataAccess newNodes = dir.findCreate("tmpSortNodes").segmentSize(nodes.segmentSize());
+        newNodes.createNew((long) nodeCount * nodeEntrySize * 4);
+        for (int newNode = 0; newNode < nodeCount; newNode++) {
+            long oldPointer = (long) newToOldNodes[newNode] * nodeEntrySize;
+            long newPointer = (long) newNode * nodeEntrySize;
+            for (int j = 0; j < nodeEntrySize; j++) {
+                newNodes.setInt(newPointer + j, nodes.getInt(oldPointer + j));
+            }
+            newNodes.setInt(newPointer + N_EDGE_REF, oldToNewEdges[nodes.getInt(oldPointer + N_EDGE_REF)]);
+        }
+
+        newEdges.copyTo(edges);
+        newGeometry.copyTo(geometry);
+        newNodes.copyTo(nodes);
+        for (DataAccess da : new DataAccess[]{newEdges, newGeometry, newNodes}) {
+            da.close();
+            dir.remove(da);
+        }
+        edgeCount = newEdgeCount;
+        maxGeoRef = newMaxGeoRef;
+    }
+
     @Override
     public boolean loadExisting() {
         if (edges.loadExisting()) {
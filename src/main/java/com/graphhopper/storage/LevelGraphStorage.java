@@ -28,8 +28,15 @@ import com.graphhopper.util.EdgeSkipIterator;
  */
 public class LevelGraphStorage extends GraphStorage implements LevelGraph {
 
+    // the edges header 0 and 1 are used by GraphStorage
+    private static final int H_CH_PREPARED = 2;
+    private static final int H_CH_WEIGHTING = 3;
+    private static final int H_CH_SHORTCUTS = 4;
     private final int I_SKIP_EDGE;
     private final int I_LEVEL;
+    private boolean chPrepared;
+    private int chWeighting;
+    private int chShortcuts;
 
     public LevelGraphStorage(Directory dir) {
         super(dir);
@@ -48,6 +55,57 @@ public class LevelGraphStorage extends GraphStorage implements LevelGraph {
         return nodes.getInt((long) index * nodeEntrySize + I_LEVEL);
     }
 
+    /**
+     * Marks this graph as prepared for contraction hierarchies with the
+     * specified weighting. This is stored on flush.
+     */
+    public void chPrepared(String weighting, int shortcuts) {
+        chPrepared = true;
+        chWeighting = weighting.hashCode();
+        chShortcuts = shortcuts;
+    }
+
+    public boolean isCHPrepared() {
+        return chPrepared;
+    }
+
+    /**
+     * @return true if the graph was prepared with the specified weighting
+     */
+    public boolean isCHWeighting(String weighting) {
+        return chPrepared && chWeighting == weighting.hashCode();
+    }
+
+    /**
+     * @return the number of shortcuts added by the preparation
+     */
+    public int chShortcuts() {
+        return chShortcuts;
+    }
+
+    @Override public void sortNodes(int[] oldToNewNodes) {
+        // the skipped edges of shortcuts are not renumbered
+        if (chPrepared)
+            throw new IllegalStateException("Sort the graph before preparing it for contraction hierarchies");
+        super.sortNodes(oldToNewNodes);
+    }
+
+    @Override public boolean loadExisting() {
+        if (!super.loadExisting())
+            return false;
+        chPrepared = edges.getHeader(H_CH_PREPARED) == 1;
+        chWeighting = edges.getHeader(H_CH_WEIGHTING);
+        chShortcuts = edges.getHeader(H_CH_SHORTCUTS);
+        return true;
+    }
+
+    @Override public void flush() {
+        edges.setHeader(H_CH_PREPARED, chPrepared ? 1 : 0);
+        edges.setHeader(H_CH_WEIGHTING, chWeighting);
+        edges.setHeader(H_CH_SHORTCUTS, chShortcuts);
+        super.flush();
+    }
+
     @Override protected GraphStorage newThis(Directory dir) {
         return new LevelGraphStorage(dir);
     }
@@ -0,0 +1,422 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.DistanceCosProjection;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeSkipIterator;
+import com.graphhopper.util.GraphUtility;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.RawEdgeIterator;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.BBox;
+import gnu.trove.set.hash.TIntHashSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index which snaps a point to the closest edge instead of the closest node.
+ * The bounds of the graph are divided into a grid and every cell stores the
+ * edges where one of its segments (including the pillar nodes) crosses the
+ * cell. A query then checks the cells in growing rings around the point until
+ * no closer segment can be found.
+ *
+ * The index is stored in one DataAccess: the start of every cell followed by
+ * the edge entries. An entry consists of the edge id and its node with the
+ * bigger id so that the edge can be fetched via getEdgeProps.
+ *
+ * @author Peter Karich
+ */
+public class Location2IDEdgeIndex implements Location2IDIndex {
+
+    private final static int MAGIC_INT = Integer.MAX_VALUE / 22316;
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private DistanceCalc calc = new DistanceCalc();
+    private final Graph g;
+    private final DataAccess index;
+    private int latSize, lonSize;
+    private double minLat, minLon, latDelta, lonDelta;
+
+    public Location2IDEdgeIndex(Graph g, Directory dir) {
+        this.g = g;
+        index = dir.findCreate("loc2idEdgeIndex");
+    }
+
+    @Override
+    public Location2IDIndex precision(boolean approxDist) {
+        if (approxDist)
+            calc = new DistanceCosProjection();
+        else
+            calc = new DistanceCalc();
+        return this;
+    }
+
+    /**
+     * Loads the index from disc if exists. Make sure you are using the
+     * identical graph which was used while flusing this index.
+     *
+     * @return if loading from file was successfully.
+     */
+    public boolean loadExisting() {
+        if (index.loadExisting()) {
+            if (index.getHeader(0) != MAGIC_INT)
+                throw new IllegalStateException("incorrect loc2id edge index version");
+            int checksum = index.getHeader(3);
+            if (checksum != g.nodes())
+                throw new IllegalStateException("index was created from a different graph with "
+                        + checksum + ". Current nodes:" + g.nodes());
+            initGrid(index.getHeader(1), index.getHeader(2));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param capacity the number of cells. Every cell needs 4 bytes and every
+     * edge 8 bytes per crossed cell.
+     */
+    @Override
+    public Location2IDIndex prepareIndex(int capacity) {
+        if (g.nodes() <= 0)
+            throw new IllegalStateException("check your graph - it is empty!");
+        StopWatch sw = new StopWatch().start();
+        int lat = (int) Math.sqrt(capacity);
+        int lon = lat;
+        if (lat * lon < capacity)
+            lon++;
+        initGrid(lat, lon);
+
+        // first count the entries of every cell then fill them
+        int cells = latSize * lonSize;
+        final int[] starts = new int[cells + 1];
+        final int[] lastEdge = new int[cells];
+        forEachCell(new CellVisitor() {
+            @Override public void next(int cell, int edge, int node) {
+                if (lastEdge[cell] != edge) {
+                    lastEdge[cell] = edge;
+                    starts[cell + 1]++;
+                }
+            }
+        });
+        for (int i = 0; i < cells; i++) {
+            starts[i + 1] += starts[i];
+            lastEdge[i] = 0;
+        }
+        int entries = starts[cells];
+        index.createNew(4L * (cells + 1 + 2L * entries));
+        for (int i = 0; i <= cells; i++) {
+            index.setInt(i, starts[i]);
+        }
+        final int offset = cells + 1;
+        forEachCell(new CellVisitor() {
+            @Override public void next(int cell, int edge, int node) {
+                if (lastEdge[cell] != edge) {
+                    lastEdge[cell] = edge;
+                    long pos = offset + 2L * starts[cell]++;
+                    index.setInt(pos, edge);
+                    index.setInt(pos + 1, node);
+                }
+            }
+        });
+        logger.info("created edge index with " + cells + " cells and " + entries + " entries in "
+                + sw.stop().getSeconds() + "s");
+        return this;
+    }
+
+    private void initGrid(int lat, int lon) {
+        latSize = lat;
+        lonSize = lon;
+        BBox b = g.bounds();
+        minLat = b.minLat;
+        minLon = b.minLon;
+        // avoid a zero width for a graph with only one row or column of nodes
+        latDelta = Math.max(b.maxLat - b.minLat, 1e-6) / latSize;
+        lonDelta = Math.max(b.maxLon - b.minLon, 1e-6) / lonSize;
+    }
+
+    interface CellVisitor {
+
+        void next(int cell, int edge, int node);
+    }
+
+    /**
+     * Calls the visitor for every cell crossed by a segment of an edge. The
+     * segments of one edge are visited one after another.
+     */
+    private void forEachCell(CellVisitor visitor) {
+        PointList points = new PointList();
+        RawEdgeIterator iter = g.allEdges();
+        while (iter.next()) {
+            int edge = iter.edge();
+            int nodeB = iter.nodeB();
+            EdgeIterator e = g.getEdgeProps(edge, nodeB);
+            // shortcuts have no own geometry
+            if (e instanceof EdgeSkipIterator && EdgeIterator.Edge.isValid(((EdgeSkipIterator) e).skippedEdge()))
+                continue;
+            fillPoints(e, points);
+            for (int i = 1; i < points.size(); i++) {
+                addSegment(visitor, edge, nodeB, points.latitude(i - 1), points.longitude(i - 1),
+                        points.latitude(i), points.longitude(i));
+            }
+        }
+    }
+
+    private void addSegment(CellVisitor visitor, int edge, int node,
+            double lat1, double lon1, double lat2, double lon2) {
+        int y1 = latIndex(lat1);
+        int y2 = latIndex(lat2);
+        if (y1 > y2) {
+            int tmp = y1;
+            y1 = y2;
+            y2 = tmp;
+        }
+        for (int y = y1; y <= y2; y++) {
+            // the part of the segment within this row
+            double fromLon = lon1, toLon = lon2;
+            if (y1 != y2) {
+                double rowMin = Math.max(minLat + y * latDelta, Math.min(lat1, lat2));
+                double rowMax = Math.min(minLat + (y + 1) * latDelta, Math.max(lat1, lat2));
+                fromLon = lon1 + (lon2 - lon1) * (rowMin - lat1) / (lat2 - lat1);
+                toLon = lon1 + (lon2 - lon1) * (rowMax - lat1) / (lat2 - lat1);
+            }
+            int x1 = lonIndex(Math.min(fromLon, toLon));
+            int x2 = lonIndex(Math.max(fromLon, toLon));
+            for (int x = x1; x <= x2; x++) {
+                visitor.next(y * lonSize + x, edge, node);
+            }
+        }
+    }
+
+    private int latIndex(double lat) {
+        return Math.max(0, Math.min(latSize - 1, (int) Math.floor((lat - minLat) / latDelta)));
+    }
+
+    private int lonIndex(double lon) {
+        return Math.max(0, Math.min(lonSize - 1, (int) Math.floor((lon - minLon) / lonDelta)));
+    }
+
+    private void fillPoints(EdgeIterator iter, PointList points) {
+        points.clear();
+        points.add(g.getLatitude(iter.baseNode()), g.getLongitude(iter.baseNode()));
+        iter.copyWayGeometry(points, false);
+        points.add(g.getLatitude(iter.node()), g.getLongitude(iter.node()));
+    }
+
+    /**
+     * @return the tower node of the closest edge which is closer to the
+     * snapped point or -1 if the graph has no edges
+     */
+    @Override
+    public int findID(double lat, double lon) {
+        Snap snap = findClosest(lat, lon);
+        return snap == null ? -1 : snap.closestNode();
+    }
+
+    /**
+     * @return the closest edge and the point on it which is closest to the
+     * specified point or null if the graph has no edges
+     */
+    public Snap findClosest(double lat, double lon) {
+        int cy = latIndex(lat);
+        int cx = lonIndex(lon);
+        int offset = latSize * lonSize + 1;
+        PointList points = new PointList();
+        TIntHashSet checked = new TIntHashSet();
+        Snap snap = new Snap();
+        double bestNormedDist = Double.MAX_VALUE;
+        for (int r = 0;; r++) {
+            int minY = cy - r, maxY = cy + r, minX = cx - r, maxX = cx + r;
+            for (int y = Math.max(0, minY); y <= Math.min(latSize - 1, maxY); y++) {
+                // inner rows only need the first and the last cell of the ring
+                int step = y == minY || y == maxY ? 1 : Math.max(1, maxX - minX);
+                for (int x = minX; x <= maxX; x += step) {
+                    if (x < 0 || x >= lonSize)
+                        continue;
+                    int cell = y * lonSize + x;
+                    int end = index.getInt(cell + 1);
+                    for (int i = index.getInt(cell); i < end; i++) {
+                        int edge = index.getInt(offset + 2L * i);
+                        if (!checked.add(edge))
+                            continue;
+                        EdgeIterator iter = g.getEdgeProps(edge, index.getInt(offset + 2L * i + 1));
+                        fillPoints(iter, points);
+                        double d = closestPoint(lat, lon, points, bestNormedDist, snap);
+                        if (d < bestNormedDist) {
+                            bestNormedDist = d;
+                            snap.edge = edge;
+                            snap.baseNode = iter.baseNode();
+                            snap.adjNode = iter.node();
+                        }
+                    }
+                }
+            }
+
+            // a segment outside of the searched cells is at least this far away
+            double bound = Double.MAX_VALUE;
+            double latFactor = DistanceCalc.R * Math.PI / 180;
+            double lonFactor = latFactor * Math.cos(Math.toRadians(lat));
+            if (minY > 0)
+                bound = Math.min(bound, (lat - (minLat + minY * latDelta)) * latFactor);
+            if (maxY < latSize - 1)
+                bound = Math.min(bound, (minLat + (maxY + 1) * latDelta - lat) * latFactor);
+            if (minX > 0)
+                bound = Math.min(bound, (lon - (minLon + minX * lonDelta)) * lonFactor);
+            if (maxX < lonSize - 1)
+                bound = Math.min(bound, (minLon + (maxX + 1) * lonDelta - lon) * lonFactor);
+            if (bound == Double.MAX_VALUE)
+                break;
+            if (bestNormedDist < Double.MAX_VALUE && bestNormedDist <= calc.calcNormalizedDist(Math.max(0, bound)))
+                break;
+        }
+        if (bestNormedDist == Double.MAX_VALUE)
+            return null;
+
+        // pick the tower node which is closer along the edge
+        snap.distance = calc.calcDenormalizedDist(bestNormedDist);
+        fillPoints(g.getEdgeProps(snap.edge, snap.adjNode), points);
+        double toSnap = 0, total = 0;
+        for (int i = 1; i < points.size(); i++) {
+            double segment = calc.calcDist(points.latitude(i - 1), points.longitude(i - 1),
+                    points.latitude(i), points.longitude(i));
+            if (i <= snap.segment)
+                toSnap += segment;
+            total += segment;
+        }
+        toSnap += calc.calcDist(points.latitude(snap.segment), points.longitude(snap.segment), snap.lat, snap.lon);
+        snap.closestNode = toSnap <= total - toSnap ? snap.baseNode : snap.adjNode;
+        return snap;
+    }
+
+    /**
+     * Projects the point onto every segment and updates the snapped point of
+     * the specified snap if closer than maxNormedDist.
+     *
+     * @return the smallest normalized distance to the segments
+     */
+    private double closestPoint(double lat, double lon, PointList points, double maxNormedDist, Snap snap) {
+        double best = Double.MAX_VALUE;
+        // equirectangular projection around the query point is precise enough for short distances
+        double shrink = Math.cos(Math.toRadians(lat));
+        for (int i = 1; i < points.size(); i++) {
+            double aLat = points.latitude(i - 1), aLon = points.longitude(i - 1);
+            double bLat = points.latitude(i), bLon = points.longitude(i);
+            double dx = (bLon - aLon) * shrink, dy = bLat - aLat;
+            double len = dx * dx + dy * dy;
+            double t = 0;
+            if (len > 0)
+                t = Math.max(0, Math.min(1, ((lon - aLon) * shrink * dx + (lat - aLat) * dy) / len));
+            double pLat = aLat + t * (bLat - aLat), pLon = aLon + t * (bLon - aLon);
+            double d = calc.calcNormalizedDist(lat, lon, pLat, pLon);
+            if (d < best) {
+                best = d;
+                if (d < maxNormedDist) {
+                    snap.lat = pLat;
+                    snap.lon = pLon;
+                    snap.segment = i - 1;
+                    maxNormedDist = d;
+                }
+            }
+        }
+        return best;
+    }
+
+    public void flush() {
+        index.setHeader(0, MAGIC_INT);
+        index.setHeader(1, latSize);
+        index.setHeader(2, lonSize);
+        index.setHeader(3, g.nodes());
+        index.flush();
+    }
+
+    @Override
+    public int[] findIDs(double[] lats, double[] lons) {
+        return GraphUtility.findIDs(this, lats, lons);
+    }
+
+    @Override
+    public float calcMemInMB() {
+        return (float) index.capacity() / (1 << 20);
+    }
+
+    /**
+     * The result of a query: the closest edge and the snapped point on it.
+     */
+    public static class Snap {
+
+        private int edge = EdgeIterator.NO_EDGE;
+        private int baseNode;
+        private int adjNode;
+        private int closestNode;
+        private int segment;
+        private double lat, lon;
+        private double distance;
+
+        public int edge() {
+            return edge;
+        }
+
+        /**
+         * @return the tower nodes of the edge. The pillar nodes of the edge
+         * are ordered from baseNode to adjNode.
+         */
+        public int baseNode() {
+            return baseNode;
+        }
+
+        public int adjNode() {
+            return adjNode;
+        }
+
+        /**
+         * @return baseNode or adjNode whichever is closer along the edge
+         */
+        public int closestNode() {
+            return closestNode;
+        }
+
+        /**
+         * @return the index of the segment of the edge geometry where the
+         * snapped point lies. 0 means the segment starting at baseNode.
+         */
+        public int segment() {
+            return segment;
+        }
+
+        public double lat() {
+            return lat;
+        }
+
+        public double lon() {
+            return lon;
+        }
+
+        /**
+         * @return the distance in meter from the query point to the snapped
+         * point
+         */
+        public double distance() {
+            return distance;
+        }
+
+        @Override public String toString() {
+            return edge + " " + baseNode + "-" + adjNode + " " + lat + "," + lon + " " + distance + "m";
+        }
+    }
+}
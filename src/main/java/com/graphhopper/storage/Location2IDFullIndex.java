@@ -20,6 +20,7 @@ package com.graphhopper.storage;
 
 import com.graphhopper.util.DistanceCalc;
 import com.graphhopper.util.DistanceCosProjection;
+import com.graphhopper.util.GraphUtility;
 import com.graphhopper.util.shapes.Circle;
 
 /**
@@ -69,6 +70,11 @@ public class Location2IDFullIndex implements Location2IDIndex {
         return id;
     }
 
+    @Override
+    public int[] findIDs(double[] lats, double[] lons) {
+        return GraphUtility.findIDs(this, lats, lons);
+    }
+
     @Override
     public float calcMemInMB() {
         return 0;
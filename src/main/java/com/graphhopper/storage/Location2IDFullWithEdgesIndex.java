@@ -21,6 +21,7 @@ package com.graphhopper.storage;
 import com.graphhopper.util.DistanceCosProjection;
 import com.graphhopper.util.DistanceCalc;
 import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GraphUtility;
 
 /**
  * Same as full index but calculates distance to all edges too
@@ -88,6 +89,11 @@ public class Location2IDFullWithEdgesIndex implements Location2IDIndex {
         return id;
     }
 
+    @Override
+    public int[] findIDs(double[] lats, double[] lons) {
+        return GraphUtility.findIDs(this, lats, lons);
+    }
+
     @Override
     public float calcMemInMB() {
         return 0;
@@ -41,6 +41,14 @@ public interface Location2IDIndex {
      */
     int findID(double lat, double lon);
 
+    /**
+     * Same as findID for several points at once, which is faster for a lot of
+     * points.
+     *
+     * @return the graph ids in the order of the specified points
+     */
+    int[] findIDs(double[] lats, double[] lons);
+
     /**
      * @param approxDist If false this makes initialization and querying faster
      * but less precise.
@@ -26,6 +26,7 @@ import com.graphhopper.geohash.LinearKeyAlgo;
 import com.graphhopper.util.DistanceCalc;
 import com.graphhopper.util.DistanceCosProjection;
 import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GraphUtility;
 import com.graphhopper.util.NumHelper;
 import com.graphhopper.util.StopWatch;
 import com.graphhopper.util.XFirstSearch;
@@ -60,6 +61,7 @@ public class Location2IDPreciseIndex implements Location2IDIndex {
     private double latWidth, lonWidth;
     private int latSizeI, lonSizeI;
     private boolean calcEdgeDistance = true;
+    private int threads = 1;
 
     public Location2IDPreciseIndex(Graph g, Directory dir) {
         this.g = g;
@@ -87,6 +89,17 @@ public class Location2IDPreciseIndex implements Location2IDIndex {
         return false;
     }
 
+    /**
+     * Uses the specified number of threads to fill the empty tiles in
+     * prepareIndex.
+     */
+    public Location2IDPreciseIndex threads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads has to be positive but was " + threads);
+        this.threads = threads;
+        return this;
+    }
+
     /**
      * Applies only if called before prepareIndex
      */
@@ -247,42 +260,20 @@ public class Location2IDPreciseIndex implements Location2IDIndex {
 
         void initEmptySlots(ListOfArrays la) {
             // Here we don't need the precision of edge distance which will make it too slow.
-            // Also just use just the reference of the found entry to save space
+            // Also just use just the reference of the closest filled entry to save space
             int len = inMemIndex.length;
-            TIntArrayList[] indexCopy = new TIntArrayList[len];
-            int initializedCounter = 0;
-            while (initializedCounter < len) {
-                initializedCounter = 0;
-                System.arraycopy(inMemIndex, 0, indexCopy, 0, len);
-
-                // fan out initialized entries
-                for (int i = 0; i < len; i++) {
-                    if (indexCopy[i] != null) {
-                        // check change "initialized to empty"
-                        if ((i + 1) % lonSizeI != 0 && indexCopy[i + 1] == null) {
-                            inMemIndex[i + 1] = indexCopy[i];
-                            la.setSameReference(i + 1, i);
-                        } else if (i + lonSizeI < len && indexCopy[i + lonSizeI] == null) {
-                            inMemIndex[i + lonSizeI] = indexCopy[i];
-                            la.setSameReference(i + lonSizeI, i);
-                        }
-                    } else {
-                        // check change "empty to initialized"
-                        if ((i + 1) % lonSizeI != 0 && indexCopy[i + 1] != null) {
-                            inMemIndex[i] = indexCopy[i + 1];
-                            la.setSameReference(i, i + 1);
-                        } else if (i + lonSizeI < len && indexCopy[i + lonSizeI] != null) {
-                            inMemIndex[i] = indexCopy[i + lonSizeI];
-                            la.setSameReference(i, i + lonSizeI);
-                        }
-                    }
-
-                    if (inMemIndex[i] != null)
-                        initializedCounter++;
+            MyBitSet filled = new MyBitSetImpl(len);
+            for (int i = 0; i < len; i++) {
+                if (inMemIndex[i] != null)
+                    filled.add(i);
+            }
+            double aspect = NearestCellTransform.aspect(g.bounds(), latSizeI, lonSizeI);
+            int[] nearest = new NearestCellTransform(filled, latSizeI, lonSizeI, aspect, threads).calc();
+            for (int i = 0; i < len; i++) {
+                if (inMemIndex[i] == null) {
+                    inMemIndex[i] = inMemIndex[nearest[i]];
+                    la.setSameReference(i, nearest[i]);
                 }
-
-                if (initializedCounter == 0)
-                    throw new IllegalStateException("at least one entry has to be != null, which should have happened in initIndex");
             }
         }
 
@@ -405,6 +396,11 @@ public class Location2IDPreciseIndex implements Location2IDIndex {
         index.flush();
     }
 
+    @Override
+    public int[] findIDs(double[] lats, double[] lons) {
+        return GraphUtility.findIDs(this, lats, lons);
+    }
+
     @Override
     public float calcMemInMB() {
         return (float) index.capacity() / (1 << 20);
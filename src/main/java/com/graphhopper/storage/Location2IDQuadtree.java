@@ -21,10 +21,12 @@ package com.graphhopper.storage;
 import com.graphhopper.coll.MyBitSet;
 import com.graphhopper.coll.MyBitSetImpl;
 import com.graphhopper.coll.MyTBitSet;
+import com.graphhopper.coll.MyTouchedBitSet;
 import com.graphhopper.geohash.KeyAlgo;
 import com.graphhopper.geohash.LinearKeyAlgo;
 import com.graphhopper.util.DistanceCalc;
 import com.graphhopper.util.DistanceCosProjection;
+import com.graphhopper.util.Helper;
 import com.graphhopper.util.StopWatch;
 import com.graphhopper.util.XFirstSearch;
 import com.graphhopper.util.shapes.BBox;
@@ -46,6 +48,9 @@ import org.slf4j.LoggerFactory;
 public class Location2IDQuadtree implements Location2IDIndex {
 
     private final static int MAGIC_INT = Integer.MAX_VALUE / 12306;
+    private final static int CHUNK = 1024;
+    // use a touched bit set if it costs at most this many bits per point
+    private final static int TOUCHED_BITS_PER_POINT = 64;
     private Logger logger = LoggerFactory.getLogger(getClass());
     private KeyAlgo algo;
     protected DistanceCalc dist = new DistanceCosProjection();
@@ -53,6 +58,7 @@ public class Location2IDQuadtree implements Location2IDIndex {
     private double maxNormRasterWidthKm;
     private Graph g;
     private int lonSize, latSize;
+    private int threads = 1;
 
     public Location2IDQuadtree(Graph g, Directory dir) {
         this.g = g;
@@ -68,6 +74,17 @@ public class Location2IDQuadtree implements Location2IDIndex {
         return this;
     }
 
+    /**
+     * Uses the specified number of threads to fill the empty entries in
+     * prepareIndex.
+     */
+    public Location2IDQuadtree threads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads has to be positive but was " + threads);
+        this.threads = threads;
+        return this;
+    }
+
     public int capacity() {
         return (int) (index.capacity() / 4);
     }
@@ -177,67 +194,17 @@ public class Location2IDQuadtree implements Location2IDIndex {
 
     private int fillEmptyIndices(MyBitSet filledIndices) {
         int len = latSize * lonSize;
-        DataAccess indexCopy = new RAMDataAccess();
-        indexCopy.createNew(index.capacity());
-        MyBitSet indicesCopy = new MyBitSetImpl(len);
-        int initializedCounter = filledIndices.cardinality();
-        // fan out initialized entries to avoid "nose-artifacts"
-        // we 1. do not use the same index for check and set and iterate until all indices are set
-        // and 2. use a taken-from array to decide which of the colliding should be prefered
-        int[] takenFrom = new int[len];
-        Arrays.fill(takenFrom, -1);
-        for (int i = filledIndices.next(0); i >= 0; i = filledIndices.next(i + 1)) {
-            takenFrom[i] = i;
-        }
-        if (initializedCounter == 0)
+        int filled = filledIndices.cardinality();
+        if (filled == 0)
             throw new IllegalStateException("at least one entry has to be != null, which should have happened in initIndex");
-        int tmp = initializedCounter;
-        while (initializedCounter < len) {
-            index.copyTo(indexCopy);
-            filledIndices.copyTo(indicesCopy);
-            initializedCounter = filledIndices.cardinality();
-            for (int i = 0; i < len; i++) {
-                int to = -1, from = -1;
-                if (indicesCopy.contains(i)) {
-                    // check change "initialized to empty"                    
-                    if ((i + 1) % lonSize != 0 && !indicesCopy.contains(i + 1)) {
-                        // set right from current
-                        from = i;
-                        to = i + 1;
-                    } else if (i + lonSize < len && !indicesCopy.contains(i + lonSize)) {
-                        // set below from current
-                        from = i;
-                        to = i + lonSize;
-                    }
-                } else {
-                    // check change "empty to initialized"
-                    if ((i + 1) % lonSize != 0 && indicesCopy.contains(i + 1)) {
-                        // set from right
-                        from = i + 1;
-                        to = i;
-                    } else if (i + lonSize < len && indicesCopy.contains(i + lonSize)) {
-                        // set from below
-                        from = i + lonSize;
-                        to = i;
-                    }
-                }
-                if (to >= 0) {
-                    if (takenFrom[to] >= 0) {
-                        // takenFrom[to] == to -> special case for normedDist == 0
-                        if (takenFrom[to] == to
-                                || normedDist(from, to) >= normedDist(takenFrom[to], to))
-                            continue;
-                    }
-
-                    index.setInt(to, indexCopy.getInt(from));
-                    takenFrom[to] = takenFrom[from];
-                    filledIndices.add(to);
-                    initializedCounter++;
-                }
-            }
+        // every empty entry gets the node of the closest filled entry
+        double aspect = NearestCellTransform.aspect(g.bounds(), latSize, lonSize);
+        int[] nearest = new NearestCellTransform(filledIndices, latSize, lonSize, aspect, threads).calc();
+        for (int i = 0; i < len; i++) {
+            if (!filledIndices.contains(i))
+                index.setInt(i, index.getInt(nearest[i]));
         }
-
-        return initializedCounter - tmp;
+        return len - filled;
     }
 
     double normedDist(int from, int to) {
@@ -270,37 +237,118 @@ public class Location2IDQuadtree implements Location2IDIndex {
          * to reach it via graph traversal:
          */
 
-        long key = algo.encode(lat, lon);
-        final int id = index.getInt((int) key);
-        double mainLat = g.getLatitude(id);
-        double mainLon = g.getLongitude(id);
-        final WeightedNode closestNode = new WeightedNode(id, dist.calcNormalizedDist(lat, lon, mainLat, mainLon));
-        goFurtherHook(id);
-        new XFirstSearch() {
-            @Override protected MyBitSet createBitSet(int size) {
-                return new MyTBitSet(10);
+        return new ClosestNodeSearch(new MyTBitSet(10)).find(lat, lon);
+    }
+
+    @Override
+    public int[] findIDs(double[] lats, double[] lons) {
+        return findIDs(lats, lons, 1);
+    }
+
+    /**
+     * Same as findID for several points. The points are processed in the order
+     * of their raster key so that consecutive searches visit the same nodes
+     * and one search state is reused for all points of a thread.
+     *
+     * @param threads the number of threads used for many points
+     */
+    public int[] findIDs(final double[] lats, final double[] lons, int threads) {
+        if (lats.length != lons.length)
+            throw new IllegalArgumentException("lats and lons must have the same length "
+                    + lats.length + " vs. " + lons.length);
+        final int size = lats.length;
+        // the key is smaller than 2^31 so store it together with the point index
+        final long[] sorted = new long[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = algo.encode(lats[i], lons[i]) << 32 | i;
+        }
+        Arrays.sort(sorted);
+        final int[] ids = new int[size];
+        // one search state per thread
+        final ClosestNodeSearch[] searches = new ClosestNodeSearch[Math.max(1, threads)];
+        Helper.runInChunks(threads, size, CHUNK, "location lookup", new Helper.ChunkWorker() {
+            @Override public void run(int thread, int start, int end) {
+                if (searches[thread] == null)
+                    searches[thread] = new ClosestNodeSearch(createVisited(size));
+                searches[thread].find(sorted, start, end, lats, lons, ids);
             }
+        });
+        return ids;
+    }
 
-            @Override protected boolean goFurther(int nodeId) {
-                if (nodeId == id)
-                    return true;
-
-                goFurtherHook(nodeId);
-                double currLat = g.getLatitude(nodeId);
-                double currLon = g.getLongitude(nodeId);
-                double d = dist.calcNormalizedDist(currLat, currLon, lat, lon);
-                if (d < closestNode.weight) {
-                    closestNode.weight = d;
-                    closestNode.node = nodeId;
-                    return true;
-                }
-
-                return d < maxNormRasterWidthKm * 2;
+    /**
+     * A MyTouchedBitSet needs one bit per node of the graph, so it only pays
+     * off if it is reused for many points. Otherwise the small hash based set
+     * of findID is used.
+     */
+    private MyBitSet createVisited(int points) {
+        if ((long) points * TOUCHED_BITS_PER_POINT < g.nodes())
+            return new MyTBitSet(10);
+        return new MyTouchedBitSet(g.nodes());
+    }
+
+    /**
+     * Searches the closest node via a breadth first search starting at the
+     * node of the raster key. The visited set is reused for the next search,
+     * so use a MyTouchedBitSet for many searches.
+     */
+    private class ClosestNodeSearch extends XFirstSearch {
+
+        private final MyBitSet visited;
+        private final WeightedNode closestNode = new WeightedNode(-1, 0);
+        private int id;
+        private double lat, lon;
+
+        ClosestNodeSearch(MyBitSet visited) {
+            this.visited = visited;
+        }
+
+        void find(long[] sorted, int start, int end, double[] lats, double[] lons, int[] ids) {
+            int prev = -1;
+            for (int i = start; i < end; i++) {
+                int point = (int) sorted[i];
+                // reuse the result of consecutive equal points. Different points of the
+                // same cell are sorted by their index, so not all duplicates are caught
+                if (prev >= 0 && lats[prev] == lats[point] && lons[prev] == lons[point])
+                    ids[point] = ids[prev];
+                else
+                    ids[point] = find(lats[point], lons[point]);
+                prev = point;
             }
-        }.start(g, id, false);
+        }
+
+        int find(double lat, double lon) {
+            this.lat = lat;
+            this.lon = lon;
+            id = index.getInt((int) algo.encode(lat, lon));
+            closestNode.node = id;
+            closestNode.weight = dist.calcNormalizedDist(lat, lon, g.getLatitude(id), g.getLongitude(id));
+            goFurtherHook(id);
+            start(g, id, false);
+            return closestNode.node;
+        }
+
+        @Override protected MyBitSet createBitSet(int size) {
+            visited.clear();
+            return visited;
+        }
 
-//        logger.info("key:" + key + " lat:" + lat + ",lon:" + lon);
-        return closestNode.node;
+        @Override protected boolean goFurther(int nodeId) {
+            if (nodeId == id)
+                return true;
+
+            goFurtherHook(nodeId);
+            double currLat = g.getLatitude(nodeId);
+            double currLon = g.getLongitude(nodeId);
+            double d = dist.calcNormalizedDist(currLat, currLon, lat, lon);
+            if (d < closestNode.weight) {
+                closestNode.weight = d;
+                closestNode.node = nodeId;
+                return true;
+            }
+
+            return d < maxNormRasterWidthKm * 2;
+        }
     }
 
     public void goFurtherHook(int n) {
@@ -0,0 +1,301 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.coll.MyBitSet;
+import com.graphhopper.coll.MyTBitSet;
+import com.graphhopper.geohash.SpatialKeyAlgo;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.DistanceCosProjection;
+import com.graphhopper.util.GraphUtility;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.XFirstSearch;
+import com.graphhopper.util.shapes.BBox;
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A quadtree which adapts its cell size to the node density: a cell is only
+ * split if it contains more than cellEntries nodes and it is still wider
+ * than the minimum raster width. Compared to the uniform raster of
+ * Location2IDQuadtree this avoids cells in empty areas and allows small
+ * cells in cities.
+ *
+ * The tree is created from the spatial keys of the nodes, every level uses
+ * the next two bits of the key (latitude and longitude). An inner cell is
+ * stored as 5 integers: a representative node closest to the cell center and
+ * the pointers of the 4 children. A pointer is either 0 for an empty child,
+ * positive for an inner cell or negative for a leaf which is directly stored
+ * as its representative node.
+ *
+ * A query descends to the deepest cell containing the point and then
+ * searches the graph from its representative node within the cell width.
+ *
+ * @see SpatialKeyAlgo
+ * @author Peter Karich
+ */
+public class Location2IDTreeIndex implements Location2IDIndex {
+
+    private final static int MAGIC_INT = Integer.MAX_VALUE / 32316;
+    private final static int CELL_SIZE = 5;
+    // the node ids and the keys with 2 bits per level need to fit into one long while sorting
+    private final static int MAX_DEPTH = 16;
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    protected DistanceCalc dist = new DistanceCosProjection();
+    private final Graph g;
+    private final DataAccess index;
+    private double minRasterWidth = -1;
+    private int cellEntries = 16;
+    private int maxDepth;
+    private int root;
+    private BBox bounds;
+
+    public Location2IDTreeIndex(Graph g, Directory dir) {
+        this.g = g;
+        index = dir.findCreate("loc2idTree");
+    }
+
+    @Override
+    public Location2IDIndex precision(boolean approxDist) {
+        if (approxDist)
+            dist = new DistanceCosProjection();
+        else
+            dist = new DistanceCalc();
+        return this;
+    }
+
+    /**
+     * Cells are not split if they would get smaller than the specified width
+     * in meter. If not set the width is derived from the capacity in
+     * prepareIndex.
+     */
+    public Location2IDTreeIndex minRasterWidth(double meter) {
+        minRasterWidth = meter;
+        return this;
+    }
+
+    /**
+     * Cells with more nodes are split.
+     */
+    public Location2IDTreeIndex cellEntries(int entries) {
+        if (entries < 1)
+            throw new IllegalArgumentException("entries has to be positive but was " + entries);
+        cellEntries = entries;
+        return this;
+    }
+
+    /**
+     * Loads the index from disc if exists. Make sure you are using the
+     * identical graph which was used while flusing this index.
+     *
+     * @return if loading from file was successfully.
+     */
+    public boolean loadExisting() {
+        if (index.loadExisting()) {
+            if (index.getHeader(0) != MAGIC_INT)
+                throw new IllegalStateException("incorrect loc2id tree index version");
+            int checksum = index.getHeader(3);
+            if (checksum != g.nodes())
+                throw new IllegalStateException("index was created from a different graph with "
+                        + checksum + ". Current nodes:" + g.nodes());
+            maxDepth = index.getHeader(1);
+            root = index.getHeader(2);
+            bounds = g.bounds();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param capacity the maximum number of cells of a uniform raster. The
+     * minimum raster width is derived from it if not specified.
+     */
+    @Override
+    public Location2IDIndex prepareIndex(int capacity) {
+        int nodes = g.nodes();
+        if (nodes <= 0)
+            throw new IllegalStateException("check your graph - it is empty!");
+        StopWatch sw = new StopWatch().start();
+        bounds = g.bounds();
+        maxDepth = calcDepth(capacity);
+        SpatialKeyAlgo algo = new SpatialKeyAlgo(2 * maxDepth).
+                bounds(bounds.minLon, bounds.maxLon, bounds.minLat, bounds.maxLat);
+        long[] sorted = new long[nodes];
+        for (int node = 0; node < nodes; node++) {
+            // flip the sign bit to sort the 32 bit keys of depth 16 unsigned
+            sorted[node] = (algo.encode(g.getLatitude(node), g.getLongitude(node)) << 32 | node) ^ Long.MIN_VALUE;
+        }
+        Arrays.sort(sorted);
+
+        TIntArrayList cells = new TIntArrayList();
+        root = createCell(cells, sorted, 0, nodes, 0, bounds.minLat, bounds.maxLat, bounds.minLon, bounds.maxLon);
+        index.segmentSize(1 << 16);
+        index.createNew(4L * cells.size());
+        for (int i = 0; i < cells.size(); i++) {
+            index.setInt(i, cells.get(i));
+        }
+        logger.info("created tree index with depth " + maxDepth + " and " + cells.size() / CELL_SIZE
+                + " inner cells in " + sw.stop().getSeconds() + "s");
+        return this;
+    }
+
+    private int calcDepth(int capacity) {
+        int depth = 0;
+        if (minRasterWidth > 0) {
+            double width = Math.max(dist.calcDist(bounds.minLat, bounds.minLon, bounds.minLat, bounds.maxLon),
+                    dist.calcDist(bounds.minLat, bounds.minLon, bounds.maxLat, bounds.minLon));
+            while (width / (1 << depth) > minRasterWidth && depth < MAX_DEPTH) {
+                depth++;
+            }
+        } else {
+            // a uniform raster of capacity cells has sqrt(capacity) cells per side
+            while ((1L << (2 * depth)) < capacity && depth < MAX_DEPTH) {
+                depth++;
+            }
+        }
+        return Math.max(1, depth);
+    }
+
+    /**
+     * @return the pointer to the cell of the sorted nodes from 'from' to
+     * 'to'
+     */
+    private int createCell(TIntArrayList cells, long[] sorted, int from, int to, int depth,
+            double minLat, double maxLat, double minLon, double maxLon) {
+        if (from == to)
+            return 0;
+        double midLat = (minLat + maxLat) / 2;
+        double midLon = (minLon + maxLon) / 2;
+        int rep = closestNode(sorted, from, to, midLat, midLon);
+        if (to - from <= cellEntries || depth >= maxDepth)
+            return -rep - 1;
+
+        int pos = cells.size();
+        cells.add(rep);
+        cells.fill(pos + 1, pos + CELL_SIZE, 0);
+        int shift = 2 * (maxDepth - depth - 1);
+        int start = from;
+        for (int q = 0; q < 4; q++) {
+            int end = start;
+            while (end < to && ((sorted[end] ^ Long.MIN_VALUE) >>> 32 >>> shift & 3) == q) {
+                end++;
+            }
+            // the first bit is the latitude
+            boolean north = (q & 2) != 0;
+            boolean east = (q & 1) != 0;
+            int child = createCell(cells, sorted, start, end, depth + 1,
+                    north ? midLat : minLat, north ? maxLat : midLat,
+                    east ? midLon : minLon, east ? maxLon : midLon);
+            cells.set(pos + 1 + q, child);
+            start = end;
+        }
+        return pos / CELL_SIZE + 1;
+    }
+
+    private int closestNode(long[] sorted, int from, int to, double lat, double lon) {
+        int best = -1;
+        double bestDist = Double.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            int node = (int) sorted[i];
+            double d = dist.calcNormalizedDist(lat, lon, g.getLatitude(node), g.getLongitude(node));
+            if (d < bestDist) {
+                bestDist = d;
+                best = node;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public int findID(final double lat, final double lon) {
+        double minLat = bounds.minLat, maxLat = bounds.maxLat;
+        double minLon = bounds.minLon, maxLon = bounds.maxLon;
+        int pointer = root;
+        int id;
+        while (true) {
+            if (pointer < 0) {
+                id = -pointer - 1;
+                break;
+            }
+            long pos = (long) (pointer - 1) * CELL_SIZE;
+            id = index.getInt(pos);
+            double midLat = (minLat + maxLat) / 2;
+            double midLon = (minLon + maxLon) / 2;
+            int q = (lat > midLat ? 2 : 0) | (lon > midLon ? 1 : 0);
+            int child = index.getInt(pos + 1 + q);
+            // no nodes in this part so search from the representative of the current cell
+            if (child == 0)
+                break;
+            if (lat > midLat)
+                minLat = midLat;
+            else
+                maxLat = midLat;
+            if (lon > midLon)
+                minLon = midLon;
+            else
+                maxLon = midLon;
+            pointer = child;
+        }
+
+        final double maxNormDist = dist.calcNormalizedDist(2 * Math.max(
+                dist.calcDist(minLat, minLon, minLat, maxLon), dist.calcDist(minLat, minLon, maxLat, minLon)));
+        final int startId = id;
+        final WeightedNode closestNode = new WeightedNode(id,
+                dist.calcNormalizedDist(lat, lon, g.getLatitude(id), g.getLongitude(id)));
+        new XFirstSearch() {
+            @Override protected MyBitSet createBitSet(int size) {
+                return new MyTBitSet(10);
+            }
+
+            @Override protected boolean goFurther(int nodeId) {
+                if (nodeId == startId)
+                    return true;
+
+                double d = dist.calcNormalizedDist(g.getLatitude(nodeId), g.getLongitude(nodeId), lat, lon);
+                if (d < closestNode.weight) {
+                    closestNode.weight = d;
+                    closestNode.node = nodeId;
+                    return true;
+                }
+                return d < maxNormDist;
+            }
+        }.start(g, startId, false);
+        return closestNode.node;
+    }
+
+    @Override
+    public int[] findIDs(double[] lats, double[] lons) {
+        return GraphUtility.findIDs(this, lats, lons);
+    }
+
+    public void flush() {
+        index.setHeader(0, MAGIC_INT);
+        index.setHeader(1, maxDepth);
+        index.setHeader(2, root);
+        index.setHeader(3, g.nodes());
+        index.flush();
+    }
+
+    @Override
+    public float calcMemInMB() {
+        return (float) index.capacity() / (1 << 20);
+    }
+}
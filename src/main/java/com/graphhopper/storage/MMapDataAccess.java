@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
@@ -44,6 +45,7 @@ public class MMapDataAccess extends AbstractDataAccess {
     private ByteOrder order;
     private transient boolean closed = false;
     private boolean cleanAndRemap = true;
+    private int warmupThreads = 0;
 
     MMapDataAccess() {
         this(null, null);
@@ -66,6 +68,13 @@ public class MMapDataAccess extends AbstractDataAccess {
         }
     }
 
+    @Override
+    protected IntBuffer segmentInts(int segment) {
+        ByteBuffer bb = segments.get(segment);
+        // duplicate resets the byte order
+        return ((ByteBuffer) bb.duplicate().clear()).order(bb.order()).asIntBuffer();
+    }
+
     @Override
     public void createNew(long bytes) {
         if (!segments.isEmpty())
@@ -75,16 +84,6 @@ public class MMapDataAccess extends AbstractDataAccess {
         ensureCapacity(bytes);
     }
 
-    @Override
-    public DataAccess copyTo(DataAccess da) {
-        // if(da instanceof MMapDataAccess) {
-        // TODO make copying into mmap a lot faster via bytebuffer
-        // also copying into RAMDataAccess could be faster via bytebuffer
-        // is a flush necessary then?
-        // }
-        return super.copyTo(da);
-    }
-
     /**
      * Makes it possible to force the order. E.g. if we create the file on a host system and copy it
      * to a different like android. http://en.wikipedia.org/wiki/Endianness
@@ -94,6 +93,18 @@ public class MMapDataAccess extends AbstractDataAccess {
         return this;
     }
 
+    /**
+     * Loads all pages of the file into memory on loadExisting with the
+     * specified number of threads. This avoids page faults on the first
+     * requests of a cold server. Use 0 to disable.
+     */
+    public MMapDataAccess warmup(int threads) {
+        if (threads < 0)
+            throw new IllegalArgumentException("threads cannot be negative but was " + threads);
+        warmupThreads = threads;
+        return this;
+    }
+
     @Override
     public void ensureCapacity(long bytes) {
         mapIt(HEADER_OFFSET, bytes, true);
@@ -198,12 +209,24 @@ public class MMapDataAccess extends AbstractDataAccess {
             if (byteCount < 0)
                 return false;
             mapIt(HEADER_OFFSET, byteCount - HEADER_OFFSET, false);
+            if (warmupThreads > 0)
+                loadSegments(warmupThreads);
             return true;
         } catch (IOException ex) {
             throw new RuntimeException("Problem while loading " + fullName(), ex);
         }
     }
 
+    private void loadSegments(int threads) {
+        Helper.runInChunks(threads, segments.size(), 1, "warmup of " + fullName(), new Helper.ChunkWorker() {
+            @Override public void run(int thread, int start, int end) {
+                for (int s = start; s < end; s++) {
+                    ((MappedByteBuffer) segments.get(s)).load();
+                }
+            }
+        });
+    }
+
     @Override
     public void flush() {
         if (closed)
@@ -26,6 +26,8 @@ package com.graphhopper.storage;
  */
 public class MMapDirectory extends AbstractDirectory {
 
+    private int warmupThreads = 0;
+
     // reserve the empty constructor for direct mapped memory
     private MMapDirectory() {
         this("");
@@ -37,8 +39,19 @@ public class MMapDirectory extends AbstractDirectory {
         mkdirs();
     }
 
+    /**
+     * Loads the files of all DataAccess objects into memory when they are
+     * opened via loadExisting.
+     *
+     * @see MMapDataAccess#warmup(int)
+     */
+    public MMapDirectory warmup(int threads) {
+        warmupThreads = threads;
+        return this;
+    }
+
     @Override
     protected DataAccess create(String id, String location) {
-        return new MMapDataAccess(id, location);
+        return new MMapDataAccess(id, location).warmup(warmupThreads);
     }
 }
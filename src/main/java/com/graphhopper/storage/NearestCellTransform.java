@@ -0,0 +1,160 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.coll.MyBitSet;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.BBox;
+
+/**
+ * Finds for every cell of a grid the closest filled cell in one go instead of
+ * fanning out the filled cells step by step. This is the euclidean distance
+ * transform of Felzenszwalb and Huttenlocher which keeps the found cell
+ * instead of the distance: first every column is scanned for the closest
+ * filled row, then the lower envelope of the resulting parabolas is computed
+ * for every row. Columns and rows are independent and so the work is spread
+ * over several threads.
+ *
+ * The cell of row y and column x is y * columns + x. The cells need not be
+ * square, the distance of a column is aspect times the distance of a row.
+ *
+ * @author Peter Karich
+ */
+class NearestCellTransform {
+
+    private static final int CHUNK = 64;
+    private final MyBitSet filled;
+    private final int rows, columns;
+    private final int threads;
+    private final double aspect;
+
+    NearestCellTransform(MyBitSet filled, int rows, int columns, double aspect, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads has to be positive but was " + threads);
+        this.filled = filled;
+        this.rows = rows;
+        this.columns = columns;
+        this.threads = threads;
+        this.aspect = aspect;
+    }
+
+    /**
+     * @return the width of a cell divided by its height in meter for a grid
+     * over the specified bounds
+     */
+    static double aspect(BBox b, int rows, int columns) {
+        double height = (b.maxLat - b.minLat) / rows;
+        double width = (b.maxLon - b.minLon) / columns * Math.cos(Math.toRadians((b.minLat + b.maxLat) / 2));
+        if (height <= 0 || width <= 0)
+            return 1;
+        return width / height;
+    }
+
+    /**
+     * @return the closest filled cell for every cell. A filled cell is
+     * returned for itself.
+     */
+    int[] calc() {
+        if (filled.cardinality() == 0)
+            throw new IllegalStateException("at least one cell has to be filled");
+
+        // first pass: the closest filled row within the column or -1
+        final int[] nearest = new int[rows * columns];
+        run(columns, new Worker() {
+            @Override public void run(int x) {
+                int last = -1;
+                for (int y = 0; y < rows; y++) {
+                    int cell = y * columns + x;
+                    if (filled.contains(cell))
+                        last = y;
+                    nearest[cell] = last;
+                }
+                last = -1;
+                for (int y = rows - 1; y >= 0; y--) {
+                    int cell = y * columns + x;
+                    if (filled.contains(cell))
+                        last = y;
+                    if (last >= 0 && (nearest[cell] < 0 || last - y < y - nearest[cell]))
+                        nearest[cell] = last;
+                }
+            }
+        });
+
+        // second pass: a row only reads and writes its own cells
+        run(rows, new Worker() {
+            @Override public void run(int y) {
+                int offset = y * columns;
+                double a = aspect * aspect;
+                int[] v = new int[columns];
+                double[] z = new double[columns + 1];
+                int k = -1;
+                for (int q = 0; q < columns; q++) {
+                    if (nearest[offset + q] < 0)
+                        continue;
+                    double fq = sq(y - nearest[offset + q]) + a * sq(q);
+                    double s = 0;
+                    while (k >= 0) {
+                        int p = v[k];
+                        s = (fq - sq(y - nearest[offset + p]) - a * sq(p)) / (2 * a * (q - p));
+                        if (s > z[k])
+                            break;
+                        k--;
+                    }
+                    k++;
+                    v[k] = q;
+                    z[k] = k == 0 ? Double.NEGATIVE_INFINITY : s;
+                    z[k + 1] = Double.POSITIVE_INFINITY;
+                }
+
+                int[] result = new int[columns];
+                for (int x = 0, j = 0; x < columns; x++) {
+                    while (z[j + 1] < x) {
+                        j++;
+                    }
+                    result[x] = nearest[offset + v[j]] * columns + v[j];
+                }
+                System.arraycopy(result, 0, nearest, offset, columns);
+            }
+        });
+        return nearest;
+    }
+
+    private static double sq(double d) {
+        return d * d;
+    }
+
+    interface Worker {
+
+        void run(int index);
+    }
+
+    /**
+     * Calls the worker for the indices 0 to size-1, every thread fetches
+     * chunks of indices.
+     */
+    private void run(int size, final Worker worker) {
+        Helper.runInChunks(threads, size, CHUNK, "index creation", new Helper.ChunkWorker() {
+            @Override public void run(int thread, int start, int end) {
+                for (int i = start; i < end; i++) {
+                    worker.run(i);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Helper7;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * An in-memory data structure like RAMDataAccess but the segments are direct
+ * ByteBuffers, so they live outside of the Java heap and do not increase GC
+ * pauses. No file is necessary but the content can be stored on flush() in the
+ * same format as RAMDataAccess uses, so both can load the files of the other.
+ *
+ * @author Peter Karich
+ */
+public class OffHeapDataAccess extends AbstractDataAccess {
+
+    private ByteBuffer[] segments = new ByteBuffer[0];
+    private boolean closed = false;
+    private boolean store;
+    private transient int segmentSizePower;
+    private transient int indexDivisor;
+
+    OffHeapDataAccess(String name, String location, boolean store) {
+        super(name, location);
+        this.store = store;
+    }
+
+    /**
+     * @param store true if in-memory data should be saved when calling flush
+     */
+    public OffHeapDataAccess store(boolean store) {
+        this.store = store;
+        return this;
+    }
+
+    @Override
+    public DataAccess copyTo(DataAccess da) {
+        // the segments of da are freed before copying
+        if (da == this)
+            return da;
+        if (da instanceof OffHeapDataAccess) {
+            OffHeapDataAccess oda = (OffHeapDataAccess) da;
+            for (int h = 0; h < header.length; h++) {
+                oda.setHeader(h, getHeader(h));
+            }
+            oda.free(0, oda.segments.length);
+            oda.segments = new ByteBuffer[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                ByteBuffer bb = ByteBuffer.allocateDirect(segmentSizeInBytes);
+                bb.put((ByteBuffer) segments[i].duplicate().clear());
+                oda.segments[i] = bb;
+            }
+            oda.segmentSize(segmentSizeInBytes);
+            // leave id, store and close unchanged
+            return da;
+        } else
+            return super.copyTo(da);
+    }
+
+    @Override
+    protected IntBuffer segmentInts(int segment) {
+        ByteBuffer bb = segments[segment];
+        // duplicate resets the byte order
+        return ((ByteBuffer) bb.duplicate().clear()).order(bb.order()).asIntBuffer();
+    }
+
+    @Override
+    public void createNew(long bytes) {
+        if (segments.length > 0)
+            throw new IllegalThreadStateException("already created");
+
+        // initialize transient values
+        segmentSize(segmentSizeInBytes);
+        ensureCapacity(Math.max(10 * 4, bytes));
+    }
+
+    @Override
+    public void ensureCapacity(long bytes) {
+        long todoBytes = bytes - capacity();
+        if (todoBytes <= 0)
+            return;
+
+        int segmentsToCreate = (int) (todoBytes / segmentSizeInBytes);
+        if (todoBytes % segmentSizeInBytes != 0)
+            segmentsToCreate++;
+        ByteBuffer[] newSegs = Arrays.copyOf(segments, segments.length + segmentsToCreate);
+        for (int i = segments.length; i < newSegs.length; i++) {
+            // direct buffers are zeroed and big endian like the RAMDataAccess file format
+            newSegs[i] = ByteBuffer.allocateDirect(segmentSizeInBytes);
+        }
+        segments = newSegs;
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (segments.length > 0)
+            throw new IllegalStateException("already initialized");
+        if (!store || closed)
+            return false;
+        File file = new File(fullName());
+        if (!file.exists() || file.length() == 0)
+            return false;
+        try {
+            RandomAccessFile raFile = new RandomAccessFile(fullName(), "r");
+            try {
+                // same calculation as in RAMDataAccess
+                long byteCount = readHeader(raFile) - HEADER_OFFSET;
+                if (byteCount < 0)
+                    return false;
+                int segmentCount = (int) (byteCount / segmentSizeInBytes);
+                if (byteCount % segmentSizeInBytes != 0)
+                    segmentCount++;
+                segmentSize(segmentSizeInBytes);
+                FileChannel channel = raFile.getChannel();
+                channel.position(HEADER_OFFSET);
+                segments = new ByteBuffer[segmentCount];
+                for (int s = 0; s < segmentCount; s++) {
+                    ByteBuffer bb = ByteBuffer.allocateDirect(segmentSizeInBytes);
+                    while (bb.hasRemaining() && channel.read(bb) >= 0) {
+                    }
+                    segments[s] = bb;
+                }
+                return true;
+            } finally {
+                raFile.close();
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Problem while loading " + fullName(), ex);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (closed)
+            throw new IllegalStateException("already closed");
+        if (!store)
+            return;
+        try {
+            RandomAccessFile raFile = new RandomAccessFile(fullName(), "rw");
+            try {
+                writeHeader(raFile, capacity(), segmentSizeInBytes);
+                FileChannel channel = raFile.getChannel();
+                channel.position(HEADER_OFFSET);
+                for (int s = 0; s < segments.length; s++) {
+                    ByteBuffer bb = (ByteBuffer) segments[s].duplicate().clear();
+                    while (bb.hasRemaining()) {
+                        channel.write(bb);
+                    }
+                }
+                // remove a longer tail e.g. after trimTo
+                raFile.setLength(HEADER_OFFSET + capacity());
+            } finally {
+                raFile.close();
+            }
+        } catch (Exception ex) {
+            throw new RuntimeException("Couldn't store integers to " + toString(), ex);
+        }
+    }
+
+    @Override
+    public void setInt(long longIndex, int value) {
+        longIndex <<= 2;
+        int bufferIndex = (int) (longIndex >>> segmentSizePower);
+        int index = (int) (longIndex & indexDivisor);
+        segments[bufferIndex].putInt(index, value);
+    }
+
+    @Override
+    public int getInt(long longIndex) {
+        longIndex <<= 2;
+        int bufferIndex = (int) (longIndex >>> segmentSizePower);
+        int index = (int) (longIndex & indexDivisor);
+        return segments[bufferIndex].getInt(index);
+    }
+
+    /**
+     * Releases the off-heap memory immediately instead of waiting for the
+     * garbage collector.
+     */
+    @Override
+    public void close() {
+        super.close();
+        free(0, segments.length);
+        segments = new ByteBuffer[0];
+        closed = true;
+    }
+
+    @Override
+    public long capacity() {
+        return (long) segments() * segmentSizeInBytes;
+    }
+
+    @Override
+    public int segments() {
+        return segments.length;
+    }
+
+    @Override
+    public DataAccess segmentSize(int bytes) {
+        super.segmentSize(bytes);
+        segmentSizePower = (int) (Math.log(segmentSizeInBytes) / Math.log(2));
+        indexDivisor = segmentSizeInBytes - 1;
+        return this;
+    }
+
+    @Override
+    public void trimTo(long capacity) {
+        if (capacity < segmentSizeInBytes)
+            capacity = segmentSizeInBytes;
+        int remainingSegments = (int) (capacity / segmentSizeInBytes);
+        if (capacity % segmentSizeInBytes != 0)
+            remainingSegments++;
+
+        free(remainingSegments, segments.length);
+        segments = Arrays.copyOf(segments, remainingSegments);
+    }
+
+    private void free(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (segments[i] != null && Helper7.UNMAP_SUPPORTED)
+                Helper7.cleanMappedByteBuffer(segments[i]);
+            segments[i] = null;
+        }
+    }
+
+    boolean releaseSegment(int segNumber) {
+        free(segNumber, segNumber + 1);
+        return true;
+    }
+
+    @Override
+    public void rename(String newName) {
+        if (!checkBeforeRename(newName))
+            return;
+        if (store)
+            super.rename(newName);
+
+        // in every case set the name
+        name = newName;
+    }
+}
@@ -22,6 +22,7 @@ import com.graphhopper.util.BitUtil;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
 import java.util.Arrays;
 
 /**
@@ -63,6 +64,9 @@ public class RAMDataAccess extends AbstractDataAccess {
     public DataAccess copyTo(DataAccess da) {
         if (da instanceof RAMDataAccess) {
             RAMDataAccess rda = (RAMDataAccess) da;
+            for (int h = 0; h < header.length; h++) {
+                rda.setHeader(h, getHeader(h));
+            }
             // TODO we could reuse rda segments!
             rda.segments = new int[segments.length][];
             for (int i = 0; i < segments.length; i++) {
@@ -76,6 +80,11 @@ public class RAMDataAccess extends AbstractDataAccess {
             return super.copyTo(da);
     }
 
+    @Override
+    protected IntBuffer segmentInts(int segment) {
+        return IntBuffer.wrap(segments[segment]);
+    }
+
     @Override
     public void createNew(long bytes) {
         if (segments.length > 0)
@@ -0,0 +1,82 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Calculates the convex hull of points with Andrew's monotone chain algorithm.
+ * http://en.wikibooks.org/wiki/Algorithm_Implementation/Geometry/Convex_hull/Monotone_chain
+ *
+ * @author Peter Karich
+ */
+public class ConvexHull {
+
+    /**
+     * @return the hull in counter clockwise order (longitude as x) without
+     * repeating the first point. Collinear points are removed.
+     */
+    public PointList calc(PointList points) {
+        int size = points.size();
+        Integer[] indices = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = i;
+        }
+        final PointList pl = points;
+        Arrays.sort(indices, new Comparator<Integer>() {
+            @Override public int compare(Integer o1, Integer o2) {
+                int res = Double.compare(pl.longitude(o1), pl.longitude(o2));
+                if (res != 0)
+                    return res;
+                return Double.compare(pl.latitude(o1), pl.latitude(o2));
+            }
+        });
+
+        int[] hull = new int[2 * size];
+        int k = 0;
+        // lower hull
+        for (int i = 0; i < size; i++) {
+            while (k >= 2 && cross(points, hull[k - 2], hull[k - 1], indices[i]) <= 0) {
+                k--;
+            }
+            hull[k++] = indices[i];
+        }
+        // upper hull
+        for (int i = size - 2, lower = k + 1; i >= 0; i--) {
+            while (k >= lower && cross(points, hull[k - 2], hull[k - 1], indices[i]) <= 0) {
+                k--;
+            }
+            hull[k++] = indices[i];
+        }
+
+        // the last point is the same as the first one
+        int len = size < 3 ? Math.min(size, k) : k - 1;
+        PointList res = new PointList(Math.max(1, len));
+        for (int i = 0; i < len; i++) {
+            res.add(points.latitude(hull[i]), points.longitude(hull[i]));
+        }
+        return res;
+    }
+
+    private static double cross(PointList points, int o, int a, int b) {
+        return (points.longitude(a) - points.longitude(o)) * (points.latitude(b) - points.latitude(o))
+                - (points.latitude(a) - points.latitude(o)) * (points.longitude(b) - points.longitude(o));
+    }
+}
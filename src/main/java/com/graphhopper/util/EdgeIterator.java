@@ -83,6 +83,15 @@ public interface EdgeIterator {
      */
     void wayGeometry(PointList list);
 
+    /**
+     * Adds the pillar nodes of the current edge to the specified list without
+     * creating an intermediate list.
+     *
+     * @param reverse if false the pillar nodes are added in the direction from
+     * baseNode to the adjacent node, if true in the opposite direction
+     */
+    void copyWayGeometry(PointList target, boolean reverse);
+
     /**
      * @return the distance of the current edge edge
      */
@@ -116,11 +116,8 @@ public class EdgeWrapper {
     }
 
     public void clear() {
+        // no need to reset the arrays as add() overwrites all values of a reference
         refCounter = 0;
-        Arrays.fill(weights, 0);
-        Arrays.fill(nodes, 0);
-        Arrays.fill(parents, 0);
-        Arrays.fill(edgeIds, 0);
         node2edge.clear();
     }
 
@@ -26,14 +26,17 @@ import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphStorage;
 import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.storage.Location2IDIndex;
 import com.graphhopper.storage.Location2IDPreciseIndex;
 import com.graphhopper.storage.LevelGraphStorage;
 import com.graphhopper.storage.MMapDirectory;
 import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.shapes.BBox;
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.set.hash.TIntHashSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import org.slf4j.Logger;
@@ -283,6 +286,98 @@ public class GraphUtility {
         return createSortedGraph(g, sortedGraph, nodeMappingList);
     }
 
+    /**
+     * Creates an order of the nodes along a Hilbert curve through the bounds
+     * of the graph. Nodes close to each other get close ids which improves
+     * the memory locality of queries.
+     *
+     * @return the new id for every node, see GraphStorage.sortNodes
+     */
+    public static int[] createHilbertOrder(Graph g) {
+        int bits = 15;
+        int max = (1 << bits) - 1;
+        BBox b = g.bounds();
+        double latDelta = Math.max(b.maxLat - b.minLat, 1e-9);
+        double lonDelta = Math.max(b.maxLon - b.minLon, 1e-9);
+        int len = g.nodes();
+        long[] keys = new long[len];
+        for (int node = 0; node < len; node++) {
+            int x = (int) ((g.getLongitude(node) - b.minLon) / lonDelta * max);
+            int y = (int) ((g.getLatitude(node) - b.minLat) / latDelta * max);
+            keys[node] = hilbertIndex(Math.min(Math.max(x, 0), max), Math.min(Math.max(y, 0), max), bits) << 32 | node;
+        }
+        Arrays.sort(keys);
+        int[] oldToNew = new int[len];
+        for (int i = 0; i < len; i++) {
+            oldToNew[(int) keys[i]] = i;
+        }
+        return oldToNew;
+    }
+
+    /**
+     * @return the position of the cell x,y on the Hilbert curve which fills a
+     * square of 2^bits cells per side
+     */
+    static long hilbertIndex(int x, int y, int bits) {
+        int n = 1 << bits;
+        long index = 0;
+        for (int s = n / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            index += (long) s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int tmp = x;
+                x = y;
+                y = tmp;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Creates an order of the nodes via breadth-first search. Every
+     * subnetwork is numbered one after the other.
+     *
+     * @return the new id for every node, see GraphStorage.sortNodes
+     */
+    public static int[] createBFSOrder(Graph g) {
+        int len = g.nodes();
+        final int[] oldToNew = new int[len];
+        Arrays.fill(oldToNew, -1);
+        // share one visited set for all subnetworks
+        final MyBitSet visited = new MyBitSetImpl(len);
+        XFirstSearch bfs = new XFirstSearch() {
+            int counter = 0;
+
+            @Override
+            protected MyBitSet createBitSet(int size) {
+                return visited;
+            }
+
+            @Override
+            protected EdgeIterator getEdges(Graph g, int current) {
+                return g.getEdges(current);
+            }
+
+            @Override
+            protected boolean goFurther(int nodeId) {
+                oldToNew[nodeId] = counter;
+                counter++;
+                return super.goFurther(nodeId);
+            }
+        };
+        for (int node = 0; node < len; node++) {
+            if (!visited.contains(node))
+                bfs.start(g, node, false);
+        }
+        return oldToNew;
+    }
+
     static Graph createSortedGraph(Graph g, Graph sortedGraph, final TIntList oldToNewNodeList) {
         int len = oldToNewNodeList.size();
         // important to avoid creating two edges for edges with both directions
@@ -376,6 +471,20 @@ public class GraphUtility {
         return to;
     }
 
+    /**
+     * Looks up the points one after another via findID.
+     */
+    public static int[] findIDs(Location2IDIndex index, double[] lats, double[] lons) {
+        if (lats.length != lons.length)
+            throw new IllegalArgumentException("lats and lons must have the same length "
+                    + lats.length + " vs. " + lons.length);
+        int[] ids = new int[lats.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = index.findID(lats[i], lons[i]);
+        }
+        return ids;
+    }
+
     public static int getToNode(Graph g, int edge, int endNode) {
         if (EdgeIterator.Edge.isValid(edge)) {
             EdgeIterator iterTo = g.getEdgeProps(edge, endNode);
@@ -432,6 +541,10 @@ public class GraphUtility {
             throw new UnsupportedOperationException("Not supported. Edge is empty.");
         }
 
+        @Override public void copyWayGeometry(PointList target, boolean reverse) {
+            throw new UnsupportedOperationException("Not supported. Edge is empty.");
+        }
+
         @Override public boolean isEmpty() {
             return true;
         }
@@ -32,6 +32,11 @@ import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import org.slf4j.Logger;
@@ -288,6 +293,74 @@ public class Helper {
         return res;
     }
 
+    /**
+     * Processes a range of indices, see runInChunks.
+     */
+    public interface ChunkWorker {
+
+        /**
+         * Processes the indices from start (inclusive) to end (exclusive).
+         *
+         * @param thread the number of the calling thread from 0 to threads-1,
+         * e.g. to reuse state for all chunks of a thread
+         */
+        void run(int thread, int start, int end);
+    }
+
+    /**
+     * Calls the worker for the indices 0 to size-1. Every thread fetches chunks
+     * of indices until all are processed. With one thread or only one chunk
+     * the worker is called directly for all indices.
+     *
+     * @param task describes the work in the exception if it failed
+     */
+    public static void runInChunks(int threads, int size, int chunk, String task, ChunkWorker worker) {
+        threads = Math.min(threads, (size + chunk - 1) / chunk);
+        if (threads <= 1) {
+            if (size > 0)
+                worker.run(0, 0, size);
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            runInChunks(executor, threads, size, chunk, task, worker);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Same as runInChunks but submits the threads to the specified executor,
+     * e.g. if it is used for many small tasks.
+     */
+    public static void runInChunks(ExecutorService executor, int threads, final int size, final int chunk,
+            String task, final ChunkWorker worker) {
+        final AtomicInteger next = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<Future<?>>(threads);
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(new Runnable() {
+                @Override public void run() {
+                    int start;
+                    while ((start = next.getAndAdd(chunk)) < size) {
+                        worker.run(thread, start, Math.min(size, start + chunk));
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(task + " was interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(task + " failed", ex.getCause());
+        }
+    }
+
     /**
      * Converts a double (maximum value 10000) into an integer.
      *
@@ -331,8 +404,9 @@ public class Helper {
     /**
      * The file version is independent of the real world version. E.g. to make
      * major version jumps without the need to change the file version.
+     * Version 4 stores the contraction hierarchies state in the edge header.
      */
-    public static final int VERSION_FILE = 3;
+    public static final int VERSION_FILE = 4;
     /**
      * The version without the snapshot string
      */
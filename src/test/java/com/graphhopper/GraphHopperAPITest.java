@@ -18,10 +18,23 @@
  */
 package com.graphhopper;
 
+import com.graphhopper.reader.OSMPbfWriter;
+import com.graphhopper.routing.util.CarStreetType;
 import com.graphhopper.storage.GraphStorage;
 import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.DistanceCalc;
 import com.graphhopper.util.Helper;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -67,4 +80,200 @@ public class GraphHopperAPITest {
         assertTrue(ph.found());
         assertEquals(3, ph.points().size());
     }
+
+    @Test
+    public void testLoadPbf() throws IOException {
+        String str = "./target/tmp/ghpbf";
+        Helper.removeDir(new File(str));
+        new File(str).mkdirs();
+        OutputStream os = new FileOutputStream(str + "/test.osm.pbf");
+        new OSMPbfWriter().node(10, 51.2492152, 9.4317166).node(20, 52, 9).
+                node(30, 51.2, 9.4).node(40, 51.25, 9.43).node(50, 49, 10).
+                way(10, new long[]{10, 20, 30}, "highway", "motorway").
+                way(11, new long[]{20, 40, 50}, "highway", "service").writeTo(os);
+        os.close();
+
+        GraphHopperAPI instance = new GraphHopper().setGraphHopperLocation(str + "/a-gh");
+        instance.load(str + "/test.osm.pbf");
+        GHResponse ph = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertTrue(ph.found());
+        assertEquals(3, ph.points().size());
+
+        // without file end the pbf file is found too
+        instance = new GraphHopper().setGraphHopperLocation(str + "/b-gh");
+        instance.load(str + "/test");
+        ph = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertTrue(ph.found());
+        assertEquals(3, ph.points().size());
+        Helper.removeDir(new File(str));
+    }
+
+    @Test
+    public void testLoadOSMWithLandmarks() {
+        String str = "./target/tmp/ghosm-lm";
+        Helper.removeDir(new File(str));
+        GraphHopper instance = new GraphHopper().setGraphHopperLocation(str).landmarks(2);
+        instance.load("./src/test/resources/com/graphhopper/reader/test-osm.xml");
+        for (String algo : new String[]{"astar", "astarbi", "dijkstra"}) {
+            GHResponse ph = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4).algorithm(algo));
+            assertTrue(ph.found());
+            assertEquals(3, ph.points().size());
+        }
+        Helper.removeDir(new File(str));
+    }
+
+    @Test
+    public void testLoadOSMWithEdgeIndex() {
+        String str = "./target/tmp/ghosm-edge-gh";
+        Helper.removeDir(new File(str));
+        GraphHopper instance = new GraphHopper().setGraphHopperLocation(str).edgeIndex(true);
+        instance.load("./src/test/resources/com/graphhopper/reader/test-osm.xml");
+        GHResponse ph = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertTrue(ph.found());
+        assertEquals(3, ph.points().size());
+
+        // load the stored index
+        instance = new GraphHopper().edgeIndex(true);
+        instance.load(str);
+        ph = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertTrue(ph.found());
+        assertEquals(3, ph.points().size());
+        Helper.removeDir(new File(str));
+    }
+
+    @Test
+    public void testConcurrentRoute() throws Exception {
+        final GraphHopper instance = new GraphHopper(createGridGraph(40));
+        Random rand = new Random(123);
+        final List<GHRequest> requests = new ArrayList<GHRequest>();
+        for (int i = 0; i < 200; i++) {
+            requests.add(new GHRequest(50 + rand.nextDouble() * 0.4, 10 + rand.nextDouble() * 0.4,
+                    50 + rand.nextDouble() * 0.4, 10 + rand.nextDouble() * 0.4).algorithm("dijkstrabi"));
+        }
+
+        List<GHResponse> expected = new ArrayList<GHResponse>();
+        for (GHRequest req : requests) {
+            expected.add(instance.route(req));
+        }
+
+        for (int threads = 1; threads <= 4; threads *= 2) {
+            ExecutorService service = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<GHResponse>> futures = new ArrayList<Future<GHResponse>>();
+                for (final GHRequest req : requests) {
+                    futures.add(service.submit(new Callable<GHResponse>() {
+                        @Override public GHResponse call() {
+                            return instance.route(req);
+                        }
+                    }));
+                }
+                for (int i = 0; i < futures.size(); i++) {
+                    GHResponse rsp = futures.get(i).get();
+                    assertEquals(expected.get(i).found(), rsp.found());
+                    assertEquals(expected.get(i).distance(), rsp.distance(), 1e-6);
+                    assertEquals(expected.get(i).points().size(), rsp.points().size());
+                }
+            } finally {
+                service.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testBatchRoute() {
+        GraphHopper instance = new GraphHopper(createGridGraph(40));
+        Random rand = new Random(123);
+        List<GHRequest> requests = new ArrayList<GHRequest>();
+        for (int i = 0; i < 200; i++) {
+            requests.add(new GHRequest(50 + rand.nextDouble() * 0.4, 10 + rand.nextDouble() * 0.4,
+                    50 + rand.nextDouble() * 0.4, 10 + rand.nextDouble() * 0.4).
+                    algorithm(i % 3 == 0 ? "astar" : "dijkstrabi"));
+        }
+        // repeated points
+        requests.add(new GHRequest(50.1, 10.1, 50.2, 10.2));
+        requests.add(new GHRequest(50.2, 10.2, 50.1, 10.1));
+
+        List<GHResponse> expected = new ArrayList<GHResponse>();
+        for (GHRequest req : requests) {
+            expected.add(instance.route(req));
+        }
+
+        for (int threads = 1; threads <= 4; threads *= 2) {
+            List<GHResponse> responses = instance.batchThreads(threads).route(requests);
+            assertEquals(requests.size(), responses.size());
+            for (int i = 0; i < responses.size(); i++) {
+                GHResponse rsp = responses.get(i);
+                assertEquals(expected.get(i).found(), rsp.found());
+                assertEquals(expected.get(i).distance(), rsp.distance(), 1e-6);
+                assertEquals(expected.get(i).points().size(), rsp.points().size());
+            }
+        }
+        assertTrue(instance.route(new ArrayList<GHRequest>()).isEmpty());
+    }
+
+    @Test
+    public void testIsochrone() {
+        GraphHopper instance = new GraphHopper(createGridGraph(20));
+        // 0.01 degree is ~1112m in latitude and ~715m in longitude
+        GHIsochroneResponse rsp = instance.isochrone(new GHIsochroneRequest(50.1, 10.1).distanceLimit(1200));
+        assertTrue(rsp.found());
+        for (int i = 0; i < rsp.points().size(); i++) {
+            assertEquals(50.1, rsp.points().latitude(i), 0.011);
+            assertEquals(10.1, rsp.points().longitude(i), 0.016);
+        }
+        assertEquals(rsp.nodes().size(), rsp.points().size());
+        assertTrue(rsp.polygon().size() >= 4);
+        assertTrue(rsp.polygon().size() < rsp.points().size());
+
+        try {
+            instance.isochrone(new GHIsochroneRequest(50.1, 10.1));
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testIsochroneTimeLimitUsesFastestPaths() {
+        //    /-- slow --1-- slow --\
+        //   0                        3
+        //    \-- fast --2-- fast --/
+        GraphStorage graph = new GraphStorage(new RAMDirectory()).createNew(10);
+        graph.setNode(0, 50, 10);
+        graph.setNode(1, 50.01, 10.01);
+        graph.setNode(2, 49.99, 10.01);
+        graph.setNode(3, 50, 10.02);
+        // 2km with 10km/h take 720s, 4km with 100km/h take 144s
+        graph.edge(0, 1, 1000, CarStreetType.flags(10, true));
+        graph.edge(1, 3, 1000, CarStreetType.flags(10, true));
+        graph.edge(0, 2, 2000, CarStreetType.flags(100, true));
+        graph.edge(2, 3, 2000, CarStreetType.flags(100, true));
+
+        GraphHopper instance = new GraphHopper(graph);
+        GHIsochroneResponse rsp = instance.isochrone(new GHIsochroneRequest(50, 10).timeLimit(300));
+        assertTrue(rsp.nodes().contains(2));
+        assertTrue(rsp.nodes().contains(3));
+        assertFalse(rsp.nodes().contains(1));
+    }
+
+    static GraphStorage createGridGraph(int size) {
+        GraphStorage graph = new GraphStorage(new RAMDirectory()).createNew(size * size);
+        DistanceCalc dist = new DistanceCalc();
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                graph.setNode(y * size + x, 50 + y * 0.01, 10 + x * 0.01);
+            }
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int node = y * size + x;
+                if (x + 1 < size)
+                    graph.edge(node, node + 1, dist.calcDist(graph.getLatitude(node), graph.getLongitude(node),
+                            graph.getLatitude(node + 1), graph.getLongitude(node + 1)), true);
+                if (y + 1 < size)
+                    graph.edge(node, node + size, dist.calcDist(graph.getLatitude(node), graph.getLongitude(node),
+                            graph.getLatitude(node + size), graph.getLongitude(node + size)), true);
+            }
+        }
+        return graph;
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class IntDoubleIndexedBinHeapTest extends AbstractBinHeapTest {
+
+    @Override
+    public BinHeapWrapper<Number, Integer> createHeap(int capacity) {
+        return new IntDoubleIndexedBinHeap(capacity);
+    }
+
+    @Test
+    public void testContainsAndClear() {
+        IntDoubleIndexedBinHeap heap = new IntDoubleIndexedBinHeap(10, 5);
+        heap.insert_(1.5, 3);
+        heap.insert_(0.5, 20);
+        assertTrue(heap.contains(3));
+        assertTrue(heap.contains(20));
+        assertFalse(heap.contains(4));
+        assertFalse(heap.update_(1, 4));
+
+        assertEquals(20, heap.poll_element());
+        assertFalse(heap.contains(20));
+        heap.clear();
+        assertFalse(heap.contains(3));
+        assertTrue(heap.isEmpty());
+        heap.insert_(2, 3);
+        assertEquals(3, heap.peek_element());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInsertTwice() {
+        IntDoubleIndexedBinHeap heap = new IntDoubleIndexedBinHeap(10);
+        heap.insert_(1, 3);
+        heap.insert_(2, 3);
+    }
+
+    @Test
+    public void testRandomUpdates() {
+        for (int maxElements : new int[]{-1, 1, 500}) {
+            IntDoubleIndexedBinHeap heap = new IntDoubleIndexedBinHeap(10, maxElements);
+            double[] keys = new double[500];
+            Random rand = new Random(maxElements);
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = rand.nextDouble();
+                heap.insert_(keys[i], i);
+            }
+            for (int i = 0; i < 2000; i++) {
+                int e = rand.nextInt(keys.length);
+                keys[e] = rand.nextDouble();
+                assertTrue(heap.update_(keys[e], e));
+            }
+
+            double last = -1;
+            for (int i = 0; i < keys.length; i++) {
+                double key = heap.peek_key();
+                int e = heap.poll_element();
+                assertEquals(keys[e], key, 1e-10);
+                assertTrue(last <= key);
+                last = key;
+            }
+            assertTrue(heap.isEmpty());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class MyTouchedBitSetTest extends AbstractMyBitSetTest {
+
+    @Override
+    public MyBitSet createBitSet(int no) {
+        return new MyTouchedBitSet(no);
+    }
+
+    @Test
+    public void testClearOnlyTouched() {
+        MyBitSet bs = createBitSet(1000);
+        bs.add(3);
+        bs.add(3);
+        bs.add(65);
+        bs.add(999);
+        assertEquals(3, bs.cardinality());
+        bs.clear();
+        assertEquals(-1, bs.next(0));
+        bs.add(64);
+        assertEquals(64, bs.next(0));
+        assertFalse(bs.contains(65));
+        assertEquals(1, bs.cardinality());
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.MMapDirectory;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class OSMIDSortedMapTest {
+
+    private String location = "./target/tmp/osmidmap";
+
+    @After public void tearDown() {
+        Helper.removeDir(new File(location));
+    }
+
+    @Test
+    public void testEmpty() {
+        OSMIDSortedMap map = new OSMIDSortedMap(new RAMDirectory(), "ids", -1);
+        map.optimize(1, 2);
+        assertEquals(0, map.size());
+        assertEquals(-1, map.get(0));
+        assertEquals(-1, map.get(123));
+    }
+
+    @Test
+    public void testGetAndPut() {
+        OSMIDSortedMap map = new OSMIDSortedMap(new RAMDirectory(), "ids", -1);
+        map.add(20);
+        map.add(10);
+        map.add(30);
+        map.add(20);
+        map.add(0);
+        map.optimize(1, 2);
+        assertEquals(4, map.size());
+        assertEquals(1, map.get(0));
+        assertEquals(1, map.get(10));
+        assertEquals(2, map.get(20));
+        assertEquals(1, map.get(30));
+        assertEquals(-1, map.get(15));
+        assertEquals(-1, map.get(31));
+        assertEquals(-1, map.get(-5));
+
+        map.put(10, -7);
+        assertEquals(-7, map.get(10));
+        assertEquals(2, map.get(20));
+        try {
+            map.put(11, 3);
+            fail();
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            map.add(11);
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testMultipleRuns() {
+        // the same key in different runs
+        OSMIDSortedMap map = new OSMIDSortedMap(new RAMDirectory(), "ids", -1, 2);
+        map.add(5);
+        map.add(3);
+        map.add(7);
+        map.add(5);
+        map.add(9);
+        map.optimize(1, 2);
+        assertEquals(4, map.size());
+        assertEquals(1, map.get(3));
+        assertEquals(2, map.get(5));
+        assertEquals(1, map.get(7));
+        assertEquals(1, map.get(9));
+    }
+
+    @Test
+    public void testRandom() {
+        assertRandom(new RAMDirectory(), 100);
+    }
+
+    @Test
+    public void testSegmentCache() {
+        // 10000 segments => the decoded segments share the cache slots
+        OSMIDSortedMap map = new OSMIDSortedMap(new RAMDirectory(), "ids", -1, 1000);
+        for (long id = 1; id <= 160000; id++) {
+            map.add(id * 7);
+        }
+        map.optimize(1, 2);
+        assertEquals(-1, map.get(0));
+        assertEquals(-1, map.get(160001 * 7));
+        Random rand = new Random(0);
+        for (int i = 0; i < 100000; i++) {
+            long id = 1 + rand.nextInt(160000);
+            assertEquals(1, map.get(id * 7));
+            assertEquals(-1, map.get(id * 7 + 1));
+        }
+        map.close();
+    }
+
+    @Test
+    public void testMMap() {
+        Directory dir = new MMapDirectory(location);
+        assertRandom(dir, 1000);
+    }
+
+    void assertRandom(Directory dir, int runSize) {
+        Random rand = new Random(0);
+        Map<Long, Integer> counts = new HashMap<Long, Integer>();
+        OSMIDSortedMap map = new OSMIDSortedMap(dir, "ids", -1, runSize);
+        long id = 1000;
+        for (int i = 0; i < 5000; i++) {
+            // mostly dense ids with some huge gaps and negative ones
+            if (i % 1000 == 999)
+                id += 10000000000L;
+            else
+                id += 1 + rand.nextInt(5);
+            long key = rand.nextInt(20) == 0 ? -id : id;
+            int times = 1 + rand.nextInt(2);
+            for (int j = 0; j < times; j++) {
+                map.add(key);
+            }
+            increment(counts, key, times);
+            // repeat some keys later
+            if (rand.nextInt(10) == 0) {
+                key = id - rand.nextInt(50);
+                map.add(key);
+                increment(counts, key, 1);
+            }
+        }
+
+        map.optimize(1, 2);
+        assertEquals(counts.size(), map.size());
+        for (Map.Entry<Long, Integer> e : counts.entrySet()) {
+            assertEquals("key " + e.getKey(), e.getValue() > 1 ? 2 : 1, map.get(e.getKey()));
+        }
+        for (int i = 0; i < 1000; i++) {
+            long key = rand.nextLong() / 8;
+            if (!counts.containsKey(key))
+                assertEquals(-1, map.get(key));
+        }
+
+        // change all values in random order
+        int value = 3;
+        for (Long key : counts.keySet()) {
+            map.put(key, value++);
+        }
+        value = 3;
+        for (Long key : counts.keySet()) {
+            assertEquals(value++, map.get(key));
+        }
+        map.close();
+    }
+
+    private static void increment(Map<Long, Integer> counts, long key, int times) {
+        Integer old = counts.get(key);
+        counts.put(key, old == null ? times : old + times);
+    }
+
+    @Test
+    public void testMemory() {
+        OSMIDSortedMap map = new OSMIDSortedMap(new RAMDirectory(), "ids", -1, 10000);
+        int size = 100000;
+        for (long id = 1; id <= size; id++) {
+            map.add(id * 3);
+        }
+        map.optimize(1, 2);
+        assertEquals(size, map.size());
+        float bytesPerEntry = map.calcMemInMB() * Helper.MB / size;
+        assertTrue("bytes per entry " + bytesPerEntry, bytesPerEntry < 6);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TLongArrayList;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class OSMPbfReaderTest {
+
+    private final List<long[]> nodeIds = new ArrayList<long[]>();
+    private final List<double[]> nodeCoords = new ArrayList<double[]>();
+    private final List<TLongList> wayNodes = new ArrayList<TLongList>();
+    private final List<Map<String, String>> wayTags = new ArrayList<Map<String, String>>();
+    private final List<Long> wayIds = new ArrayList<Long>();
+    private final List<Integer> wayFlags = new ArrayList<Integer>();
+
+    OSMPbfWriter createWriter() {
+        return new OSMPbfWriter().node(10, 51.2492152, 9.4317166).
+                node(20, 52, 9).
+                node(5000000000L, -33.8688197, -151.2092955).
+                node(30, 0, 0).
+                way(7, new long[]{10, 20, 5000000000L}, "highway", "motorway", "oneway", "yes").
+                way(8000000000L, new long[]{30, 10}, "highway", "service", "name", "Stra\u00dfe");
+    }
+
+    void read(OSMPbfWriter writer, boolean nodes) throws IOException {
+        read(new OSMPbfReader(new ByteArrayInputStream(writer.toBytes())).nodes(nodes));
+    }
+
+    void read(OSMPbfReader reader) throws IOException {
+        reader.read(new OSMPbfReader.Handler() {
+            @Override public void node(long osmId, double lat, double lon) {
+                nodeIds.add(new long[]{osmId});
+                nodeCoords.add(new double[]{lat, lon});
+            }
+
+            @Override public void way(long osmId, TLongList nodes, Map<String, String> tags, int flags) {
+                wayIds.add(osmId);
+                wayFlags.add(flags);
+                wayNodes.add(new TLongArrayList(nodes));
+                wayTags.add(new HashMap<String, String>(tags));
+            }
+        });
+    }
+
+    void assertEntities() {
+        assertEquals(4, nodeIds.size());
+        assertEquals(10, nodeIds.get(0)[0]);
+        assertEquals(51.2492152, nodeCoords.get(0)[0], 1e-7);
+        assertEquals(9.4317166, nodeCoords.get(0)[1], 1e-7);
+        assertEquals(5000000000L, nodeIds.get(2)[0]);
+        assertEquals(-33.8688197, nodeCoords.get(2)[0], 1e-7);
+        assertEquals(-151.2092955, nodeCoords.get(2)[1], 1e-7);
+        assertEquals(0, nodeCoords.get(3)[0], 1e-7);
+
+        assertEquals(2, wayIds.size());
+        assertEquals(7L, (long) wayIds.get(0));
+        assertEquals(new TLongArrayList(new long[]{10, 20, 5000000000L}), wayNodes.get(0));
+        assertEquals("motorway", wayTags.get(0).get("highway"));
+        assertEquals("yes", wayTags.get(0).get("oneway"));
+        assertEquals(8000000000L, (long) wayIds.get(1));
+        assertEquals(new TLongArrayList(new long[]{30, 10}), wayNodes.get(1));
+        assertEquals("Stra\u00dfe", wayTags.get(1).get("name"));
+        assertEquals(2, wayTags.get(1).size());
+    }
+
+    @Test
+    public void testDenseNodes() throws IOException {
+        read(createWriter(), true);
+        assertEntities();
+    }
+
+    @Test
+    public void testNodesUncompressed() throws IOException {
+        read(createWriter().dense(false).compress(false), true);
+        assertEntities();
+    }
+
+    @Test
+    public void testGranularity() throws IOException {
+        read(new OSMPbfWriter().granularity(1000).node(1, 10.123456, -20.654321), true);
+        assertEquals(1, nodeIds.size());
+        assertEquals(10.123456, nodeCoords.get(0)[0], 1e-7);
+        assertEquals(-20.654321, nodeCoords.get(0)[1], 1e-7);
+    }
+
+    @Test
+    public void testSkipNodes() throws IOException {
+        read(createWriter(), false);
+        assertEquals(0, nodeIds.size());
+        assertEquals(2, wayIds.size());
+        assertEquals(new TLongArrayList(new long[]{30, 10}), wayNodes.get(1));
+    }
+
+    @Test
+    public void testWorkers() throws IOException {
+        read(new OSMPbfReader(new ByteArrayInputStream(createWriter().blockSize(1).toBytes())).workers(3));
+        assertEntities();
+    }
+
+    @Test
+    public void testWayParser() throws IOException {
+        OSMPbfReader reader = new OSMPbfReader(new ByteArrayInputStream(createWriter().blockSize(1).toBytes()));
+        read(reader.workers(2).wayParser(new OSMPbfReader.WayParser() {
+            @Override public int flags(Map<String, String> tags) {
+                return "service".equals(tags.get("highway")) ? 5 : -1;
+            }
+        }));
+        assertEquals(4, nodeIds.size());
+        assertEquals(1, wayIds.size());
+        assertEquals(8000000000L, (long) wayIds.get(0));
+        assertEquals("service", wayTags.get(0).get("highway"));
+        assertEquals(5, (int) wayFlags.get(0));
+    }
+
+    @Test
+    public void testWorkersUnsupportedFeature() throws IOException {
+        OSMPbfWriter writer = createWriter().requiredFeature("HistoricalInformation");
+        try {
+            read(new OSMPbfReader(new ByteArrayInputStream(writer.toBytes())).workers(2));
+            fail();
+        } catch (IllegalStateException ex) {
+            assertTrue(ex.getMessage().contains("HistoricalInformation"));
+        }
+    }
+
+    @Test
+    public void testUnsupportedFeature() throws IOException {
+        try {
+            read(createWriter().requiredFeature("HistoricalInformation"), true);
+            fail();
+        } catch (IllegalStateException ex) {
+            assertTrue(ex.getMessage().contains("HistoricalInformation"));
+        }
+    }
+}
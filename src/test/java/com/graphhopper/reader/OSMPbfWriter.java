@@ -0,0 +1,263 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Creates small PBF files for tests. The nodes are written before the ways,
+ * each block contains at most blockSize entities.
+ *
+ * @author Peter Karich
+ */
+public class OSMPbfWriter {
+
+    private final List<long[]> nodes = new ArrayList<long[]>();
+    private final List<long[]> ways = new ArrayList<long[]>();
+    private final List<String[]> wayTags = new ArrayList<String[]>();
+    private final List<String> requiredFeatures = new ArrayList<String>();
+    private boolean dense = true;
+    private boolean compress = true;
+    private int granularity = 100;
+    private int blockSize = 8000;
+
+    public OSMPbfWriter() {
+        requiredFeatures.add("OsmSchema-V0.6");
+        requiredFeatures.add("DenseNodes");
+    }
+
+    public OSMPbfWriter dense(boolean dense) {
+        this.dense = dense;
+        return this;
+    }
+
+    public OSMPbfWriter compress(boolean compress) {
+        this.compress = compress;
+        return this;
+    }
+
+    public OSMPbfWriter granularity(int granularity) {
+        this.granularity = granularity;
+        return this;
+    }
+
+    public OSMPbfWriter blockSize(int blockSize) {
+        this.blockSize = blockSize;
+        return this;
+    }
+
+    public OSMPbfWriter requiredFeature(String feature) {
+        requiredFeatures.add(feature);
+        return this;
+    }
+
+    public OSMPbfWriter node(long id, double lat, double lon) {
+        nodes.add(new long[]{id, Math.round(lat * 1e9 / granularity), Math.round(lon * 1e9 / granularity)});
+        return this;
+    }
+
+    /**
+     * @param keyValues the tags of the way: key1, value1, key2, value2, ...
+     */
+    public OSMPbfWriter way(long id, long[] refs, String... keyValues) {
+        long[] way = new long[refs.length + 1];
+        way[0] = id;
+        System.arraycopy(refs, 0, way, 1, refs.length);
+        ways.add(way);
+        wayTags.add(keyValues);
+        return this;
+    }
+
+    public byte[] toBytes() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        writeTo(bos);
+        return bos.toByteArray();
+    }
+
+    public void writeTo(OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(os);
+        Message header = new Message();
+        for (String f : requiredFeatures) {
+            header.string(4, f);
+        }
+        writeBlob(out, "OSMHeader", header.toBytes());
+
+        for (int from = 0; from < nodes.size(); from += blockSize) {
+            writeBlob(out, "OSMData", nodeBlock(nodes.subList(from, Math.min(nodes.size(), from + blockSize))));
+        }
+        for (int from = 0; from < ways.size(); from += blockSize) {
+            writeBlob(out, "OSMData", wayBlock(from, Math.min(ways.size(), from + blockSize)));
+        }
+        out.flush();
+    }
+
+    private byte[] nodeBlock(List<long[]> nodes) {
+        Map<String, Integer> table = new LinkedHashMap<String, Integer>();
+        table.put("", 0);
+        Message group = new Message();
+        if (dense) {
+            Message denseNodes = new Message();
+            Message ids = new Message(), lats = new Message(), lons = new Message();
+            long prevId = 0, prevLat = 0, prevLon = 0;
+            for (long[] n : nodes) {
+                ids.sint64(n[0] - prevId);
+                lats.sint64(n[1] - prevLat);
+                lons.sint64(n[2] - prevLon);
+                prevId = n[0];
+                prevLat = n[1];
+                prevLon = n[2];
+            }
+            denseNodes.message(1, ids).message(8, lats).message(9, lons);
+            group.message(2, denseNodes);
+        } else {
+            for (long[] n : nodes) {
+                Message node = new Message();
+                node.key(1, 0).sint64(n[0]);
+                node.key(8, 0).sint64(n[1]);
+                node.key(9, 0).sint64(n[2]);
+                group.message(1, node);
+            }
+        }
+        return block(table, group);
+    }
+
+    private byte[] wayBlock(int from, int to) {
+        Map<String, Integer> table = new LinkedHashMap<String, Integer>();
+        table.put("", 0);
+        Message group = new Message();
+        for (int i = from; i < to; i++) {
+            long[] w = ways.get(i);
+            String[] kv = wayTags.get(i);
+            Message keys = new Message(), vals = new Message(), refs = new Message();
+            for (int j = 0; j + 1 < kv.length; j += 2) {
+                keys.varint(index(table, kv[j]));
+                vals.varint(index(table, kv[j + 1]));
+            }
+            long prev = 0;
+            for (int j = 1; j < w.length; j++) {
+                refs.sint64(w[j] - prev);
+                prev = w[j];
+            }
+            Message way = new Message();
+            way.key(1, 0).varint(w[0]);
+            way.message(2, keys).message(3, vals).message(8, refs);
+            group.message(3, way);
+        }
+        return block(table, group);
+    }
+
+    private byte[] block(Map<String, Integer> table, Message group) {
+        Message strings = new Message();
+        for (String str : table.keySet()) {
+            strings.string(1, str);
+        }
+        Message block = new Message();
+        block.message(1, strings).message(2, group);
+        block.key(17, 0).varint(granularity);
+        return block.toBytes();
+    }
+
+    private static int index(Map<String, Integer> table, String str) {
+        Integer index = table.get(str);
+        if (index == null) {
+            index = table.size();
+            table.put(str, index);
+        }
+        return index;
+    }
+
+    private void writeBlob(DataOutputStream out, String type, byte[] raw) throws IOException {
+        Message blob = new Message();
+        if (compress) {
+            Deflater deflater = new Deflater();
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] tmp = new byte[raw.length * 2 + 64];
+            int size = deflater.deflate(tmp);
+            deflater.end();
+            blob.key(2, 0).varint(raw.length);
+            blob.key(3, 2).varint(size);
+            blob.out.write(tmp, 0, size);
+        } else {
+            blob.key(1, 2).varint(raw.length);
+            blob.out.write(raw, 0, raw.length);
+        }
+        byte[] blobBytes = blob.toBytes();
+        Message header = new Message();
+        header.string(1, type);
+        header.key(3, 0).varint(blobBytes.length);
+        byte[] headerBytes = header.toBytes();
+        out.writeInt(headerBytes.length);
+        out.write(headerBytes);
+        out.write(blobBytes);
+    }
+
+    static class Message {
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Message key(int field, int wireType) {
+            return varint(field << 3 | wireType);
+        }
+
+        Message varint(long val) {
+            while ((val & ~0x7FL) != 0) {
+                out.write((int) (val & 0x7F) | 0x80);
+                val >>>= 7;
+            }
+            out.write((int) val);
+            return this;
+        }
+
+        Message sint64(long val) {
+            return varint((val << 1) ^ (val >> 63));
+        }
+
+        Message string(int field, String str) {
+            byte[] bytes;
+            try {
+                bytes = str.getBytes("UTF-8");
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+            key(field, 2).varint(bytes.length);
+            out.write(bytes, 0, bytes.length);
+            return this;
+        }
+
+        Message message(int field, Message msg) {
+            byte[] bytes = msg.toBytes();
+            key(field, 2).varint(bytes.length);
+            out.write(bytes, 0, bytes.length);
+            return this;
+        }
+
+        byte[] toBytes() {
+            return out.toByteArray();
+        }
+    }
+}
@@ -26,8 +26,14 @@ import com.graphhopper.storage.RAMDirectory;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.GraphUtility;
 import com.graphhopper.util.Helper;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.Random;
 import org.junit.After;
 import static org.junit.Assert.*;
 import org.junit.Before;
@@ -67,7 +73,14 @@ public class OSMReaderTest {
     }
 
     @Test public void testMain() {
-        OSMReader reader = preProcess(init(new OSMReader(createGraph(dir), 1000)));
+        assertMain(preProcess(init(new OSMReader(createGraph(dir), 1000))));
+    }
+
+    @Test public void testMainWithHashIdMap() {
+        assertMain(preProcess(init(new OSMReader(createGraph(dir), 1000)).compactIdMap(false)));
+    }
+
+    void assertMain(OSMReader reader) {
         reader.writeOsm2Graph(getClass().getResourceAsStream("test-osm.xml"));
         reader.optimize();
         reader.flush();
@@ -112,6 +125,118 @@ public class OSMReaderTest {
         assertEquals(51.249, graph.getLatitude(reader.location2IDIndex().findID(51.2492152, 9.4317166)), 1e-3);
     }
 
+    /**
+     * The same data as in test-osm.xml
+     */
+    byte[] createPbf() throws IOException {
+        return new OSMPbfWriter().node(10, 51.2492152, 9.4317166).node(20, 52, 9).node(30, 51.2, 9.4).
+                node(35, 45.2, 13.431).node(40, 51.25, 9.43).node(41, 51.23, 11.43).
+                node(45, 41.2, 10.431).node(50, 49, 10).
+                way(10, new long[]{10, 20, 30}, "highway", "motorway").
+                way(11, new long[]{20, 40, 50}, "highway", "service").toBytes();
+    }
+
+    @Test public void testPbf() throws IOException {
+        OSMReader reader = init(new OSMReader(createGraph(dir), 1000));
+        reader.setDoubleParse(true);
+        reader.helper().preProcessPbf(new ByteArrayInputStream(createPbf()), 1);
+        reader.writePbf2Graph(new ByteArrayInputStream(createPbf()));
+        reader.optimize();
+        reader.flush();
+        Graph graph = reader.graph();
+        assertEquals(4, graph.nodes());
+        int internalIdMain = AbstractGraphTester.getIdOf(graph, 52);
+        int internalId1 = AbstractGraphTester.getIdOf(graph, 51.2492152);
+        int internalId2 = AbstractGraphTester.getIdOf(graph, 51.2);
+        int internalId3 = AbstractGraphTester.getIdOf(graph, 49);
+        assertEquals(Arrays.asList(internalIdMain), GraphUtility.neighbors(graph.getOutgoing(internalId1)));
+        assertEquals(3, GraphUtility.count(graph.getOutgoing(internalIdMain)));
+
+        EdgeIterator iter = graph.getOutgoing(internalIdMain);
+        assertTrue(iter.next());
+        assertEquals(internalId1, iter.node());
+        assertEquals(88643, iter.distance(), 1);
+        assertTrue(iter.next());
+        assertEquals(internalId2, iter.node());
+        assertTrue(new CarStreetType(iter.flags()).isMotorway());
+        assertTrue(iter.next());
+        assertEquals(internalId3, iter.node());
+        AbstractGraphTester.assertPList(Helper.createPointList(51.25, 9.43), iter.wayGeometry());
+        assertTrue(new CarStreetType(iter.flags()).isService());
+    }
+
+    @Test public void testPbfFile() throws IOException {
+        File file = new File(dir, "test.osm.pbf");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(createPbf());
+        } finally {
+            out.close();
+        }
+        OSMReader reader = init(new OSMReader(createGraph(dir), 1000));
+        reader.osm2Graph(file);
+        Graph graph = reader.graph();
+        assertEquals(4, graph.nodes());
+        assertEquals(10, graph.getLongitude(reader.location2IDIndex().findID(49, 10)), 1e-3);
+    }
+
+    @Test public void testPbfWorkersCreateIdenticalFiles() throws IOException {
+        // a grid with some oneways, some ignored ways and 64bit ids
+        OSMPbfWriter writer = new OSMPbfWriter().blockSize(7);
+        int size = 12;
+        long offset = 3000000000L;
+        Random rand = new Random(1);
+        for (int i = 0; i < size * size; i++) {
+            writer.node(offset + i, 50 + i / size * 0.01 + rand.nextDouble() * 0.001, 9 + i % size * 0.01);
+        }
+        String[] types = {"primary", "residential", "building", "service"};
+        for (int i = 0; i < size; i++) {
+            long[] row = new long[size], column = new long[size];
+            for (int j = 0; j < size; j++) {
+                row[j] = offset + i * size + j;
+                column[j] = offset + j * size + i;
+            }
+            writer.way(2 * i, row, "highway", types[i % types.length], "oneway", i % 3 == 0 ? "yes" : "no");
+            writer.way(2 * i + 1, column, "highway", types[(i + 1) % types.length]);
+        }
+        File file = new File(dir, "grid.osm.pbf");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            writer.writeTo(out);
+        } finally {
+            out.close();
+        }
+
+        File seqDir = new File(dir, "seq");
+        File parallelDir = new File(dir, "parallel");
+        OSMReader reader = init(new OSMReader(new GraphStorage(new RAMDirectory(seqDir.getPath(), true)), 1000));
+        reader.osm2Graph(file);
+        reader = init(new OSMReader(new GraphStorage(new RAMDirectory(parallelDir.getPath(), true)), 1000));
+        reader.workerThreads(3).osm2Graph(file);
+        assertTrue(reader.graph().nodes() > 50);
+
+        String[] names = seqDir.list();
+        Arrays.sort(names);
+        assertTrue(names.length > 2);
+        String[] parallelNames = parallelDir.list();
+        Arrays.sort(parallelNames);
+        assertEquals(Arrays.asList(names), Arrays.asList(parallelNames));
+        for (String name : names) {
+            assertArrayEquals(name, readAll(new File(seqDir, name)), readAll(new File(parallelDir, name)));
+        }
+    }
+
+    static byte[] readAll(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
     @Test public void testSort() {
         OSMReader reader = preProcess(init(new OSMReader(createGraph(dir), 1000).sort(true)));
         reader.writeOsm2Graph(getClass().getResourceAsStream("test-osm.xml"));
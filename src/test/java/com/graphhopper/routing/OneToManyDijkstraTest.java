@@ -0,0 +1,85 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.CarStreetType;
+import com.graphhopper.routing.util.FastestCarCalc;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.RAMDirectory;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class OneToManyDijkstraTest {
+
+    @Test
+    public void testCompareWithDijkstra() {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        OneToManyDijkstra oneToMany = new OneToManyDijkstra(g);
+        for (int from = 0; from < g.nodes(); from += 37) {
+            oneToMany.calc(from);
+            assertEquals(g.nodes(), oneToMany.reachedNodes().size());
+            for (int to = 0; to < g.nodes(); to++) {
+                if (from == to) {
+                    assertEquals(0, oneToMany.weight(to), 1e-6);
+                    continue;
+                }
+                Path p = new DijkstraSimple(g).calcPath(from, to);
+                assertEquals(p.weight(), oneToMany.weight(to), 1e-6);
+                assertEquals(p.distance(), oneToMany.distance(to), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testLimits() {
+        Graph g = new GraphStorage(new RAMDirectory()).createNew(10);
+        g.edge(0, 1, 10, CarStreetType.flags(36, true));
+        g.edge(1, 2, 10, CarStreetType.flags(36, true));
+        g.edge(2, 3, 10, CarStreetType.flags(72, false));
+        g.edge(0, 4, 25, CarStreetType.flags(90, true));
+        OneToManyDijkstra oneToMany = new OneToManyDijkstra(g);
+        oneToMany.type(FastestCarCalc.DEFAULT);
+
+        oneToMany.calc(0);
+        assertEquals(5, oneToMany.reachedNodes().size());
+        assertEquals(30, oneToMany.distance(3), 1e-6);
+        assertEquals(2, oneToMany.time(2));
+
+        oneToMany.distanceLimit(20).calc(0);
+        assertEquals(3, oneToMany.reachedNodes().size());
+        assertTrue(oneToMany.isReached(2));
+        assertFalse(oneToMany.isReached(3));
+        assertFalse(oneToMany.isReached(4));
+
+        oneToMany.distanceLimit(Double.MAX_VALUE).timeLimit(1).calc(0);
+        assertEquals(3, oneToMany.reachedNodes().size());
+        assertTrue(oneToMany.isReached(1));
+        assertTrue(oneToMany.isReached(4));
+        assertFalse(oneToMany.isReached(2));
+
+        // one-way
+        oneToMany.timeLimit(Long.MAX_VALUE).calc(3);
+        assertEquals(1, oneToMany.reachedNodes().size());
+        assertFalse(oneToMany.isReached(2));
+    }
+}
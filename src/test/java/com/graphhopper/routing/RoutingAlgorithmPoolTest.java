@@ -0,0 +1,72 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.Helper;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class RoutingAlgorithmPoolTest {
+
+    @Test
+    public void testReuse() {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        RoutingAlgorithmPool pool = new RoutingAlgorithmPool(Helper.createAlgoPrepare("dijkstrabi").graph(g), 2);
+        RoutingAlgorithm algo1 = pool.borrow();
+        RoutingAlgorithm algo2 = pool.borrow();
+        RoutingAlgorithm algo3 = pool.borrow();
+        assertNotSame(algo1, algo2);
+        pool.release(algo1);
+        pool.release(algo2);
+        pool.release(algo3);
+        assertEquals(2, pool.idle());
+
+        assertSame(algo2, pool.borrow());
+        assertEquals(1, pool.idle());
+        assertEquals(2, pool.fill(5).idle());
+    }
+
+    @Test
+    public void testClearedInstancesReturnSameResults() {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        for (String algoStr : new String[]{"astar", "astarbi", "dijkstra", "dijkstrabi", "dijkstraNative"}) {
+            RoutingAlgorithmPool pool = new RoutingAlgorithmPool(Helper.createAlgoPrepare(algoStr).graph(g), 1);
+            Random rand = new Random(1);
+            for (int i = 0; i < 50; i++) {
+                int from = rand.nextInt(g.nodes());
+                int to = rand.nextInt(g.nodes());
+                Path expected = Helper.createAlgoFromString(g, algoStr).calcPath(from, to);
+                RoutingAlgorithm algo = pool.borrow();
+                try {
+                    Path p = algo.calcPath(from, to);
+                    assertEquals(algoStr + " " + from + "->" + to, expected.weight(), p.weight(), 1e-4);
+                    assertEquals(algoStr + " " + from + "->" + to, expected.calcNodes(), p.calcNodes());
+                } finally {
+                    pool.release(algo);
+                }
+            }
+        }
+    }
+}
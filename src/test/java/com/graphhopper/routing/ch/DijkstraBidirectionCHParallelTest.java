@@ -0,0 +1,52 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.LevelGraph;
+
+/**
+ * Runs the same tests as DijkstraBidirectionCHTest but with a graph prepared
+ * by several threads.
+ *
+ * @author Peter Karich
+ */
+public class DijkstraBidirectionCHParallelTest extends DijkstraBidirectionCHTest {
+
+    private static Graph preparedMatrixGraph;
+
+    @Override public Graph getMatrixGraph() {
+        if (preparedMatrixGraph == null) {
+            LevelGraph lg = createGraph(getMatrixAlikeGraph().nodes());
+            getMatrixAlikeGraph().copyTo(lg);
+            prepareGraph(lg);
+            preparedMatrixGraph = lg;
+        }
+        return preparedMatrixGraph;
+    }
+
+    @Override
+    public PrepareContractionHierarchies prepareGraph(Graph g, WeightCalculation calc) {
+        PrepareContractionHierarchies ch = new PrepareContractionHierarchies().graph(g).type(calc).threads(3);
+        if (g != preparedMatrixGraph)
+            ch.doWork();
+        return ch;
+    }
+}
@@ -19,16 +19,21 @@
 package com.graphhopper.routing.ch;
 
 import com.graphhopper.routing.AbstractRoutingAlgorithmTester;
+import com.graphhopper.routing.DijkstraSimple;
 import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithm;
 import com.graphhopper.routing.util.CarStreetType;
+import com.graphhopper.routing.util.FastestCarCalc;
 import com.graphhopper.routing.util.WeightCalculation;
 import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphStorage;
 import com.graphhopper.storage.LevelGraph;
 import com.graphhopper.storage.LevelGraphStorage;
 import com.graphhopper.storage.RAMDirectory;
 import com.graphhopper.util.EdgeSkipIterator;
 import com.graphhopper.util.Helper;
 import java.io.IOException;
+import java.util.Random;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -117,4 +122,83 @@ public class DijkstraBidirectionCHTest extends AbstractRoutingAlgorithmTester {
         assertEquals(4, p.calcNodes().size());
         assertEquals(4.2, p.distance(), 1e-5);
     }
+
+    @Test
+    public void testSameAsDijkstraWithOneWays() {
+        Random rand = new Random(3);
+        Graph orig = new GraphStorage(new RAMDirectory()).createNew(300);
+        for (int i = 0; i < 900; i++) {
+            int a = rand.nextInt(300), b = rand.nextInt(300);
+            if (a == b)
+                continue;
+            int speed = 20 + 10 * rand.nextInt(8);
+            orig.edge(a, b, 10 + rand.nextInt(100), CarStreetType.flags(speed, rand.nextInt(4) > 0));
+        }
+        LevelGraph g = (LevelGraph) orig.copyTo(createGraph(300));
+        DijkstraBidirectionCH algo = prepareGraph(g, FastestCarCalc.DEFAULT).createAlgo();
+        for (int i = 0; i < 300; i++) {
+            int from = rand.nextInt(300);
+            int to = rand.nextInt(300);
+            if (from == to)
+                continue;
+            Path expected = new DijkstraSimple(orig).type(FastestCarCalc.DEFAULT).calcPath(from, to);
+            Path p = algo.clear().calcPath(from, to);
+            assertEquals(expected.found(), p.found());
+            if (!expected.found())
+                continue;
+            // CH stores the weights rounded
+            assertEquals(expected.weight(), p.weight(), 1e-2);
+            assertEquals(from, p.calcNodes().get(0));
+            assertEquals(to, p.calcNodes().get(p.calcNodes().size() - 1));
+            assertTrue(algo.visitedNodes() > 0);
+        }
+    }
+
+    @Test
+    public void testShortcutCache() {
+        Random rand = new Random(5);
+        Graph orig = new GraphStorage(new RAMDirectory()).createNew(200);
+        for (int i = 0; i < 600; i++) {
+            int a = rand.nextInt(200), b = rand.nextInt(200);
+            if (a == b)
+                continue;
+            int speed = 20 + 10 * rand.nextInt(8);
+            orig.edge(a, b, 10 + rand.nextInt(100), CarStreetType.flags(speed, rand.nextInt(4) > 0));
+        }
+        LevelGraph g = (LevelGraph) orig.copyTo(createGraph(200));
+        PrepareContractionHierarchies prepare = prepareGraph(g, FastestCarCalc.DEFAULT);
+        DijkstraBidirectionCH algo = prepare.createAlgo();
+        ShortcutCache cache = new ShortcutCache(64);
+        DijkstraBidirectionCH cachedAlgo = prepare.createAlgo().shortcutCache(cache);
+        // query twice to get cache hits
+        for (int i = 0; i < 200; i++) {
+            int from = rand.nextInt(200);
+            int to = rand.nextInt(200);
+            Path expected = algo.clear().calcPath(from, to);
+            for (int j = 0; j < 2; j++) {
+                Path p = cachedAlgo.clear().calcPath(from, to);
+                assertEquals(expected.found(), p.found());
+                assertEquals(expected.calcNodes(), p.calcNodes());
+                assertEquals(expected.weight(), p.weight(), 1e-6);
+                assertEquals(expected.distance(), p.distance(), 1e-6);
+                assertEquals(expected.time(), p.time());
+            }
+        }
+        assertEquals(64, cache.size());
+    }
+
+    @Test
+    public void testCallClearBefore() {
+        LevelGraph g = createGraph(10);
+        g.edge(0, 1, 10, true);
+        g.edge(1, 2, 10, false);
+        RoutingAlgorithm algo = prepareGraph(g).createAlgo();
+        assertFalse(algo.calcPath(2, 1).found());
+        try {
+            algo.calcPath(0, 2);
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+        assertEquals(20, algo.clear().calcPath(0, 2).distance(), 1e-4);
+    }
 }
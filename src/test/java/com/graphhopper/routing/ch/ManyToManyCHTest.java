@@ -0,0 +1,141 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.AbstractRoutingAlgorithmTester;
+import com.graphhopper.routing.DistanceMatrix;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.util.CarStreetType;
+import com.graphhopper.routing.util.FastestCarCalc;
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.storage.LevelGraphStorage;
+import com.graphhopper.storage.RAMDirectory;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class ManyToManyCHTest {
+
+    LevelGraph createGraph(int size) {
+        LevelGraphStorage lg = new LevelGraphStorage(new RAMDirectory());
+        lg.createNew(size);
+        return lg;
+    }
+
+    @Test
+    public void testMatrixGraph() {
+        LevelGraph g = createGraph(200);
+        AbstractRoutingAlgorithmTester.getMatrixAlikeGraph().copyTo(g);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(g).doWork();
+        Random rand = new Random(1);
+        assertMatrix(prepare, randomNodes(rand, g.nodes(), 20), randomNodes(rand, g.nodes(), 30));
+    }
+
+    @Test
+    public void testOneWaysAndFastest() {
+        Random rand = new Random(2);
+        LevelGraph g = createGraph(100);
+        for (int i = 0; i < 300; i++) {
+            int a = rand.nextInt(100), b = rand.nextInt(100);
+            if (a == b)
+                continue;
+            int speed = 20 + 10 * rand.nextInt(8);
+            g.edge(a, b, 10 + rand.nextInt(100), CarStreetType.flags(speed, rand.nextInt(4) > 0));
+        }
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(g).
+                type(FastestCarCalc.DEFAULT).doWork();
+        assertMatrix(prepare, randomNodes(rand, 100, 25), randomNodes(rand, 100, 25));
+    }
+
+    @Test
+    public void testSameNodeAndDisconnected() {
+        LevelGraph g = createGraph(10);
+        g.edge(0, 1, 10, true);
+        g.edge(1, 2, 10, false);
+        g.edge(3, 4, 10, true);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(g).doWork();
+        DistanceMatrix matrix = prepare.createManyToMany().calcMatrix(new int[]{0, 2, 3}, new int[]{0, 2});
+        assertEquals(3, matrix.rows());
+        assertEquals(2, matrix.columns());
+        assertEquals(0, matrix.weight(0, 0), 1e-6);
+        assertEquals(20, matrix.distance(0, 1), 1e-6);
+        assertFalse(matrix.found(1, 0));
+        assertEquals(0, matrix.distance(1, 1), 1e-6);
+        assertFalse(matrix.found(2, 0));
+        assertFalse(matrix.found(2, 1));
+    }
+
+    @Test
+    public void testReuse() {
+        LevelGraph g = createGraph(200);
+        AbstractRoutingAlgorithmTester.getMatrixAlikeGraph().copyTo(g);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(g).doWork();
+        ManyToManyCH manyToMany = prepare.createManyToMany();
+        int[] nodes = randomNodes(new Random(3), g.nodes(), 10);
+        DistanceMatrix m1 = manyToMany.calcMatrix(nodes, nodes);
+        DistanceMatrix m2 = manyToMany.calcMatrix(nodes, nodes);
+        for (int i = 0; i < nodes.length; i++) {
+            for (int j = 0; j < nodes.length; j++) {
+                assertEquals(m1.weight(i, j), m2.weight(i, j), 1e-6);
+                assertEquals(m1.distance(i, j), m2.distance(i, j), 1e-6);
+                assertEquals(m1.time(i, j), m2.time(i, j));
+            }
+        }
+    }
+
+    static int[] randomNodes(Random rand, int nodes, int count) {
+        int[] arr = new int[count];
+        for (int i = 0; i < count; i++) {
+            arr[i] = rand.nextInt(nodes);
+        }
+        return arr;
+    }
+
+    static void assertMatrix(PrepareContractionHierarchies prepare, int[] sources, int[] targets) {
+        DistanceMatrix matrix = prepare.createManyToMany().calcMatrix(sources, targets);
+        RoutingAlgorithm algo = prepare.createAlgo();
+        for (int s = 0; s < sources.length; s++) {
+            for (int t = 0; t < targets.length; t++) {
+                if (sources[s] == targets[t]) {
+                    // calcPath does not find a path to the same node
+                    assertEquals(0, matrix.weight(s, t), 1e-6);
+                    continue;
+                }
+                algo.clear();
+                Path p = algo.calcPath(sources[s], targets[t]);
+                String str = sources[s] + "->" + targets[t] + " " + p;
+                assertEquals(str, p.found(), matrix.found(s, t));
+                if (!p.found())
+                    continue;
+                // the stored weights are rounded so a different path with
+                // nearly the same weight can be picked
+                assertEquals(str, p.weight(), matrix.weight(s, t), 1e-2);
+                if (Math.abs(p.weight() - matrix.weight(s, t)) > 1e-6)
+                    continue;
+                assertEquals(str, p.distance(), matrix.distance(s, t), 1e-4);
+                assertEquals(str, p.time(), matrix.time(s, t));
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.AbstractRoutingAlgorithmTester;
+import com.graphhopper.routing.OneToManyDijkstra;
+import com.graphhopper.routing.util.CarStreetType;
+import com.graphhopper.routing.util.FastestCarCalc;
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.storage.LevelGraphStorage;
+import com.graphhopper.storage.RAMDirectory;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class OneToManyCHTest {
+
+    LevelGraph createGraph(int size) {
+        LevelGraphStorage lg = new LevelGraphStorage(new RAMDirectory());
+        lg.createNew(size);
+        return lg;
+    }
+
+    @Test
+    public void testMatrixGraph() {
+        Graph orig = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        LevelGraph g = createGraph(200);
+        orig.copyTo(g);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(g).doWork();
+        assertOneToMany(orig, prepare.createOneToMany(), new OneToManyDijkstra(orig), 1e-6);
+    }
+
+    @Test
+    public void testOneWaysAndFastest() {
+        Random rand = new Random(2);
+        LevelGraph g = createGraph(100);
+        for (int i = 0; i < 300; i++) {
+            int a = rand.nextInt(100), b = rand.nextInt(100);
+            if (a == b)
+                continue;
+            int speed = 20 + 10 * rand.nextInt(8);
+            g.edge(a, b, 10 + rand.nextInt(100), CarStreetType.flags(speed, rand.nextInt(4) > 0));
+        }
+        LevelGraph orig = createGraph(100);
+        g.copyTo(orig);
+        WeightCalculation calc = FastestCarCalc.DEFAULT;
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(g).type(calc).doWork();
+        // the stored weights of the prepared graph are rounded
+        assertOneToMany(orig, prepare.createOneToMany(), new OneToManyDijkstra(orig).type(calc), 1e-2);
+    }
+
+    @Test
+    public void testLimits() {
+        LevelGraph g = createGraph(10);
+        g.edge(0, 1, 10, true);
+        g.edge(1, 2, 10, true);
+        g.edge(2, 3, 10, false);
+        g.edge(0, 4, 25, true);
+        g.edge(5, 6, 10, true);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(g).doWork();
+        OneToManyCH oneToMany = prepare.createOneToMany();
+        oneToMany.calc(0);
+        assertEquals(5, oneToMany.reachedNodes().size());
+        assertEquals(30, oneToMany.distance(3), 1e-6);
+        assertFalse(oneToMany.isReached(5));
+
+        oneToMany.distanceLimit(20).calc(0);
+        assertEquals(3, oneToMany.reachedNodes().size());
+        assertTrue(oneToMany.isReached(2));
+        assertFalse(oneToMany.isReached(4));
+
+        oneToMany.distanceLimit(Double.MAX_VALUE).calc(3);
+        assertEquals(1, oneToMany.reachedNodes().size());
+    }
+
+    static void assertOneToMany(Graph g, OneToManyCH oneToMany, OneToManyDijkstra expected, double precision) {
+        for (int from = 0; from < g.nodes(); from += 7) {
+            oneToMany.calc(from);
+            expected.calc(from);
+            assertEquals(expected.reachedNodes().size(), oneToMany.reachedNodes().size());
+            for (int node = 0; node < g.nodes(); node++) {
+                String str = from + "->" + node;
+                assertEquals(str, expected.isReached(node), oneToMany.isReached(node));
+                if (!expected.isReached(node))
+                    continue;
+                assertEquals(str, expected.weight(node), oneToMany.weight(node), precision);
+                if (Math.abs(expected.weight(node) - oneToMany.weight(node)) > 1e-6)
+                    continue;
+                assertEquals(str, expected.distance(node), oneToMany.distance(node), 1e-4);
+                assertEquals(str, expected.time(node), oneToMany.time(node));
+            }
+        }
+    }
+}
@@ -18,10 +18,10 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.graphhopper.routing.AbstractRoutingAlgorithmTester;
 import com.graphhopper.routing.DijkstraSimple;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.RoutingAlgorithm;
-import com.graphhopper.routing.ch.PrepareContractionHierarchies.NodeCH;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies.Shortcut;
 import com.graphhopper.routing.util.CarStreetType;
 import com.graphhopper.routing.util.FastestCarCalc;
@@ -35,10 +35,10 @@ import com.graphhopper.storage.RAMDirectory;
 import com.graphhopper.util.EdgeSkipIterator;
 import com.graphhopper.util.GraphUtility;
 import com.graphhopper.util.Helper;
-import java.util.ArrayList;
+import java.io.File;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.List;
+import java.util.Random;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -73,48 +73,49 @@ public class PrepareContractionHierarchiesTest {
         return g;
     }
 
-    List<NodeCH> createGoals(int... gNodes) {
-        List<NodeCH> goals = new ArrayList<NodeCH>();
-        for (int i = 0; i < gNodes.length; i++) {
-            NodeCH n = new NodeCH();
-            n.endNode = gNodes[i];
-            goals.add(n);
-        }
-        return goals;
-    }
-
     @Test
     public void testShortestPathSkipNode() {
         LevelGraph g = createExampleGraph();
         double normalDist = new DijkstraSimple(g).calcPath(4, 2).distance();
-        PrepareContractionHierarchies.OneToManyDijkstraCH algo = new PrepareContractionHierarchies.OneToManyDijkstraCH(g)
-                .setFilter(new PrepareContractionHierarchies.EdgeLevelFilterCH(g).setAvoidNode(3));
-        List<NodeCH> gs = createGoals(2);
-        algo.clear().setLimit(10).calcPath(4, gs);
-        Path p = algo.extractPath(gs.get(0).entry);
-        assertTrue(p.distance() > normalDist);
+        WitnessSearch search = new WitnessSearch(g).avoidNode(3).weightLimit(10);
+        search.search(4, new int[]{2}, 1);
+        assertTrue(search.weight(2) > normalDist);
+        assertEquals(4, search.weight(2), 1e-6);
     }
 
     @Test
     public void testShortestPathSkipNode2() {
         LevelGraph g = createExampleGraph();
         double normalDist = new DijkstraSimple(g).calcPath(4, 2).distance();
-        PrepareContractionHierarchies.OneToManyDijkstraCH algo = new PrepareContractionHierarchies.OneToManyDijkstraCH(g).
-                setFilter(new PrepareContractionHierarchies.EdgeLevelFilterCH(g).setAvoidNode(3));
-        List<NodeCH> gs = createGoals(1, 2);
-        algo.clear().setLimit(10).calcPath(4, gs);
-        Path p = algo.extractPath(gs.get(1).entry);
-        assertTrue(p.distance() > normalDist);
+        WitnessSearch search = new WitnessSearch(g).avoidNode(3).weightLimit(10);
+        search.search(4, new int[]{1, 2}, 2);
+        assertTrue(search.weight(2) > normalDist);
+        assertEquals(4, search.weight(1), 1e-6);
+
+        // reuse the search
+        search.avoidNode(0).search(4, new int[]{1}, 1);
+        assertEquals(5, search.weight(1), 1e-6);
+        assertEquals(Double.MAX_VALUE, search.weight(0), 1e-6);
     }
 
     @Test
     public void testShortestPathLimit() {
         LevelGraph g = createExampleGraph();
-        PrepareContractionHierarchies.OneToManyDijkstraCH algo = new PrepareContractionHierarchies.OneToManyDijkstraCH(g)
-                .setFilter(new PrepareContractionHierarchies.EdgeLevelFilterCH(g).setAvoidNode(0));
-        List<NodeCH> gs = createGoals(1);
-        algo.clear().setLimit(2).calcPath(4, gs);
-        assertNull(gs.get(0).entry);
+        WitnessSearch search = new WitnessSearch(g).avoidNode(0).weightLimit(2);
+        search.search(4, new int[]{1}, 1);
+        assertEquals(Double.MAX_VALUE, search.weight(1), 1e-6);
+    }
+
+    @Test
+    public void testShortestPathHopLimit() {
+        LevelGraph g = createExampleGraph();
+        WitnessSearch search = new WitnessSearch(g).avoidNode(0).hopLimit(2);
+        search.search(4, new int[]{1}, 1);
+        assertEquals(3, search.weight(2), 1e-6);
+        assertEquals(Double.MAX_VALUE, search.weight(1), 1e-6);
+
+        search.hopLimit(3).search(4, new int[]{1}, 1);
+        assertEquals(5, search.weight(1), 1e-6);
     }
 
     @Test
@@ -359,4 +360,88 @@ public class PrepareContractionHierarchiesTest {
         assertEquals(7, p.distance(), 1e-1);
         assertEquals(Helper.createTList(10, 0, 1, 2, 3, 4, 5, 6), p.calcNodes());
     }
+
+    @Test
+    public void testParallelPreparation() {
+        Graph orig = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        LevelGraph g = (LevelGraph) orig.copyTo(createGraph());
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(g).threads(4);
+        prepare.doWork();
+        for (int node = 0; node < g.nodes(); node++) {
+            assertTrue(g.getLevel(node) > 0);
+        }
+        assertShortestPaths(orig, prepare);
+    }
+
+    @Test
+    public void testLoadExisting() {
+        String location = "./target/ch-load";
+        Helper.removeDir(new File(location));
+        try {
+            LevelGraphStorage g = new LevelGraphStorage(new RAMDirectory(location, true));
+            g.createNew(100);
+            AbstractRoutingAlgorithmTester.getMatrixAlikeGraph().copyTo(g);
+            int edges = GraphUtility.count(g.allEdges());
+            PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(g);
+            assertFalse(prepare.loadExisting());
+            prepare.doWork();
+            assertTrue(g.isCHPrepared());
+            assertEquals(GraphUtility.count(g.allEdges()) - edges, g.chShortcuts());
+            g.flush();
+            g.close();
+
+            g = new LevelGraphStorage(new RAMDirectory(location, true));
+            assertTrue(g.loadExisting());
+            assertTrue(g.isCHPrepared());
+            assertEquals(GraphUtility.count(g.allEdges()) - edges, g.chShortcuts());
+            prepare = new PrepareContractionHierarchies().graph(g);
+            assertTrue(prepare.loadExisting());
+            assertTrue(prepare.isPrepared());
+            try {
+                prepare.doWork();
+                assertTrue(false);
+            } catch (IllegalStateException ex) {
+            }
+
+            try {
+                new PrepareContractionHierarchies().type(FastestCarCalc.DEFAULT).graph(g).loadExisting();
+                assertTrue(false);
+            } catch (IllegalStateException ex) {
+            }
+        } finally {
+            Helper.removeDir(new File(location));
+        }
+    }
+
+    @Test
+    public void testWitnessHopLimit() {
+        Graph orig = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        LevelGraph g = (LevelGraph) orig.copyTo(createGraph());
+        int old = GraphUtility.count(g.allEdges());
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(g).witnessHopLimit(1);
+        prepare.doWork();
+        int limited = GraphUtility.count(g.allEdges());
+
+        g = (LevelGraph) orig.copyTo(createGraph());
+        new PrepareContractionHierarchies().graph(g).doWork();
+        // a too small hop limit misses witness paths and creates unnecessary shortcuts
+        assertTrue(limited >= GraphUtility.count(g.allEdges()));
+        assertTrue(limited > old);
+        assertShortestPaths(orig, prepare);
+    }
+
+    void assertShortestPaths(Graph orig, PrepareContractionHierarchies prepare) {
+        RoutingAlgorithm algo = prepare.createAlgo();
+        Random rand = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            int from = rand.nextInt(orig.nodes());
+            int to = rand.nextInt(orig.nodes());
+            if (from == to)
+                continue;
+            Path expected = new DijkstraSimple(orig).calcPath(from, to);
+            Path p = algo.clear().calcPath(from, to);
+            assertEquals(from + "->" + to, expected.found(), p.found());
+            assertEquals(from + "->" + to, expected.distance(), p.distance(), 1e-4);
+        }
+    }
 }
@@ -0,0 +1,155 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util;
+
+import com.graphhopper.routing.AbstractRoutingAlgorithmTester;
+import com.graphhopper.routing.DijkstraSimple;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class PrepareLandmarksTest extends AbstractRoutingAlgorithmTester {
+
+    @Override
+    public AlgorithmPreparation prepareGraph(Graph g, WeightCalculation calc) {
+        return new PrepareLandmarks(new RAMDirectory()).graph(g).type(calc).landmarks(4).doWork();
+    }
+
+    @Test
+    public void testCompareWithDijkstra() {
+        Random rand = new Random(3);
+        Graph g = new GraphStorage(new RAMDirectory()).createNew(100);
+        for (int i = 0; i < 300; i++) {
+            int a = rand.nextInt(100), b = rand.nextInt(100);
+            if (a == b)
+                continue;
+            int speed = 20 + 10 * rand.nextInt(8);
+            g.edge(a, b, 10 + rand.nextInt(100), CarStreetType.flags(speed, rand.nextInt(4) > 0));
+        }
+        PrepareLandmarks prepare = new PrepareLandmarks(new RAMDirectory()).graph(g).
+                type(FastestCarCalc.DEFAULT).doWork();
+        for (int i = 0; i < 200; i++) {
+            int from = rand.nextInt(100), to = rand.nextInt(100);
+            if (from == to)
+                continue;
+            Path expected = new DijkstraSimple(g).type(FastestCarCalc.DEFAULT).calcPath(from, to);
+            RoutingAlgorithm[] algos = {prepare.createAlgo(), prepare.createBidirectionalAlgo()};
+            for (RoutingAlgorithm algo : algos) {
+                Path p = algo.calcPath(from, to);
+                String str = algo.name() + " " + from + "->" + to;
+                assertEquals(str, expected.found(), p.found());
+                if (expected.found())
+                    assertEquals(str, expected.weight(), p.weight(), 1e-3);
+            }
+        }
+    }
+
+    @Test
+    public void testLowerBound() {
+        Graph g = new GraphStorage(new RAMDirectory()).createNew(10);
+        g.edge(0, 1, 10, true);
+        g.edge(1, 2, 20, true);
+        g.edge(2, 3, 30, false);
+        g.edge(4, 5, 10, true);
+        PrepareLandmarks prepare = new PrepareLandmarks(new RAMDirectory()).graph(g).landmarks(2).doWork();
+        float[] from = new float[2];
+        float[] to = new float[2];
+        prepare.readNode(3, from, to);
+        // the landmarks are 3 and 0, both bounds are exact on a line
+        assertEquals(50, prepare.lowerBound(1, from, to, true), 1e-4);
+        prepare.readNode(0, from, to);
+        assertEquals(30, prepare.lowerBound(2, from, to, true), 1e-4);
+        assertEquals(30, prepare.lowerBound(2, from, to, false), 1e-4);
+        // one-way: 3 cannot reach 0
+        assertEquals(Double.POSITIVE_INFINITY, prepare.lowerBound(3, from, to, true), 1e-4);
+        // other subnetwork
+        assertEquals(Double.POSITIVE_INFINITY, prepare.lowerBound(4, from, to, true), 1e-4);
+    }
+
+    @Test
+    public void testToFloor() {
+        assertEquals(Float.POSITIVE_INFINITY, PrepareLandmarks.toFloor(Double.MAX_VALUE), 1e-6);
+        double weight = 0.1;
+        assertTrue(PrepareLandmarks.toFloor(weight) <= weight);
+        weight = 123456.789;
+        assertTrue(PrepareLandmarks.toFloor(weight) <= weight);
+        assertEquals(weight, PrepareLandmarks.toFloor(weight), 1e-2);
+    }
+
+    @Test
+    public void testFloorDiff() {
+        // the float ulp is 0.0625 here and b is rounded down to 1e6
+        double a = 1000000.0625, b = 1000000.06;
+        assertTrue(PrepareLandmarks.floorDiff(PrepareLandmarks.toFloor(a), PrepareLandmarks.toFloor(b)) <= a - b);
+        Random rand = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            a = rand.nextDouble() * 1e7;
+            b = a - rand.nextDouble() * 10;
+            assertTrue(a + " " + b, PrepareLandmarks.floorDiff(PrepareLandmarks.toFloor(a),
+                    PrepareLandmarks.toFloor(b)) <= a - b);
+        }
+        float inf = Float.POSITIVE_INFINITY;
+        assertEquals(Double.POSITIVE_INFINITY, PrepareLandmarks.floorDiff(inf, 10), 1e-6);
+        assertFalse(PrepareLandmarks.floorDiff(10, inf) > 0);
+        assertFalse(PrepareLandmarks.floorDiff(inf, inf) > 0);
+    }
+
+    @Test
+    public void testLoadExisting() {
+        String location = "./target/tmp/landmarks";
+        Helper.removeDir(new File(location));
+        Graph g = getMatrixAlikeGraph();
+        PrepareLandmarks prepare = new PrepareLandmarks(new RAMDirectory(location, true)).graph(g).
+                landmarks(3).doWork();
+        prepare.flush();
+        Path expected = prepare.createAlgo().calcPath(0, 111);
+
+        PrepareLandmarks loaded = new PrepareLandmarks(new RAMDirectory(location, true)).graph(g).landmarks(3);
+        assertTrue(loaded.loadExisting());
+        assertEquals(3, loaded.landmarks());
+        Path p = loaded.createAlgo().calcPath(0, 111);
+        assertEquals(expected.weight(), p.weight(), 1e-6);
+        assertEquals(expected.calcNodes(), p.calcNodes());
+
+        try {
+            new PrepareLandmarks(new RAMDirectory(location, true)).graph(g).landmarks(3).
+                    type(FastestCarCalc.DEFAULT).loadExisting();
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+        // a different landmark count is not silently replaced
+        try {
+            new PrepareLandmarks(new RAMDirectory(location, true)).graph(g).landmarks(2).loadExisting();
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+        assertFalse(new PrepareLandmarks(new RAMDirectory()).graph(g).loadExisting());
+        Helper.removeDir(new File(location));
+    }
+}
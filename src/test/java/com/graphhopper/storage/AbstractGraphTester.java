@@ -724,4 +724,28 @@ public abstract class AbstractGraphTester {
         assertEquals(4, iter.node());
         assertFalse(iter.next());
     }
+
+    @Test
+    public void testCopyWayGeometry() {
+        Graph g = createGraph(2);
+        g.edge(0, 4, 100, CarStreetType.flags(10, false)).wayGeometry(Helper.createPointList(1, 1, 1, 2));
+        g.edge(14, 0, 100, CarStreetType.flags(10, false)).wayGeometry(Helper.createPointList(1, 13, 1, 12));
+
+        EdgeIterator iter = g.getEdges(0);
+        assertTrue(iter.next());
+        PointList list = Helper.createPointList(0, 0);
+        iter.copyWayGeometry(list, false);
+        assertPList(Helper.createPointList(0, 0, 1, 1, 1, 2), list);
+        iter.copyWayGeometry(list, true);
+        assertPList(Helper.createPointList(0, 0, 1, 1, 1, 2, 1, 2, 1, 1), list);
+
+        assertTrue(iter.next());
+        assertEquals(14, iter.node());
+        list.clear();
+        iter.copyWayGeometry(list, false);
+        assertPList(Helper.createPointList(1, 12, 1, 13), list);
+        list.clear();
+        iter.copyWayGeometry(list, true);
+        assertPList(Helper.createPointList(1, 13, 1, 12), list);
+    }
 }
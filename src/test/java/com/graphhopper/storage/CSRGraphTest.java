@@ -0,0 +1,202 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.AbstractRoutingAlgorithmTester;
+import com.graphhopper.routing.DijkstraSimple;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeSkipIterator;
+import com.graphhopper.util.GraphUtility;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.RawEdgeIterator;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class CSRGraphTest {
+
+    GraphStorage createGraph() {
+        GraphStorage g = new GraphStorage(new RAMDirectory()).createNew(10);
+        g.setNode(0, 10, 10);
+        g.setNode(1, 11, 20);
+        g.setNode(2, 12, 12);
+        g.setNode(3, 13, 13);
+        g.setNode(4, 14, 14);
+        g.edge(0, 1, 100, true).wayGeometry(Helper.createPointList(1, 1, 2, 3));
+        g.edge(0, 2, 200.5, true);
+        g.edge(2, 1, 120, false).wayGeometry(Helper.createPointList(4, 4, 5, 5, 6, 6));
+        g.edge(3, 2, 130, false);
+        g.edge(3, 4, 0.001, true);
+        return g;
+    }
+
+    @Test
+    public void testSameAsSource() {
+        assertSameGraph(createGraph());
+    }
+
+    @Test
+    public void testFlagsNotPacked() {
+        GraphStorage g = createGraph();
+        // too many bits to pack the flags with the nodes
+        g.edge(4, 0, 50, (1 << 30) | 1);
+        g.edge(2, 2, 10, true);
+        assertSameGraph(g);
+    }
+
+    @Test
+    public void testNegativeFlagsBeforePositive() {
+        GraphStorage g = new GraphStorage(new RAMDirectory()).createNew(10);
+        g.setNode(0, 10, 10);
+        g.setNode(1, 11, 11);
+        g.setNode(2, 12, 12);
+        // a later positive flag must not reset the bits needed for -3
+        g.edge(0, 1, 10, -3);
+        g.edge(1, 2, 20, 5);
+        assertSameGraph(g);
+    }
+
+    @Test
+    public void testCapacity() {
+        GraphStorage g = new GraphStorage(new RAMDirectory()).createNew(100);
+        for (int i = 0; i < 100; i++) {
+            g.setNode(i, i / 10, i % 10);
+            if (i % 10 > 0)
+                g.edge(i - 1, i, 10, true);
+            if (i >= 10)
+                g.edge(i - 10, i, 10, false);
+        }
+        CSRGraph csr = new CSRGraph(g);
+        int edges = GraphUtility.count(g.allEdges());
+        // 2 adjacency entries plus nodes and flags packed into one int and the distance
+        long edgeBytes = 4L * (edges + 1) * 2 + 4L * edges * 2;
+        long nodeBytes = 4L * (100 * 2 + 100 * 4 + 1) + 4;
+        assertEquals(nodeBytes + edgeBytes, csr.capacity());
+        assertSameGraph(g);
+    }
+
+    void assertSameGraph(GraphStorage g) {
+        CSRGraph csr = new CSRGraph(g);
+        assertEquals(g.nodes(), csr.nodes());
+        assertEquals(g.bounds(), csr.bounds());
+        for (int node = 0; node < g.nodes(); node++) {
+            assertEquals(g.getLatitude(node), csr.getLatitude(node), 1e-6);
+            assertEquals(g.getLongitude(node), csr.getLongitude(node), 1e-6);
+            for (int type = 0; type < 3; type++) {
+                assertSameEdges(g, csr, node, type);
+            }
+        }
+
+        assertEquals(GraphUtility.count(g.allEdges()), GraphUtility.count(csr.allEdges()));
+        RawEdgeIterator iter = csr.allEdges();
+        while (iter.next()) {
+            EdgeIterator expected = g.getEdgeProps(iter.edge(), iter.nodeB());
+            assertEquals(expected.distance(), iter.distance(), 1e-6);
+            assertEquals(expected.baseNode(), iter.nodeA());
+            assertSameEdge(expected, csr.getEdgeProps(iter.edge(), iter.nodeB()));
+            assertSameEdge(g.getEdgeProps(iter.edge(), iter.nodeA()), csr.getEdgeProps(iter.edge(), iter.nodeA()));
+        }
+        assertTrue(csr.getEdgeProps(1, 4).isEmpty());
+    }
+
+    @Test
+    public void testOneDirection() {
+        CSRGraph csr = new CSRGraph(createGraph());
+        assertTrue(GraphUtility.contains(csr.getOutgoing(2), 1));
+        assertFalse(GraphUtility.contains(csr.getOutgoing(1), 2));
+        assertTrue(GraphUtility.contains(csr.getIncoming(1), 2));
+        assertEquals(3, GraphUtility.count(csr.getEdges(2)));
+        assertEquals(Helper.createPointList(6, 6, 5, 5, 4, 4), GraphUtility.until(csr.getEdges(1), 2).wayGeometry());
+    }
+
+    @Test
+    public void testReadOnly() {
+        CSRGraph csr = new CSRGraph(createGraph());
+        try {
+            csr.edge(0, 3, 10, true);
+            assertTrue(false);
+        } catch (UnsupportedOperationException ex) {
+        }
+        try {
+            csr.getEdges(0).next();
+            csr.getEdgeProps(1, 1).distance(12);
+            assertTrue(false);
+        } catch (UnsupportedOperationException ex) {
+        }
+    }
+
+    @Test
+    public void testLevelGraph() {
+        Graph orig = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        LevelGraph g = (LevelGraph) orig.copyTo(new LevelGraphStorage(new RAMDirectory()).createNew(10));
+        new PrepareContractionHierarchies().graph(g).doWork();
+        CSRGraph csr = new CSRGraph(g);
+        for (int node = 0; node < g.nodes(); node++) {
+            assertEquals(g.getLevel(node), csr.getLevel(node));
+            EdgeSkipIterator expected = g.getEdges(node);
+            while (expected.next()) {
+                EdgeSkipIterator iter = csr.getEdgeProps(expected.edge(), expected.node());
+                assertEquals(expected.skippedEdge(), iter.skippedEdge());
+            }
+        }
+
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(csr);
+        Random rand = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            int from = rand.nextInt(orig.nodes());
+            int to = rand.nextInt(orig.nodes());
+            if (from == to)
+                continue;
+            Path expected = new DijkstraSimple(orig).calcPath(from, to);
+            Path p = prepare.createAlgo().calcPath(from, to);
+            assertEquals(expected.weight(), p.weight(), 1e-3);
+            assertEquals(expected.distance(), p.distance(), 1e-3);
+        }
+    }
+
+    void assertSameEdges(Graph g, Graph csr, int node, int type) {
+        assertEquals(GraphUtility.count(edges(g, node, type)), GraphUtility.count(edges(csr, node, type)));
+        EdgeIterator expected = edges(g, node, type);
+        while (expected.next()) {
+            assertSameEdge(expected, GraphUtility.until(edges(csr, node, type), expected.node()));
+        }
+    }
+
+    EdgeIterator edges(Graph g, int node, int type) {
+        if (type == 0)
+            return g.getEdges(node);
+        if (type == 1)
+            return g.getOutgoing(node);
+        return g.getIncoming(node);
+    }
+
+    void assertSameEdge(EdgeIterator expected, EdgeIterator iter) {
+        assertEquals(expected.edge(), iter.edge());
+        assertEquals(expected.baseNode(), iter.baseNode());
+        assertEquals(expected.node(), iter.node());
+        assertEquals(expected.distance(), iter.distance(), 1e-6);
+        assertEquals(expected.flags(), iter.flags());
+        assertEquals(expected.wayGeometry(), iter.wayGeometry());
+    }
+}
@@ -159,6 +159,32 @@ public abstract class DataAccessTest {
         assertEquals(1, da1.getInt(1));
     }
 
+    @Test
+    public void testCopyDifferentSegmentSizes() {
+        DataAccess da1 = createDataAccess(name);
+        da1.segmentSize(256);
+        da1.createNew(1001 * 4);
+        da1.setHeader(2, 7);
+        for (int i = 0; i < 1001; i++) {
+            da1.setInt(i, i * 3);
+        }
+
+        DataAccess[] targets = new DataAccess[]{
+            createDataAccess(name + "2").segmentSize(1024),
+            new RAMDataAccess(name + "3", directory, false).segmentSize(128),
+            new OffHeapDataAccess(name + "4", directory, false).segmentSize(512)};
+        for (DataAccess da2 : targets) {
+            da2.createNew(10);
+            da1.copyTo(da2);
+            assertEquals(7, da2.getHeader(2));
+            assertTrue(da2.capacity() >= da1.capacity());
+            for (int i = 0; i < 1001; i++) {
+                assertEquals(i * 3, da2.getInt(i));
+            }
+            da2.close();
+        }
+    }
+
     @Test
     public void testSegments() {
         DataAccess da = createDataAccess(name);
@@ -23,6 +23,7 @@ import com.graphhopper.util.GraphUtility;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.RawEdgeIterator;
 import com.graphhopper.util.shapes.BBox;
+import java.io.File;
 import java.io.IOException;
 import static org.junit.Assert.*;
 import org.junit.Test;
@@ -67,6 +68,46 @@ public class GraphStorageTest extends AbstractGraphTester {
         checkGraph(graph);
     }
 
+    @Test
+    public void testSortNodes() {
+        GraphStorage graph = newGraph(new MMapDirectory(defaultGraph)).createNew(10);
+        graph.setNode(0, 10, 10);
+        graph.setNode(1, 11, 20);
+        graph.setNode(2, 12, 12);
+        graph.setNode(3, 13, 13);
+        graph.edge(0, 1, 100, true).wayGeometry(Helper.createPointList(1, 1, 2, 3));
+        graph.edge(0, 2, 200, true);
+        graph.edge(1, 2, 120, false).wayGeometry(Helper.createPointList(4, 4, 5, 5, 6, 6));
+        graph.edge(2, 3, 130, true);
+
+        graph.sortNodes(new int[]{3, 2, 1, 0});
+        // the temporary areas are created in the graph directory and removed afterwards
+        assertFalse(new File(defaultGraph, "tmpSortEdges").exists());
+        assertFalse(new File(defaultGraph, "tmpSortNodes").exists());
+        assertEquals(4, graph.nodes());
+        assertEquals(10, graph.getLatitude(3), 1e-4);
+        assertEquals(13, graph.getLatitude(0), 1e-4);
+        assertEquals(4, GraphUtility.count(graph.allEdges()));
+
+        EdgeIterator iter = GraphUtility.until(graph.getOutgoing(3), 2);
+        assertEquals(100, iter.distance(), 1e-4);
+        assertEquals(Helper.createPointList(1, 1, 2, 3), iter.wayGeometry());
+        assertEquals(Helper.createPointList(2, 3, 1, 1), GraphUtility.until(graph.getOutgoing(2), 3).wayGeometry());
+        assertTrue(GraphUtility.contains(graph.getOutgoing(3), 2, 1));
+
+        // the one direction edge 1->2 is now 2->1
+        assertTrue(GraphUtility.contains(graph.getOutgoing(2), 1));
+        assertFalse(GraphUtility.contains(graph.getOutgoing(1), 2));
+        assertEquals(Helper.createPointList(4, 4, 5, 5, 6, 6), GraphUtility.until(graph.getOutgoing(2), 1).wayGeometry());
+        assertEquals(120, GraphUtility.until(graph.getOutgoing(2), 1).distance(), 1e-4);
+
+        // edges are numbered in the order of the new nodes
+        iter = graph.getEdges(0);
+        assertTrue(iter.next());
+        assertEquals(1, iter.edge());
+        assertEquals(1, iter.node());
+    }
+
     protected void checkGraph(Graph g) {
         assertEquals(new BBox(10, 20, 10, 12), g.bounds());
         assertEquals(10, g.getLatitude(0), 1e-2);
@@ -22,6 +22,10 @@ import com.graphhopper.routing.util.EdgeLevelFilter;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeSkipIterator;
 import com.graphhopper.util.GraphUtility;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -58,6 +62,31 @@ public class LevelGraphStorageTest extends GraphStorageTest {
         }
     }
 
+    @Test
+    public void testOldVersionIsRejected() throws IOException {
+        LevelGraphStorage lg = new LevelGraphStorage(new RAMDirectory(defaultGraph, true));
+        lg.createNew(10);
+        lg.flush();
+        lg.close();
+
+        // graphs before version 4 were written without the CH header
+        for (String name : new String[]{"nodes", "egdes"}) {
+            RandomAccessFile raFile = new RandomAccessFile(new File(defaultGraph, name), "rw");
+            raFile.seek(0);
+            raFile.readUTF();
+            raFile.writeInt(Helper.VERSION_FILE - 1);
+            raFile.close();
+        }
+
+        LevelGraphStorage g = new LevelGraphStorage(new RAMDirectory(defaultGraph, true));
+        try {
+            g.loadExisting();
+            assertTrue(false);
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("wrong version"));
+        }
+    }
+
     @Test
     public void testPriosWhileDeleting() {
         LevelGraph g = (LevelGraph) createGraph(11);
@@ -0,0 +1,123 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+import java.io.File;
+import java.util.Random;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class Location2IDEdgeIndexTest {
+
+    String location = "./target/tmp/edgeindex";
+
+    @Before
+    public void setUp() {
+        Helper.removeDir(new File(location));
+    }
+
+    @After
+    public void tearDown() {
+        Helper.removeDir(new File(location));
+    }
+
+    @Test
+    public void testSnapToPillarGeometry() {
+        Graph g = new GraphStorage(new RAMDirectory()).createNew(10);
+        g.setNode(0, 0, 0);
+        g.setNode(1, 0, 1);
+        g.setNode(2, 1, 1);
+        g.setNode(3, 0.5, 0.6);
+        // 0-1 bends to the north
+        g.edge(0, 1, 200, true).wayGeometry(Helper.createPointList(0.8, 0.2, 0.8, 0.8));
+        g.edge(1, 2, 100, true);
+        g.edge(2, 3, 100, true);
+
+        Location2IDEdgeIndex idx = new Location2IDEdgeIndex(g, new RAMDirectory());
+        idx.prepareIndex(16);
+        Location2IDEdgeIndex.Snap snap = idx.findClosest(0.9, 0.3);
+        assertEquals(0, Math.min(snap.baseNode(), snap.adjNode()));
+        assertEquals(1, Math.max(snap.baseNode(), snap.adjNode()));
+        assertEquals(0.8, snap.lat(), 1e-6);
+        assertEquals(0.3, snap.lon(), 1e-6);
+        assertEquals(new DistanceCalc().calcDist(0.9, 0.3, 0.8, 0.3), snap.distance(), 1e-2);
+        // closer to node 0 along the geometry
+        assertEquals(0, snap.closestNode());
+        assertEquals(1, idx.findID(0.9, 0.75));
+
+        // the straight line from 0 to 1 would be closer but only the geometry counts
+        snap = idx.findClosest(0.05, 0.5);
+        assertEquals(2, Math.min(snap.baseNode(), snap.adjNode()));
+        assertEquals(3, Math.max(snap.baseNode(), snap.adjNode()));
+        // outside of the bounds
+        assertEquals(2, idx.findID(2, 2));
+    }
+
+    @Test
+    public void testSameAsBruteForce() {
+        Random rand = new Random(12);
+        Graph g = new GraphStorage(new RAMDirectory()).createNew(200);
+        for (int i = 0; i < 200; i++) {
+            g.setNode(i, 50 + rand.nextDouble(), 10 + rand.nextDouble());
+        }
+        for (int i = 0; i < 300; i++) {
+            int a = rand.nextInt(200), b = rand.nextInt(200);
+            if (a == b)
+                continue;
+            PointList pillars = new PointList();
+            for (int j = rand.nextInt(3); j > 0; j--) {
+                pillars.add(50 + rand.nextDouble(), 10 + rand.nextDouble());
+            }
+            g.edge(a, b, 100, true).wayGeometry(pillars);
+        }
+
+        Location2IDEdgeIndex idx = new Location2IDEdgeIndex(g, new MMapDirectory(location));
+        idx.prepareIndex(400);
+        idx.flush();
+        Location2IDEdgeIndex loaded = new Location2IDEdgeIndex(g, new MMapDirectory(location));
+        assertTrue(loaded.loadExisting());
+        // a single cell checks all edges
+        Location2IDEdgeIndex all = new Location2IDEdgeIndex(g, new RAMDirectory());
+        all.prepareIndex(1);
+        for (int i = 0; i < 100; i++) {
+            double lat = 49.9 + rand.nextDouble() * 1.2;
+            double lon = 9.9 + rand.nextDouble() * 1.2;
+            Location2IDEdgeIndex.Snap expected = all.findClosest(lat, lon);
+            assertEquals(expected.distance(), idx.findClosest(lat, lon).distance(), 1e-6);
+            assertEquals(expected.closestNode(), idx.findID(lat, lon));
+            assertEquals(expected.distance(), loaded.findClosest(lat, lon).distance(), 1e-6);
+        }
+
+        try {
+            new Location2IDEdgeIndex(new GraphStorage(new RAMDirectory()).createNew(10),
+                    new MMapDirectory(location)).loadExisting();
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+    }
+}
@@ -33,5 +33,14 @@ public class Location2IDFullIndexTest {
         assertEquals(5, idx.findID(2, 3));
         assertEquals(10, idx.findID(4, 1));
         assertEquals(10, idx.findID(3.6, 1.4));
+
+        int[] ids = idx.findIDs(new double[]{2, 4}, new double[]{3, 1});
+        assertEquals(5, ids[0]);
+        assertEquals(10, ids[1]);
+        try {
+            idx.findIDs(new double[1], new double[2]);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex) {
+        }
     }
 }
@@ -113,6 +113,40 @@ public class Location2IDQuadtreeTest {
         assertEquals(5, idx.findID(3, 3));
     }
 
+    @Test
+    public void testFindIDs() {
+        Graph g = createSampleGraph();
+        Location2IDQuadtree idx = (Location2IDQuadtree) createIndex(g, 32);
+        Random rand = new Random(1);
+        double[] lats = new double[5000];
+        double[] lons = new double[5000];
+        for (int i = 0; i < lats.length; i++) {
+            lats[i] = rand.nextDouble() * 5;
+            lons[i] = rand.nextDouble() * 5;
+        }
+        for (int threads = 1; threads <= 4; threads *= 2) {
+            int[] ids = idx.findIDs(lats, lons, threads);
+            for (int i = 0; i < lats.length; i++) {
+                assertEquals(idx.findID(lats[i], lons[i]), ids[i]);
+            }
+        }
+        assertEquals(0, idx.findIDs(new double[0], new double[0]).length);
+
+        // few points compared to the graph size use the hash based visited set
+        g.setNode(199, 2.5, 2.5);
+        idx = (Location2IDQuadtree) createIndex(g, 32);
+        double[] fewLats = {1.637, 3.649};
+        double[] fewLons = {2.23, 1.375};
+        int[] ids = idx.findIDs(fewLats, fewLons);
+        assertEquals(idx.findID(fewLats[0], fewLons[0]), ids[0]);
+        assertEquals(idx.findID(fewLats[1], fewLons[1]), ids[1]);
+        try {
+            idx.findIDs(new double[1], new double[2]);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
     @Test
     public void testSinglePoints120() {
         Graph g = createSampleGraph();
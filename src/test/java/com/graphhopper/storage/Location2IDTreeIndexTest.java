@@ -0,0 +1,164 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import java.util.Random;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class Location2IDTreeIndexTest {
+
+    String location = "./target/tmp/";
+
+    public Location2IDTreeIndex createIndex(Graph g, int resolution) {
+        return (Location2IDTreeIndex) new Location2IDTreeIndex(g, new MMapDirectory(location + "loc2idIndex")).
+                cellEntries(1).prepareIndex(resolution);
+    }
+
+    @Before
+    public void setUp() {
+        Helper.removeDir(new File(location));
+    }
+
+    @After
+    public void tearDown() {
+        Helper.removeDir(new File(location));
+    }
+
+    @Test
+    public void testSinglePoints() {
+        Graph g = Location2IDQuadtreeTest.createSampleGraph();
+        Location2IDIndex idx = createIndex(g, 120);
+        for (int i = 0; i < g.nodes(); i++) {
+            assertEquals(i, idx.findID(g.getLatitude(i), g.getLongitude(i)));
+        }
+        assertEquals(1, idx.findID(1.637, 2.23));
+        assertEquals(10, idx.findID(3.649, 1.375));
+        assertEquals(9, idx.findID(3.3, 2.2));
+        assertEquals(6, idx.findID(3.0, 1.5));
+    }
+
+    @Test
+    public void testGrid() {
+        Graph g = createGridGraph(new Random(1), 30, 0);
+        Location2IDTreeIndex idx = createIndex(g, 1000);
+        Location2IDIndex fullIndex = new Location2IDFullIndex(g);
+        DistanceCalc dist = new DistanceCalc();
+        Random rand = new Random(12);
+        for (int i = 0; i < 500; i++) {
+            double lat = rand.nextDouble() * 3;
+            double lon = rand.nextDouble() * 3;
+            int fullId = fullIndex.findID(lat, lon);
+            int id = idx.findID(lat, lon);
+            assertEquals(dist.calcDist(lat, lon, g.getLatitude(fullId), g.getLongitude(fullId)),
+                    dist.calcDist(lat, lon, g.getLatitude(id), g.getLongitude(id)), 1e-3);
+        }
+    }
+
+    @Test
+    public void testMaxDepth() {
+        // with a raster width of 1m the tree reaches its maximum depth of 16
+        // where the keys use all 32 bits
+        Graph g = new GraphStorage(new RAMDirectory()).createNew(2000);
+        Random rand = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            g.setNode(i, rand.nextDouble(), rand.nextDouble());
+        }
+        Location2IDTreeIndex idx = (Location2IDTreeIndex) new Location2IDTreeIndex(g, new RAMDirectory()).
+                minRasterWidth(1).cellEntries(1).prepareIndex(1000);
+        for (int i = 0; i < g.nodes(); i++) {
+            assertEquals(i, idx.findID(g.getLatitude(i), g.getLongitude(i)));
+        }
+    }
+
+    @Test
+    public void testLoadExisting() {
+        Graph g = Location2IDQuadtreeTest.createSampleGraph();
+        Location2IDTreeIndex idx = createIndex(g, 120);
+        idx.flush();
+
+        Location2IDTreeIndex loaded = new Location2IDTreeIndex(g, new MMapDirectory(location + "loc2idIndex"));
+        assertTrue(loaded.loadExisting());
+        for (int i = 0; i < g.nodes(); i++) {
+            assertEquals(i, loaded.findID(g.getLatitude(i), g.getLongitude(i)));
+        }
+
+        Graph other = Location2IDQuadtreeTest.createGraph();
+        other.setNode(0, 1, 1);
+        try {
+            new Location2IDTreeIndex(other, new MMapDirectory(location + "loc2idIndex")).loadExisting();
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testLessMemoryForClusteredNodes() {
+        // a dense city in an otherwise empty area
+        Graph g = createGridGraph(new Random(2), 50, 0.02);
+        g.setNode(g.nodes(), 10, 10);
+        int capacity = 1 << 20;
+        Location2IDTreeIndex tree = (Location2IDTreeIndex) new Location2IDTreeIndex(g, new RAMDirectory()).
+                prepareIndex(capacity);
+        Location2IDIndex grid = new Location2IDQuadtree(g, new RAMDirectory()).prepareIndex(capacity);
+        assertTrue(tree.calcMemInMB() * 4 < grid.calcMemInMB());
+        for (int i = 0; i < g.nodes(); i++) {
+            assertEquals(i, tree.findID(g.getLatitude(i), g.getLongitude(i)));
+        }
+    }
+
+    @Test
+    public void testCellEntries() {
+        try {
+            new Location2IDTreeIndex(Location2IDQuadtreeTest.createGraph(), new RAMDirectory()).cellEntries(0);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    /**
+     * Creates a connected grid of size*size slightly disturbed nodes.
+     */
+    Graph createGridGraph(Random rand, int size, double step) {
+        if (step <= 0)
+            step = 3.0 / size;
+        Graph g = new GraphStorage(new RAMDirectory()).createNew(size * size + 1);
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int node = row * size + col;
+                g.setNode(node, row * step + rand.nextDouble() * step / 3,
+                        col * step + rand.nextDouble() * step / 3);
+                if (col > 0)
+                    g.edge(node - 1, node, 1, true);
+                if (row > 0)
+                    g.edge(node - size, node, 1, true);
+            }
+        }
+        return g;
+    }
+}
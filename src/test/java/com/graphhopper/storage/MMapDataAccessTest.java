@@ -18,6 +18,7 @@
  */
 package com.graphhopper.storage;
 
+import java.nio.ByteOrder;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -44,6 +45,46 @@ public class MMapDataAccessTest extends DataAccessTest {
         assertEquals(123, da.getInt(7));
     }
 
+    @Test
+    public void testWarmup() {
+        DataAccess da = createDataAccess(name);
+        da.createNew(1000);
+        da.setInt(7, 123);
+        da.setInt(200, 321);
+        da.flush();
+        da.close();
+        for (int threads = 0; threads <= 4; threads += 2) {
+            da = new MMapDataAccess(name, directory).warmup(threads);
+            assertTrue(da.loadExisting());
+            assertEquals(123, da.getInt(7));
+            assertEquals(321, da.getInt(200));
+            da.close();
+        }
+        try {
+            new MMapDataAccess(name, directory).warmup(-1);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    @Test
+    public void testCopyKeepsByteOrder() {
+        DataAccess da = new MMapDataAccess(name, directory).byteOrder(ByteOrder.LITTLE_ENDIAN).segmentSize(128);
+        da.createNew(400);
+        da.setInt(7, 123);
+        da.setInt(99, -5);
+        DataAccess ram = new RAMDataAccess(name + "2", directory, false);
+        ram.createNew(10);
+        da.copyTo(ram);
+        assertEquals(123, ram.getInt(7));
+        assertEquals(-5, ram.getInt(99));
+        DataAccess mmap = createDataAccess(name + "3");
+        mmap.createNew(10);
+        da.copyTo(mmap);
+        assertEquals(123, mmap.getInt(7));
+        assertEquals(-5, mmap.getInt(99));
+    }
+
     @Test
     public void textMixMMAP2RAM() {
         DataAccess da = createDataAccess(name);
@@ -0,0 +1,70 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.coll.MyBitSet;
+import com.graphhopper.coll.MyBitSetImpl;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class NearestCellTransformTest {
+
+    @Test
+    public void testSameAsBruteForce() {
+        Random rand = new Random(1);
+        int rows = 37, columns = 53;
+        MyBitSet filled = new MyBitSetImpl(rows * columns);
+        for (int i = 0; i < 40; i++) {
+            filled.add(rand.nextInt(rows * columns));
+        }
+        for (double aspect : new double[]{1, 0.7, 2.5}) {
+            for (int threads = 1; threads <= 3; threads += 2) {
+                int[] nearest = new NearestCellTransform(filled, rows, columns, aspect, threads).calc();
+                for (int cell = 0; cell < rows * columns; cell++) {
+                    assertTrue(filled.contains(nearest[cell]));
+                    double best = Double.MAX_VALUE;
+                    for (int other = filled.next(0); other >= 0; other = filled.next(other + 1)) {
+                        best = Math.min(best, dist(cell, other, columns, aspect));
+                    }
+                    assertEquals("cell " + cell, best, dist(cell, nearest[cell], columns, aspect), 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        try {
+            new NearestCellTransform(new MyBitSetImpl(4), 2, 2, 1, 1).calc();
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    double dist(int from, int to, int columns, double aspect) {
+        double dy = from / columns - to / columns;
+        double dx = (from % columns - to % columns) * aspect;
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class OffHeapDataAccessTest extends DataAccessTest {
+
+    @Override
+    public DataAccess createDataAccess(String name) {
+        return new OffHeapDataAccess(name, directory, true).segmentSize(128);
+    }
+
+    @Test
+    public void testSameFormatAsRAMDataAccess() {
+        DataAccess da = createDataAccess(name);
+        da.createNew(300);
+        da.setHeader(2, 21);
+        da.setInt(7, 123);
+        da.setInt(70, -5);
+        da.flush();
+        da.close();
+
+        DataAccess ram = new RAMDataAccess(name, directory, true);
+        assertTrue(ram.loadExisting());
+        assertEquals(128, ram.segmentSize());
+        assertEquals(21, ram.getHeader(2));
+        assertEquals(123, ram.getInt(7));
+        assertEquals(-5, ram.getInt(70));
+        ram.setInt(8, 42);
+        ram.flush();
+
+        da = createDataAccess(name);
+        assertTrue(da.loadExisting());
+        assertEquals(ram.segments(), da.segments());
+        assertEquals(123, da.getInt(7));
+        assertEquals(42, da.getInt(8));
+        assertEquals(-5, da.getInt(70));
+        da.close();
+    }
+
+    @Test
+    public void testCopyToItself() {
+        DataAccess da = createDataAccess(name);
+        da.createNew(300);
+        da.setHeader(2, 21);
+        da.setInt(70, -5);
+        assertSame(da, da.copyTo(da));
+        assertEquals(21, da.getHeader(2));
+        assertEquals(-5, da.getInt(70));
+        da.close();
+    }
+}
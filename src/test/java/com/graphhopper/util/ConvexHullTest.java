@@ -0,0 +1,61 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class ConvexHullTest {
+
+    @Test
+    public void testCalc() {
+        PointList points = new PointList();
+        points.add(0, 0);
+        points.add(1, 1);
+        points.add(0.5, 0.5);
+        points.add(0, 1);
+        points.add(1, 0);
+        points.add(0.2, 0.7);
+        // collinear
+        points.add(0.5, 0);
+        PointList hull = new ConvexHull().calc(points);
+        assertEquals(4, hull.size());
+        assertEquals(0, hull.latitude(0), 1e-6);
+        assertEquals(0, hull.longitude(0), 1e-6);
+        assertEquals(0, hull.latitude(1), 1e-6);
+        assertEquals(1, hull.longitude(1), 1e-6);
+        assertEquals(1, hull.latitude(2), 1e-6);
+        assertEquals(1, hull.longitude(2), 1e-6);
+        assertEquals(1, hull.latitude(3), 1e-6);
+        assertEquals(0, hull.longitude(3), 1e-6);
+    }
+
+    @Test
+    public void testFewPoints() {
+        PointList points = new PointList();
+        assertEquals(0, new ConvexHull().calc(points).size());
+        points.add(1, 2);
+        assertEquals(1, new ConvexHull().calc(points).size());
+        points.add(2, 2);
+        assertEquals(2, new ConvexHull().calc(points).size());
+    }
+}
@@ -82,6 +82,51 @@ public class GraphUtilityTest {
         assertEquals(4.6, newG.getLatitude(3), 1e-4); // 8
     }
 
+    @Test
+    public void testHilbertOrder() {
+        Graph g = initUnsorted(createGraph());
+        int[] order = GraphUtility.createHilbertOrder(g);
+        assertPermutation(order);
+        // the first quadrant of the curve is the bottom left one
+        assertEquals(0, order[0]);
+        assertEquals(1, order[6]);
+        assertEquals(0, GraphUtility.hilbertIndex(0, 0, 2));
+        assertEquals(1, GraphUtility.hilbertIndex(1, 0, 2));
+        assertEquals(3, GraphUtility.hilbertIndex(0, 1, 2));
+        assertEquals(2, GraphUtility.hilbertIndex(1, 1, 2));
+        assertEquals(15, GraphUtility.hilbertIndex(3, 0, 2));
+    }
+
+    @Test
+    public void testBFSOrder() {
+        Graph g = initUnsorted(createGraph());
+        int[] order = GraphUtility.createBFSOrder(g);
+        assertPermutation(order);
+        assertEquals(0, order[0]);
+        assertEquals(1, order[1]);
+
+        // several subnetworks are numbered one after the other
+        g = createGraph();
+        g.edge(0, 3, 1, true);
+        g.edge(1, 4, 1, true);
+        g.setNode(5, 0, 0);
+        order = GraphUtility.createBFSOrder(g);
+        assertPermutation(order);
+        assertEquals(1, order[3]);
+        assertEquals(2, order[1]);
+        assertEquals(3, order[4]);
+        assertEquals(4, order[2]);
+        assertEquals(5, order[5]);
+    }
+
+    void assertPermutation(int[] order) {
+        boolean[] used = new boolean[order.length];
+        for (int i = 0; i < order.length; i++) {
+            assertFalse(used[order[i]]);
+            used[order[i]] = true;
+        }
+    }
+
     @Test
     public void testSortDirected() {
         Graph g = createGraph();
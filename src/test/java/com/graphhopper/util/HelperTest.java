@@ -19,6 +19,7 @@
 package com.graphhopper.util;
 
 import java.io.File;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import org.junit.After;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -56,4 +57,35 @@ public class HelperTest {
         assertTrue(new File("./target/tmp/test/folder1/folder 3").isDirectory());
         Helper.removeDir(new File(to));
     }
+
+    @Test
+    public void testRunInChunks() {
+        for (int threads = 1; threads <= 3; threads++) {
+            final AtomicIntegerArray calls = new AtomicIntegerArray(1000);
+            final int maxThread = threads;
+            Helper.runInChunks(threads, 1000, 7, "test", new Helper.ChunkWorker() {
+                @Override public void run(int thread, int start, int end) {
+                    assertTrue(thread >= 0 && thread < maxThread);
+                    for (int i = start; i < end; i++) {
+                        calls.incrementAndGet(i);
+                    }
+                }
+            });
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(1, calls.get(i));
+            }
+        }
+
+        try {
+            Helper.runInChunks(2, 100, 10, "test", new Helper.ChunkWorker() {
+                @Override public void run(int thread, int start, int end) {
+                    throw new IllegalStateException("worker failed");
+                }
+            });
+            assertTrue(false);
+        } catch (RuntimeException ex) {
+            assertEquals("test failed", ex.getMessage());
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
 }